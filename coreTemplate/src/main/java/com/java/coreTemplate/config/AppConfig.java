@@ -1,17 +1,52 @@
-package com.java.coreTemplate.config;
-
-
-import org.springframework.boot.web.servlet.FilterRegistrationBean;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-
-@Configuration
-public class AppConfig {
-    @Bean
-    public FilterRegistrationBean<AuthFilter> authFilter(SessionAuthService sessionAuthService) {
-        FilterRegistrationBean<AuthFilter> registrationBean = new FilterRegistrationBean<>();
-        registrationBean.setFilter(new AuthFilter(sessionAuthService));
-        registrationBean.addUrlPatterns("/api/*");
-        return registrationBean;
-    }
-}
+package com.java.coreTemplate.config;
+
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+@Configuration
+@EnableScheduling
+public class AppConfig {
+    @Bean
+    public FilterRegistrationBean<AuthFilter> authFilter(SessionAuthService sessionAuthService,
+                                                         JwtTokenCache jwtTokenCache,
+                                                         TokenRevocationService tokenRevocationService) {
+        FilterRegistrationBean<AuthFilter> registrationBean = new FilterRegistrationBean<>();
+        registrationBean.setFilter(new AuthFilter(sessionAuthService, jwtTokenCache, tokenRevocationService));
+        registrationBean.addUrlPatterns("/api/*");
+        return registrationBean;
+    }
+
+    @Bean
+    public SessionStore sessionStore(@Value("${session.store:memory}") String store,
+                                     @Value("${session.idle-timeout:30m}") Duration idleTimeout,
+                                     @Value("${session.absolute-timeout:12h}") Duration absoluteTimeout,
+                                     @Value("${session.max-sessions:100000}") long maxSessions,
+                                     @Value("${session.off-heap.max-user-id-bytes:128}") int maxUserIdBytes,
+                                     @Value("${session.jdbc.near-cache-ttl:5s}") Duration nearCacheTtl,
+                                     @Value("${session.jdbc.flush-interval:1000}") long flushIntervalMillis,
+                                     JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager) {
+        return switch (store) {
+            case "memory" -> new InMemorySessionStore(idleTimeout, absoluteTimeout, maxSessions);
+            case "off-heap" -> new OffHeapSessionStore(idleTimeout, absoluteTimeout, maxSessions, maxUserIdBytes);
+            case "jdbc" -> {
+                JdbcSessionStore jdbcStore = new JdbcSessionStore(jdbcTemplate,
+                        new TransactionTemplate(transactionManager), idleTimeout, absoluteTimeout, nearCacheTtl,
+                        maxSessions);
+                // Closed, and so flushed, by the bean's inferred destroy method
+                jdbcStore.start(Duration.ofMillis(flushIntervalMillis));
+                yield jdbcStore;
+            }
+            default -> throw new IllegalArgumentException("Unknown session store: " + store);
+        };
+    }
+}
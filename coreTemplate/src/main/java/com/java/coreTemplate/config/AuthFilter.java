@@ -1,15 +1,32 @@
 package com.java.coreTemplate.config;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
 public class AuthFilter implements Filter {
+    public static final String CLAIMS_ATTRIBUTE = "jwtClaims";
+
     private final SessionAuthService sessionAuthService;
+    private final JwtTokenCache jwtTokenCache;
+    private final TokenRevocationService tokenRevocationService;
+
+    /**
+     * True when the request carried a JWT with the admin role. Only meaningful
+     * for paths behind this filter.
+     */
+    public static boolean isAdmin(HttpServletRequest request) {
+        Claims claims = (Claims) request.getAttribute(CLAIMS_ATTRIBUTE);
+        return claims != null && "admin".equals(claims.get("role"));
+    }
 
-    public AuthFilter(SessionAuthService sessionAuthService) {
+    public AuthFilter(SessionAuthService sessionAuthService, JwtTokenCache jwtTokenCache,
+                      TokenRevocationService tokenRevocationService) {
         this.sessionAuthService = sessionAuthService;
+        this.jwtTokenCache = jwtTokenCache;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     @Override
@@ -28,7 +45,9 @@ public class AuthFilter implements Filter {
         if (jwtToken != null && jwtToken.startsWith("Bearer ")) {
             // JWT-based authentication
             String token = jwtToken.substring(7);
-            if (JwtTokenUtil.validateToken(token)) {
+            Claims claims = jwtTokenCache.getClaims(token);
+            if (claims != null && !tokenRevocationService.isRevoked(claims.getId())) {
+                httpRequest.setAttribute(CLAIMS_ATTRIBUTE, claims);
                 chain.doFilter(request, response);
                 return;
             }
@@ -0,0 +1,56 @@
+package com.java.coreTemplate.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Backs the @Cacheable / @CachePut / @CacheEvict annotations of the entity
+ * services with bounded Caffeine caches, one per cache name.
+ *
+ * <p>Each cache takes its Caffeine spec from caches.specs.&lt;name&gt;, or
+ * caches.default when it has none, and reports hits, misses, evictions and
+ * load times under its name. Puts and evictions made inside a transaction
+ * are applied after it commits, so a rolled back write never reaches the
+ * cache and a concurrent reader cannot cache the row it replaced for long.
+ * Once applied they are passed on to the other nodes by the
+ * {@link CacheInvalidationBus}. Loads must use sync = true, so that a put
+ * always stands for a write.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    @Bean
+    public CacheManager cacheManager(Environment environment,
+                                     MeterRegistry meterRegistry,
+                                     CacheInvalidationBus invalidationBus,
+                                     @Value("${caches.default:maximumSize=10000,expireAfterWrite=10m}") String defaultSpec) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager() {
+            @Override
+            protected Cache<Object, Object> createNativeCaffeineCache(String name) {
+                // Statistics are always recorded, so the specs must not ask for them
+                Cache<Object, Object> cache = Caffeine.from(environment.getProperty("caches.specs." + name, defaultSpec))
+                        .recordStats()
+                        .build();
+                CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+                return cache;
+            }
+
+            @Override
+            protected org.springframework.cache.Cache adaptCaffeineCache(String name, Cache<Object, Object> cache) {
+                return invalidationBus.broadcasting(super.adaptCaffeineCache(name, cache));
+            }
+        };
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+}
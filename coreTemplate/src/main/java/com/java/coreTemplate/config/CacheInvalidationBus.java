@@ -0,0 +1,491 @@
+package com.java.coreTemplate.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carries cache invalidations between nodes over Postgres LISTEN/NOTIFY.
+ * Every put, evict and clear on a cache of {@link CacheConfig} is applied
+ * locally and queued here; as the caches are transaction aware, that happens
+ * after the write committed. The queue is flushed every flush interval, so a
+ * burst of writes to the same entries costs a few NOTIFYs, and every other
+ * node evicts the named keys from its own caches.
+ *
+ * <p>Notifications sent while a node is not listening are lost to it. After
+ * every (re)connect the node therefore compares the cached entities of each
+ * cache with a caches.invalidation.version-tables.&lt;name&gt; table against
+ * their version column and evicts the ones that changed; caches without such
+ * a table are cleared.
+ *
+ * <p>Holds one pooled connection for LISTEN. Does nothing on other databases.
+ * The Postgres driver is a runtime dependency, so its notification API is
+ * reached by reflection.
+ */
+@Component
+public class CacheInvalidationBus {
+    private static final Logger log = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+    // Postgres rejects payloads of 8000 bytes or more
+    private static final int MAX_PAYLOAD_BYTES = 7_900;
+    private static final int VERSION_CHECK_CHUNK = 1_000;
+    private static final Set<Object> ALL = Collections.emptySet();
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Environment environment;
+    private final boolean enabled;
+    private final String channel;
+    private final Duration flushInterval;
+    private final Duration reconnectDelay;
+    private final int maxPendingKeys;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, Cache> localCaches = new ConcurrentHashMap<>();
+    // Cache name -> keys to evict, or ALL to clear the cache
+    private Map<String, Set<Object>> pending = new HashMap<>();
+    private final Counter published;
+    private final Counter notifications;
+    private final Counter received;
+    private final Counter resyncs;
+    private final ScheduledExecutorService publisher;
+    private final Thread listener;
+    private volatile boolean active;
+    private volatile boolean connected;
+    // org.postgresql.PGConnection and its getNotifications(int), PGNotification.getParameter()
+    private Class<?> pgConnectionType;
+    private Method getNotifications;
+    private Method getParameter;
+
+    public CacheInvalidationBus(DataSource dataSource,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                Environment environment,
+                                @Value("${caches.invalidation.enabled:true}") boolean enabled,
+                                @Value("${caches.invalidation.channel:cache_invalidation}") String channel,
+                                @Value("${caches.invalidation.flush-interval:50ms}") Duration flushInterval,
+                                @Value("${caches.invalidation.reconnect-delay:5s}") Duration reconnectDelay,
+                                @Value("${caches.invalidation.max-pending-keys:10000}") int maxPendingKeys,
+                                MeterRegistry meterRegistry) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.environment = environment;
+        this.enabled = enabled;
+        this.channel = channel;
+        this.flushInterval = flushInterval;
+        this.reconnectDelay = reconnectDelay;
+        this.maxPendingKeys = maxPendingKeys;
+        this.published = Counter.builder("cache.invalidation.published").register(meterRegistry);
+        this.notifications = Counter.builder("cache.invalidation.notifications").register(meterRegistry);
+        this.received = Counter.builder("cache.invalidation.received").register(meterRegistry);
+        this.resyncs = Counter.builder("cache.invalidation.resyncs").register(meterRegistry);
+        Gauge.builder("cache.invalidation.connected", this, bus -> bus.connected ? 1 : 0).register(meterRegistry);
+        this.publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-invalidation-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.listener = new Thread(this::listen, "cache-invalidation-listener");
+        this.listener.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            pgConnectionType = Class.forName("org.postgresql.PGConnection");
+            if (!connection.isWrapperFor(pgConnectionType)) {
+                log.info("Not connected to Postgres; cache invalidation stays local to this node");
+                return;
+            }
+            getNotifications = pgConnectionType.getMethod("getNotifications", int.class);
+            getParameter = Class.forName("org.postgresql.PGNotification").getMethod("getParameter");
+        } catch (ReflectiveOperationException e) {
+            log.info("No Postgres driver; cache invalidation stays local to this node");
+            return;
+        } catch (SQLException e) {
+            log.warn("Could not check the database for LISTEN/NOTIFY; cache invalidation stays local", e);
+            return;
+        }
+        active = true;
+        listener.start();
+        publisher.scheduleWithFixedDelay(this::flushQuietly, flushInterval.toMillis(), flushInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Wraps a node-local cache so that its writes are announced to the other
+     * nodes, and registers it as the target of their announcements.
+     */
+    public Cache broadcasting(Cache local) {
+        localCaches.put(local.getName(), local);
+        return new BroadcastingCache(local);
+    }
+
+    /**
+     * Queues the eviction of the key from the named cache on the other nodes,
+     * or of the whole cache when the key is null.
+     */
+    public void publish(String cacheName, Object key) {
+        if (!active) {
+            return;
+        }
+        published.increment();
+        queue(cacheName, key);
+    }
+
+    private synchronized void queue(String cacheName, Object key) {
+        Set<Object> keys = pending.get(cacheName);
+        if (keys == ALL) {
+            return;
+        }
+        // Only keys that survive the trip as text are sent one by one
+        if (!(key instanceof Long || key instanceof String) || keys != null && keys.size() >= maxPendingKeys) {
+            pending.put(cacheName, ALL);
+            return;
+        }
+        pending.computeIfAbsent(cacheName, name -> new HashSet<>()).add(key);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Publishing cache invalidations failed, retrying on the next flush", e);
+        }
+    }
+
+    /**
+     * Sends everything queued so far as few NOTIFYs as the payload size
+     * allows; on failure it stays queued for the next flush.
+     */
+    public void flush() {
+        Map<String, Set<Object>> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new HashMap<>();
+        }
+        List<String> payloads = payloads(batch);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (String payload : payloads) {
+                    jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> {
+                    }, channel, payload);
+                }
+            });
+        } catch (DataAccessException e) {
+            requeue(batch);
+            throw e;
+        }
+        notifications.increment(payloads.size());
+    }
+
+    private synchronized void requeue(Map<String, Set<Object>> batch) {
+        batch.forEach((cacheName, keys) -> {
+            if (keys == ALL) {
+                pending.put(cacheName, ALL);
+            } else {
+                keys.forEach(key -> queue(cacheName, key));
+            }
+        });
+    }
+
+    // One line per cache or key after the node id: name, then * or the key type and value
+    private List<String> payloads(Map<String, Set<Object>> batch) {
+        List<String> payloads = new ArrayList<>();
+        StringBuilder payload = new StringBuilder(nodeId);
+        for (Map.Entry<String, Set<Object>> entry : batch.entrySet()) {
+            List<String> lines = new ArrayList<>();
+            if (entry.getValue() == ALL) {
+                lines.add(entry.getKey() + "\t*");
+            } else {
+                for (Object key : entry.getValue()) {
+                    String value = key.toString();
+                    if (value.indexOf('\n') >= 0) {
+                        lines = List.of(entry.getKey() + "\t*");
+                        break;
+                    }
+                    lines.add(entry.getKey() + "\t" + (key instanceof Long ? "L" : "S") + "\t" + value);
+                }
+            }
+            for (String line : lines) {
+                if (utf8Length(payload) + 1 + utf8Length(line) > MAX_PAYLOAD_BYTES) {
+                    payloads.add(payload.toString());
+                    payload = new StringBuilder(nodeId);
+                }
+                payload.append('\n').append(line);
+            }
+        }
+        payloads.add(payload.toString());
+        return payloads;
+    }
+
+    private static int utf8Length(CharSequence text) {
+        return text.toString().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private void listen() {
+        while (active) {
+            try (Connection connection = dataSource.getConnection()) {
+                // Notifications are only delivered between transactions
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                Object pgConnection = connection.unwrap(pgConnectionType);
+                connected = true;
+                // Listening again, so whatever was missed before now is found by comparing versions
+                resync();
+                while (active) {
+                    Object[] batch = (Object[]) invoke(getNotifications, pgConnection, (int) reconnectDelay.toMillis());
+                    if (batch != null && batch.length > 0) {
+                        apply(batch);
+                    }
+                }
+            } catch (SQLException | DataAccessException e) {
+                if (!active) {
+                    return;
+                }
+                log.warn("Cache invalidation listener lost its connection, reconnecting in {}", reconnectDelay, e);
+            } finally {
+                connected = false;
+            }
+            try {
+                Thread.sleep(reconnectDelay.toMillis());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // A driver method; SQLExceptions it throws come out unwrapped
+    private static Object invoke(Method method, Object target, Object... args) throws SQLException {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw new IllegalStateException("Postgres driver call " + method.getName() + " failed", e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void apply(Object[] batch) throws SQLException {
+        // Coalesced across the batch, so a key named in several notifications is evicted once
+        Map<String, Set<Object>> evictions = new HashMap<>();
+        for (Object notification : batch) {
+            String[] lines = ((String) invoke(getParameter, notification)).split("\n");
+            if (lines[0].equals(nodeId)) {
+                continue;
+            }
+            for (int i = 1; i < lines.length; i++) {
+                String[] fields = lines[i].split("\t", 3);
+                Set<Object> keys = evictions.get(fields[0]);
+                if (fields[1].equals("*")) {
+                    evictions.put(fields[0], ALL);
+                } else if (keys != ALL) {
+                    Object key = fields[1].equals("L") ? Long.valueOf(fields[2]) : fields[2];
+                    evictions.computeIfAbsent(fields[0], name -> new HashSet<>()).add(key);
+                }
+            }
+        }
+        evictions.forEach((cacheName, keys) -> {
+            Cache cache = localCaches.get(cacheName);
+            if (cache == null) {
+                return;
+            }
+            if (keys == ALL) {
+                cache.clear();
+            } else {
+                keys.forEach(cache::evict);
+            }
+            received.increment(keys == ALL ? 1 : keys.size());
+        });
+    }
+
+    /**
+     * Evicts from every local cache what may have changed without this node
+     * hearing about it.
+     */
+    public void resync() {
+        for (Cache cache : localCaches.values()) {
+            String table = environment.getProperty("caches.invalidation.version-tables." + cache.getName());
+            if (table == null || !(cache instanceof CaffeineCache caffeineCache)) {
+                cache.clear();
+                continue;
+            }
+            Map<Object, Object> entries = caffeineCache.getNativeCache().asMap();
+            Map<Long, Long> cachedVersions = new HashMap<>();
+            for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                Long version = entry.getKey() instanceof Long ? version(entry.getValue()) : null;
+                if (version == null) {
+                    cache.evict(entry.getKey());
+                } else {
+                    cachedVersions.put((Long) entry.getKey(), version);
+                }
+            }
+            List<Long> ids = new ArrayList<>(cachedVersions.keySet());
+            for (int from = 0; from < ids.size(); from += VERSION_CHECK_CHUNK) {
+                List<Long> chunk = ids.subList(from, Math.min(from + VERSION_CHECK_CHUNK, ids.size()));
+                Map<Long, Long> stored = new HashMap<>();
+                jdbcTemplate.query("SELECT id, version FROM " + table + " WHERE id IN ("
+                        + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")", rs -> {
+                    stored.put(rs.getLong(1), rs.getLong(2));
+                }, chunk.toArray());
+                for (Long id : chunk) {
+                    if (!Objects.equals(stored.get(id), cachedVersions.get(id))) {
+                        cache.evict(id);
+                    }
+                }
+            }
+        }
+        resyncs.increment();
+    }
+
+    // The version property of a cached entity, or null when it has none
+    private static Long version(Object value) {
+        if (value == null) {
+            return null;
+        }
+        BeanWrapper bean = PropertyAccessorFactory.forBeanPropertyAccess(value);
+        if (!bean.isReadableProperty("version")) {
+            return null;
+        }
+        Object version = bean.getPropertyValue("version");
+        return version instanceof Number number ? number.longValue() : null;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!active) {
+            return;
+        }
+        publisher.shutdown();
+        publisher.awaitTermination(5, TimeUnit.SECONDS);
+        flushQuietly();
+        active = false;
+        listener.interrupt();
+        listener.join(reconnectDelay.toMillis() + 1_000);
+    }
+
+    private final class BroadcastingCache implements Cache {
+        private final Cache local;
+
+        BroadcastingCache(Cache local) {
+            this.local = local;
+        }
+
+        @Override
+        public String getName() {
+            return local.getName();
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return local.getNativeCache();
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            return local.get(key);
+        }
+
+        @Override
+        public <T> T get(Object key, Class<T> type) {
+            return local.get(key, type);
+        }
+
+        @Override
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            return local.get(key, valueLoader);
+        }
+
+        // Loads go through get(key, loader) or putIfAbsent, so a put is always a write
+        @Override
+        public void put(Object key, Object value) {
+            local.put(key, value);
+            publish(getName(), key);
+        }
+
+        @Override
+        public ValueWrapper putIfAbsent(Object key, Object value) {
+            return local.putIfAbsent(key, value);
+        }
+
+        @Override
+        public void evict(Object key) {
+            local.evict(key);
+            publish(getName(), key);
+        }
+
+        @Override
+        public boolean evictIfPresent(Object key) {
+            boolean present = local.evictIfPresent(key);
+            publish(getName(), key);
+            return present;
+        }
+
+        @Override
+        public void clear() {
+            local.clear();
+            publish(getName(), null);
+        }
+
+        @Override
+        public boolean invalidate() {
+            boolean present = local.invalidate();
+            publish(getName(), null);
+            return present;
+        }
+    }
+}
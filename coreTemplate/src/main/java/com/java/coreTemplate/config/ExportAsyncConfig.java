@@ -0,0 +1,45 @@
+package com.java.coreTemplate.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Gives streamed exports a timeout of their own. The other async endpoints
+ * keep the container default, so a stuck login callback is still cut off
+ * quickly; a handler marks its request with {@link #EXPORT_REQUEST} before
+ * returning its streaming body to get transactions.export.timeout instead.
+ */
+@Configuration
+public class ExportAsyncConfig implements WebMvcConfigurer {
+
+    public static final String EXPORT_REQUEST = ExportAsyncConfig.class.getName() + ".EXPORT_REQUEST";
+
+    private final Duration exportTimeout;
+
+    public ExportAsyncConfig(@Value("${transactions.export.timeout:1h}") Duration exportTimeout) {
+        this.exportTimeout = exportTimeout;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            // Runs before the async request starts, while its timeout can still be changed
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                if (request instanceof AsyncWebRequest asyncRequest
+                        && request.getAttribute(EXPORT_REQUEST, RequestAttributes.SCOPE_REQUEST) != null) {
+                    asyncRequest.setTimeout(exportTimeout.toMillis());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,78 @@
+package com.java.coreTemplate.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.time.Duration;
+
+public class InMemorySessionStore implements SessionStore {
+    private final Cache<String, SessionEntry> sessions;
+
+    public InMemorySessionStore(Duration idleTimeout, Duration absoluteTimeout, long maxSessions) {
+        this.sessions = Caffeine.newBuilder()
+                .maximumSize(maxSessions)
+                .expireAfter(new SessionExpiry(idleTimeout.toNanos(), absoluteTimeout.toNanos()))
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public void put(String sessionId, String userId) {
+        sessions.put(sessionId, new SessionEntry(userId, System.nanoTime()));
+    }
+
+    @Override
+    public String get(String sessionId) {
+        SessionEntry entry = sessions.getIfPresent(sessionId);
+        return entry != null ? entry.userId() : null;
+    }
+
+    @Override
+    public void remove(String sessionId) {
+        sessions.invalidate(sessionId);
+    }
+
+    @Override
+    public long sweep() {
+        long before = sessions.estimatedSize();
+        sessions.cleanUp();
+        return Math.max(0, before - sessions.estimatedSize());
+    }
+
+    @Override
+    public long size() {
+        return sessions.estimatedSize();
+    }
+
+    @Override
+    public long evictionCount() {
+        return sessions.stats().evictionCount();
+    }
+
+    private record SessionEntry(String userId, long createdAtNanos) {
+    }
+
+    private record SessionExpiry(long idleNanos, long absoluteNanos) implements Expiry<String, SessionEntry> {
+        @Override
+        public long expireAfterCreate(String sessionId, SessionEntry entry, long currentTime) {
+            return remaining(entry, currentTime);
+        }
+
+        @Override
+        public long expireAfterUpdate(String sessionId, SessionEntry entry, long currentTime, long currentDuration) {
+            return remaining(entry, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String sessionId, SessionEntry entry, long currentTime, long currentDuration) {
+            return remaining(entry, currentTime);
+        }
+
+        // Every access restarts the idle timer, capped by what is left of the absolute lifetime
+        private long remaining(SessionEntry entry, long currentTime) {
+            long untilAbsolute = absoluteNanos - (currentTime - entry.createdAtNanos());
+            return Math.max(0, Math.min(idleNanos, untilAbsolute));
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.java.coreTemplate.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Session store shared by every node through the auth_session table.
+ * Creations, removals and last-access touches are queued and written in
+ * batches by {@link #flush()}; repeated touches of one session between two
+ * flushes collapse into a single update. A batch that fails is queued again,
+ * behind whatever changed the same sessions meanwhile. Reads are answered from a short-lived
+ * local near-cache so the auth filter does not query the database per request.
+ * The store runs its own flusher once {@link #start} is called, so nothing is
+ * scheduled when another store is configured.
+ */
+public class JdbcSessionStore implements SessionStore {
+    private static final Logger log = LoggerFactory.getLogger(JdbcSessionStore.class);
+    private static final String SELECT_SESSION =
+            "SELECT user_id, created_at, last_accessed_at FROM auth_session WHERE session_id = ?";
+    private static final String DELETE_SESSION = "DELETE FROM auth_session WHERE session_id = ?";
+    private static final String INSERT_SESSION =
+            "INSERT INTO auth_session (session_id, user_id, created_at, last_accessed_at) VALUES (?, ?, ?, ?)";
+    private static final String TOUCH_SESSION =
+            "UPDATE auth_session SET last_accessed_at = ? WHERE session_id = ? AND last_accessed_at < ?";
+    private static final String DELETE_EXPIRED =
+            "DELETE FROM auth_session WHERE last_accessed_at < ? OR created_at < ?";
+    private static final String COUNT_SESSIONS = "SELECT count(*) FROM auth_session";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long idleMillis;
+    private final long absoluteMillis;
+    private final Cache<String, SessionRecord> nearCache;
+    private final Map<String, SessionRecord> pendingWrites = new ConcurrentHashMap<>();
+    private final Map<String, SessionRecord> pendingTouches = new ConcurrentHashMap<>();
+    private final AtomicLong evictions = new AtomicLong();
+    // Counted by the sweeper, so a gauge scrape never queries the database
+    private volatile long size;
+    private ScheduledExecutorService flusher;
+
+    public JdbcSessionStore(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                            Duration idleTimeout, Duration absoluteTimeout,
+                            Duration nearCacheTtl, long nearCacheMaxSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.idleMillis = idleTimeout.toMillis();
+        this.absoluteMillis = absoluteTimeout.toMillis();
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(nearCacheMaxSize)
+                .expireAfterWrite(nearCacheTtl)
+                .build();
+    }
+
+    /**
+     * Starts writing queued changes behind every flushInterval on a
+     * background thread.
+     */
+    public synchronized void start(Duration flushInterval) {
+        if (flusher != null) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushInterval.toMillis(), flushInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    // Stops the flusher and writes what is still queued
+    public void close() throws InterruptedException {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = flusher;
+            flusher = null;
+        }
+        if (running != null) {
+            running.shutdown();
+            running.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        flush();
+    }
+
+    @Override
+    public void put(String sessionId, String userId) {
+        long now = System.currentTimeMillis();
+        SessionRecord record = new SessionRecord(userId, now, now);
+        pendingTouches.remove(sessionId);
+        pendingWrites.put(sessionId, record);
+        nearCache.put(sessionId, record);
+    }
+
+    @Override
+    public String get(String sessionId) {
+        SessionRecord record = nearCache.getIfPresent(sessionId);
+        if (record == null) {
+            record = pendingWrites.get(sessionId);
+            if (record == SessionRecord.REMOVED) {
+                return null;
+            }
+            if (record == null) {
+                record = load(sessionId);
+            }
+            if (record == null) {
+                return null;
+            }
+            nearCache.put(sessionId, record);
+        }
+        long now = System.currentTimeMillis();
+        if (record.isExpired(now, idleMillis, absoluteMillis)) {
+            remove(sessionId);
+            evictions.incrementAndGet();
+            return null;
+        }
+        record.lastAccessedAt = now;
+        if (!pendingWrites.containsKey(sessionId)) {
+            pendingTouches.put(sessionId, record);
+        }
+        return record.userId;
+    }
+
+    @Override
+    public void remove(String sessionId) {
+        nearCache.invalidate(sessionId);
+        pendingTouches.remove(sessionId);
+        pendingWrites.put(sessionId, SessionRecord.REMOVED);
+    }
+
+    @Override
+    public synchronized void flush() {
+        Map<String, SessionRecord> writes = new HashMap<>();
+        Map<String, SessionRecord> touched = new HashMap<>();
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> touches = new ArrayList<>();
+        for (Map.Entry<String, SessionRecord> entry : pendingWrites.entrySet()) {
+            String sessionId = entry.getKey();
+            SessionRecord record = entry.getValue();
+            if (!pendingWrites.remove(sessionId, record)) {
+                continue;
+            }
+            writes.put(sessionId, record);
+            deletes.add(new Object[]{sessionId});
+            if (record != SessionRecord.REMOVED) {
+                inserts.add(new Object[]{sessionId, record.userId, record.createdAt, record.lastAccessedAt});
+            }
+        }
+        for (Map.Entry<String, SessionRecord> entry : pendingTouches.entrySet()) {
+            if (pendingTouches.remove(entry.getKey(), entry.getValue())) {
+                touched.put(entry.getKey(), entry.getValue());
+                long lastAccessedAt = entry.getValue().lastAccessedAt;
+                touches.add(new Object[]{lastAccessedAt, entry.getKey(), lastAccessedAt});
+            }
+        }
+        if (deletes.isEmpty() && touches.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!deletes.isEmpty()) {
+                    jdbcTemplate.batchUpdate(DELETE_SESSION, deletes);
+                }
+                if (!inserts.isEmpty()) {
+                    jdbcTemplate.batchUpdate(INSERT_SESSION, inserts);
+                }
+                if (!touches.isEmpty()) {
+                    jdbcTemplate.batchUpdate(TOUCH_SESSION, touches);
+                }
+            });
+        } catch (RuntimeException e) {
+            // A put or remove queued since the drain is newer, and so wins
+            writes.forEach(pendingWrites::putIfAbsent);
+            touched.forEach((sessionId, record) -> {
+                if (!pendingWrites.containsKey(sessionId)) {
+                    pendingTouches.putIfAbsent(sessionId, record);
+                }
+            });
+            throw e;
+        }
+    }
+
+    @Override
+    public long sweep() {
+        flush();
+        nearCache.cleanUp();
+        long now = System.currentTimeMillis();
+        Integer removed = transactionTemplate.execute(status ->
+                jdbcTemplate.update(DELETE_EXPIRED, now - idleMillis, now - absoluteMillis));
+        long count = removed != null ? removed : 0;
+        evictions.addAndGet(count);
+        Long live = jdbcTemplate.queryForObject(COUNT_SESSIONS, Long.class);
+        size = live != null ? live : 0;
+        return count;
+    }
+
+    /**
+     * Sessions in the table, on every node, as of the last sweep.
+     */
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public long evictionCount() {
+        return evictions.get();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // Still queued; the next flush writes it
+            log.warn("Flushing sessions failed", e);
+        }
+    }
+
+    private SessionRecord load(String sessionId) {
+        List<SessionRecord> rows = jdbcTemplate.query(SELECT_SESSION,
+                (rs, rowNum) -> new SessionRecord(rs.getString(1), rs.getLong(2), rs.getLong(3)),
+                sessionId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private static final class SessionRecord {
+        static final SessionRecord REMOVED = new SessionRecord(null, 0, 0);
+
+        final String userId;
+        final long createdAt;
+        volatile long lastAccessedAt;
+
+        SessionRecord(String userId, long createdAt, long lastAccessedAt) {
+            this.userId = userId;
+            this.createdAt = createdAt;
+            this.lastAccessedAt = lastAccessedAt;
+        }
+
+        boolean isExpired(long now, long idleMillis, long absoluteMillis) {
+            return now - lastAccessedAt > idleMillis || now - createdAt > absoluteMillis;
+        }
+    }
+}
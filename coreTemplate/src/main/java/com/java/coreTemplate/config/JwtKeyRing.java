@@ -0,0 +1,47 @@
+package com.java.coreTemplate.config;
+
+import io.jsonwebtoken.Jwts;
+
+import javax.crypto.SecretKey;
+import java.util.Map;
+
+/**
+ * Immutable set of HMAC signing keys indexed by key id. A new ring is built
+ * and swapped in whole on every reload, so verification is a plain map lookup.
+ */
+public final class JwtKeyRing {
+    private final Map<String, SecretKey> keys;
+    private final String activeKid;
+
+    public JwtKeyRing(Map<String, SecretKey> keys, String activeKid) {
+        if (!keys.containsKey(activeKid)) {
+            throw new IllegalArgumentException("Active key id not in key ring: " + activeKid);
+        }
+        this.keys = Map.copyOf(keys);
+        this.activeKid = activeKid;
+    }
+
+    /**
+     * Single random key, only valid for the lifetime of this JVM. Used when no
+     * key directory is configured.
+     */
+    public static JwtKeyRing ephemeral() {
+        return new JwtKeyRing(Map.of("ephemeral", Jwts.SIG.HS256.key().build()), "ephemeral");
+    }
+
+    public String activeKid() {
+        return activeKid;
+    }
+
+    public SecretKey activeKey() {
+        return keys.get(activeKid);
+    }
+
+    public SecretKey key(String kid) {
+        return kid != null ? keys.get(kid) : null;
+    }
+
+    public Map<String, SecretKey> keys() {
+        return keys;
+    }
+}
@@ -0,0 +1,122 @@
+package com.java.coreTemplate.config;
+
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Loads the JWT key ring from a directory of {@code <kid>.key} files, each
+ * holding a base64 encoded HMAC secret of at least 256 bits. Every node that
+ * reads the same files signs and verifies with the same keys.
+ *
+ * <p>Rotation: drop a new key file with a lexicographically greater kid (for
+ * example a date) into the directory. Once the file is older than the
+ * activation delay every node has picked it up and it becomes the signing
+ * key. Keys whose files are removed keep verifying for the retired-key grace
+ * period, so tokens already handed out stay valid until they expire.
+ */
+@Component
+public class JwtKeyRingLoader {
+    private static final Logger log = LoggerFactory.getLogger(JwtKeyRingLoader.class);
+    private static final String KEY_FILE_SUFFIX = ".key";
+
+    private final String keyDirectory;
+    private final Duration activationDelay;
+    private final Duration retiredKeyGrace;
+    private final Map<String, Instant> retiredKeys = new HashMap<>();
+
+    public JwtKeyRingLoader(@Value("${jwt.keys.dir:}") String keyDirectory,
+                            @Value("${jwt.keys.activation-delay:10m}") Duration activationDelay,
+                            @Value("${jwt.keys.retired-key-grace:" + JwtTokenUtil.EXPIRATION_HOURS + "h}") Duration retiredKeyGrace) {
+        this.keyDirectory = keyDirectory;
+        this.activationDelay = activationDelay;
+        this.retiredKeyGrace = retiredKeyGrace;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (keyDirectory.isBlank()) {
+            log.warn("jwt.keys.dir is not set; tokens are signed with a random per-process key");
+            return;
+        }
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.keys.reload-interval:300000}")
+    public synchronized void reload() {
+        if (keyDirectory.isBlank()) {
+            return;
+        }
+        Instant now = Instant.now();
+        Map<String, SecretKey> keys = new HashMap<>();
+        String activeKid = null;
+        String newestKid = null;
+        try (Stream<Path> files = Files.list(Paths.get(keyDirectory))) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(KEY_FILE_SUFFIX)) {
+                    continue;
+                }
+                String kid = name.substring(0, name.length() - KEY_FILE_SUFFIX.length());
+                keys.put(kid, readKey(file));
+                if (newestKid == null || kid.compareTo(newestKid) > 0) {
+                    newestKid = kid;
+                }
+                Instant activatesAt = Files.getLastModifiedTime(file).toInstant().plus(activationDelay);
+                if (!activatesAt.isAfter(now) && (activeKid == null || kid.compareTo(activeKid) > 0)) {
+                    activeKid = kid;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read JWT keys from " + keyDirectory, e);
+        }
+        if (newestKid == null) {
+            throw new IllegalStateException("No " + KEY_FILE_SUFFIX + " files in " + keyDirectory);
+        }
+        if (activeKid == null) {
+            // Fresh deployment: nothing has aged past the activation delay yet
+            activeKid = newestKid;
+        }
+
+        retiredKeys.keySet().removeAll(keys.keySet());
+        JwtKeyRing previous = JwtTokenUtil.keyRing();
+        previous.keys().forEach((kid, key) -> {
+            if (!keys.containsKey(kid) && !"ephemeral".equals(kid)) {
+                Instant retiredAt = retiredKeys.computeIfAbsent(kid, k -> now);
+                if (retiredAt.plus(retiredKeyGrace).isAfter(now)) {
+                    keys.put(kid, key);
+                } else {
+                    retiredKeys.remove(kid);
+                }
+            }
+        });
+
+        if (!activeKid.equals(previous.activeKid())) {
+            log.info("JWT signing key is now {}", activeKid);
+        }
+        JwtTokenUtil.installKeyRing(new JwtKeyRing(keys, activeKid));
+    }
+
+    private static SecretKey readKey(Path file) throws IOException {
+        String encoded = Files.readString(file, StandardCharsets.US_ASCII).trim();
+        return Keys.hmacShaKeyFor(Base64.getDecoder().decode(encoded));
+    }
+}
@@ -0,0 +1,95 @@
+package com.java.coreTemplate.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class JwtTokenCache {
+    private final Cache<String, Claims> verifiedTokens;
+
+    public JwtTokenCache(@Value("${jwt.cache.max-size:10000}") long maxSize,
+                         MeterRegistry meterRegistry) {
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new UntilTokenExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwtTokens");
+    }
+
+    /**
+     * Returns the verified claims for the token, or null if it is not valid.
+     * Only successfully verified tokens are cached, so a forged token always
+     * goes through signature verification.
+     */
+    public Claims getClaims(String token) {
+        Claims claims = verifiedTokens.getIfPresent(token);
+        if (claims != null) {
+            if (claims.getExpiration() == null || claims.getExpiration().after(new Date())) {
+                return claims;
+            }
+            verifiedTokens.invalidate(token);
+            return null;
+        }
+        try {
+            claims = JwtTokenUtil.parseToken(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+        verifiedTokens.put(token, claims);
+        return claims;
+    }
+
+    public boolean validateToken(String token) {
+        return getClaims(token) != null;
+    }
+
+    public void invalidate(String token) {
+        verifiedTokens.invalidate(token);
+    }
+
+    public long hitCount() {
+        return verifiedTokens.stats().hitCount();
+    }
+
+    public long missCount() {
+        return verifiedTokens.stats().missCount();
+    }
+
+    public CacheStats stats() {
+        return verifiedTokens.stats();
+    }
+
+    private static class UntilTokenExpiry implements Expiry<String, Claims> {
+        @Override
+        public long expireAfterCreate(String token, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null) {
+                return TimeUnit.HOURS.toNanos(1);
+            }
+            long remainingMillis = expiration.getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, Claims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(token, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String token, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -3,35 +3,59 @@ package com.java.coreTemplate.config;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.ProtectedHeader;
 import org.apache.commons.lang3.time.DateUtils;
 
 import javax.crypto.SecretKey;
 import java.security.Key;
 import java.util.Date;
 import java.util.Map;
+import java.util.UUID;
 
 public class JwtTokenUtil {
-     private static final Key SECRET_KEY = Keys.secretKeyFor(SignatureAlgorithm.HS256);
-    //private static final Key SECRET_KEY = Keys.secretKeyFor(Jwts.SIG.HS256);
-    private static final int EXPIRATION_HOURS = 24;
+    // Replaced by JwtKeyRingLoader at startup; the random ring only serves tests and unconfigured dev runs
+    private static volatile JwtKeyRing keyRing = JwtKeyRing.ephemeral();
+    public static final int EXPIRATION_HOURS = 24;
+    // JwtParser is immutable and thread-safe, so one instance serves every request
+    private static final JwtParser PARSER = Jwts.parser()
+            .keyLocator(new LocatorAdapter<Key>() {
+                @Override
+                protected Key locate(ProtectedHeader header) {
+                    SecretKey key = keyRing.key(header.getKeyId());
+                    if (key == null) {
+                        throw new JwtException("Unknown signing key id: " + header.getKeyId());
+                    }
+                    return key;
+                }
+            })
+            .build();
+
+    public static void installKeyRing(JwtKeyRing ring) {
+        keyRing = ring;
+    }
+
+    public static JwtKeyRing keyRing() {
+        return keyRing;
+    }
 
     public static String generateToken(String subject, Map<String, Object> claims) {
+        JwtKeyRing ring = keyRing;
         return Jwts.builder()
+                .header().keyId(ring.activeKid()).and()
                 .setClaims(claims)
                 .setSubject(subject)
+                .setId(UUID.randomUUID().toString())
                 .setIssuedAt(new Date())
                 .setExpiration(DateUtils.addHours(new Date(), EXPIRATION_HOURS))
-                .signWith(SECRET_KEY)
+                .signWith(ring.activeKey())
                 .compact();
     }
 
     public static Claims parseToken(String token) {
-        return Jwts.parser()
-                .verifyWith((SecretKey) SECRET_KEY) // Changed from setSigningKey()
-                .build()
+        return PARSER
                 .parseSignedClaims(token) // Changed from parseClaimsJws()
                 .getPayload(); // Changed from getBody()
     }
@@ -1,30 +1,76 @@
 package com.java.coreTemplate.config;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class OAuthService {
-    @Value("${oauth2.provider.token-uri}")
-    private String tokenUri;
-
-    @Value("${oauth2.provider.user-info-uri}")
-    private String userInfoUri;
+    private static final TypeReference<Map<String, Object>> JSON_OBJECT = new TypeReference<>() {
+    };
 
-    @Value("${oauth2.client.id}")
-    private String clientId;
+    private final String tokenUri;
+    private final String userInfoUri;
+    private final String clientId;
+    private final String clientSecret;
+    private final String redirectUri;
+    private final Duration requestTimeout;
+    private final ObjectMapper objectMapper;
+    // The JDK client keeps a pool of keep-alive connections per provider host
+    private final HttpClient httpClient;
+    private final AsyncCache<String, Map<String, Object>> userInfoCache;
 
-    @Value("${oauth2.client.secret}")
-    private String clientSecret;
+    public OAuthService(@Value("${oauth2.provider.token-uri}") String tokenUri,
+                        @Value("${oauth2.provider.user-info-uri}") String userInfoUri,
+                        @Value("${oauth2.client.id}") String clientId,
+                        @Value("${oauth2.client.secret}") String clientSecret,
+                        @Value("${oauth2.client.redirect-uri}") String redirectUri,
+                        @Value("${oauth2.client.connect-timeout:2s}") Duration connectTimeout,
+                        @Value("${oauth2.client.request-timeout:5s}") Duration requestTimeout,
+                        @Value("${oauth2.client.user-info-cache-ttl:60s}") Duration userInfoCacheTtl,
+                        @Value("${oauth2.client.user-info-cache-size:10000}") long userInfoCacheSize,
+                        ObjectMapper objectMapper) {
+        this.tokenUri = tokenUri;
+        this.userInfoUri = userInfoUri;
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+        this.redirectUri = redirectUri;
+        this.requestTimeout = requestTimeout;
+        this.objectMapper = objectMapper;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.userInfoCache = Caffeine.newBuilder()
+                .expireAfterWrite(userInfoCacheTtl)
+                .maximumSize(userInfoCacheSize)
+                .buildAsync();
+    }
 
-    @Value("${oauth2.client.redirect-uri}")
-    private String redirectUri;
+    public String getAccessToken(String code) {
+        return getAccessTokenAsync(code).join();
+    }
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    public Map<String, Object> getUserInfo(String accessToken) {
+        return getUserInfoAsync(accessToken).join();
+    }
 
-    public String getAccessToken(String code) {
+    public CompletableFuture<String> getAccessTokenAsync(String code) {
         Map<String, String> params = new HashMap<>();
         params.put("code", code);
         params.put("client_id", clientId);
@@ -32,11 +78,55 @@ public class OAuthService {
         params.put("redirect_uri", redirectUri);
         params.put("grant_type", "authorization_code");
 
-        Map<String, Object> response = restTemplate.postForObject(tokenUri, params, Map.class);
-        return (String) response.get("access_token");
+        HttpRequest request = HttpRequest.newBuilder(URI.create(tokenUri))
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(toJson(params)))
+                .build();
+        return send(request).thenApply(response -> (String) response.get("access_token"));
     }
 
-    public Map<String, Object> getUserInfo(String accessToken) {
-        return restTemplate.getForObject(userInfoUri + "?access_token=" + accessToken, Map.class);
+    /**
+     * Concurrent lookups for the same access token share one provider call,
+     * and the answer is reused for a short while afterwards.
+     */
+    public CompletableFuture<Map<String, Object>> getUserInfoAsync(String accessToken) {
+        return userInfoCache.get(accessToken, (token, executor) -> {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(userInfoUri + "?access_token="
+                            + URLEncoder.encode(token, StandardCharsets.UTF_8)))
+                    .timeout(requestTimeout)
+                    .header("Accept", "application/json")
+                    .GET()
+                    .build();
+            return send(request);
+        });
+    }
+
+    private CompletableFuture<Map<String, Object>> send(HttpRequest request) {
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() >= 400) {
+                        throw new IllegalStateException("OAuth provider returned " + response.statusCode()
+                                + " for " + request.uri().getPath());
+                    }
+                    return fromJson(response.body());
+                });
+    }
+
+    private String toJson(Map<String, String> params) {
+        try {
+            return objectMapper.writeValueAsString(params);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Map<String, Object> fromJson(String body) {
+        try {
+            return objectMapper.readValue(body, JSON_OBJECT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,313 @@
+package com.java.coreTemplate.config;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Session store that keeps every record in direct memory instead of on the
+ * Java heap. Sessions live in fixed-size slots of open-addressed hash tables,
+ * split into independently locked segments so the sweeper only ever holds
+ * one segment while request threads keep working on the others.
+ */
+public class OffHeapSessionStore implements SessionStore {
+    private static final int SEGMENTS = 64;
+    private static final int MAX_SESSION_ID_BYTES = 64;
+    private static final int EVICTION_SAMPLE = 16;
+
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+    private static final byte DELETED = 2;
+
+    // Slot layout: state | id length | user id length | created | last access | id | user id
+    private static final int STATE = 0;
+    private static final int ID_LENGTH = 1;
+    private static final int USER_LENGTH = 2;
+    private static final int CREATED_AT = 4;
+    private static final int ACCESSED_AT = 12;
+    private static final int SESSION_ID = 20;
+    private static final int USER_ID = SESSION_ID + MAX_SESSION_ID_BYTES;
+
+    private final long idleNanos;
+    private final long absoluteNanos;
+    private final int maxUserIdBytes;
+    private final int slotSize;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final AtomicLong evictions = new AtomicLong();
+
+    public OffHeapSessionStore(Duration idleTimeout, Duration absoluteTimeout,
+                               long maxSessions, int maxUserIdBytes) {
+        this.idleNanos = idleTimeout.toNanos();
+        this.absoluteNanos = absoluteTimeout.toNanos();
+        this.maxUserIdBytes = maxUserIdBytes;
+        this.slotSize = USER_ID + maxUserIdBytes;
+        int perSegment = (int) Math.max(1, (maxSessions + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    @Override
+    public void put(String sessionId, String userId) {
+        byte[] id = encodeSessionId(sessionId);
+        byte[] user = userId.getBytes(StandardCharsets.UTF_8);
+        if (user.length > maxUserIdBytes) {
+            throw new IllegalArgumentException("User id exceeds " + maxUserIdBytes + " bytes");
+        }
+        int hash = hash(sessionId);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            segment.put(hash, id, user, System.nanoTime());
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public String get(String sessionId) {
+        byte[] id = encodeSessionId(sessionId);
+        int hash = hash(sessionId);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            return segment.get(hash, id, System.nanoTime());
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(String sessionId) {
+        byte[] id = encodeSessionId(sessionId);
+        int hash = hash(sessionId);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            int slot = segment.find(hash, id);
+            if (slot >= 0) {
+                segment.delete(slot);
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public long sweep() {
+        long removed = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                removed += segment.removeExpired(System.nanoTime());
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.live;
+        }
+        return size;
+    }
+
+    @Override
+    public long evictionCount() {
+        return evictions.get();
+    }
+
+    private static byte[] encodeSessionId(String sessionId) {
+        byte[] id = sessionId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_SESSION_ID_BYTES) {
+            throw new IllegalArgumentException("Session id exceeds " + MAX_SESSION_ID_BYTES + " bytes");
+        }
+        return id;
+    }
+
+    private static int hash(String key) {
+        // Fibonacci multiply so the high bits used for segment selection are well mixed
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[(hash >>> 26) & (SEGMENTS - 1)];
+    }
+
+    private final class Segment {
+        final ReentrantLock lock = new ReentrantLock();
+        final int capacity;
+        final int mask;
+        ByteBuffer slots;
+        volatile int live;
+        int deleted;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            int tableSize = Integer.highestOneBit(Math.max(2, capacity * 4 / 3) - 1) << 1;
+            this.mask = tableSize - 1;
+            this.slots = ByteBuffer.allocateDirect(tableSize * slotSize);
+        }
+
+        String get(int hash, byte[] id, long now) {
+            int slot = find(hash, id);
+            if (slot < 0) {
+                return null;
+            }
+            int base = slot * slotSize;
+            if (isExpired(base, now)) {
+                delete(slot);
+                evictions.incrementAndGet();
+                return null;
+            }
+            slots.putLong(base + ACCESSED_AT, now);
+            byte[] user = new byte[slots.getShort(base + USER_LENGTH)];
+            slots.get(base + USER_ID, user);
+            return new String(user, StandardCharsets.UTF_8);
+        }
+
+        void put(int hash, byte[] id, byte[] user, long now) {
+            int slot = find(hash, id);
+            if (slot < 0) {
+                if (live >= capacity) {
+                    evictSample(hash, now);
+                }
+                if (live + deleted >= mask) {
+                    compact();
+                }
+                slot = freeSlot(hash);
+                live++;
+            }
+            int base = slot * slotSize;
+            if (slots.get(base + STATE) == DELETED) {
+                deleted--;
+            }
+            slots.put(base + STATE, USED);
+            slots.put(base + ID_LENGTH, (byte) id.length);
+            slots.putShort(base + USER_LENGTH, (short) user.length);
+            slots.putLong(base + CREATED_AT, now);
+            slots.putLong(base + ACCESSED_AT, now);
+            slots.put(base + SESSION_ID, id);
+            slots.put(base + USER_ID, user);
+        }
+
+        int find(int hash, byte[] id) {
+            for (int i = 0, slot = hash & mask; i <= mask; i++, slot = (slot + 1) & mask) {
+                int base = slot * slotSize;
+                byte state = slots.get(base + STATE);
+                if (state == EMPTY) {
+                    return -1;
+                }
+                if (state == USED && matches(base, id)) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        void delete(int slot) {
+            slots.put(slot * slotSize + STATE, DELETED);
+            live--;
+            deleted++;
+        }
+
+        int removeExpired(long now) {
+            int removed = 0;
+            for (int slot = 0; slot <= mask; slot++) {
+                int base = slot * slotSize;
+                if (slots.get(base + STATE) == USED && isExpired(base, now)) {
+                    delete(slot);
+                    removed++;
+                }
+            }
+            evictions.addAndGet(removed);
+            return removed;
+        }
+
+        private boolean matches(int base, byte[] id) {
+            if (slots.get(base + ID_LENGTH) != id.length) {
+                return false;
+            }
+            for (int i = 0; i < id.length; i++) {
+                if (slots.get(base + SESSION_ID + i) != id[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isExpired(int base, long now) {
+            return now - slots.getLong(base + ACCESSED_AT) > idleNanos
+                    || now - slots.getLong(base + CREATED_AT) > absoluteNanos;
+        }
+
+        private int freeSlot(int hash) {
+            int slot = hash & mask;
+            while (slots.get(slot * slotSize + STATE) == USED) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /*
+         * Looks at most EVICTION_SAMPLE sessions near the new key's home slot:
+         * drops the expired ones among them, or the least recently accessed if
+         * none has expired. Bounded, so a full segment never makes an insert
+         * walk the whole table; the sweeper expires the rest in the background.
+         */
+        private void evictSample(int hash, long now) {
+            int victim = -1;
+            long oldest = Long.MAX_VALUE;
+            int sampled = 0;
+            int expired = 0;
+            for (int i = 0, slot = hash & mask; i <= mask && sampled < EVICTION_SAMPLE; i++, slot = (slot + 1) & mask) {
+                int base = slot * slotSize;
+                if (slots.get(base + STATE) != USED) {
+                    continue;
+                }
+                sampled++;
+                if (isExpired(base, now)) {
+                    delete(slot);
+                    expired++;
+                    continue;
+                }
+                long accessedAt = slots.getLong(base + ACCESSED_AT);
+                if (accessedAt < oldest) {
+                    oldest = accessedAt;
+                    victim = slot;
+                }
+            }
+            if (expired == 0 && victim >= 0) {
+                delete(victim);
+                expired = 1;
+            }
+            evictions.addAndGet(expired);
+        }
+
+        // Rebuilds the table without tombstones so probe chains stay short
+        private void compact() {
+            ByteBuffer previous = slots;
+            slots = ByteBuffer.allocateDirect(previous.capacity());
+            deleted = 0;
+            byte[] id = new byte[MAX_SESSION_ID_BYTES];
+            for (int slot = 0; slot <= mask; slot++) {
+                int base = slot * slotSize;
+                if (previous.get(base + STATE) != USED) {
+                    continue;
+                }
+                int idLength = previous.get(base + ID_LENGTH);
+                previous.get(base + SESSION_ID, id, 0, idLength);
+                String sessionId = new String(id, 0, idLength, StandardCharsets.UTF_8);
+                int target = freeSlot(hash(sessionId)) * slotSize;
+                slots.put(target, previous, base, slotSize);
+            }
+        }
+    }
+}
@@ -1,34 +1,60 @@
-package com.java.coreTemplate.config;
-
-import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpSession;
-import org.springframework.stereotype.Service;
-import java.util.concurrent.ConcurrentHashMap;
-
-@Service
-public class SessionAuthService {
-    private final ConcurrentHashMap<String, String> activeSessions = new ConcurrentHashMap<>();
-
-    public String createSession(String userId, HttpServletRequest request) {
-        HttpSession session = request.getSession(true);
-        session.setAttribute("userId", userId);
-        activeSessions.put(session.getId(), userId);
-        return session.getId();
-    }
-
-    public boolean isValidSession(String sessionId) {
-        return activeSessions.containsKey(sessionId);
-    }
-
-    public void invalidateSession(String sessionId, HttpServletRequest request) {
-        HttpSession session = request.getSession(false);
-        if (session != null) {
-            session.invalidate();
-        }
-        activeSessions.remove(sessionId);
-    }
-
-    public String getUserIdFromSession(String sessionId) {
-        return activeSessions.get(sessionId);
-    }
-}
\ No newline at end of file
+package com.java.coreTemplate.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+@Service
+public class SessionAuthService {
+    private final SessionStore activeSessions;
+    private final Timer sweepTimer;
+
+    public SessionAuthService(SessionStore activeSessions, MeterRegistry meterRegistry) {
+        this.activeSessions = activeSessions;
+        this.sweepTimer = Timer.builder("sessions.sweep.duration").register(meterRegistry);
+        Gauge.builder("sessions.live", activeSessions, SessionStore::size).register(meterRegistry);
+        FunctionCounter.builder("sessions.evictions", activeSessions, SessionStore::evictionCount)
+                .register(meterRegistry);
+    }
+
+    public String createSession(String userId, HttpServletRequest request) {
+        return createSession(userId, request.getSession(true));
+    }
+
+    /**
+     * For callers finishing off the request thread: the container session
+     * must be obtained on the request thread, this only fills it in.
+     */
+    public String createSession(String userId, HttpSession session) {
+        session.setAttribute("userId", userId);
+        activeSessions.put(session.getId(), userId);
+        return session.getId();
+    }
+
+    public boolean isValidSession(String sessionId) {
+        return activeSessions.get(sessionId) != null;
+    }
+
+    public void invalidateSession(String sessionId, HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            session.invalidate();
+        }
+        activeSessions.remove(sessionId);
+    }
+
+    public String getUserIdFromSession(String sessionId) {
+        return activeSessions.get(sessionId);
+    }
+
+    // Runs on the scheduler thread; the store only locks small slices at a time
+    @Scheduled(fixedDelayString = "${session.sweep-interval:60000}")
+    public void sweepExpiredSessions() {
+        sweepTimer.record(activeSessions::sweep);
+    }
+}
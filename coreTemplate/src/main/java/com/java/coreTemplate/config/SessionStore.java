@@ -0,0 +1,34 @@
+package com.java.coreTemplate.config;
+
+/**
+ * Backing storage for authenticated sessions, keyed by servlet session id.
+ * Implementations enforce the idle and absolute timeouts themselves, so an
+ * expired session is reported as absent even before the sweeper removes it.
+ */
+public interface SessionStore {
+
+    void put(String sessionId, String userId);
+
+    /**
+     * Returns the user id bound to the session and refreshes its idle timer,
+     * or null if the session is unknown or has expired.
+     */
+    String get(String sessionId);
+
+    void remove(String sessionId);
+
+    /**
+     * Removes expired sessions and returns how many were dropped.
+     */
+    long sweep();
+
+    /**
+     * Persists buffered writes. Stores that write through need not override it.
+     */
+    default void flush() {
+    }
+
+    long size();
+
+    long evictionCount();
+}
@@ -0,0 +1,114 @@
+package com.java.coreTemplate.config;
+
+import com.java.coreTemplate.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks revoked JWT ids. The hot-path check is a Bloom filter lookup, and
+ * only on a filter hit the exact map is consulted, so valid tokens are
+ * cleared without any database access. Entries are dropped once the token
+ * they revoke has expired anyway.
+ *
+ * <p>Revocations are written to the revoked_token table; every node polls
+ * it for rows newer than the last one it saw, so a logout on one node takes
+ * effect on the others within one poll interval.
+ */
+@Service
+public class TokenRevocationService {
+    private static final String INSERT_REVOCATION =
+            "INSERT INTO revoked_token (jti, expires_at) VALUES (?, ?) ON CONFLICT DO NOTHING";
+    private static final String SELECT_SINCE =
+            "SELECT jti, expires_at, revoked_at FROM revoked_token WHERE revoked_at >= ? AND expires_at > ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long expectedRevocations;
+    private final double falsePositiveRate;
+    private final Duration syncOverlap;
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private volatile BloomFilter filter;
+    private volatile Timestamp lastSeenRevokedAt = new Timestamp(0);
+
+    public TokenRevocationService(JdbcTemplate jdbcTemplate,
+                                  @Value("${jwt.revocation.expected-revocations:100000}") long expectedRevocations,
+                                  @Value("${jwt.revocation.false-positive-rate:0.01}") double falsePositiveRate,
+                                  @Value("${jwt.revocation.sync-overlap:30s}") Duration syncOverlap) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.expectedRevocations = expectedRevocations;
+        this.falsePositiveRate = falsePositiveRate;
+        this.syncOverlap = syncOverlap;
+        this.filter = new BloomFilter(expectedRevocations, falsePositiveRate);
+    }
+
+    @PostConstruct
+    public void init() {
+        poll();
+    }
+
+    public boolean isRevoked(String jti) {
+        if (jti == null || !filter.mightContain(jti)) {
+            return false;
+        }
+        Long expiresAt = revoked.get(jti);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    @Transactional
+    public void revoke(String jti, Date expiresAt) {
+        jdbcTemplate.update(INSERT_REVOCATION, jti, new Timestamp(expiresAt.getTime()));
+        remember(jti, expiresAt.getTime());
+    }
+
+    /**
+     * Picks up revocations made on other nodes. Rows are read again for a
+     * short overlap window so that a transaction committing late is not missed.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.poll-interval:2000}")
+    public void poll() {
+        Timestamp since = new Timestamp(lastSeenRevokedAt.getTime() - syncOverlap.toMillis());
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.query(SELECT_SINCE, rs -> {
+            remember(rs.getString("jti"), rs.getTimestamp("expires_at").getTime());
+            Timestamp revokedAt = rs.getTimestamp("revoked_at");
+            if (revokedAt.after(lastSeenRevokedAt)) {
+                lastSeenRevokedAt = revokedAt;
+            }
+        }, since, now);
+    }
+
+    /**
+     * Forgets revocations of tokens that have expired and rebuilds the Bloom
+     * filter, which cannot delete, from what is left.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval:600000}")
+    @Transactional
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedRevocations, revoked.size() * 2L), falsePositiveRate);
+        revoked.keySet().forEach(rebuilt::put);
+        filter = rebuilt;
+        // Revocations that raced with the rebuild are re-added so none slip through
+        revoked.keySet().forEach(rebuilt::put);
+        jdbcTemplate.update("DELETE FROM revoked_token WHERE expires_at <= ?", new Timestamp(now));
+    }
+
+    public int revokedCount() {
+        return revoked.size();
+    }
+
+    private void remember(String jti, long expiresAt) {
+        revoked.put(jti, expiresAt);
+        filter.put(jti);
+    }
+}
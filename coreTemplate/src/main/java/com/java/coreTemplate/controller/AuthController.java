@@ -3,9 +3,11 @@ package com.java.coreTemplate.controller;
 import com.java.coreTemplate.config.JwtTokenUtil;
 import com.java.coreTemplate.config.OAuthService;
 import com.java.coreTemplate.config.SessionAuthService;
+import com.java.coreTemplate.config.TokenRevocationService;
 import com.java.coreTemplate.model.dto.RegistrationRequest;
-import com.java.coreTemplate.model.entity.UserDetails;
 import com.java.coreTemplate.service.UserService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,7 +16,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/auth")
@@ -25,22 +29,33 @@ public class AuthController {
     private SessionAuthService sessionAuthService;
     @Autowired
     private UserService userService;
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
     @GetMapping("/oauth/callback")
-    public String oauthCallback(@RequestParam String code, HttpServletRequest request) {
-        String accessToken = oauthService.getAccessToken(code);
-        Map<String, Object> userInfo = oauthService.getUserInfo(accessToken);
-
-        // Create session
-        String userId = (String) userInfo.get("email"); // or other unique identifier
-        String sessionId = sessionAuthService.createSession(userId, request);
+    public CompletableFuture<String> oauthCallback(@RequestParam String code, HttpServletRequest request) {
+        // Taken now: the request may only be used on the servlet thread, the rest runs on the HttpClient's
+        HttpSession session = request.getSession(true);
+        // Returned as a future so no servlet thread is parked while the provider answers
+        return oauthService.getAccessTokenAsync(code)
+                .thenCompose(oauthService::getUserInfoAsync)
+                .whenComplete((userInfo, e) -> {
+                    if (e != null && session.isNew()) {
+                        session.invalidate();
+                    }
+                })
+                .thenApply(userInfo -> {
+                    // Create session
+                    String userId = (String) userInfo.get("email"); // or other unique identifier
+                    String sessionId = sessionAuthService.createSession(userId, session);
 
-        // Also generate JWT token
-        Map<String, Object> claims = new HashMap<>();
-        claims.put("email", userId);
-        claims.put("name", userInfo.get("name"));
-        String jwtToken = JwtTokenUtil.generateToken(userId, claims);
+                    // Also generate JWT token
+                    Map<String, Object> claims = new HashMap<>();
+                    claims.put("email", userId);
+                    claims.put("name", userInfo.get("name"));
+                    String jwtToken = JwtTokenUtil.generateToken(userId, claims);
 
-        return "Session ID: " + sessionId + "\nJWT Token: " + jwtToken;
+                    return "Session ID: " + sessionId + "\nJWT Token: " + jwtToken;
+                });
     }
 
     @PostMapping("/login")
@@ -63,40 +78,52 @@ public class AuthController {
         return "Session ID: " + sessionId + "\nJWT Token: " + jwtToken;
     }
     @PostMapping("/register")
-    public ResponseEntity<?> registerUser(@RequestBody RegistrationRequest registrationRequest) {
-        try {
-            UserDetails registeredUser = userService.registerUser(
-                    registrationRequest.getUsername(),
-                    registrationRequest.getPassword(),
-                    registrationRequest.getEmail()
-            );
-            return new ResponseEntity<>("User registered successfully!", HttpStatus.CREATED);
-        } catch (IllegalArgumentException e) {
-            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    public CompletableFuture<ResponseEntity<?>> registerUser(@RequestBody RegistrationRequest registrationRequest) {
+        return userService.registerUser(
+                        registrationRequest.getUsername(),
+                        registrationRequest.getPassword(),
+                        registrationRequest.getEmail())
+                .<ResponseEntity<?>>thenApply(registeredUser ->
+                        new ResponseEntity<>("User registered successfully!", HttpStatus.CREATED))
+                .exceptionally(AuthController::failed);
+    }
+    @GetMapping("/register/availability")
+    public ResponseEntity<Map<String, Boolean>> checkAvailability(@RequestParam(required = false) String username,
+                                                                  @RequestParam(required = false) String email) {
+        Map<String, Boolean> availability = new HashMap<>();
+        if (username != null) {
+            availability.put("username", !userService.isUsernameTaken(username));
+        }
+        if (email != null) {
+            availability.put("email", !userService.isEmailTaken(email));
         }
+        return ResponseEntity.ok(availability);
     }
     @PostMapping("/userlogin")
-    public ResponseEntity<?> loginUser(@RequestParam String username,
+    public CompletableFuture<ResponseEntity<?>> loginUser(@RequestParam String username,
                         @RequestParam String password,
                         HttpServletRequest request) {
-        // Validate credentials (in a real app, check against database)
-        Optional<UserDetails> authenticatedUser = userService.authenticateUser(
-                username,
-                password
-        );
-        if (authenticatedUser.isPresent()) {
-            // Create session
-            String sessionId = sessionAuthService.createSession(username, request);
+        // The container session can only be obtained on the request thread; the check completes on the hashing pool
+        HttpSession session = request.getSession(true);
+        return userService.authenticateUser(username, password)
+                .<ResponseEntity<?>>thenApply(authenticatedUser -> {
+                    if (authenticatedUser.isEmpty()) {
+                        if (session.isNew()) {
+                            session.invalidate();
+                        }
+                        return new ResponseEntity<>("Invalid Username and password", HttpStatus.BAD_REQUEST);
+                    }
+                    // Create session
+                    String sessionId = sessionAuthService.createSession(username, session);
 
-            // Generate JWT token
-            Map<String, Object> claims = new HashMap<>();
-            claims.put("role", "user");
-            String jwtToken = JwtTokenUtil.generateToken(username, claims);
+                    // Generate JWT token
+                    Map<String, Object> claims = new HashMap<>();
+                    claims.put("role", "user");
+                    String jwtToken = JwtTokenUtil.generateToken(username, claims);
 
-            return new ResponseEntity<>("Session ID: " + sessionId + "\nJWT Token: " + jwtToken, HttpStatus.OK);
-        } else {
-            return new ResponseEntity<>("Invalid Username and password", HttpStatus.BAD_REQUEST);
-        }
+                    return new ResponseEntity<>("Session ID: " + sessionId + "\nJWT Token: " + jwtToken, HttpStatus.OK);
+                })
+                .exceptionally(AuthController::failed);
     }
     @PostMapping("/logout")
     public String logout(HttpServletRequest request) {
@@ -104,6 +131,26 @@ public class AuthController {
         if (session != null) {
             sessionAuthService.invalidateSession(session.getId(), request);
         }
+        String authorization = request.getHeader("Authorization");
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            try {
+                Claims claims = JwtTokenUtil.parseToken(authorization.substring(7));
+                tokenRevocationService.revoke(claims.getId(), claims.getExpiration());
+            } catch (JwtException | IllegalArgumentException e) {
+                // An invalid or expired token is already unusable
+            }
+        }
         return "Logged out successfully";
     }
+
+    static ResponseEntity<?> failed(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof IllegalArgumentException) {
+            return new ResponseEntity<>(cause.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+        if (cause instanceof RejectedExecutionException) {
+            return new ResponseEntity<>("Server busy, please retry", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        throw e instanceof CompletionException completion ? completion : new CompletionException(cause);
+    }
 }
\ No newline at end of file
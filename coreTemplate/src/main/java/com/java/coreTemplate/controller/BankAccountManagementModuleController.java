@@ -1,20 +1,54 @@
 package com.java.coreTemplate.controller;
 
+import com.java.coreTemplate.config.AuthFilter;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.format.annotation.DateTimeFormat;
+import com.java.coreTemplate.service.AccrualService;
+import com.java.coreTemplate.service.BalanceReservationService;
 import com.java.coreTemplate.service.BankAccountManagementModuleService;
+import com.java.coreTemplate.service.LedgerService;
+import com.java.coreTemplate.service.TransferPostingService;
+import com.java.coreTemplate.model.dto.AccountBalance;
+import com.java.coreTemplate.model.dto.AccrualJob;
+import com.java.coreTemplate.model.dto.AvailableBalance;
 import com.java.coreTemplate.model.dto.BankAccountManagementModule;
+import com.java.coreTemplate.model.dto.HoldRequest;
+import com.java.coreTemplate.model.dto.HoldResult;
+import com.java.coreTemplate.model.dto.LedgerEntry;
+import com.java.coreTemplate.model.dto.Money;
+import com.java.coreTemplate.model.dto.TransferRequest;
+import com.java.coreTemplate.model.dto.TransferResult;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/v1/bank-accounts")
 public class BankAccountManagementModuleController {
     private final BankAccountManagementModuleService service;
+    private final TransferPostingService transferPostingService;
+    private final LedgerService ledger;
+    private final BalanceReservationService reservations;
+    private final AccrualService accruals;
 
-    public BankAccountManagementModuleController(BankAccountManagementModuleService service) {
+    public BankAccountManagementModuleController(BankAccountManagementModuleService service,
+                                                 TransferPostingService transferPostingService,
+                                                 LedgerService ledger,
+                                                 BalanceReservationService reservations,
+                                                 AccrualService accruals) {
         this.service = service;
+        this.transferPostingService = transferPostingService;
+        this.ledger = ledger;
+        this.reservations = reservations;
+        this.accruals = accruals;
     }
 
     @PostMapping
@@ -23,6 +57,124 @@ public class BankAccountManagementModuleController {
         return ResponseEntity.status(HttpStatus.CREATED).body(savedEntity);
     }
 
+    // Answers once the transfer's batch has committed; a rejected transfer is 422 with the reason
+    @PostMapping("/transfers")
+    public CompletableFuture<ResponseEntity<TransferResult>> transfer(@RequestBody TransferRequest request) {
+        try {
+            return transferPostingService.submit(request).thenApply(result ->
+                    result.status() == TransferResult.Status.POSTED
+                            ? ResponseEntity.status(HttpStatus.CREATED).body(result)
+                            : ResponseEntity.unprocessableEntity().body(result));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(TransferResult.rejected(request.transferReference(), e.getMessage())));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        }
+    }
+
+    // Answers from memory, the hold is stored right after; a declined hold is 422 with the reason
+    @PostMapping("/holds")
+    public ResponseEntity<HoldResult> hold(@RequestBody HoldRequest request) {
+        try {
+            HoldResult result = reservations.hold(request);
+            return result.status() == HoldResult.Status.HELD
+                    ? ResponseEntity.status(HttpStatus.CREATED).body(result)
+                    : ResponseEntity.unprocessableEntity().body(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(HoldResult.declined(e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @DeleteMapping("/holds/{holdId}")
+    public ResponseEntity<Void> releaseHold(@PathVariable String holdId) {
+        try {
+            return reservations.release(holdId) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    // Debits the held amount, or the given part of it and releases the rest
+    @PostMapping("/holds/{holdId}/confirm")
+    public ResponseEntity<Void> confirmHold(@PathVariable String holdId, @RequestBody(required = false) Money amount) {
+        try {
+            return reservations.confirm(holdId, amount) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/{accountNumber}/available")
+    public ResponseEntity<AvailableBalance> available(@PathVariable String accountNumber) {
+        return reservations.available(accountNumber)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Current balance from the ledger, or the balance as it stood at the given time
+    @GetMapping("/{accountNumber}/balance")
+    public ResponseEntity<AccountBalance> balance(
+            @PathVariable String accountNumber,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        return (at != null ? ledger.balanceAt(accountNumber, at) : ledger.balance(accountNumber))
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Ledger entries in posting order; pass the last id seen as after for the next page
+    @GetMapping("/{accountNumber}/ledger")
+    public ResponseEntity<List<LedgerEntry>> ledger(
+            @PathVariable String accountNumber,
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "100") int limit) {
+        if (limit > 1000) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(ledger.entries(accountNumber, after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Starts or resumes the accrual job of a date, yesterday by default, and answers with its progress.
+    // It posts to every account, so it is reserved to admins
+    @PostMapping("/accruals")
+    public ResponseEntity<AccrualJob> accrue(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            HttpServletRequest request) {
+        if (!AuthFilter.isAdmin(request)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            AccrualJob job = accruals.start(date != null ? date : LocalDate.now().minusDays(1));
+            return "COMPLETED".equals(job.status()) ? ResponseEntity.ok(job) : ResponseEntity.accepted().body(job);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    // Progress and throughput of an accrual job, as recorded by whichever node runs it
+    @GetMapping("/accruals/{jobId}")
+    public ResponseEntity<AccrualJob> accrualJob(@PathVariable long jobId) {
+        return accruals.job(jobId)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/accruals")
+    public ResponseEntity<AccrualJob> accrualJobOf(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return accruals.jobOf(date)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<BankAccountManagementModule> getById(@PathVariable Long id) {
         return service.findById(id)
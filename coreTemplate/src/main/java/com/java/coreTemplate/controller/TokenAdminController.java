@@ -0,0 +1,33 @@
+package com.java.coreTemplate.controller;
+
+import com.java.coreTemplate.config.AuthFilter;
+import com.java.coreTemplate.config.JwtTokenUtil;
+import com.java.coreTemplate.config.TokenRevocationService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.lang3.time.DateUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Date;
+
+@RestController
+@RequestMapping("/api/admin/tokens")
+public class TokenAdminController {
+    private final TokenRevocationService tokenRevocationService;
+
+    public TokenAdminController(TokenRevocationService tokenRevocationService) {
+        this.tokenRevocationService = tokenRevocationService;
+    }
+
+    @PostMapping("/{jti}/revoke")
+    public ResponseEntity<String> revoke(@PathVariable String jti, HttpServletRequest request) {
+        if (!AuthFilter.isAdmin(request)) {
+            return new ResponseEntity<>("Admin token required", HttpStatus.FORBIDDEN);
+        }
+        // The token's real exp is unknown here, so keep the revocation for the longest possible lifetime
+        Date expiresAt = DateUtils.addHours(new Date(), JwtTokenUtil.EXPIRATION_HOURS);
+        tokenRevocationService.revoke(jti, expiresAt);
+        return ResponseEntity.ok("Token revoked");
+    }
+}
@@ -1,28 +1,84 @@
 package com.java.coreTemplate.controller;
 
+import com.java.coreTemplate.config.AuthFilter;
+import com.java.coreTemplate.config.ExportAsyncConfig;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import com.java.coreTemplate.service.HighValueTransactionIndex;
 import com.java.coreTemplate.service.TransactionManagementModuleService;
+import com.java.coreTemplate.service.TransactionRollupService;
+import com.java.coreTemplate.service.TransactionManagementModuleService.ExportFormat;
+import com.java.coreTemplate.model.dto.TransactionBatchResponse;
+import com.java.coreTemplate.model.dto.TransactionCreateResult;
+import com.java.coreTemplate.model.dto.TransactionExportFilter;
 import com.java.coreTemplate.model.dto.TransactionManagementModule;
+import com.java.coreTemplate.model.dto.TransactionPage;
+import com.java.coreTemplate.model.dto.TransactionRollup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/v1/transactions")
 public class TransactionManagementModuleController {
     
+    private static final int MAX_SCROLL_PAGE_SIZE = 1000;
+    private static final String IDEMPOTENT_REPLAY_HEADER = "Idempotent-Replayed";
+    private static final int DEFAULT_STATS_DAYS = 30;
+    
     private final TransactionManagementModuleService service;
+    private final TransactionRollupService rollupService;
+    private final HighValueTransactionIndex highValue;
     
-    public TransactionManagementModuleController(TransactionManagementModuleService service) {
+    public TransactionManagementModuleController(TransactionManagementModuleService service,
+                                                 TransactionRollupService rollupService,
+                                                 HighValueTransactionIndex highValue) {
         this.service = service;
+        this.rollupService = rollupService;
+        this.highValue = highValue;
     }
     
+    // Idempotent on transactionReference: a retry gets the original transaction back, marked by a header
     @PostMapping
     public ResponseEntity<TransactionManagementModule> create(@RequestBody TransactionManagementModule entity) {
-        TransactionManagementModule savedEntity = service.save(entity);
-        return ResponseEntity.status(HttpStatus.CREATED).body(savedEntity);
+        TransactionCreateResult result;
+        try {
+            result = service.create(entity);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.CREATED);
+        if (!result.created()) {
+            response.header(IDEMPOTENT_REPLAY_HEADER, "true");
+        }
+        return response.body(result.transaction());
+    }
+    
+    // The body is parsed as a stream, so feeds of any size are never held in memory whole
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<TransactionBatchResponse> createBatch(InputStream body) throws IOException {
+        try {
+            return ResponseEntity.ok(service.ingest(body));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
     
     @GetMapping("/{id}")
@@ -39,6 +95,110 @@ public class TransactionManagementModuleController {
         return ResponseEntity.ok(transactions);
     }
     
+    // Cursor-based alternative to getAll for deep scrolling: pass nextCursor from the previous page
+    @GetMapping("/scroll")
+    public ResponseEntity<TransactionPage> scroll(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        if (size < 1 || size > MAX_SCROLL_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(service.findPage(cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    // Rows go straight from the database cursor to the response; gzip=true compresses on the fly
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String currency,
+            @RequestParam(required = false) String approvalStatus,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletRequest request) {
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        TransactionExportFilter filter = new TransactionExportFilter(from, to, currency, approvalStatus);
+        String extension = exportFormat == ExportFormat.CSV ? "csv" : "ndjson";
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(exportFormat == ExportFormat.CSV
+                        ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : new MediaType("application", "x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"transactions." + extension + "\"");
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        // Streaming can take far longer than the default async timeout allows
+        request.setAttribute(ExportAsyncConfig.EXPORT_REQUEST, Boolean.TRUE);
+        return response.body(out -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+                service.export(filter, exportFormat, compressed);
+                compressed.finish();
+            } else {
+                service.export(filter, exportFormat, out);
+            }
+        });
+    }
+    
+    // Counts and totals per currency and approval status from the rollups; byDay=true splits them per day
+    @GetMapping("/stats")
+    public ResponseEntity<List<TransactionRollup>> stats(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String currency,
+            @RequestParam(defaultValue = "false") boolean byDay) {
+        LocalDate last = to != null ? to : LocalDate.now();
+        LocalDate first = from != null ? from : last.minusDays(DEFAULT_STATS_DAYS - 1);
+        try {
+            return ResponseEntity.ok(rollupService.stats(first, last, currency, byDay));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    // Recomputes the rollups from the transactions, day by day in parallel; without bounds covers every day.
+    // It rescans whole days of transactions, so it is reserved to admins
+    @PostMapping("/stats/rebuild")
+    public ResponseEntity<Map<String, Integer>> rebuildStats(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            HttpServletRequest request) throws InterruptedException {
+        if (!AuthFilter.isAdmin(request)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return ResponseEntity.ok(Map.of("days", rollupService.rebuild(from, to)));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+    
+    // Largest transactions of the last hours in one currency, answered from the in-memory top-K index,
+    // which is reloaded from the database every transactions.top-k.refresh-interval
+    @GetMapping("/high-value")
+    public ResponseEntity<List<TransactionManagementModule>> highValue(
+            @RequestParam String currency,
+            @RequestParam(defaultValue = "24") int hours,
+            @RequestParam(defaultValue = "20") int limit) {
+        if (hours < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(highValue.top(currency, LocalDateTime.now().minusHours(hours), limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
     @PutMapping("/{id}")
     public ResponseEntity<TransactionManagementModule> update(
             @PathVariable Long id, 
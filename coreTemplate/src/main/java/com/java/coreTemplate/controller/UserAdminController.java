@@ -0,0 +1,34 @@
+package com.java.coreTemplate.controller;
+
+import com.java.coreTemplate.config.AuthFilter;
+import com.java.coreTemplate.model.dto.RegistrationRequest;
+import com.java.coreTemplate.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/api/admin/users")
+public class UserAdminController {
+    private final UserService userService;
+
+    public UserAdminController(UserService userService) {
+        this.userService = userService;
+    }
+
+    // Every entry costs a bcrypt hash, so imports are reserved to admins
+    @PostMapping("/bulk")
+    public CompletableFuture<ResponseEntity<?>> registerUsers(@RequestBody List<RegistrationRequest> registrationRequests,
+                                                              HttpServletRequest request) {
+        if (!AuthFilter.isAdmin(request)) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>("Admin token required", HttpStatus.FORBIDDEN));
+        }
+        return userService.registerUsers(registrationRequests)
+                .<ResponseEntity<?>>thenApply(result -> new ResponseEntity<>(result, HttpStatus.CREATED))
+                .exceptionally(AuthController::failed);
+    }
+}
@@ -0,0 +1,7 @@
+package com.java.coreTemplate.model.dto;
+
+import java.time.LocalDateTime;
+
+// Balance of an account over its ledger entries posted at or before asOf
+public record AccountBalance(String accountNumber, Money balance, LocalDateTime asOf) {
+}
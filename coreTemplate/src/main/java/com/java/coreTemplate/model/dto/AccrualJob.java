@@ -0,0 +1,10 @@
+package com.java.coreTemplate.model.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Progress of the accrual job of one business date; throughput and the estimate cover the current attempt only
+public record AccrualJob(long id, LocalDate businessDate, String status, long accountsTotal, long accountsDone,
+                         int rangesTotal, int rangesDone, LocalDateTime startedAt, LocalDateTime finishedAt,
+                         double accountsPerSecond, Long secondsRemaining, String error) {
+}
@@ -0,0 +1,5 @@
+package com.java.coreTemplate.model.dto;
+
+// What can still be spent or held on an account, floor included, and the total of its open holds
+public record AvailableBalance(String accountNumber, Money available, Money held) {
+}
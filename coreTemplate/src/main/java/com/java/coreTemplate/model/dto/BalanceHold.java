@@ -0,0 +1,8 @@
+package com.java.coreTemplate.model.dto;
+
+import java.time.LocalDateTime;
+
+// Funds set aside on an account, for example by a card authorisation, until released, confirmed or expired
+public record BalanceHold(String id, String accountNumber, Money amount, LocalDateTime createdAt,
+                          LocalDateTime expiresAt) {
+}
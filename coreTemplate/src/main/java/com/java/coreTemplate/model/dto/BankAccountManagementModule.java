@@ -1,5 +1,8 @@
 package com.java.coreTemplate.model.dto;
 
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonSetter;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -27,11 +30,30 @@ public class BankAccountManagementModule {
     @Column(name = "account_holder_name", nullable = false, length = 100)
     private String accountHolderName;
 
-    @Column(name = "balance", nullable = false, precision = 19, scale = 4)
-    private BigDecimal balance;
+    // Opening balance until the first ledger snapshot, then the balance as of the latest one.
+    // Only ledger entries move it, so updates of the account leave both columns alone. The
+    // service returns copies holding the current balance from the ledger instead.
+    @Embedded
+    @AttributeOverride(name = "minorUnits", column = @Column(name = "balance", nullable = false, updatable = false,
+            precision = 19, scale = 4))
+    @AttributeOverride(name = "currencyCode", column = @Column(name = "currency", nullable = false, updatable = false,
+            length = 3))
+    @Getter(onMethod_ = @JsonIgnore)
+    @Setter(onMethod_ = @JsonIgnore)
+    private Money balance;
 
-    @Column(name = "currency", nullable = false, length = 3)
-    private Currency currency;
+    // JSON keeps the flat balance and currency fields; whichever arrives second completes the Money
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private BigDecimal requestedBalance;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private Currency requestedCurrency;
 
     @Column(name = "is_active")
     private boolean isActive;
@@ -39,8 +61,12 @@ public class BankAccountManagementModule {
     @Column(name = "is_joint_account")
     private boolean isJointAccount;
 
+    // Limits are in the account currency, so only their minor units are stored
+    @Convert(converter = Money.MinorUnitsConverter.class)
     @Column(name = "overdraft_limit", precision = 19, scale = 4)
-    private BigDecimal overdraftLimit;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Long overdraftLimit;
 
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
@@ -48,9 +74,95 @@ public class BankAccountManagementModule {
     @Column(name = "last_updated_at")
     private LocalDateTime lastUpdatedAt;
 
+    @Convert(converter = Money.MinorUnitsConverter.class)
     @Column(name = "minimum_balance", precision = 19, scale = 4)
-    private Optional<BigDecimal> minimumBalance;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Long minimumBalance;
 
     @Version
     private Long version;
+
+    @JsonGetter("balance")
+    BigDecimal getBalanceValue() {
+        return balance != null ? balance.toBigDecimal() : null;
+    }
+
+    @JsonSetter("balance")
+    void setBalanceValue(BigDecimal value) {
+        requestedBalance = value;
+        assembleBalance();
+    }
+
+    public Currency getCurrency() {
+        return balance != null ? Currency.getInstance(balance.currencyCode()) : requestedCurrency;
+    }
+
+    public void setCurrency(Currency currency) {
+        requestedCurrency = currency;
+        assembleBalance();
+    }
+
+    private void assembleBalance() {
+        if (requestedBalance != null && requestedCurrency != null) {
+            balance = Money.of(requestedBalance, requestedCurrency.getCurrencyCode());
+        }
+    }
+
+    // A copy showing the given balance, so that an instance shared through a cache is never changed
+    public BankAccountManagementModule withBalance(Money balance) {
+        return new BankAccountManagementModule(id, accountNumber, accountHolderName, balance, null, null, isActive,
+                isJointAccount, overdraftLimit, createdAt, lastUpdatedAt, minimumBalance, version);
+    }
+
+    // No limit on record means no overdraft
+    @JsonIgnore
+    public Money getOverdraftLimit() {
+        return balance != null ? Money.ofMinor(overdraftLimit != null ? overdraftLimit : 0, balance.currencyCode()) : null;
+    }
+
+    @JsonIgnore
+    public void setOverdraftLimit(Money overdraftLimit) {
+        this.overdraftLimit = overdraftLimit != null ? inAccountCurrency(overdraftLimit) : null;
+    }
+
+    @JsonIgnore
+    public Optional<Money> getMinimumBalance() {
+        return minimumBalance != null && balance != null
+                ? Optional.of(Money.ofMinor(minimumBalance, balance.currencyCode()))
+                : Optional.empty();
+    }
+
+    @JsonIgnore
+    public void setMinimumBalance(Money minimumBalance) {
+        this.minimumBalance = minimumBalance != null ? inAccountCurrency(minimumBalance) : null;
+    }
+
+    // The limits are plain numbers in JSON, as they were before Money, and null when not set
+    @JsonGetter("overdraftLimit")
+    BigDecimal getOverdraftLimitValue() {
+        return overdraftLimit != null ? BigDecimal.valueOf(overdraftLimit, Money.SCALE) : null;
+    }
+
+    @JsonSetter("overdraftLimit")
+    void setOverdraftLimitValue(BigDecimal value) {
+        overdraftLimit = value != null ? Money.toMinorUnits(value) : null;
+    }
+
+    @JsonGetter("minimumBalance")
+    BigDecimal getMinimumBalanceValue() {
+        return minimumBalance != null ? BigDecimal.valueOf(minimumBalance, Money.SCALE) : null;
+    }
+
+    @JsonSetter("minimumBalance")
+    void setMinimumBalanceValue(BigDecimal value) {
+        minimumBalance = value != null ? Money.toMinorUnits(value) : null;
+    }
+
+    private long inAccountCurrency(Money amount) {
+        if (balance != null && !balance.currencyCode().equals(amount.currencyCode())) {
+            throw new IllegalArgumentException("Expected an amount in " + balance.currencyCode() + ": " + amount);
+        }
+        return amount.minorUnits();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.java.coreTemplate.model.dto;
+
+import java.util.List;
+
+/**
+ * invalid counts entries missing a username, password or email; the rest
+ * that were not registered are listed by username.
+ */
+public record BulkRegistrationResponse(int registered, int invalid, List<String> rejectedUsernames) {
+}
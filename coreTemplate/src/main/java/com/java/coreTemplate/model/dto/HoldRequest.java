@@ -0,0 +1,4 @@
+package com.java.coreTemplate.model.dto;
+
+public record HoldRequest(String accountNumber, Money amount) {
+}
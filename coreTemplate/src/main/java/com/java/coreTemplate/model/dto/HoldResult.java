@@ -0,0 +1,14 @@
+package com.java.coreTemplate.model.dto;
+
+public record HoldResult(String holdId, Status status, String reason) {
+
+    public enum Status { HELD, DECLINED }
+
+    public static HoldResult held(String holdId) {
+        return new HoldResult(holdId, Status.HELD, null);
+    }
+
+    public static HoldResult declined(String reason) {
+        return new HoldResult(null, Status.DECLINED, reason);
+    }
+}
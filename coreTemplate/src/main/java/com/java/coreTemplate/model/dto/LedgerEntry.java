@@ -0,0 +1,7 @@
+package com.java.coreTemplate.model.dto;
+
+import java.time.LocalDateTime;
+
+// One movement of an account's balance: negative for a debit, positive for a credit; id and postedAt are set by the database
+public record LedgerEntry(Long id, String accountNumber, Money amount, String transferReference, LocalDateTime postedAt) {
+}
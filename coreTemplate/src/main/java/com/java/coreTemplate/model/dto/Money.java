@@ -0,0 +1,237 @@
+package com.java.coreTemplate.model.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Converter;
+import jakarta.persistence.Embeddable;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point amount of money: a count of minor units, each one ten-thousandth
+ * of the currency unit (the scale of every money column), plus an ISO 4217
+ * code. Arithmetic on the long is exact and overflow-checked. plus and minus
+ * return a new value; loops that accumulate many amounts should keep the
+ * running total as a long and use addTo or the static sum and convert
+ * methods, which work on raw minor units and allocate nothing.
+ *
+ * <p>Mapped as an embeddable onto an amount column and a currency column. In
+ * JSON it is {"value": "12.3400", "currency": "USD"}, with the value as a
+ * string so no client parses it into a double. The entities that had plain
+ * number fields before keep that shape and only use Money internally.
+ */
+@Embeddable
+@JsonSerialize(using = Money.JsonWriter.class)
+@JsonDeserialize(using = Money.JsonReader.class)
+public record Money(
+        @Convert(converter = Money.MinorUnitsConverter.class)
+        @Column(precision = 19, scale = 4)
+        long minorUnits,
+        @Column(length = 3)
+        String currencyCode) implements Comparable<Money> {
+
+    public static final int SCALE = 4;
+    public static final long MINOR_UNITS_PER_UNIT = 10_000L;
+
+    public Money {
+        if (currencyCode == null || currencyCode.length() != 3) {
+            throw new IllegalArgumentException("Currency must be a 3-letter code: " + currencyCode);
+        }
+    }
+
+    public static Money ofMinor(long minorUnits, String currencyCode) {
+        return new Money(minorUnits, currencyCode);
+    }
+
+    public static Money zero(String currencyCode) {
+        return new Money(0, currencyCode);
+    }
+
+    // Rejects values with more than four decimal places rather than rounding them
+    public static Money of(BigDecimal amount, String currencyCode) {
+        return new Money(toMinorUnits(amount), currencyCode);
+    }
+
+    public static Money parse(String amount, String currencyCode) {
+        return of(new BigDecimal(amount), currencyCode);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currencyCode);
+    }
+
+    public Money minus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), currencyCode);
+    }
+
+    /**
+     * Adds this amount to a running total in minor units of the given
+     * currency without allocating.
+     */
+    public long addTo(long totalMinorUnits, String totalCurrencyCode) {
+        if (!currencyCode.equals(totalCurrencyCode)) {
+            throw new IllegalArgumentException("Currency mismatch: " + totalCurrencyCode + " vs " + currencyCode);
+        }
+        return Math.addExact(totalMinorUnits, minorUnits);
+    }
+
+    public Money negate() {
+        return new Money(Math.negateExact(minorUnits), currencyCode);
+    }
+
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+
+    public boolean isGreaterThan(Money other) {
+        return compareTo(other) > 0;
+    }
+
+    public boolean isLessThan(Money other) {
+        return compareTo(other) < 0;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        requireSameCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    /**
+     * Converts at a rate given as a fixed-point number: rate / 10^rateScale
+     * target units per source unit, rounded half-even to a minor unit.
+     */
+    public Money convert(String targetCurrency, long rate, int rateScale) {
+        return new Money(convertMinorUnits(minorUnits, rate, rateScale), targetCurrency);
+    }
+
+    public static long sum(long[] minorUnits) {
+        long total = 0;
+        for (long value : minorUnits) {
+            total = Math.addExact(total, value);
+        }
+        return total;
+    }
+
+    // Total of amounts that must all be in the given currency, in minor units
+    public static long sum(Money[] amounts, String currencyCode) {
+        long total = 0;
+        for (Money amount : amounts) {
+            total = amount.addTo(total, currencyCode);
+        }
+        return total;
+    }
+
+    public static long convertMinorUnits(long minorUnits, long rate, int rateScale) {
+        long divisor = pow10(rateScale);
+        long high = Math.multiplyHigh(minorUnits, rate);
+        long low = minorUnits * rate;
+        if ((high == 0 && low >= 0) || (high == -1 && low < 0)) {
+            // The product fits in a long, which is the common case
+            long quotient = Math.floorDiv(low, divisor);
+            return quotient + roundHalfEven(Math.floorMod(low, divisor), divisor, quotient);
+        }
+        return BigDecimal.valueOf(minorUnits).multiply(BigDecimal.valueOf(rate))
+                .divide(BigDecimal.valueOf(divisor), 0, RoundingMode.HALF_EVEN)
+                .longValueExact();
+    }
+
+    public static long toMinorUnits(BigDecimal amount) {
+        try {
+            return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Not a money amount with at most " + SCALE + " decimals: " + amount, e);
+        }
+    }
+
+    private static long roundHalfEven(long remainder, long divisor, long quotient) {
+        long twice = remainder * 2;
+        if (twice > divisor || (twice == divisor && (quotient & 1) != 0)) {
+            return 1;
+        }
+        return 0;
+    }
+
+    private static long pow10(int exponent) {
+        if (exponent < 0 || exponent > 18) {
+            throw new IllegalArgumentException("Rate scale out of range: " + exponent);
+        }
+        long value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    private void requireSameCurrency(Money other) {
+        if (!currencyCode.equals(other.currencyCode)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currencyCode + " vs " + other.currencyCode);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currencyCode;
+    }
+
+    /**
+     * Stores minor units in the existing NUMERIC(19,4) columns without loss.
+     */
+    @Converter
+    public static class MinorUnitsConverter implements AttributeConverter<Long, BigDecimal> {
+        @Override
+        public BigDecimal convertToDatabaseColumn(Long minorUnits) {
+            return minorUnits == null ? null : BigDecimal.valueOf(minorUnits, SCALE);
+        }
+
+        @Override
+        public Long convertToEntityAttribute(BigDecimal amount) {
+            return amount == null ? null : toMinorUnits(amount);
+        }
+    }
+
+    public static class JsonWriter extends JsonSerializer<Money> {
+        @Override
+        public void serialize(Money money, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("value", money.toBigDecimal().toPlainString());
+            generator.writeStringField("currency", money.currencyCode());
+            generator.writeEndObject();
+        }
+    }
+
+    public static class JsonReader extends JsonDeserializer<Money> {
+        @Override
+        public Money deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonNode node = parser.readValueAsTree();
+            JsonNode value = node.get("value");
+            JsonNode currency = node.get("currency");
+            if (value == null || currency == null || !(value.isTextual() || value.isNumber())) {
+                return context.reportInputMismatch(Money.class, "Expected {\"value\": \"12.34\", \"currency\": \"USD\"}");
+            }
+            try {
+                return Money.of(value.isNumber() ? value.decimalValue() : new BigDecimal(value.asText()), currency.asText());
+            } catch (IllegalArgumentException e) {
+                return context.reportInputMismatch(Money.class, e.getMessage());
+            }
+        }
+    }
+}
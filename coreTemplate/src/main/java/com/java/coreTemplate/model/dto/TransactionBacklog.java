@@ -0,0 +1,7 @@
+package com.java.coreTemplate.model.dto;
+
+import java.time.LocalDateTime;
+
+// Unprocessed transactions; oldestCreatedAt is null when there are none
+public record TransactionBacklog(long pending, LocalDateTime oldestCreatedAt) {
+}
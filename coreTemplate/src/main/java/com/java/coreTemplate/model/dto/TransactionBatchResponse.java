@@ -0,0 +1,10 @@
+package com.java.coreTemplate.model.dto;
+
+import java.util.List;
+
+public record TransactionBatchResponse(int accepted, int rejected, List<ItemResult> results) {
+
+    // One entry per array element, in request order; id is null when error is set
+    public record ItemResult(int index, String transactionReference, Long id, String error) {
+    }
+}
@@ -0,0 +1,5 @@
+package com.java.coreTemplate.model.dto;
+
+// created is false when the reference already existed and transaction is the original one
+public record TransactionCreateResult(TransactionManagementModule transaction, boolean created) {
+}
@@ -0,0 +1,7 @@
+package com.java.coreTemplate.model.dto;
+
+import java.time.LocalDateTime;
+
+// Null fields do not filter; from is inclusive, to exclusive
+public record TransactionExportFilter(LocalDateTime from, LocalDateTime to, String currencyCode, String approvalStatus) {
+}
@@ -1,7 +1,11 @@
 package com.java.coreTemplate.model.dto;
 
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonSetter;
 import jakarta.persistence.*;
 import lombok.*;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Optional;
 
@@ -14,18 +18,34 @@ import java.util.Optional;
 @AllArgsConstructor
 public class TransactionManagementModule {
 
+    // Pooled sequence so Hibernate can batch inserts; shared with the JDBC batch ingest
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_id")
+    @SequenceGenerator(name = "transaction_id", sequenceName = "transaction_management_module_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "transaction_reference", nullable = false, unique = true, length = 36)
     private String transactionReference;
 
-    @Column(name = "amount", nullable = false, precision = 19, scale = 4)
-    private Double amount;
-
-    @Column(name = "currency_code", nullable = false, length = 3)
-    private String currencyCode;
+    @Embedded
+    @AttributeOverride(name = "minorUnits", column = @Column(name = "amount", nullable = false, precision = 19, scale = 4))
+    @AttributeOverride(name = "currencyCode", column = @Column(name = "currency_code", nullable = false, length = 3))
+    @Getter(onMethod_ = @JsonIgnore)
+    @Setter(onMethod_ = @JsonIgnore)
+    private Money amount;
+
+    // JSON keeps the flat amount and currencyCode fields; whichever arrives second completes the Money
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private BigDecimal requestedAmount;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private String requestedCurrencyCode;
 
     @Column(name = "transaction_date", nullable = false)
     private LocalDateTime transactionDate;
@@ -67,6 +87,33 @@ public class TransactionManagementModule {
         this.lastModifiedAt = LocalDateTime.now();
     }
 
+    @JsonGetter("amount")
+    BigDecimal getAmountValue() {
+        return amount != null ? amount.toBigDecimal() : null;
+    }
+
+    @JsonSetter("amount")
+    void setAmountValue(BigDecimal value) {
+        requestedAmount = value;
+        assembleAmount();
+    }
+
+    public String getCurrencyCode() {
+        return amount != null ? amount.currencyCode() : requestedCurrencyCode;
+    }
+
+    public void setCurrencyCode(String currencyCode) {
+        requestedCurrencyCode = currencyCode;
+        assembleAmount();
+    }
+
+    // An invalid currency is left for validation to report; more than four decimals fails the parse
+    private void assembleAmount() {
+        if (requestedAmount != null && requestedCurrencyCode != null && requestedCurrencyCode.length() == 3) {
+            amount = Money.of(requestedAmount, requestedCurrencyCode);
+        }
+    }
+
     public Optional<String> getDescription() {
         return Optional.ofNullable(description);
     }
@@ -0,0 +1,7 @@
+package com.java.coreTemplate.model.dto;
+
+import java.util.List;
+
+// nextCursor is null on the last page
+public record TransactionPage(List<TransactionManagementModule> items, String nextCursor) {
+}
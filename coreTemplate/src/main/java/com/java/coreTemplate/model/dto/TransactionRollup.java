@@ -0,0 +1,7 @@
+package com.java.coreTemplate.model.dto;
+
+import java.time.LocalDate;
+
+// Count and total of the transactions of one day, currency and approval status; day is null when summed over a range
+public record TransactionRollup(LocalDate day, String currencyCode, String status, long count, Money total) {
+}
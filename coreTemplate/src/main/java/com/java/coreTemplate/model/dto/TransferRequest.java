@@ -0,0 +1,5 @@
+package com.java.coreTemplate.model.dto;
+
+// transferReference is optional; one is generated when absent. Reusing a reference is rejected.
+public record TransferRequest(String transferReference, String fromAccount, String toAccount, Money amount) {
+}
@@ -0,0 +1,14 @@
+package com.java.coreTemplate.model.dto;
+
+public record TransferResult(String transferReference, Status status, String reason) {
+
+    public enum Status { POSTED, REJECTED }
+
+    public static TransferResult posted(String transferReference) {
+        return new TransferResult(transferReference, Status.POSTED, null);
+    }
+
+    public static TransferResult rejected(String transferReference, String reason) {
+        return new TransferResult(transferReference, Status.REJECTED, reason);
+    }
+}
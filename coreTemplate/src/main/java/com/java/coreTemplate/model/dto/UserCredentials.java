@@ -0,0 +1,8 @@
+package com.java.coreTemplate.model.dto;
+
+/**
+ * The part of a user row the login path needs. The password is the stored
+ * value, normally a bcrypt hash.
+ */
+public record UserCredentials(Integer id, String username, String passwordHash) {
+}
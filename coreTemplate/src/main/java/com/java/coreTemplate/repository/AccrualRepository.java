@@ -0,0 +1,201 @@
+package com.java.coreTemplate.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The accrual_job and accrual_range tables, and the keyset reads of the
+ * accounts a range covers.
+ *
+ * <p>Every write made on behalf of a run carries its run token, so a run
+ * that has lost its job to another node changes nothing.
+ */
+@Repository
+public class AccrualRepository {
+
+    private static final String SELECT_ACCOUNT_SPAN = "SELECT COUNT(*), MIN(id), MAX(id) "
+            + "FROM bank_account_management_module";
+    // Every step-th id in id order, so the ranges between them hold about as many accounts each
+    private static final String SELECT_BOUNDARIES = "SELECT id FROM (SELECT id, ROW_NUMBER() OVER (ORDER BY id) AS rn "
+            + "FROM bank_account_management_module) numbered WHERE MOD(rn, ?) = 0 ORDER BY id";
+    private static final String INSERT_JOB = "INSERT INTO accrual_job (business_date, status, run_token, "
+            + "accounts_total, ranges_total, started_at, resumed_at, resumed_done, heartbeat_at) "
+            + "VALUES (?, 'RUNNING', ?, ?, ?, ?, ?, 0, ?)";
+    private static final String INSERT_RANGE = "INSERT INTO accrual_range (job_id, range_no, from_id, to_id, last_id, "
+            + "processed) VALUES (?, ?, ?, ?, ?, 0)";
+    private static final String SELECT_JOB = "SELECT j.id, j.business_date, j.status, j.accounts_total, j.ranges_total, "
+            + "j.started_at, j.resumed_at, j.resumed_done, j.finished_at, j.error, "
+            + "(SELECT COALESCE(SUM(r.processed), 0) FROM accrual_range r WHERE r.job_id = j.id) AS accounts_done, "
+            + "(SELECT COUNT(*) FROM accrual_range r WHERE r.job_id = j.id AND r.finished_at IS NOT NULL) AS ranges_done "
+            + "FROM accrual_job j WHERE ";
+    private static final String CLAIM_JOB = "UPDATE accrual_job SET status = 'RUNNING', run_token = ?, error = NULL, "
+            + "resumed_at = ?, heartbeat_at = ?, "
+            + "resumed_done = (SELECT COALESCE(SUM(processed), 0) FROM accrual_range WHERE job_id = ?) "
+            + "WHERE id = ? AND (status IN ('PAUSED', 'FAILED') OR (status = 'RUNNING' AND heartbeat_at < ?))";
+    private static final String HEARTBEAT = "UPDATE accrual_job SET heartbeat_at = ? "
+            + "WHERE id = ? AND run_token = ? AND status = 'RUNNING'";
+    private static final String FINISH_JOB = "UPDATE accrual_job SET status = ?, heartbeat_at = ?, finished_at = ?, "
+            + "error = ? WHERE id = ? AND run_token = ? AND status = 'RUNNING'";
+    private static final String SELECT_RESUMABLE = "SELECT business_date FROM accrual_job WHERE business_date >= ? "
+            + "AND (status = 'PAUSED' OR (status IN ('RUNNING', 'FAILED') AND heartbeat_at < ?)) ORDER BY business_date";
+    private static final String SELECT_LAST_COMPLETED = "SELECT MAX(business_date) FROM accrual_job "
+            + "WHERE status = 'COMPLETED'";
+    private static final String SELECT_OPEN_RANGES = "SELECT range_no, last_id, to_id FROM accrual_range "
+            + "WHERE job_id = ? AND finished_at IS NULL ORDER BY range_no";
+    private static final String SELECT_ACCOUNTS = "SELECT id, account_number, currency, is_active "
+            + "FROM bank_account_management_module WHERE id > ? AND id <= ? ORDER BY id LIMIT ?";
+    private static final String CHECKPOINT = "UPDATE accrual_range SET last_id = ?, processed = processed + ?, "
+            + "finished_at = ? WHERE job_id = ? AND range_no = ? AND last_id = ?";
+    private static final String SELECT_CHECKPOINT = "SELECT last_id FROM accrual_range WHERE job_id = ? AND range_no = ?";
+
+    private static final RowMapper<Job> JOB = (rs, rowNum) -> new Job(
+            rs.getLong("id"), rs.getDate("business_date").toLocalDate(), rs.getString("status"),
+            rs.getLong("accounts_total"), rs.getLong("accounts_done"), rs.getInt("ranges_total"),
+            rs.getInt("ranges_done"), rs.getTimestamp("started_at").toLocalDateTime(),
+            rs.getTimestamp("resumed_at").toLocalDateTime(), rs.getLong("resumed_done"),
+            toLocalDateTime(rs.getTimestamp("finished_at")), rs.getString("error"));
+    private static final RowMapper<Account> ACCOUNT = (rs, rowNum) -> new Account(
+            rs.getLong("id"), rs.getString("account_number"), rs.getString("currency"), rs.getBoolean("is_active"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AccrualRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Creates the job of the date, split into at most the given number of
+     * ranges over the accounts that exist now; accounts opened later are
+     * left to the next date. A concurrent create of the same date fails
+     * with a DuplicateKeyException.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long create(LocalDate businessDate, String runToken, int ranges, LocalDateTime now) {
+        long[] span = jdbcTemplate.queryForObject(SELECT_ACCOUNT_SPAN, (rs, rowNum) -> new long[]{
+                rs.getLong(1), rs.getLong(2), rs.getLong(3)});
+        long count = span[0];
+        List<Long> boundaries = new ArrayList<>();
+        if (count > 0) {
+            long step = Math.max(1, (count + ranges - 1) / ranges);
+            boundaries.addAll(jdbcTemplate.queryForList(SELECT_BOUNDARIES, Long.class, step));
+            if (boundaries.isEmpty() || boundaries.get(boundaries.size() - 1) != span[2]) {
+                boundaries.add(span[2]);
+            }
+        }
+        Timestamp at = Timestamp.valueOf(now);
+        jdbcTemplate.update(INSERT_JOB, Date.valueOf(businessDate), runToken, count, boundaries.size(), at, at, at);
+        long jobId = jdbcTemplate.queryForObject("SELECT id FROM accrual_job WHERE business_date = ?", Long.class,
+                Date.valueOf(businessDate));
+        List<Object[]> rows = new ArrayList<>(boundaries.size());
+        long from = span[1] - 1;
+        for (int i = 0; i < boundaries.size(); i++) {
+            rows.add(new Object[]{jobId, i, from, boundaries.get(i), from});
+            from = boundaries.get(i);
+        }
+        jdbcTemplate.batchUpdate(INSERT_RANGE, rows);
+        return jobId;
+    }
+
+    public Optional<Job> find(long jobId) {
+        return jdbcTemplate.query(SELECT_JOB + "j.id = ?", JOB, jobId).stream().findFirst();
+    }
+
+    public Optional<Job> findByDate(LocalDate businessDate) {
+        return jdbcTemplate.query(SELECT_JOB + "j.business_date = ?", JOB, Date.valueOf(businessDate)).stream().findFirst();
+    }
+
+    /**
+     * Takes the job over for a new run if it is paused, failed, or running
+     * with a heartbeat from before staleBefore. Returns whether it did.
+     * Joins the caller's transaction.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean claim(long jobId, String runToken, LocalDateTime now, LocalDateTime staleBefore) {
+        Timestamp at = Timestamp.valueOf(now);
+        return jdbcTemplate.update(CLAIM_JOB, runToken, at, at, jobId, jobId, Timestamp.valueOf(staleBefore)) == 1;
+    }
+
+    // False once another run has taken the job over
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean heartbeat(long jobId, String runToken, LocalDateTime now) {
+        return jdbcTemplate.update(HEARTBEAT, Timestamp.valueOf(now), jobId, runToken) == 1;
+    }
+
+    /**
+     * Status is COMPLETED, FAILED or PAUSED; a paused job keeps no finish
+     * time. The heartbeat is set to now, so that a failed job counts as
+     * stale only a while after it failed. Joins the caller's transaction.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void finish(long jobId, String runToken, String status, LocalDateTime now, LocalDateTime finishedAt,
+                       String error) {
+        jdbcTemplate.update(FINISH_JOB, status, Timestamp.valueOf(now),
+                finishedAt != null ? Timestamp.valueOf(finishedAt) : null,
+                error != null && error.length() > 500 ? error.substring(0, 500) : error, jobId, runToken);
+    }
+
+    // Jobs from oldestDate on that are paused, or running or failed with a heartbeat from before staleBefore
+    public List<LocalDate> findResumable(LocalDate oldestDate, LocalDateTime staleBefore) {
+        return jdbcTemplate.query(SELECT_RESUMABLE, (rs, rowNum) -> rs.getDate(1).toLocalDate(),
+                Date.valueOf(oldestDate), Timestamp.valueOf(staleBefore));
+    }
+
+    public Optional<LocalDate> findLastCompletedDate() {
+        return Optional.ofNullable(jdbcTemplate.queryForObject(SELECT_LAST_COMPLETED, Date.class))
+                .map(Date::toLocalDate);
+    }
+
+    public List<Range> findOpenRanges(long jobId) {
+        return jdbcTemplate.query(SELECT_OPEN_RANGES, (rs, rowNum) -> new Range(
+                rs.getInt("range_no"), rs.getLong("last_id"), rs.getLong("to_id")), jobId);
+    }
+
+    // The next accounts of a range after its checkpoint, in id order
+    public List<Account> findAccounts(long afterId, long toId, int limit) {
+        return jdbcTemplate.query(SELECT_ACCOUNTS, ACCOUNT, afterId, toId, limit);
+    }
+
+    /**
+     * Moves the checkpoint of the range from lastId to newLastId, locking
+     * the range row until the caller's transaction ends. Returns false if
+     * the checkpoint was no longer at lastId: another run got there first.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean checkpoint(long jobId, int rangeNo, long lastId, long newLastId, int processed,
+                              LocalDateTime finishedAt) {
+        return jdbcTemplate.update(CHECKPOINT, newLastId, processed,
+                finishedAt != null ? Timestamp.valueOf(finishedAt) : null, jobId, rangeNo, lastId) == 1;
+    }
+
+    public long findCheckpoint(long jobId, int rangeNo) {
+        return jdbcTemplate.queryForObject(SELECT_CHECKPOINT, Long.class, jobId, rangeNo);
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    // resumedAt and resumedDone mark the start of the current attempt
+    public record Job(long id, LocalDate businessDate, String status, long accountsTotal, long accountsDone,
+                      int rangesTotal, int rangesDone, LocalDateTime startedAt, LocalDateTime resumedAt,
+                      long resumedDone, LocalDateTime finishedAt, String error) {
+    }
+
+    // lastId is the checkpoint: every account of the range up to it has been accrued
+    public record Range(int rangeNo, long lastId, long toId) {
+    }
+
+    public record Account(long id, String accountNumber, String currencyCode, boolean active) {
+    }
+}
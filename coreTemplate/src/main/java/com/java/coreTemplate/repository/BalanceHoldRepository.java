@@ -0,0 +1,263 @@
+package com.java.coreTemplate.repository;
+
+import com.java.coreTemplate.model.dto.BalanceHold;
+import com.java.coreTemplate.model.dto.Money;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The balance_hold and balance_allowance tables, and the account columns the
+ * reservations need: currency, whether it is active, and how far its balance
+ * may fall. A hold or an allowance past its expiry no longer counts, whether
+ * or not it has been marked EXPIRED or deleted yet.
+ */
+@Repository
+public class BalanceHoldRepository {
+
+    private static final String INSERT_HOLD = "INSERT INTO balance_hold (id, account_number, amount, currency, status, "
+            + "created_at, expires_at) VALUES (?, ?, ?, ?, 'HELD', ?, ?)";
+    private static final String CLOSE_HOLD = "UPDATE balance_hold SET status = ?, captured_amount = ?, closed_at = ? "
+            + "WHERE id = ? AND status = 'HELD' AND expires_at > ?";
+    private static final String EXPIRE_HOLDS = "UPDATE balance_hold SET status = 'EXPIRED', closed_at = ? "
+            + "WHERE status = 'HELD' AND expires_at <= ?";
+    private static final String SELECT_OPEN_HOLD = "SELECT id, account_number, amount, currency, created_at, expires_at "
+            + "FROM balance_hold WHERE id = ? AND status = 'HELD' AND expires_at > ?";
+    private static final String SELECT_HELD_TOTALS = "SELECT account_number, SUM(amount) FROM balance_hold "
+            + "WHERE account_number IN (%s) AND status = 'HELD' AND expires_at > ? GROUP BY account_number";
+    private static final String SELECT_RESERVED_TOTALS = "SELECT account_number, SUM(amount) FROM ("
+            + "SELECT account_number, amount FROM balance_hold WHERE account_number IN (%1$s) AND status = 'HELD' "
+            + "AND expires_at > ? UNION ALL SELECT account_number, amount FROM balance_allowance "
+            + "WHERE account_number IN (%1$s) AND expires_at > ?) reserved GROUP BY account_number";
+    private static final String GROW_ALLOWANCE = "UPDATE balance_allowance SET amount = amount + ?, expires_at = ? "
+            + "WHERE account_number = ? AND node_id = ? AND generation = ?";
+    private static final String DELETE_ALLOWANCE = "DELETE FROM balance_allowance WHERE account_number = ? AND node_id = ?";
+    private static final String INSERT_ALLOWANCE = "INSERT INTO balance_allowance "
+            + "(account_number, node_id, generation, amount, expires_at) VALUES (?, ?, ?, ?, ?)";
+    private static final String SHRINK_ALLOWANCE = "UPDATE balance_allowance SET amount = amount - ? "
+            + "WHERE account_number = ? AND node_id = ? AND generation = ?";
+    private static final String RENEW_ALLOWANCES = "UPDATE balance_allowance SET expires_at = ? "
+            + "WHERE node_id = ? AND generation = ? AND expires_at > ?";
+    private static final String DELETE_EMPTY_ALLOWANCES = "DELETE FROM balance_allowance "
+            + "WHERE node_id = ? AND generation = ? AND amount <= 0";
+    private static final String DELETE_NODE_ALLOWANCES = "DELETE FROM balance_allowance WHERE node_id = ? AND generation = ?";
+    private static final String DELETE_EXPIRED_ALLOWANCES = "DELETE FROM balance_allowance WHERE expires_at <= ?";
+    private static final String SELECT_LAST_GENERATION =
+            "SELECT COALESCE(MAX(generation), 0) FROM balance_allowance WHERE node_id = ?";
+    private static final String ADOPT_ALLOWANCES = "UPDATE balance_allowance SET generation = ?, expires_at = ? "
+            + "WHERE node_id = ? AND expires_at > ?";
+    private static final String SELECT_NODE_ALLOWANCES =
+            "SELECT account_number, amount FROM balance_allowance WHERE node_id = ? AND generation = ?";
+    private static final String SELECT_LIMITS = "SELECT account_number, currency, is_active, overdraft_limit, "
+            + "minimum_balance FROM bank_account_management_module WHERE account_number IN (%s) ORDER BY account_number";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BalanceHoldRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void insert(BalanceHold hold) {
+        jdbcTemplate.update(INSERT_HOLD, hold.id(), hold.accountNumber(), hold.amount().toBigDecimal(),
+                hold.amount().currencyCode(), Timestamp.valueOf(hold.createdAt()), Timestamp.valueOf(hold.expiresAt()));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void insertAll(List<BalanceHold> holds) {
+        jdbcTemplate.batchUpdate(INSERT_HOLD, holds, holds.size(), (ps, hold) -> {
+            ps.setString(1, hold.id());
+            ps.setString(2, hold.accountNumber());
+            ps.setBigDecimal(3, hold.amount().toBigDecimal());
+            ps.setString(4, hold.amount().currencyCode());
+            ps.setTimestamp(5, Timestamp.valueOf(hold.createdAt()));
+            ps.setTimestamp(6, Timestamp.valueOf(hold.expiresAt()));
+        });
+    }
+
+    // Holds already closed or expired are left as they are
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void closeAll(List<Closing> closings) {
+        jdbcTemplate.batchUpdate(CLOSE_HOLD, closings, closings.size(), (ps, closing) -> {
+            ps.setString(1, closing.status());
+            ps.setBigDecimal(2, closing.captured() != null ? closing.captured().toBigDecimal() : null);
+            ps.setTimestamp(3, Timestamp.valueOf(closing.closedAt()));
+            ps.setString(4, closing.holdId());
+            ps.setTimestamp(5, Timestamp.valueOf(closing.closedAt()));
+        });
+    }
+
+    // Returns false if the hold was already closed or has expired
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean close(Closing closing) {
+        return jdbcTemplate.update(CLOSE_HOLD, closing.status(),
+                closing.captured() != null ? closing.captured().toBigDecimal() : null,
+                Timestamp.valueOf(closing.closedAt()), closing.holdId(), Timestamp.valueOf(closing.closedAt())) == 1;
+    }
+
+    // Marks the holds that expired by now; they already stopped counting when they did
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int expire(LocalDateTime now) {
+        return jdbcTemplate.update(EXPIRE_HOLDS, Timestamp.valueOf(now), Timestamp.valueOf(now));
+    }
+
+    public Optional<BalanceHold> findOpen(String holdId, LocalDateTime now) {
+        return jdbcTemplate.query(SELECT_OPEN_HOLD, (rs, rowNum) -> new BalanceHold(rs.getString("id"),
+                rs.getString("account_number"), Money.of(rs.getBigDecimal("amount"), rs.getString("currency")),
+                rs.getTimestamp("created_at").toLocalDateTime(), rs.getTimestamp("expires_at").toLocalDateTime()),
+                holdId, Timestamp.valueOf(now)).stream().findFirst();
+    }
+
+    /**
+     * Minor units held on each account by holds still open at now; accounts
+     * without any are left out.
+     */
+    public Map<String, Long> heldTotals(Collection<String> accountNumbers, LocalDateTime now) {
+        Map<String, Long> totals = new HashMap<>();
+        if (accountNumbers.isEmpty()) {
+            return totals;
+        }
+        List<Object> args = new ArrayList<>(accountNumbers);
+        args.add(Timestamp.valueOf(now));
+        jdbcTemplate.query(String.format(SELECT_HELD_TOTALS, String.join(", ", Collections.nCopies(accountNumbers.size(), "?"))),
+                rs -> {
+                    totals.put(rs.getString(1), Money.toMinorUnits(rs.getBigDecimal(2)));
+                }, args.toArray());
+        return totals;
+    }
+
+    /**
+     * Minor units set aside on each account at now by open holds and by the
+     * allowances of every node; accounts without any are left out.
+     */
+    public Map<String, Long> reservedTotals(Collection<String> accountNumbers, LocalDateTime now) {
+        Map<String, Long> totals = new HashMap<>();
+        if (accountNumbers.isEmpty()) {
+            return totals;
+        }
+        List<Object> args = new ArrayList<>(accountNumbers);
+        args.add(Timestamp.valueOf(now));
+        args.addAll(accountNumbers);
+        args.add(Timestamp.valueOf(now));
+        jdbcTemplate.query(String.format(SELECT_RESERVED_TOTALS, String.join(", ", Collections.nCopies(accountNumbers.size(), "?"))),
+                rs -> {
+                    totals.put(rs.getString(1), Money.toMinorUnits(rs.getBigDecimal(2)));
+                }, args.toArray());
+        return totals;
+    }
+
+    /**
+     * Adds to the node's allowance on the account and renews it. An allowance
+     * of an older generation is replaced.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void grow(Allowance allowance, String accountNumber, long amount, LocalDateTime expiresAt) {
+        BigDecimal added = BigDecimal.valueOf(amount, Money.SCALE);
+        if (jdbcTemplate.update(GROW_ALLOWANCE, added, Timestamp.valueOf(expiresAt), accountNumber,
+                allowance.nodeId(), allowance.generation()) == 0) {
+            jdbcTemplate.update(DELETE_ALLOWANCE, accountNumber, allowance.nodeId());
+            jdbcTemplate.update(INSERT_ALLOWANCE, accountNumber, allowance.nodeId(), allowance.generation(), added,
+                    Timestamp.valueOf(expiresAt));
+        }
+    }
+
+    // Minor units per account number; allowances of another generation are left alone
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void shrink(Allowance allowance, Map<String, Long> amounts) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(amounts.entrySet());
+        jdbcTemplate.batchUpdate(SHRINK_ALLOWANCE, entries, entries.size(), (ps, entry) -> {
+            ps.setBigDecimal(1, BigDecimal.valueOf(entry.getValue(), Money.SCALE));
+            ps.setString(2, entry.getKey());
+            ps.setString(3, allowance.nodeId());
+            ps.setLong(4, allowance.generation());
+        });
+    }
+
+    // Extends the node's allowances that have not expired yet and drops the used up ones
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void renew(Allowance allowance, LocalDateTime now, LocalDateTime expiresAt) {
+        jdbcTemplate.update(RENEW_ALLOWANCES, Timestamp.valueOf(expiresAt), allowance.nodeId(), allowance.generation(),
+                Timestamp.valueOf(now));
+        jdbcTemplate.update(DELETE_EMPTY_ALLOWANCES, allowance.nodeId(), allowance.generation());
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void delete(Allowance allowance) {
+        jdbcTemplate.update(DELETE_NODE_ALLOWANCES, allowance.nodeId(), allowance.generation());
+    }
+
+    // Allowances of nodes that stopped renewing them; they no longer count anyway
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int deleteExpiredAllowances(LocalDateTime before) {
+        return jdbcTemplate.update(DELETE_EXPIRED_ALLOWANCES, Timestamp.valueOf(before));
+    }
+
+    // A generation after every one the node id has left behind
+    public long nextGeneration(String nodeId) {
+        return jdbcTemplate.queryForObject(SELECT_LAST_GENERATION, Long.class, nodeId) + 1;
+    }
+
+    /**
+     * Takes over the allowances an earlier node of the same id left behind
+     * and that still count, renewed under the given generation; returns their
+     * minor units per account number.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<String, Long> adopt(Allowance allowance, LocalDateTime now, LocalDateTime expiresAt) {
+        jdbcTemplate.update(ADOPT_ALLOWANCES, allowance.generation(), Timestamp.valueOf(expiresAt), allowance.nodeId(),
+                Timestamp.valueOf(now));
+        Map<String, Long> amounts = new HashMap<>();
+        jdbcTemplate.query(SELECT_NODE_ALLOWANCES, rs -> {
+            amounts.put(rs.getString(1), Money.toMinorUnits(rs.getBigDecimal(2)));
+        }, allowance.nodeId(), allowance.generation());
+        return amounts;
+    }
+
+    /**
+     * Limits of the accounts that exist, by account number. With lock, the
+     * rows are locked in account-number order until the caller's transaction
+     * ends.
+     */
+    public Map<String, Limits> findLimits(Collection<String> accountNumbers, boolean lock) {
+        Map<String, Limits> limits = new HashMap<>();
+        if (accountNumbers.isEmpty()) {
+            return limits;
+        }
+        String sql = String.format(SELECT_LIMITS, String.join(", ", Collections.nCopies(accountNumbers.size(), "?")));
+        jdbcTemplate.query(lock ? sql + " FOR UPDATE" : sql, rs -> {
+            limits.put(rs.getString("account_number"), new Limits(rs.getString("currency"), rs.getBoolean("is_active"),
+                    Limits.floor(rs.getBigDecimal("minimum_balance"), rs.getBigDecimal("overdraft_limit"))));
+        }, accountNumbers.toArray());
+        return limits;
+    }
+
+    // Status is RELEASED, EXPIRED or CONFIRMED; only a confirmation captures an amount
+    public record Closing(String holdId, String status, Money captured, LocalDateTime closedAt) {
+    }
+
+    // Floor in minor units: the lowest the balance may go
+    public record Limits(String currencyCode, boolean active, long floor) {
+
+        // A minimum balance wins over an overdraft limit; with neither the balance may reach zero
+        public static long floor(BigDecimal minimumBalance, BigDecimal overdraftLimit) {
+            return minimumBalance != null ? Money.toMinorUnits(minimumBalance)
+                    : overdraftLimit != null ? -Money.toMinorUnits(overdraftLimit) : 0;
+        }
+    }
+
+    // Whose allowances: a node, and the generation of them it currently grants holds from
+    public record Allowance(String nodeId, long generation) {
+    }
+}
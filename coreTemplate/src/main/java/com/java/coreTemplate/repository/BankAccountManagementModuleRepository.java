@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import com.java.coreTemplate.model.dto.BankAccountManagementModule;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,16 +18,13 @@ public interface BankAccountManagementModuleRepository extends
     // Find all active accounts
     List<BankAccountManagementModule> findByIsActiveTrue();
     
-    // Find accounts with balance greater than specified amount
-    List<BankAccountManagementModule> findByBalanceGreaterThan(Double amount);
+    // Accounts by number, for balances looked up in the ledger
+    List<BankAccountManagementModule> findByAccountNumberIn(Collection<String> accountNumbers);
     
     // Find accounts by account type using JPQL with modern parameter binding
     @Query("SELECT a FROM BankAccountManagementModule a WHERE a.accountType = :accountType")
     List<BankAccountManagementModule> findByAccountType(@Param("accountType") String accountType);
     
-    // Find accounts with balance between two values using method name derivation
-    List<BankAccountManagementModule> findByBalanceBetween(Double minBalance, Double maxBalance);
-    
     // Custom query to find accounts by customer ID with join (assuming relationship exists)
     @Query("SELECT a FROM BankAccountManagementModule a JOIN a.customer c WHERE c.id = :customerId")
     List<BankAccountManagementModule> findByCustomerId(@Param("customerId") Long customerId);
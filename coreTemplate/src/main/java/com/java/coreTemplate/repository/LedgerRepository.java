@@ -0,0 +1,269 @@
+package com.java.coreTemplate.repository;
+
+import com.java.coreTemplate.model.dto.LedgerEntry;
+import com.java.coreTemplate.model.dto.Money;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The append-only ledger_entry table and the ledger_snapshot rows that
+ * summarise it.
+ *
+ * <p>The balance of an account at a time is its latest snapshot at or
+ * before then plus the entries posted after that snapshot. An account
+ * without any snapshot opens at the balance column of its row, which the
+ * snapshots keep current from then on. Entries are stamped with the
+ * database's LOCALTIMESTAMP, the start of the transaction that posts them.
+ */
+@Repository
+public class LedgerRepository {
+
+    private static final String INSERT_ENTRY = "INSERT INTO ledger_entry (account_number, amount, currency, "
+            + "transfer_reference, posted_at) VALUES (?, ?, ?, ?, LOCALTIMESTAMP)";
+    // Per account: the latest snapshot, else the opening balance, and the entries posted after it
+    private static final String CURRENT_POSITIONS = "SELECT a.account_number, a.currency, "
+            + "COALESCE(s.balance, a.balance) AS base, COUNT(e.id) AS replayed, "
+            + "COALESCE(SUM(e.amount), 0) AS replayed_total FROM bank_account_management_module a "
+            + "LEFT JOIN ledger_snapshot s ON s.account_number = a.account_number "
+            + "AND s.as_of = (SELECT MAX(m.as_of) FROM ledger_snapshot m WHERE m.account_number = a.account_number) "
+            + "LEFT JOIN ledger_entry e ON e.account_number = a.account_number "
+            + "AND (s.as_of IS NULL OR e.posted_at > s.as_of) ";
+    private static final String SELECT_POSITIONS = CURRENT_POSITIONS
+            + "WHERE a.account_number IN (%s) GROUP BY a.account_number, a.currency, s.balance, a.balance";
+    private static final String SELECT_POSITIONS_ABOVE = CURRENT_POSITIONS
+            + "GROUP BY a.account_number, a.currency, s.balance, a.balance "
+            + "HAVING COALESCE(s.balance, a.balance) + COALESCE(SUM(e.amount), 0) > ?";
+    // Per account: the nearest snapshot at or before the time, else the first after it, else the opening balance
+    private static final String SELECT_POSITIONS_AT = "SELECT a.account_number, a.currency, a.balance AS opening, "
+            + "b.balance AS before_balance, f.balance AS after_balance, COUNT(e.id) AS replayed, "
+            + "COALESCE(SUM(e.amount), 0) AS replayed_total FROM bank_account_management_module a "
+            + "LEFT JOIN ledger_snapshot b ON b.account_number = a.account_number AND b.as_of = "
+            + "(SELECT MAX(m.as_of) FROM ledger_snapshot m WHERE m.account_number = a.account_number AND m.as_of <= ?) "
+            + "LEFT JOIN ledger_snapshot f ON b.as_of IS NULL AND f.account_number = a.account_number AND f.as_of = "
+            + "(SELECT MIN(m.as_of) FROM ledger_snapshot m WHERE m.account_number = a.account_number AND m.as_of > ?) "
+            + "LEFT JOIN ledger_entry e ON e.account_number = a.account_number AND ("
+            + "(b.as_of IS NOT NULL AND e.posted_at > b.as_of AND e.posted_at <= ?) "
+            + "OR (f.as_of IS NOT NULL AND e.posted_at > ? AND e.posted_at <= f.as_of) "
+            + "OR (b.as_of IS NULL AND f.as_of IS NULL AND e.posted_at <= ?)) "
+            + "WHERE a.account_number IN (%s) "
+            + "GROUP BY a.account_number, a.currency, a.balance, b.balance, f.balance";
+    private static final String SELECT_ACCOUNT = "SELECT id, balance, currency FROM bank_account_management_module "
+            + "WHERE account_number = ?";
+    private static final String SNAPSHOT_AT_OR_BEFORE = "SELECT as_of, balance, entry_count FROM ledger_snapshot "
+            + "WHERE account_number = ? AND as_of <= ? ORDER BY as_of DESC LIMIT 1";
+    private static final String SNAPSHOT_AFTER = "SELECT as_of, balance, entry_count FROM ledger_snapshot "
+            + "WHERE account_number = ? AND as_of > ? ORDER BY as_of LIMIT 1";
+    private static final String SUM_BETWEEN = "SELECT COUNT(*), COALESCE(SUM(amount), 0) FROM ledger_entry "
+            + "WHERE account_number = ? AND posted_at > ? AND posted_at <= ?";
+    private static final String SUM_UNTIL = "SELECT COUNT(*), COALESCE(SUM(amount), 0) FROM ledger_entry "
+            + "WHERE account_number = ? AND posted_at <= ?";
+    private static final String INSERT_SNAPSHOT = "INSERT INTO ledger_snapshot (account_number, as_of, balance, "
+            + "entry_count) VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_ACCOUNT = "UPDATE bank_account_management_module "
+            + "SET balance = ?, version = version + 1, last_updated_at = ? WHERE id = ?";
+    private static final String SELECT_ENTRIES = "SELECT id, account_number, amount, currency, transfer_reference, "
+            + "posted_at FROM ledger_entry WHERE account_number = ? AND id > ? ORDER BY id LIMIT ?";
+
+    private static final RowMapper<LedgerEntry> ENTRY = (rs, rowNum) -> new LedgerEntry(
+            rs.getLong("id"), rs.getString("account_number"),
+            Money.of(rs.getBigDecimal("amount"), rs.getString("currency")),
+            rs.getString("transfer_reference"), rs.getTimestamp("posted_at").toLocalDateTime());
+    private static final RowMapper<Snapshot> SNAPSHOT = (rs, rowNum) -> new Snapshot(
+            rs.getTimestamp("as_of").toLocalDateTime(), Money.toMinorUnits(rs.getBigDecimal("balance")),
+            rs.getLong("entry_count"));
+    private static final RowMapper<long[]> COUNT_AND_SUM = (rs, rowNum) -> new long[]{
+            rs.getLong(1), Money.toMinorUnits(rs.getBigDecimal(2))};
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LedgerRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Appends the entries in one batch. Joins the caller's transaction; the
+     * account rows are left alone.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(List<LedgerEntry> entries) {
+        jdbcTemplate.batchUpdate(INSERT_ENTRY, entries, entries.size(), (ps, entry) -> {
+            ps.setString(1, entry.accountNumber());
+            ps.setBigDecimal(2, entry.amount().toBigDecimal());
+            ps.setString(3, entry.amount().currencyCode());
+            ps.setString(4, entry.transferReference());
+        });
+    }
+
+    /**
+     * Current balances of the accounts that exist, by account number, each
+     * with the number of entries replayed on top of its latest snapshot.
+     */
+    public Map<String, Position> positions(Collection<String> accountNumbers) {
+        Map<String, Position> positions = new HashMap<>();
+        if (accountNumbers.isEmpty()) {
+            return positions;
+        }
+        jdbcTemplate.query(String.format(SELECT_POSITIONS, String.join(", ", Collections.nCopies(accountNumbers.size(), "?"))),
+                rs -> {
+                    positions.put(rs.getString("account_number"), currentPosition(rs));
+                }, accountNumbers.toArray());
+        return positions;
+    }
+
+    /**
+     * Current positions of the accounts whose balance is above the amount,
+     * in any currency. Replays the entries since the latest snapshot of
+     * every account, so it reads the tail of the whole ledger.
+     */
+    public Map<String, Position> positionsAbove(long minorUnits) {
+        Map<String, Position> positions = new HashMap<>();
+        jdbcTemplate.query(SELECT_POSITIONS_ABOVE, rs -> {
+            positions.put(rs.getString("account_number"), currentPosition(rs));
+        }, BigDecimal.valueOf(minorUnits, Money.SCALE));
+        return positions;
+    }
+
+    private static Position currentPosition(ResultSet rs) throws SQLException {
+        long balance = Math.addExact(Money.toMinorUnits(rs.getBigDecimal("base")),
+                Money.toMinorUnits(rs.getBigDecimal("replayed_total")));
+        return new Position(rs.getString("currency"), balance, rs.getLong("replayed"));
+    }
+
+    /**
+     * Balance of the account over its entries posted at or before at. Starts
+     * from the nearest snapshot on either side of at, so it replays at most
+     * the entries between two snapshots.
+     */
+    public Optional<Position> positionAt(String accountNumber, LocalDateTime at) {
+        List<Object[]> account = jdbcTemplate.query(SELECT_ACCOUNT, (rs, rowNum) -> new Object[]{
+                rs.getBigDecimal("balance"), rs.getString("currency")}, accountNumber);
+        if (account.isEmpty()) {
+            return Optional.empty();
+        }
+        String currencyCode = (String) account.get(0)[1];
+        Timestamp until = Timestamp.valueOf(at);
+        Optional<Snapshot> before = first(jdbcTemplate.query(SNAPSHOT_AT_OR_BEFORE, SNAPSHOT, accountNumber, until));
+        if (before.isPresent()) {
+            long[] replayed = jdbcTemplate.queryForObject(SUM_BETWEEN, COUNT_AND_SUM, accountNumber,
+                    Timestamp.valueOf(before.get().asOf()), until);
+            return Optional.of(new Position(currencyCode, Math.addExact(before.get().balance(), replayed[1]), replayed[0]));
+        }
+        Optional<Snapshot> after = first(jdbcTemplate.query(SNAPSHOT_AFTER, SNAPSHOT, accountNumber, until));
+        if (after.isPresent()) {
+            // Earlier than every snapshot: wind the first one back
+            long[] replayed = jdbcTemplate.queryForObject(SUM_BETWEEN, COUNT_AND_SUM, accountNumber, until,
+                    Timestamp.valueOf(after.get().asOf()));
+            return Optional.of(new Position(currencyCode, Math.subtractExact(after.get().balance(), replayed[1]), replayed[0]));
+        }
+        long[] replayed = jdbcTemplate.queryForObject(SUM_UNTIL, COUNT_AND_SUM, accountNumber, until);
+        long opening = Money.toMinorUnits((BigDecimal) account.get(0)[0]);
+        return Optional.of(new Position(currencyCode, Math.addExact(opening, replayed[1]), replayed[0]));
+    }
+
+    /**
+     * {@link #positionAt} of many accounts in one query; accounts that do
+     * not exist are left out.
+     */
+    public Map<String, Position> positionsAt(Collection<String> accountNumbers, LocalDateTime at) {
+        Map<String, Position> positions = new HashMap<>();
+        if (accountNumbers.isEmpty()) {
+            return positions;
+        }
+        Timestamp until = Timestamp.valueOf(at);
+        List<Object> args = new ArrayList<>(Collections.nCopies(5, until));
+        args.addAll(accountNumbers);
+        jdbcTemplate.query(String.format(SELECT_POSITIONS_AT, String.join(", ", Collections.nCopies(accountNumbers.size(), "?"))),
+                rs -> {
+                    long replayed = Money.toMinorUnits(rs.getBigDecimal("replayed_total"));
+                    BigDecimal before = rs.getBigDecimal("before_balance");
+                    BigDecimal after = rs.getBigDecimal("after_balance");
+                    long balance;
+                    if (before != null) {
+                        balance = Math.addExact(Money.toMinorUnits(before), replayed);
+                    } else if (after != null) {
+                        // Earlier than every snapshot: wind the first one back
+                        balance = Math.subtractExact(Money.toMinorUnits(after), replayed);
+                    } else {
+                        balance = Math.addExact(Money.toMinorUnits(rs.getBigDecimal("opening")), replayed);
+                    }
+                    positions.put(rs.getString("account_number"),
+                            new Position(rs.getString("currency"), balance, rs.getLong("replayed")));
+                }, args.toArray());
+        return positions;
+    }
+
+    /**
+     * Snapshots the account over its entries posted at least settle ago and
+     * copies the balance to the account row. Returns the id of the account
+     * if a snapshot was written, or empty if the account does not exist or
+     * has no settled entries since its latest snapshot. Joins the caller's
+     * transaction.
+     *
+     * <p>Entries are stamped when their transaction starts, so settle must
+     * exceed the longest posting transaction; otherwise an entry could
+     * commit below a snapshot that has already left it out.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<Long> snapshot(String accountNumber, Duration settle) {
+        // Serialises snapshots of the account across nodes, and against edits of the row
+        List<Object[]> account = jdbcTemplate.query(SELECT_ACCOUNT + " FOR UPDATE", (rs, rowNum) -> new Object[]{
+                rs.getLong("id"), rs.getBigDecimal("balance")}, accountNumber);
+        if (account.isEmpty()) {
+            return Optional.empty();
+        }
+        LocalDateTime now = jdbcTemplate.queryForObject("SELECT LOCALTIMESTAMP", Timestamp.class).toLocalDateTime();
+        LocalDateTime asOf = now.minus(settle);
+        Optional<Snapshot> latest = first(jdbcTemplate.query(SNAPSHOT_AT_OR_BEFORE, SNAPSHOT, accountNumber,
+                Timestamp.valueOf(now)));
+        if (latest.isPresent() && !latest.get().asOf().isBefore(asOf)) {
+            return Optional.empty();
+        }
+        long[] replayed = latest.isPresent()
+                ? jdbcTemplate.queryForObject(SUM_BETWEEN, COUNT_AND_SUM, accountNumber,
+                        Timestamp.valueOf(latest.get().asOf()), Timestamp.valueOf(asOf))
+                : jdbcTemplate.queryForObject(SUM_UNTIL, COUNT_AND_SUM, accountNumber, Timestamp.valueOf(asOf));
+        if (replayed[0] == 0) {
+            return Optional.empty();
+        }
+        long base = latest.map(Snapshot::balance).orElseGet(() -> Money.toMinorUnits((BigDecimal) account.get(0)[1]));
+        BigDecimal balance = BigDecimal.valueOf(Math.addExact(base, replayed[1]), Money.SCALE);
+        long entryCount = latest.map(Snapshot::entryCount).orElse(0L) + replayed[0];
+        jdbcTemplate.update(INSERT_SNAPSHOT, accountNumber, Timestamp.valueOf(asOf), balance, entryCount);
+        Long id = (Long) account.get(0)[0];
+        jdbcTemplate.update(UPDATE_ACCOUNT, balance, Timestamp.valueOf(now), id);
+        return Optional.of(id);
+    }
+
+    // Keyset-paged in posting order
+    public List<LedgerEntry> findEntries(String accountNumber, long afterId, int limit) {
+        return jdbcTemplate.query(SELECT_ENTRIES, ENTRY, accountNumber, afterId, limit);
+    }
+
+    private static <T> Optional<T> first(List<T> rows) {
+        return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+
+    // Balance in minor units and the number of entries replayed to get it
+    public record Position(String currencyCode, long balance, long replayed) {
+    }
+
+    private record Snapshot(LocalDateTime asOf, long balance, long entryCount) {
+    }
+}
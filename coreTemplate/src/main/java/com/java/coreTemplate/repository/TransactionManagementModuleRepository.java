@@ -10,7 +10,7 @@ import java.util.List;
 import java.util.Optional;
 
 public interface TransactionManagementModuleRepository extends 
-    JpaRepository<TransactionManagementModule, Long> {
+    JpaRepository<TransactionManagementModule, Long>, TransactionManagementModuleRepositoryCustom {
     
     // Find by transaction reference with optional result
     Optional<TransactionManagementModule> findByTransactionReference(String reference);
@@ -21,6 +21,9 @@ public interface TransactionManagementModuleRepository extends
     // Find transactions within a date range
     List<TransactionManagementModule> findByCreatedAtBetween(LocalDateTime startDate, LocalDateTime endDate);
 
+    // Prefer this over findByCreatedAtBetween: on the partition key, so only the months in range are read
+    List<TransactionManagementModule> findByTransactionDateBetween(LocalDateTime startDate, LocalDateTime endDate);
+
     // Custom JPQL query with named parameters
     @Query("SELECT t FROM TransactionManagementModule t WHERE t.amount >= :minAmount AND t.status = :status")
     List<TransactionManagementModule> findHighValueTransactions(
@@ -51,8 +54,7 @@ public interface TransactionManagementModuleRepository extends
     // Check if transaction exists by reference
     boolean existsByTransactionReference(String reference);
 
-    // Delete transactions older than specified date
-    void deleteByCreatedAtBefore(LocalDateTime cutoffDate);
+    // Old transactions are removed by dropping whole monthly partitions, see TransactionPartitionManager
 
     // Interface for projection
     interface TransactionSummary {
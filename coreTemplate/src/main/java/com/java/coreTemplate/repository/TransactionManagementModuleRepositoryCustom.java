@@ -0,0 +1,54 @@
+package com.java.coreTemplate.repository;
+
+import com.java.coreTemplate.model.dto.TransactionBacklog;
+import com.java.coreTemplate.model.dto.TransactionCursor;
+import com.java.coreTemplate.model.dto.TransactionExportFilter;
+import com.java.coreTemplate.model.dto.TransactionManagementModule;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public interface TransactionManagementModuleRepositoryCustom {
+    // Assigns ids from the pooled sequence and inserts with multi-row INSERTs, skipping rows whose
+    // transaction_reference is already in transaction_reference_key; returns the ids actually inserted.
+    // Rollups are updated in the same transaction.
+    @Transactional
+    Set<Long> insertAll(List<TransactionManagementModule> transactions);
+
+    // Keeps transaction_reference_key in step with a single-row write done through JPA; before is null
+    // for an insert and after is null for a delete. Joins the caller's transaction.
+    void syncReference(TransactionManagementModule before, TransactionManagementModule after);
+
+    // Looks the row up through transaction_reference_key
+    Optional<TransactionManagementModule> findByReference(String transactionReference);
+
+    // Current row, locked until the surrounding transaction ends; read with JDBC so no managed entity is touched
+    Optional<TransactionManagementModule> findByIdForUpdate(Long id);
+
+    // Keyset page in (transaction_date, id) order strictly after the cursor; a null cursor starts at the beginning
+    List<TransactionManagementModule> findPageAfter(TransactionCursor after, int limit);
+
+    // Streams matching rows in (transaction_date, id) order through a server-side cursor; nothing is
+    // retained after the consumer returns. Must run inside a transaction for Postgres to use the cursor.
+    void forEachMatching(TransactionExportFilter filter, Consumer<TransactionManagementModule> consumer);
+
+    // Streams the perHour largest transactions of every (hour, currency) since the given time
+    void forEachTopPerHour(LocalDateTime since, int perHour, Consumer<TransactionManagementModule> consumer);
+
+    // Largest transactions in [from, to) for one currency, by amount descending
+    List<TransactionManagementModule> findTopByAmount(String currencyCode, LocalDateTime from, LocalDateTime to, int limit);
+
+    // Locks up to limit unprocessed transactions that are ready to process, skipping rows other
+    // workers hold, so concurrent claimers on any node get disjoint batches. The locks last until
+    // the surrounding transaction ends.
+    List<TransactionManagementModule> claimUnprocessed(int limit);
+
+    // Marks the transactions processed with their isSuccessful outcome in one JDBC batch
+    void markProcessed(List<TransactionManagementModule> transactions);
+
+    TransactionBacklog unprocessedBacklog();
+}
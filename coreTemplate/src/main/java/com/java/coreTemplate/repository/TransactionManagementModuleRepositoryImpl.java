@@ -0,0 +1,276 @@
+package com.java.coreTemplate.repository;
+
+import com.java.coreTemplate.model.dto.Money;
+import com.java.coreTemplate.model.dto.TransactionBacklog;
+import com.java.coreTemplate.model.dto.TransactionCursor;
+import com.java.coreTemplate.model.dto.TransactionExportFilter;
+import com.java.coreTemplate.model.dto.TransactionManagementModule;
+import com.java.coreTemplate.util.PooledSequence;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public class TransactionManagementModuleRepositoryImpl implements TransactionManagementModuleRepositoryCustom {
+    public static final String ID_SEQUENCE = "transaction_management_module_seq";
+    // Must match INCREMENT BY of the sequence and allocationSize on the entity
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    private static final String INSERT_PREFIX = "INSERT INTO transaction_management_module (id, transaction_reference, "
+            + "amount, currency_code, transaction_date, description, is_successful, is_processed, requires_approval, "
+            + "approval_status, created_at, version) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+    private static final int COLUMNS = 11;
+    // Postgres allows at most 32767 bind parameters per statement
+    private static final int MAX_ROWS_PER_STATEMENT = 32767 / COLUMNS;
+    private static final String INSERT_KEY_PREFIX =
+            "INSERT INTO transaction_reference_key (transaction_reference, transaction_id, transaction_date) VALUES ";
+    private static final String KEY_PLACEHOLDERS = "(?, ?, ?)";
+    private static final int KEY_COLUMNS = 3;
+    private static final int MAX_KEYS_PER_STATEMENT = 32767 / KEY_COLUMNS;
+
+    private static final String COLUMN_LIST = "id, transaction_reference, amount, currency_code, "
+            + "transaction_date, description, is_successful, is_processed, requires_approval, approval_status, "
+            + "created_at, last_modified_at, version";
+    private static final String SELECT_COLUMNS = "SELECT " + COLUMN_LIST + " FROM transaction_management_module ";
+    // Row-value comparison lets the (transaction_date, id) index seek straight to the cursor
+    static final String SELECT_PAGE_AFTER = SELECT_COLUMNS
+            + "WHERE (transaction_date, id) > (?, ?) ORDER BY transaction_date, id LIMIT ?";
+    static final String SELECT_FIRST_PAGE = SELECT_COLUMNS
+            + "ORDER BY transaction_date, id LIMIT ?";
+    // Transactions that need approval wait until someone has approved or rejected them
+    private static final String UNPROCESSED = "WHERE is_processed = FALSE "
+            + "AND (requires_approval = FALSE OR approval_status IN ('APPROVED', 'REJECTED')) ";
+    // The largest amounts per (hour, currency) since a point in time
+    private static final String SELECT_TOP_PER_HOUR = "SELECT " + COLUMN_LIST + " FROM (SELECT " + COLUMN_LIST
+            + ", ROW_NUMBER() OVER (PARTITION BY DATE_TRUNC('hour', transaction_date), currency_code "
+            + "ORDER BY amount DESC, id DESC) AS rank_in_hour FROM transaction_management_module "
+            + "WHERE transaction_date >= ?) ranked WHERE rank_in_hour <= ?";
+    private static final String SELECT_TOP_IN_RANGE = SELECT_COLUMNS
+            + "WHERE currency_code = ? AND transaction_date >= ? AND transaction_date < ? ORDER BY amount DESC, id DESC LIMIT ?";
+    private static final String SELECT_FOR_UPDATE = SELECT_COLUMNS + "WHERE id = ? FOR UPDATE";
+    // The key row carries the partition key, so only one partition is probed
+    private static final String SELECT_BY_REFERENCE = SELECT_COLUMNS + "WHERE (id, transaction_date) IN "
+            + "(SELECT transaction_id, transaction_date FROM transaction_reference_key WHERE transaction_reference = ?)";
+    private static final String CLAIM_UNPROCESSED = SELECT_COLUMNS + UNPROCESSED
+            + "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String MARK_PROCESSED = "UPDATE transaction_management_module SET is_processed = TRUE, "
+            + "is_successful = ?, last_modified_at = ?, version = version + 1 WHERE id = ? AND transaction_date = ?";
+    private static final String SELECT_BACKLOG = "SELECT count(*), MIN(created_at) FROM transaction_management_module "
+            + UNPROCESSED;
+
+    static final RowMapper<TransactionManagementModule> ROW_MAPPER = (rs, rowNum) -> {
+        TransactionManagementModule transaction = new TransactionManagementModule();
+        transaction.setId(rs.getLong("id"));
+        transaction.setTransactionReference(rs.getString("transaction_reference"));
+        transaction.setAmount(Money.of(rs.getBigDecimal("amount"), rs.getString("currency_code")));
+        transaction.setTransactionDate(rs.getTimestamp("transaction_date").toLocalDateTime());
+        transaction.setDescription(rs.getString("description"));
+        transaction.setSuccessful(rs.getBoolean("is_successful"));
+        transaction.setProcessed(rs.getBoolean("is_processed"));
+        transaction.setRequiresApproval(rs.getBoolean("requires_approval"));
+        transaction.setApprovalStatus(rs.getString("approval_status"));
+        transaction.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        Timestamp lastModifiedAt = rs.getTimestamp("last_modified_at");
+        transaction.setLastModifiedAt(lastModifiedAt != null ? lastModifiedAt.toLocalDateTime() : null);
+        transaction.setVersion(rs.getObject("version", Long.class));
+        return transaction;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamTemplate;
+    private final TransactionRollupRepository rollups;
+    private final PooledSequence ids;
+
+    public TransactionManagementModuleRepositoryImpl(JdbcTemplate jdbcTemplate,
+                                                     TransactionRollupRepository rollups,
+                                                     @Value("${transactions.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.rollups = rollups;
+        this.streamTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamTemplate.setFetchSize(fetchSize);
+        this.ids = new PooledSequence(jdbcTemplate, ID_SEQUENCE, ID_ALLOCATION_SIZE);
+    }
+
+    @PostConstruct
+    public void alignSequence() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM transaction_management_module", Long.class);
+        ids.ensureAbove(maxId);
+    }
+
+    @Override
+    public Set<Long> insertAll(List<TransactionManagementModule> transactions) {
+        if (transactions.isEmpty()) {
+            return Collections.emptySet();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        long[] assigned = ids.nextIds(transactions.size());
+        for (int i = 0; i < transactions.size(); i++) {
+            TransactionManagementModule transaction = transactions.get(i);
+            transaction.setId(assigned[i]);
+            transaction.setCreatedAt(now);
+            transaction.setVersion(0L);
+            if (transaction.getTransactionDate() == null) {
+                transaction.setTransactionDate(now);
+            }
+        }
+
+        // Claim the references first; only rows whose reference was new are written
+        Set<Long> inserted = new HashSet<>();
+        for (int start = 0; start < transactions.size(); start += MAX_KEYS_PER_STATEMENT) {
+            List<TransactionManagementModule> rows =
+                    transactions.subList(start, Math.min(start + MAX_KEYS_PER_STATEMENT, transactions.size()));
+            String sql = INSERT_KEY_PREFIX + String.join(", ", Collections.nCopies(rows.size(), KEY_PLACEHOLDERS))
+                    + " ON CONFLICT (transaction_reference) DO NOTHING RETURNING transaction_id";
+            List<Object> params = new ArrayList<>(rows.size() * KEY_COLUMNS);
+            for (TransactionManagementModule row : rows) {
+                params.add(row.getTransactionReference());
+                params.add(row.getId());
+                params.add(Timestamp.valueOf(row.getTransactionDate()));
+            }
+            jdbcTemplate.query(sql, rs -> {
+                inserted.add(rs.getLong(1));
+            }, params.toArray());
+        }
+
+        List<TransactionManagementModule> claimed = transactions.stream().filter(t -> inserted.contains(t.getId())).toList();
+        for (int start = 0; start < claimed.size(); start += MAX_ROWS_PER_STATEMENT) {
+            List<TransactionManagementModule> rows =
+                    claimed.subList(start, Math.min(start + MAX_ROWS_PER_STATEMENT, claimed.size()));
+            String sql = INSERT_PREFIX + String.join(", ", Collections.nCopies(rows.size(), ROW_PLACEHOLDERS));
+            List<Object> params = new ArrayList<>(rows.size() * COLUMNS);
+            for (TransactionManagementModule row : rows) {
+                params.add(row.getId());
+                params.add(row.getTransactionReference());
+                params.add(row.getAmount().toBigDecimal());
+                params.add(row.getAmount().currencyCode());
+                params.add(Timestamp.valueOf(row.getTransactionDate()));
+                params.add(row.getDescription().orElse(null));
+                params.add(row.isSuccessful());
+                params.add(row.isProcessed());
+                params.add(row.isRequiresApproval());
+                params.add(row.getApprovalStatus().orElse(null));
+                params.add(Timestamp.valueOf(row.getCreatedAt()));
+            }
+            jdbcTemplate.update(sql, params.toArray());
+        }
+        rollups.record(List.of(), claimed);
+        return inserted;
+    }
+
+    @Override
+    public Optional<TransactionManagementModule> findByReference(String transactionReference) {
+        return jdbcTemplate.query(SELECT_BY_REFERENCE, ROW_MAPPER, transactionReference).stream().findFirst();
+    }
+
+    @Override
+    public Optional<TransactionManagementModule> findByIdForUpdate(Long id) {
+        return jdbcTemplate.query(SELECT_FOR_UPDATE, ROW_MAPPER, id).stream().findFirst();
+    }
+
+    @Override
+    public void syncReference(TransactionManagementModule before, TransactionManagementModule after) {
+        boolean sameReference = before != null && after != null
+                && before.getTransactionReference().equals(after.getTransactionReference());
+        if (before != null && !sameReference) {
+            jdbcTemplate.update("DELETE FROM transaction_reference_key WHERE transaction_reference = ?",
+                    before.getTransactionReference());
+        }
+        if (after == null) {
+            return;
+        }
+        if (sameReference) {
+            jdbcTemplate.update("UPDATE transaction_reference_key SET transaction_date = ? WHERE transaction_reference = ?",
+                    Timestamp.valueOf(after.getTransactionDate()), after.getTransactionReference());
+        } else {
+            // A reused reference fails here with a DuplicateKeyException, as the unique constraint used to
+            jdbcTemplate.update("INSERT INTO transaction_reference_key (transaction_reference, transaction_id, "
+                    + "transaction_date) VALUES (?, ?, ?)", after.getTransactionReference(), after.getId(),
+                    Timestamp.valueOf(after.getTransactionDate()));
+        }
+    }
+
+    @Override
+    public List<TransactionManagementModule> findPageAfter(TransactionCursor after, int limit) {
+        if (after == null) {
+            return jdbcTemplate.query(SELECT_FIRST_PAGE, ROW_MAPPER, limit);
+        }
+        return jdbcTemplate.query(SELECT_PAGE_AFTER, ROW_MAPPER,
+                Timestamp.valueOf(after.transactionDate()), after.id(), limit);
+    }
+
+    @Override
+    public void forEachMatching(TransactionExportFilter filter, Consumer<TransactionManagementModule> consumer) {
+        StringBuilder sql = new StringBuilder(SELECT_COLUMNS).append("WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (filter.from() != null) {
+            sql.append(" AND transaction_date >= ?");
+            params.add(Timestamp.valueOf(filter.from()));
+        }
+        if (filter.to() != null) {
+            sql.append(" AND transaction_date < ?");
+            params.add(Timestamp.valueOf(filter.to()));
+        }
+        if (filter.currencyCode() != null) {
+            sql.append(" AND currency_code = ?");
+            params.add(filter.currencyCode());
+        }
+        if (filter.approvalStatus() != null) {
+            sql.append(" AND approval_status = ?");
+            params.add(filter.approvalStatus());
+        }
+        sql.append(" ORDER BY transaction_date, id");
+        streamTemplate.query(sql.toString(), rs -> {
+            consumer.accept(ROW_MAPPER.mapRow(rs, 0));
+        }, params.toArray());
+    }
+
+    @Override
+    public void forEachTopPerHour(LocalDateTime since, int perHour, Consumer<TransactionManagementModule> consumer) {
+        streamTemplate.query(SELECT_TOP_PER_HOUR, rs -> {
+            consumer.accept(ROW_MAPPER.mapRow(rs, 0));
+        }, Timestamp.valueOf(since), perHour);
+    }
+
+    @Override
+    public List<TransactionManagementModule> findTopByAmount(String currencyCode, LocalDateTime from, LocalDateTime to,
+                                                             int limit) {
+        return jdbcTemplate.query(SELECT_TOP_IN_RANGE, ROW_MAPPER, currencyCode, Timestamp.valueOf(from),
+                Timestamp.valueOf(to), limit);
+    }
+
+    @Override
+    public List<TransactionManagementModule> claimUnprocessed(int limit) {
+        return jdbcTemplate.query(CLAIM_UNPROCESSED, ROW_MAPPER, limit);
+    }
+
+    @Override
+    public void markProcessed(List<TransactionManagementModule> transactions) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(MARK_PROCESSED, transactions, transactions.size(), (ps, transaction) -> {
+            ps.setBoolean(1, transaction.isSuccessful());
+            ps.setTimestamp(2, now);
+            ps.setLong(3, transaction.getId());
+            // Prunes the update to the row's partition
+            ps.setTimestamp(4, Timestamp.valueOf(transaction.getTransactionDate()));
+        });
+    }
+
+    @Override
+    public TransactionBacklog unprocessedBacklog() {
+        return jdbcTemplate.queryForObject(SELECT_BACKLOG, (rs, rowNum) -> {
+            Timestamp oldest = rs.getTimestamp(2);
+            return new TransactionBacklog(rs.getLong(1), oldest != null ? oldest.toLocalDateTime() : null);
+        });
+    }
+}
@@ -0,0 +1,161 @@
+package com.java.coreTemplate.repository;
+
+import com.java.coreTemplate.model.dto.Money;
+import com.java.coreTemplate.model.dto.TransactionManagementModule;
+import com.java.coreTemplate.model.dto.TransactionRollup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Per (day, currency, approval status) count and total of
+ * transaction_management_module, kept current by the write paths in the
+ * same transaction as the change itself.
+ *
+ * <p>Writers take a shared advisory lock on each day they touch and a
+ * rebuild takes it exclusively, so a rebuild either sees a writer's rows or
+ * runs before that writer adds its delta, never both or neither.
+ */
+@Repository
+public class TransactionRollupRepository {
+    // Transactions without an approval status are rolled up under this one
+    public static final String NO_STATUS = "NONE";
+
+    // First key of the two-int advisory lock; the second is the epoch day
+    private static final int DAY_LOCK_SPACE = 0x524f4c4c;
+    private static final Comparator<Key> KEY_ORDER = Comparator.comparing(Key::day)
+            .thenComparing(Key::currencyCode)
+            .thenComparing(Key::status);
+
+    private static final String UPSERT = "INSERT INTO transaction_rollup (rollup_date, currency_code, status, txn_count, "
+            + "total_amount) VALUES (?, ?, ?, ?, ?) ON CONFLICT (rollup_date, currency_code, status) DO UPDATE SET "
+            + "txn_count = transaction_rollup.txn_count + EXCLUDED.txn_count, "
+            + "total_amount = transaction_rollup.total_amount + EXCLUDED.total_amount";
+    private static final String SELECT_BY_DAY = "SELECT rollup_date, currency_code, status, txn_count, total_amount "
+            + "FROM transaction_rollup WHERE rollup_date >= ? AND rollup_date <= ? AND txn_count <> 0 %s "
+            + "ORDER BY rollup_date, currency_code, status";
+    private static final String SELECT_TOTALS = "SELECT currency_code, status, SUM(txn_count) AS txn_count, "
+            + "SUM(total_amount) AS total_amount FROM transaction_rollup WHERE rollup_date >= ? AND rollup_date <= ? %s "
+            + "GROUP BY currency_code, status HAVING SUM(txn_count) <> 0 ORDER BY currency_code, status";
+    private static final String DELETE_DAY = "DELETE FROM transaction_rollup WHERE rollup_date = ?";
+    private static final String RECOMPUTE_DAY = "INSERT INTO transaction_rollup (rollup_date, currency_code, status, "
+            + "txn_count, total_amount) SELECT ?, currency_code, COALESCE(approval_status, '" + NO_STATUS + "'), "
+            + "count(*), SUM(amount) FROM transaction_management_module "
+            + "WHERE transaction_date >= ? AND transaction_date < ? "
+            + "GROUP BY currency_code, COALESCE(approval_status, '" + NO_STATUS + "')";
+
+    private static final RowMapper<TransactionRollup> BY_DAY = (rs, rowNum) -> new TransactionRollup(
+            rs.getDate("rollup_date").toLocalDate(), rs.getString("currency_code"), rs.getString("status"),
+            rs.getLong("txn_count"), Money.of(rs.getBigDecimal("total_amount"), rs.getString("currency_code")));
+    private static final RowMapper<TransactionRollup> TOTALS = (rs, rowNum) -> new TransactionRollup(
+            null, rs.getString("currency_code"), rs.getString("status"),
+            rs.getLong("txn_count"), Money.of(rs.getBigDecimal("total_amount"), rs.getString("currency_code")));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TransactionRollupRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Moves the contribution of removed out of the rollups and adds that of
+     * added; an update passes the row before and after the change. Joins the
+     * caller's transaction.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Collection<TransactionManagementModule> removed, Collection<TransactionManagementModule> added) {
+        // Sorted so concurrent writers lock days and rollup rows in the same order
+        Map<Key, long[]> deltas = new TreeMap<>(KEY_ORDER);
+        removed.forEach(transaction -> accumulate(deltas, transaction, -1));
+        added.forEach(transaction -> accumulate(deltas, transaction, 1));
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        LocalDate lockedDay = null;
+        for (Map.Entry<Key, long[]> entry : deltas.entrySet()) {
+            long[] delta = entry.getValue();
+            if (delta[0] == 0 && delta[1] == 0) {
+                continue;
+            }
+            Key key = entry.getKey();
+            if (!key.day().equals(lockedDay)) {
+                jdbcTemplate.query("SELECT pg_advisory_xact_lock_shared(?, ?)", rs -> {
+                }, DAY_LOCK_SPACE, (int) key.day().toEpochDay());
+                lockedDay = key.day();
+            }
+            rows.add(new Object[]{Date.valueOf(key.day()), key.currencyCode(), key.status(), delta[0],
+                    BigDecimal.valueOf(delta[1], Money.SCALE)});
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT, rows);
+        }
+    }
+
+    private static void accumulate(Map<Key, long[]> deltas, TransactionManagementModule transaction, int sign) {
+        Key key = new Key(transaction.getTransactionDate().toLocalDate(), transaction.getCurrencyCode(),
+                transaction.getApprovalStatus().orElse(NO_STATUS));
+        long[] delta = deltas.computeIfAbsent(key, k -> new long[2]);
+        delta[0] += sign;
+        delta[1] = Math.addExact(delta[1], sign * transaction.getAmount().minorUnits());
+    }
+
+    public List<TransactionRollup> findByDay(LocalDate from, LocalDate to, String currencyCode) {
+        return query(SELECT_BY_DAY, BY_DAY, from, to, currencyCode);
+    }
+
+    public List<TransactionRollup> findTotals(LocalDate from, LocalDate to, String currencyCode) {
+        return query(SELECT_TOTALS, TOTALS, from, to, currencyCode);
+    }
+
+    private List<TransactionRollup> query(String sql, RowMapper<TransactionRollup> mapper, LocalDate from, LocalDate to,
+                                          String currencyCode) {
+        if (currencyCode == null) {
+            return jdbcTemplate.query(String.format(sql, ""), mapper, Date.valueOf(from), Date.valueOf(to));
+        }
+        return jdbcTemplate.query(String.format(sql, "AND currency_code = ?"), mapper,
+                Date.valueOf(from), Date.valueOf(to), currencyCode);
+    }
+
+    /**
+     * Replaces the rollups of one day with a fresh aggregate of its
+     * transactions. Runs in its own transaction; days can be rebuilt in
+     * parallel.
+     */
+    @Transactional
+    public void rebuildDay(LocalDate day) {
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(?, ?)", rs -> {
+        }, DAY_LOCK_SPACE, (int) day.toEpochDay());
+        jdbcTemplate.update(DELETE_DAY, Date.valueOf(day));
+        jdbcTemplate.update(RECOMPUTE_DAY, Date.valueOf(day), Timestamp.valueOf(day.atStartOfDay()),
+                Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+    }
+
+    public Optional<LocalDate> firstTransactionDay() {
+        return transactionDay("MIN");
+    }
+
+    public Optional<LocalDate> lastTransactionDay() {
+        return transactionDay("MAX");
+    }
+
+    private Optional<LocalDate> transactionDay(String aggregate) {
+        Timestamp timestamp = jdbcTemplate.queryForObject(
+                "SELECT " + aggregate + "(transaction_date) FROM transaction_management_module", Timestamp.class);
+        return Optional.ofNullable(timestamp).map(t -> t.toLocalDateTime().toLocalDate());
+    }
+
+    private record Key(LocalDate day, String currencyCode, String status) {
+    }
+}
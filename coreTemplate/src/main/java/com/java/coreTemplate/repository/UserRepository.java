@@ -5,7 +5,7 @@ import com.java.coreTemplate.model.entity.UserDetails;
 import org.springframework.data.jpa.repository.JpaRepository;
 import java.util.Optional;
 
-public interface UserRepository extends JpaRepository<UserDetails, Long> {
+public interface UserRepository extends JpaRepository<UserDetails, Long>, UserRepositoryCustom {
     Optional<UserDetails> findByUsername(String username);
     Optional<UserDetails> findByEmail(String email);
 }
\ No newline at end of file
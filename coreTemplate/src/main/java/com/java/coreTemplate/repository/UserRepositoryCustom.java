@@ -0,0 +1,24 @@
+package com.java.coreTemplate.repository;
+
+import com.java.coreTemplate.model.dto.UserCredentials;
+import com.java.coreTemplate.model.entity.UserDetails;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface UserRepositoryCustom {
+    // Single INSERT ... RETURNING id; unique violations surface as DuplicateKeyException
+    @Transactional
+    Integer insertUser(String username, String password, String email);
+
+    // JDBC batch insert skipping conflicting rows; returns one flag per input row
+    @Transactional
+    boolean[] insertUsers(List<UserDetails> users);
+
+    // Replaces the password only if it still holds the expected value; returns whether it did
+    @Transactional
+    boolean updatePassword(Integer id, String expectedPassword, String password);
+
+    // Users after the id whose password may not be a bcrypt hash yet, in id order
+    List<UserCredentials> findUnhashedPasswords(int afterId, int limit);
+}
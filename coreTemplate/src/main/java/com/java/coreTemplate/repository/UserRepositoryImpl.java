@@ -0,0 +1,62 @@
+package com.java.coreTemplate.repository;
+
+import com.java.coreTemplate.model.dto.UserCredentials;
+import com.java.coreTemplate.model.entity.UserDetails;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+public class UserRepositoryImpl implements UserRepositoryCustom {
+    private static final String INSERT_USER =
+            "INSERT INTO users (username, password, email) VALUES (?, ?, ?)";
+    // A superset of the rows without a bcrypt hash, which are 59 or 60 characters starting with $2
+    private static final String SELECT_UNHASHED = "SELECT id, username, password FROM users "
+            + "WHERE id > ? AND (password NOT LIKE '$2%' OR LENGTH(password) NOT IN (59, 60)) ORDER BY id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    public UserRepositoryImpl(JdbcTemplate jdbcTemplate,
+                              @Value("${users.registration.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public Integer insertUser(String username, String password, String email) {
+        return jdbcTemplate.queryForObject(INSERT_USER + " RETURNING id", Integer.class,
+                username, password, email);
+    }
+
+    @Override
+    public boolean[] insertUsers(List<UserDetails> users) {
+        boolean[] inserted = new boolean[users.size()];
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT_USER + " ON CONFLICT DO NOTHING", users, batchSize,
+                (ps, user) -> {
+                    ps.setString(1, user.getUsername());
+                    ps.setString(2, user.getPassword());
+                    ps.setString(3, user.getEmail());
+                });
+        int row = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                inserted[row++] = count > 0;
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public boolean updatePassword(Integer id, String expectedPassword, String password) {
+        return jdbcTemplate.update("UPDATE users SET password = ? WHERE id = ? AND password = ?",
+                password, id, expectedPassword) == 1;
+    }
+
+    @Override
+    public List<UserCredentials> findUnhashedPasswords(int afterId, int limit) {
+        return jdbcTemplate.query(SELECT_UNHASHED,
+                (rs, rowNum) -> new UserCredentials(rs.getInt("id"), rs.getString("username"), rs.getString("password")),
+                afterId, limit);
+    }
+}
@@ -8,6 +8,8 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Caching;
 
 import java.util.List;
 import java.util.Optional;
@@ -23,17 +25,17 @@ public class AccountOperationsControllerService {
     }
 
     @Transactional
-    @CacheEvict(value = "accounts", allEntries = true)
+    @Caching(put = @CachePut(value = "accounts", key = "#result.id"),
+            evict = @CacheEvict(value = "accountQueries", allEntries = true))
     public AccountOperationsController save(AccountOperationsController entity) {
         return repository.save(entity);
     }
 
-    @Cacheable(value = "accounts", key = "#id")
+    @Cacheable(value = "accounts", key = "#id", sync = true)
     public Optional<AccountOperationsController> findById(Long id) {
         return repository.findById(id);
     }
 
-    @Cacheable(value = "accounts")
     public Page<AccountOperationsController> findAll(Pageable pageable) {
         return repository.findAll(pageable);
     }
@@ -43,13 +45,15 @@ public class AccountOperationsControllerService {
     }
 
     @Transactional
-    @CacheEvict(value = "accounts", key = "#id")
+    @Caching(evict = {@CacheEvict(value = "accounts", key = "#id"),
+            @CacheEvict(value = "accountQueries", allEntries = true)})
     public void deleteById(Long id) {
         repository.deleteById(id);
     }
 
     @Transactional
-    @CacheEvict(value = "accounts", key = "#entity.id")
+    @Caching(put = @CachePut(value = "accounts", key = "#result.id"),
+            evict = @CacheEvict(value = "accountQueries", allEntries = true))
     public AccountOperationsController update(AccountOperationsController entity) {
         return repository.save(entity);
     }
@@ -58,7 +62,7 @@ public class AccountOperationsControllerService {
         return repository.existsById(id);
     }
 
-    @Cacheable(value = "accounts", key = "'active-count'")
+    @Cacheable(value = "accountQueries", key = "'active-count'", sync = true)
     public long countActiveAccounts() {
         return repository.countByIsActiveTrue();
     }
@@ -6,6 +6,7 @@ import com.java.coreTemplate.repository.AccountViewsRepository;
 import com.java.coreTemplate.model.dto.AccountViews;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import java.util.List;
@@ -21,12 +22,12 @@ public class AccountViewsService {
     }
 
     @Transactional
-    @CacheEvict(value = "accountViews", allEntries = true)
+    @CachePut(value = "accountViews", key = "#result.id")
     public AccountViews save(AccountViews entity) {
         return repository.save(entity);
     }
 
-    @Cacheable(value = "accountViews", key = "#id")
+    @Cacheable(value = "accountViews", key = "#id", sync = true)
     public Optional<AccountViews> findById(Long id) {
         return repository.findById(id);
     }
@@ -50,7 +51,7 @@ public class AccountViewsService {
     }
 
     @Transactional
-    @CacheEvict(value = "accountViews", key = "#id")
+    @CachePut(value = "accountViews", key = "#id")
     public AccountViews updateAccountViews(Long id, AccountViews updatedViews) {
         return repository.findById(id)
                 .map(existing -> {
@@ -0,0 +1,431 @@
+package com.java.coreTemplate.service;
+
+import com.java.coreTemplate.model.dto.AccrualJob;
+import com.java.coreTemplate.model.dto.LedgerEntry;
+import com.java.coreTemplate.model.dto.Money;
+import com.java.coreTemplate.repository.AccrualRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Nightly interest and fee accrual over every account, as one job per
+ * business date.
+ *
+ * <p>A job splits the accounts into id ranges of about equal size. A
+ * fork-join pool works through them, so workers that finish early steal the
+ * ranges left over. Each range is read by keyset in chunks; per chunk, one
+ * transaction appends the accrual entries to the ledger and moves the
+ * range's checkpoint past the chunk, so a crashed run resumes after the
+ * last chunk that committed and never accrues an account twice. Positive
+ * balances are credited interest, negative ones charged overdraft interest
+ * as a fee, on the ledger balance at the end of the business date, so a job
+ * resumed later accrues the same amounts. A date is only accrued once every
+ * posting of it has committed.
+ *
+ * <p>New jobs are only started for dates from the last completed one on,
+ * and at most backfill-days back. A chunk that fails is retried a few times
+ * before its job fails. The node running a job refreshes its heartbeat; any
+ * node resumes a job of the backfill window whose heartbeat has gone stale,
+ * one that failed stale-after ago, and one paused by a shutdown right away.
+ * Accrual entries are not counted towards the ledger's snapshot interval:
+ * one entry a day per account is left to the reads to catch up on.
+ */
+@Service
+public class AccrualService {
+    private static final Logger log = LoggerFactory.getLogger(AccrualService.class);
+
+    private final AccrualRepository repository;
+    private final LedgerService ledger;
+    private final TransactionTemplate transactionTemplate;
+    private final BigDecimal interestRate;
+    private final BigDecimal overdraftRate;
+    private final BigDecimal dayCount;
+    private final int parallelism;
+    private final int ranges;
+    private final int chunkSize;
+    private final Duration heartbeatInterval;
+    private final Duration staleAfter;
+    private final int backfillDays;
+    private final int chunkRetries;
+    private final Duration retryBackoff;
+    private final ExecutorService coordinator;
+    private final AtomicBoolean running = new AtomicBoolean();
+    // Set on shutdown: the workers stop after their current chunk
+    private final AtomicBoolean stopping = new AtomicBoolean();
+    private final Counter accrued;
+    private final Counter posted;
+    private final Counter retried;
+    private final Timer chunkTimer;
+
+    public AccrualService(AccrualRepository repository,
+                          LedgerService ledger,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${accruals.interest-rate:0.01}") BigDecimal interestRate,
+                          @Value("${accruals.overdraft-rate:0.18}") BigDecimal overdraftRate,
+                          @Value("${accruals.day-count:365}") int dayCount,
+                          @Value("${accruals.parallelism:8}") int parallelism,
+                          @Value("${accruals.ranges:64}") int ranges,
+                          @Value("${accruals.chunk-size:1000}") int chunkSize,
+                          @Value("${accruals.heartbeat-interval:10s}") Duration heartbeatInterval,
+                          @Value("${accruals.stale-after:2m}") Duration staleAfter,
+                          @Value("${accruals.backfill-days:7}") int backfillDays,
+                          @Value("${accruals.chunk-retries:3}") int chunkRetries,
+                          @Value("${accruals.retry-backoff:1s}") Duration retryBackoff,
+                          MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.ledger = ledger;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Appends ledger entries, so bound like any posting
+        this.transactionTemplate.setTimeout((int) Math.max(1, ledger.maxPostingTime().toSeconds()));
+        this.interestRate = interestRate;
+        this.overdraftRate = overdraftRate;
+        this.dayCount = BigDecimal.valueOf(dayCount);
+        this.parallelism = parallelism;
+        this.ranges = ranges;
+        this.chunkSize = chunkSize;
+        this.heartbeatInterval = heartbeatInterval;
+        this.staleAfter = staleAfter;
+        this.backfillDays = backfillDays;
+        this.chunkRetries = chunkRetries;
+        this.retryBackoff = retryBackoff;
+        this.coordinator = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "accrual-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.accrued = Counter.builder("accruals.accounts").register(meterRegistry);
+        this.posted = Counter.builder("accruals.entries").register(meterRegistry);
+        this.retried = Counter.builder("accruals.chunk.retries").register(meterRegistry);
+        this.chunkTimer = Timer.builder("accruals.chunk.duration").register(meterRegistry);
+        Gauge.builder("accruals.running", running, r -> r.get() ? 1 : 0).register(meterRegistry);
+    }
+
+    /**
+     * Starts or resumes the job of the date in the background and returns
+     * its progress so far. A completed job is returned as it is. A job that
+     * exists can always be resumed; a new one only for a date within the
+     * backfill window and not before the last completed date.
+     *
+     * @throws IllegalArgumentException if the date has not ended and settled
+     *                                  yet, or no new job may be started
+     *                                  for it
+     * @throws IllegalStateException    if this node is already running a
+     *                                  job, or another node is running
+     *                                  this one
+     */
+    public AccrualJob start(LocalDate businessDate) {
+        if (LocalDateTime.now().isBefore(endOf(businessDate).plus(ledger.maxPostingTime()))) {
+            throw new IllegalArgumentException("The business date has not ended yet");
+        }
+        Optional<AccrualRepository.Job> existing = repository.findByDate(businessDate);
+        if (existing.isPresent() && "COMPLETED".equals(existing.get().status())) {
+            return progress(existing.get());
+        }
+        if (existing.isEmpty()) {
+            if (businessDate.isBefore(LocalDate.now().minusDays(backfillDays))) {
+                throw new IllegalArgumentException("Dates more than " + backfillDays + " days back are not accrued");
+            }
+            Optional<LocalDate> lastCompleted = repository.findLastCompletedDate();
+            if (lastCompleted.isPresent() && businessDate.isBefore(lastCompleted.get())) {
+                throw new IllegalArgumentException("Accruals have completed up to " + lastCompleted.get());
+            }
+        }
+        if (stopping.get()) {
+            throw new IllegalStateException("Shutting down");
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("An accrual job is already running on this node");
+        }
+        try {
+            String runToken = UUID.randomUUID().toString();
+            long jobId = existing.isPresent() ? claim(existing.get().id(), runToken) : createOrClaim(businessDate, runToken);
+            coordinator.execute(() -> run(jobId, runToken));
+            return job(jobId).orElseThrow();
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+    }
+
+    public Optional<AccrualJob> job(long jobId) {
+        return repository.find(jobId).map(this::progress);
+    }
+
+    public Optional<AccrualJob> jobOf(LocalDate businessDate) {
+        return repository.findByDate(businessDate).map(this::progress);
+    }
+
+    @Scheduled(cron = "${accruals.cron:0 30 0 * * *}")
+    public void nightly() {
+        startQuietly(LocalDate.now().minusDays(1));
+    }
+
+    // Picks up failed jobs and those of crashed or stopped nodes, and on startup the one this node was running
+    @Scheduled(fixedDelayString = "${accruals.watchdog-interval:60000}")
+    public void resumeStale() {
+        for (LocalDate businessDate : repository.findResumable(LocalDate.now().minusDays(backfillDays),
+                LocalDateTime.now().minus(staleAfter))) {
+            if (running.get()) {
+                return;
+            }
+            startQuietly(businessDate);
+        }
+    }
+
+    private void startQuietly(LocalDate businessDate) {
+        try {
+            AccrualJob job = start(businessDate);
+            log.info("Accrual job {} for {} is {}", job.id(), businessDate, job.status());
+        } catch (IllegalStateException e) {
+            log.debug("Accrual job for {} not started: {}", businessDate, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            log.warn("Accrual job for {} not started: {}", businessDate, e.getMessage());
+        }
+    }
+
+    private long createOrClaim(LocalDate businessDate, String runToken) {
+        try {
+            return transactionTemplate.execute(status ->
+                    repository.create(businessDate, runToken, ranges, LocalDateTime.now()));
+        } catch (DuplicateKeyException e) {
+            // Another node created it meanwhile
+            AccrualRepository.Job job = repository.findByDate(businessDate).orElseThrow(() -> e);
+            return claim(job.id(), runToken);
+        }
+    }
+
+    private long claim(long jobId, String runToken) {
+        LocalDateTime now = LocalDateTime.now();
+        if (!Boolean.TRUE.equals(transactionTemplate.execute(status ->
+                repository.claim(jobId, runToken, now, now.minus(staleAfter))))) {
+            throw new IllegalStateException("Accrual job " + jobId + " is running or completed");
+        }
+        return jobId;
+    }
+
+    private void run(long jobId, String runToken) {
+        long start = System.nanoTime();
+        AtomicInteger threadCount = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("accrual-worker-" + threadCount.incrementAndGet());
+            return thread;
+        }, null, false);
+        AtomicBoolean lost = new AtomicBoolean();
+        try {
+            LocalDate businessDate = repository.find(jobId).orElseThrow().businessDate();
+            List<AccrualRepository.Range> open = repository.findOpenRanges(jobId);
+            ForkJoinTask<Void> task = pool.submit(new RangesTask(jobId, businessDate, open, lost));
+            while (true) {
+                try {
+                    task.get(heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    if (!lost.get() && !Boolean.TRUE.equals(transactionTemplate.execute(status ->
+                            repository.heartbeat(jobId, runToken, LocalDateTime.now())))) {
+                        log.warn("Accrual job {} was taken over by another node; stopping", jobId);
+                        lost.set(true);
+                    }
+                }
+            }
+            if (stopping.get()) {
+                finish(jobId, runToken, "PAUSED", null, null);
+                log.info("Accrual job {} paused after {} ms", jobId, (System.nanoTime() - start) / 1_000_000);
+            } else if (!lost.get()) {
+                finish(jobId, runToken, "COMPLETED", LocalDateTime.now(), null);
+                log.info("Accrual job {} for {} completed its {} open ranges in {} ms", jobId, businessDate, open.size(),
+                        (System.nanoTime() - start) / 1_000_000);
+            }
+        } catch (ExecutionException e) {
+            log.warn("Accrual job {} failed", jobId, e.getCause());
+            finish(jobId, runToken, "FAILED", null, String.valueOf(e.getCause()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(jobId, runToken, "PAUSED", null, null);
+        } catch (RuntimeException e) {
+            log.warn("Accrual job {} failed", jobId, e);
+            finish(jobId, runToken, "FAILED", null, String.valueOf(e));
+        } finally {
+            pool.shutdownNow();
+            running.set(false);
+        }
+    }
+
+    private void finish(long jobId, String runToken, String status, LocalDateTime finishedAt, String error) {
+        transactionTemplate.executeWithoutResult(transaction ->
+                repository.finish(jobId, runToken, status, LocalDateTime.now(), finishedAt, error));
+    }
+
+    /**
+     * Halves its ranges until one is left, and accrues that one. Ranges are
+     * many more than workers, so idle workers steal from the busy ones.
+     */
+    private final class RangesTask extends RecursiveAction {
+        private final long jobId;
+        private final LocalDate businessDate;
+        private final List<AccrualRepository.Range> ranges;
+        private final AtomicBoolean lost;
+
+        private RangesTask(long jobId, LocalDate businessDate, List<AccrualRepository.Range> ranges,
+                           AtomicBoolean lost) {
+            this.jobId = jobId;
+            this.businessDate = businessDate;
+            this.ranges = ranges;
+            this.lost = lost;
+        }
+
+        @Override
+        protected void compute() {
+            if (ranges.size() > 1) {
+                int half = ranges.size() / 2;
+                invokeAll(new RangesTask(jobId, businessDate, ranges.subList(0, half), lost),
+                        new RangesTask(jobId, businessDate, ranges.subList(half, ranges.size()), lost));
+            } else if (ranges.size() == 1) {
+                accrueRange(jobId, businessDate, ranges.get(0), lost);
+            }
+        }
+    }
+
+    private void accrueRange(long jobId, LocalDate businessDate, AccrualRepository.Range range, AtomicBoolean lost) {
+        long lastId = range.lastId();
+        while (lastId < range.toId() && !stopping.get() && !lost.get()) {
+            long from = lastId;
+            long start = System.nanoTime();
+            lastId = accrueChunkWithRetries(jobId, businessDate, range, from, lost);
+            chunkTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Transient failures, such as a deadlock or a timed out transaction, get chunk-retries more attempts
+    private long accrueChunkWithRetries(long jobId, LocalDate businessDate, AccrualRepository.Range range, long from,
+                                        AtomicBoolean lost) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> accrueChunk(jobId, businessDate, range, from));
+            } catch (RuntimeException e) {
+                if (attempt >= chunkRetries || stopping.get() || lost.get()) {
+                    throw e;
+                }
+                log.warn("Accruing range {} of job {} after {} failed; retrying", range.rangeNo(), jobId, from, e);
+                retried.increment();
+                try {
+                    Thread.sleep(retryBackoff.multipliedBy(1L << attempt).toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Returns the new checkpoint of the range
+    private long accrueChunk(long jobId, LocalDate businessDate, AccrualRepository.Range range, long from) {
+        List<AccrualRepository.Account> accounts = repository.findAccounts(from, range.toId(), chunkSize);
+        long to = accounts.size() < chunkSize ? range.toId() : accounts.get(accounts.size() - 1).id();
+        // First, so a second run on the same range waits here and then carries on after its chunk instead
+        if (!repository.checkpoint(jobId, range.rangeNo(), from, to, accounts.size(),
+                to == range.toId() ? LocalDateTime.now() : null)) {
+            return repository.findCheckpoint(jobId, range.rangeNo());
+        }
+        List<String> active = new ArrayList<>(accounts.size());
+        for (AccrualRepository.Account account : accounts) {
+            if (account.active()) {
+                active.add(account.accountNumber());
+            }
+        }
+        Map<String, Long> balances = ledger.balancesAt(active, endOf(businessDate));
+        List<LedgerEntry> entries = new ArrayList<>(active.size());
+        for (AccrualRepository.Account account : accounts) {
+            Long balance = balances.get(account.accountNumber());
+            long amount = balance != null && account.active() ? accrual(balance) : 0;
+            if (amount > 0) {
+                entries.add(new LedgerEntry(null, account.accountNumber(), Money.ofMinor(amount, account.currencyCode()),
+                        "accrual:" + businessDate + ":interest", null));
+            } else if (amount < 0) {
+                entries.add(new LedgerEntry(null, account.accountNumber(), Money.ofMinor(amount, account.currencyCode()),
+                        "accrual:" + businessDate + ":overdraft-fee", null));
+            }
+        }
+        if (!entries.isEmpty()) {
+            ledger.append(entries);
+        }
+        accrued.increment(accounts.size());
+        posted.increment(entries.size());
+        return to;
+    }
+
+    // The last instant of the date that the database timestamps can hold
+    private static LocalDateTime endOf(LocalDate businessDate) {
+        return businessDate.atTime(LocalTime.MAX).truncatedTo(ChronoUnit.MICROS);
+    }
+
+    // One day of interest on a balance in minor units: credited when positive, charged when negative
+    private long accrual(long balance) {
+        if (balance > 0) {
+            return daily(balance, interestRate);
+        }
+        return balance < 0 ? -daily(-balance, overdraftRate) : 0;
+    }
+
+    private long daily(long minorUnits, BigDecimal annualRate) {
+        return BigDecimal.valueOf(minorUnits).multiply(annualRate)
+                .divide(dayCount, 0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    private AccrualJob progress(AccrualRepository.Job job) {
+        LocalDateTime end = job.finishedAt() != null ? job.finishedAt() : LocalDateTime.now();
+        double seconds = Duration.between(job.resumedAt(), end).toMillis() / 1000.0;
+        double perSecond = seconds > 0 ? (job.accountsDone() - job.resumedDone()) / seconds : 0;
+        Long remaining = "RUNNING".equals(job.status()) && perSecond > 0
+                ? (long) Math.ceil(Math.max(0, job.accountsTotal() - job.accountsDone()) / perSecond) : null;
+        return new AccrualJob(job.id(), job.businessDate(), job.status(), job.accountsTotal(), job.accountsDone(),
+                job.rangesTotal(), job.rangesDone(), job.startedAt(), job.finishedAt(), perSecond, remaining,
+                job.error());
+    }
+
+    /**
+     * Lets the workers finish their current chunk and pauses the job, so
+     * that the next node to check resumes it at once.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stopping.set(true);
+        coordinator.shutdown();
+        coordinator.awaitTermination(30, TimeUnit.SECONDS);
+    }
+}
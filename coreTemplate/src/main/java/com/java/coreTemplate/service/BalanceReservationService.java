@@ -0,0 +1,701 @@
+package com.java.coreTemplate.service;
+
+import com.java.coreTemplate.model.dto.AvailableBalance;
+import com.java.coreTemplate.model.dto.BalanceHold;
+import com.java.coreTemplate.model.dto.HoldRequest;
+import com.java.coreTemplate.model.dto.HoldResult;
+import com.java.coreTemplate.model.dto.LedgerEntry;
+import com.java.coreTemplate.model.dto.Money;
+import com.java.coreTemplate.repository.BalanceHoldRepository;
+import com.java.coreTemplate.repository.BalanceHoldRepository.Allowance;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sets an amount aside on an account as a hold, for card authorisations, if
+ * the account can cover it, its floor included; later the hold is confirmed
+ * into a debit or released. Holds are answered from memory.
+ *
+ * <p>Each node grants holds out of allowances: funds it has set aside on an
+ * account in balance_allowance, which every node counts against the balance
+ * just like holds. What is left of an allowance is an AtomicLong, and a hold
+ * is a compare-and-set on it that only succeeds while enough is left, so it
+ * neither locks nor waits on the database. When it falls short the node
+ * grows the allowance under the account row lock, by at least the shortfall
+ * and by at most what the ledger balance less the floor and everything set
+ * aside leaves, and tries again; a hold is only declined once that check
+ * fails. Growing is serialised per account on lock stripes. Transfers posted
+ * through the node take back what is left before they decline a debit, see
+ * {@link #posting()}.
+ *
+ * <p>A reconciler thread writes holds and releases behind to balance_hold in
+ * batches, and takes the holds it writes off their allowance in the same
+ * transaction, so every hold counts exactly once. A crash loses at most the
+ * last reconcile-interval of holds: their funds stay set aside until the
+ * allowance expires, so they are never granted twice, but they can no longer
+ * be confirmed. A confirmation is written, with its debit, before it is
+ * acknowledged.
+ *
+ * <p>The reconciler renews the node's allowances every third of
+ * allowance-ttl and gives back what went unused for allowance-idle. If they
+ * were not renewed for half their ttl they may have lapsed on the other
+ * nodes, so the node gives them up and grants from a new generation. On
+ * startup the node takes over the allowances left behind under its
+ * reservations.node-id, and so rebuilds what it can grant from memory.
+ */
+@Service
+public class BalanceReservationService {
+    private static final Logger log = LoggerFactory.getLogger(BalanceReservationService.class);
+
+    private final BalanceHoldRepository repository;
+    private final LedgerService ledger;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate postingTemplate;
+    private final String nodeId;
+    private final Duration holdTtl;
+    private final double allowanceShare;
+    private final Duration allowanceTtl;
+    private final Duration allowanceIdle;
+    private final Duration refreshInterval;
+    private final Duration reconcileInterval;
+    private final Duration expiryInterval;
+    private final int batchSize;
+    private final ReentrantLock[] stripes;
+    private final Map<String, LocalHold> holds = new ConcurrentHashMap<>();
+    // Holds and releases not yet written to balance_hold, oldest first
+    private final BlockingQueue<Event> journal;
+    // Taken off the journal but not written yet; guarded by itself, like every write of the journal
+    private final List<Event> backlog = new ArrayList<>();
+    private final ScheduledExecutorService reconciler;
+    private final Counter held;
+    private final Counter declined;
+    private final Counter expired;
+    private final Counter reconciled;
+    private final Timer holdTimer;
+    private volatile Generation current;
+    // Reconciler thread only
+    private long lastRenewal = System.nanoTime();
+    private long lastExpiry = System.nanoTime();
+
+    public BalanceReservationService(BalanceHoldRepository repository,
+                                     LedgerService ledger,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${reservations.node-id:}") String nodeId,
+                                     @Value("${reservations.stripes:256}") int stripeCount,
+                                     @Value("${reservations.hold-ttl:7d}") Duration holdTtl,
+                                     @Value("${reservations.allowance-share:0.25}") double allowanceShare,
+                                     @Value("${reservations.allowance-ttl:30s}") Duration allowanceTtl,
+                                     @Value("${reservations.allowance-idle:60s}") Duration allowanceIdle,
+                                     @Value("${reservations.refresh-interval:5m}") Duration refreshInterval,
+                                     @Value("${reservations.reconcile-interval:100ms}") Duration reconcileInterval,
+                                     @Value("${reservations.expiry-interval:60s}") Duration expiryInterval,
+                                     @Value("${reservations.batch-size:1000}") int batchSize,
+                                     @Value("${reservations.journal-capacity:100000}") int journalCapacity,
+                                     MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.ledger = ledger;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Confirmations append ledger entries, so they are bound like any posting
+        this.postingTemplate = new TransactionTemplate(transactionManager);
+        this.postingTemplate.setTimeout((int) Math.max(1, ledger.maxPostingTime().toSeconds()));
+        this.nodeId = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        this.holdTtl = holdTtl;
+        this.allowanceShare = allowanceShare;
+        this.allowanceTtl = allowanceTtl;
+        this.allowanceIdle = allowanceIdle;
+        this.refreshInterval = refreshInterval;
+        this.reconcileInterval = reconcileInterval;
+        this.expiryInterval = expiryInterval;
+        this.batchSize = batchSize;
+        this.journal = new ArrayBlockingQueue<>(journalCapacity);
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "balance-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.held = Counter.builder("reservations.held").register(meterRegistry);
+        this.declined = Counter.builder("reservations.declined").register(meterRegistry);
+        this.expired = Counter.builder("reservations.expired").register(meterRegistry);
+        this.reconciled = Counter.builder("reservations.reconciled").register(meterRegistry);
+        this.holdTimer = Timer.builder("reservations.hold.duration").register(meterRegistry);
+        Gauge.builder("reservations.open", holds, Map::size).register(meterRegistry);
+        Gauge.builder("reservations.journal.depth", journal, BlockingQueue::size).register(meterRegistry);
+    }
+
+    /**
+     * Takes over the allowances an earlier node with the same id left behind,
+     * before the first hold. Holds it had not written yet are lost, but what
+     * they set aside is granted again.
+     */
+    @PostConstruct
+    public void start() {
+        long started = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        Generation generation = transactionTemplate.execute(status -> {
+            Generation adopted = new Generation(new Allowance(nodeId, repository.nextGeneration(nodeId)), started);
+            repository.adopt(adopted.allowance, now, now.plus(allowanceTtl)).forEach((accountNumber, amount) ->
+                    adopted.accounts.put(accountNumber, new AccountState(amount, started)));
+            return adopted;
+        });
+        if (!generation.accounts.isEmpty()) {
+            log.info("Took over the allowances of node {} on {} accounts", nodeId, generation.accounts.size());
+        }
+        current = generation;
+        reconciler.scheduleWithFixedDelay(this::reconcile, reconcileInterval.toMillis(), reconcileInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Holds the amount if the account can cover it. A hold is written to
+     * balance_hold within reconcile-interval of being returned as held.
+     *
+     * @throws RejectedExecutionException if the journal is full
+     */
+    public HoldResult hold(HoldRequest request) {
+        if (request.accountNumber() == null || request.amount() == null) {
+            throw new IllegalArgumentException("accountNumber and amount are required");
+        }
+        if (request.amount().minorUnits() <= 0) {
+            throw new IllegalArgumentException("Hold amount must be positive");
+        }
+        long start = System.nanoTime();
+        HoldResult result = grant(generation(), request, start);
+        if (result == null) {
+            result = growAndGrant(request);
+        }
+        holdTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        (result.status() == HoldResult.Status.HELD ? held : declined).increment();
+        return result;
+    }
+
+    // Out of what is left of the allowance; null if that falls short or the limits are not fresh
+    private HoldResult grant(Generation generation, HoldRequest request, long now) {
+        AccountState state = generation.accounts.get(request.accountNumber());
+        if (state == null || state.limits == null || now - state.loadedAt > refreshInterval.toNanos()) {
+            return null;
+        }
+        HoldResult refused = refusal(state.limits, request.amount());
+        if (refused != null) {
+            return refused;
+        }
+        if (!state.take(request.amount().minorUnits())) {
+            return null;
+        }
+        state.usedAt = now;
+        LocalDateTime createdAt = LocalDateTime.now();
+        BalanceHold hold = new BalanceHold(UUID.randomUUID().toString(), request.accountNumber(), request.amount(),
+                createdAt, createdAt.plus(holdTtl));
+        LocalHold local = new LocalHold(hold, generation.allowance);
+        holds.put(hold.id(), local);
+        if (!journal.offer(new Event(local, null))) {
+            holds.remove(hold.id());
+            state.left.addAndGet(request.amount().minorUnits());
+            throw new RejectedExecutionException("Hold journal is full");
+        }
+        return HoldResult.held(hold.id());
+    }
+
+    private HoldResult growAndGrant(HoldRequest request) {
+        String accountNumber = request.accountNumber();
+        ReentrantLock stripe = stripes[Math.floorMod(accountNumber.hashCode(), stripes.length)];
+        stripe.lock();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                Generation generation = generation();
+                // Grown meanwhile by another hold of the account
+                HoldResult result = grant(generation, request, now);
+                if (result != null) {
+                    return result;
+                }
+                AccountState state = generation.accounts.computeIfAbsent(accountNumber, a -> new AccountState(0, now));
+                long granted = transactionTemplate.execute(status ->
+                        grow(generation.allowance, accountNumber, state, request.amount().minorUnits()));
+                if (state.limits == null) {
+                    generation.accounts.remove(accountNumber, state);
+                    return HoldResult.declined("Unknown account");
+                }
+                HoldResult refused = refusal(state.limits, request.amount());
+                if (refused != null) {
+                    return refused;
+                }
+                if (granted < 0) {
+                    return HoldResult.declined("Insufficient funds");
+                }
+                state.left.addAndGet(granted);
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Reloads the limits and grows the allowance by what the amount falls
+     * short of, or more, up to the given share of what is not set aside yet.
+     * Returns the minor units granted, or -1 if the account cannot cover the
+     * shortfall.
+     */
+    private long grow(Allowance allowance, String accountNumber, AccountState state, long amount) {
+        // Locks the row: growing, confirmations and transfer debits of the account queue here
+        BalanceHoldRepository.Limits limits = repository.findLimits(List.of(accountNumber), true).get(accountNumber);
+        state.limits = limits;
+        state.loadedAt = System.nanoTime();
+        long shortfall = amount - state.left.get();
+        if (limits == null || !limits.active() || shortfall <= 0) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        long balance = ledger.balances(List.of(accountNumber)).get(accountNumber);
+        // Every node's allowance counts here, this one's included
+        long reserved = repository.reservedTotals(List.of(accountNumber), now).getOrDefault(accountNumber, 0L);
+        long unreserved = balance - limits.floor() - reserved;
+        if (unreserved < shortfall) {
+            return -1;
+        }
+        long granted = Math.min(unreserved, Math.max(shortfall, (long) (unreserved * allowanceShare)));
+        repository.grow(allowance, accountNumber, granted, now.plus(allowanceTtl));
+        return granted;
+    }
+
+    private static HoldResult refusal(BalanceHoldRepository.Limits limits, Money amount) {
+        if (!limits.active()) {
+            return HoldResult.declined("Account is not active");
+        }
+        if (!limits.currencyCode().equals(amount.currencyCode())) {
+            return HoldResult.declined("Currency does not match the account");
+        }
+        return null;
+    }
+
+    // The generation to grant from; a new one if the current may have lapsed on other nodes
+    private Generation generation() {
+        Generation generation = current;
+        long now = System.nanoTime();
+        if (now - generation.renewedAt < allowanceTtl.toNanos() / 2) {
+            return generation;
+        }
+        synchronized (this) {
+            if (current == generation) {
+                log.warn("Allowances of node {} were not renewed in time; giving them up", nodeId);
+                current = new Generation(new Allowance(nodeId, generation.allowance.generation() + 1), now);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Gives the held amount back. Returns false if the hold is unknown,
+     * already closed or expired. A hold placed through this node is released
+     * in memory and written behind; this node does not learn of another one
+     * confirming it.
+     *
+     * @throws RejectedExecutionException if the journal is full
+     */
+    public boolean release(String holdId) {
+        LocalHold local = holds.remove(holdId);
+        LocalDateTime now = LocalDateTime.now();
+        if (local == null) {
+            // Placed through another node or before a restart; only frees funds, so the row need not be locked
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> repository.close(
+                    new BalanceHoldRepository.Closing(holdId, "RELEASED", null, now))));
+        }
+        if (!local.hold.expiresAt().isAfter(now)) {
+            return false;
+        }
+        if (!journal.offer(new Event(local, new BalanceHoldRepository.Closing(holdId, "RELEASED", null, now)))) {
+            holds.putIfAbsent(holdId, local);
+            throw new RejectedExecutionException("Hold journal is full");
+        }
+        return true;
+    }
+
+    /**
+     * Turns the hold into a debit of the account, of the whole held amount
+     * or, if given, part of it; the rest is given back. The debit is in the
+     * ledger once this returns true. Returns false if the hold is unknown,
+     * already closed or expired. A hold placed through another node is known
+     * here once that node has written it.
+     *
+     * @throws IllegalArgumentException if the amount exceeds the hold or is
+     *         in another currency
+     */
+    public boolean confirm(String holdId, Money amount) {
+        LocalHold local = holds.get(holdId);
+        BalanceHold hold;
+        if (local != null) {
+            hold = local.hold;
+        } else {
+            Optional<BalanceHold> open = repository.findOpen(holdId, LocalDateTime.now());
+            if (open.isEmpty()) {
+                return false;
+            }
+            hold = open.get();
+        }
+        Money captured = amount != null ? amount : hold.amount();
+        if (!captured.currencyCode().equals(hold.amount().currencyCode())) {
+            throw new IllegalArgumentException("Currency does not match the hold");
+        }
+        if (captured.minorUnits() <= 0 || captured.isGreaterThan(hold.amount())) {
+            throw new IllegalArgumentException("Confirmed amount must be positive and at most the held amount");
+        }
+        if (local == null) {
+            return post(hold, captured);
+        }
+        if (!holds.remove(holdId, local)) {
+            // Released or confirmed meanwhile
+            return false;
+        }
+        try {
+            if (!local.written) {
+                // Closed below, so it must be in balance_hold first
+                flush();
+            }
+            return post(hold, captured);
+        } catch (RuntimeException e) {
+            holds.putIfAbsent(holdId, local);
+            throw e;
+        }
+    }
+
+    private boolean post(BalanceHold hold, Money captured) {
+        boolean confirmed = Boolean.TRUE.equals(postingTemplate.execute(status -> {
+            // A check under the row lock then reads either the open hold or its debit
+            repository.findLimits(List.of(hold.accountNumber()), true);
+            if (!repository.close(new BalanceHoldRepository.Closing(hold.id(), "CONFIRMED", captured,
+                    LocalDateTime.now()))) {
+                return false;
+            }
+            ledger.append(List.of(new LedgerEntry(null, hold.accountNumber(), captured.negate(), hold.id(), null)));
+            return true;
+        }));
+        if (confirmed) {
+            ledger.posted(Map.of(hold.accountNumber(), 1));
+        }
+        return confirmed;
+    }
+
+    /**
+     * What this node can still hold on the account, and what is held on it.
+     * Writes the journal first, so the holds of this node are all counted.
+     */
+    public Optional<AvailableBalance> available(String accountNumber) {
+        flush();
+        BalanceHoldRepository.Limits limits = repository.findLimits(List.of(accountNumber), false).get(accountNumber);
+        if (limits == null) {
+            return Optional.empty();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        long balance = ledger.balances(List.of(accountNumber)).get(accountNumber);
+        long heldTotal = repository.heldTotals(List.of(accountNumber), now).getOrDefault(accountNumber, 0L);
+        long reserved = reservedTotals(List.of(accountNumber)).getOrDefault(accountNumber, 0L);
+        // What is left of this node's allowance counts in reserved, but is still its to grant
+        AccountState state = current.accounts.get(accountNumber);
+        long left = state != null ? state.left.get() : 0;
+        String currencyCode = limits.currencyCode();
+        return Optional.of(new AvailableBalance(accountNumber,
+                Money.ofMinor(balance - limits.floor() - reserved + left, currencyCode),
+                Money.ofMinor(heldTotal, currencyCode)));
+    }
+
+    /**
+     * Minor units set aside per account, by written holds and by the
+     * allowances of every node; accounts without any are left out. With the
+     * account rows locked the totals hold until the caller's transaction
+     * ends, as no allowance can grow meanwhile.
+     */
+    public Map<String, Long> reservedTotals(Collection<String> accountNumbers) {
+        return repository.reservedTotals(accountNumbers, LocalDateTime.now());
+    }
+
+    /**
+     * Starts tracking what a posting transaction takes back from this node's
+     * allowances. Call inside the transaction.
+     */
+    public Posting posting() {
+        Posting posting = new Posting(current);
+        TransactionSynchronizationManager.registerSynchronization(posting);
+        return posting;
+    }
+
+    /**
+     * Writes the holds and releases journalled so far to balance_hold, in
+     * batches of batch-size, and returns once they are committed. A batch
+     * that fails is kept and written first next time.
+     */
+    public void flush() {
+        synchronized (backlog) {
+            int left = backlog.size() + journal.size();
+            while (left > 0) {
+                if (backlog.isEmpty() && journal.drainTo(backlog, Math.min(batchSize, left)) == 0) {
+                    return;
+                }
+                transactionTemplate.executeWithoutResult(status -> write(backlog));
+                for (Event event : backlog) {
+                    if (event.closing() == null) {
+                        event.hold().written = true;
+                    }
+                }
+                reconciled.increment(backlog.size());
+                left -= backlog.size();
+                backlog.clear();
+            }
+        }
+    }
+
+    private void write(List<Event> batch) {
+        List<BalanceHold> written = new ArrayList<>();
+        List<BalanceHoldRepository.Closing> closings = new ArrayList<>();
+        // In account-number order, as postings give allowances back, so the two never deadlock
+        Map<Allowance, Map<String, Long>> granted = new HashMap<>();
+        for (Event event : batch) {
+            if (event.closing() != null) {
+                closings.add(event.closing());
+                continue;
+            }
+            BalanceHold hold = event.hold().hold;
+            written.add(hold);
+            granted.computeIfAbsent(event.hold().allowance, a -> new TreeMap<>())
+                    .merge(hold.accountNumber(), hold.amount().minorUnits(), Long::sum);
+        }
+        if (!written.isEmpty()) {
+            // Counted from here on as a hold instead of as part of the allowance it came out of
+            repository.insertAll(written);
+            granted.forEach(repository::shrink);
+        }
+        if (!closings.isEmpty()) {
+            repository.closeAll(closings);
+        }
+    }
+
+    private void reconcile() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Writing balance holds failed; retrying", e);
+        }
+        long now = System.nanoTime();
+        if (now - lastRenewal >= allowanceTtl.toNanos() / 3) {
+            lastRenewal = now;
+            renew();
+        }
+        if (now - lastExpiry >= expiryInterval.toNanos()) {
+            lastExpiry = now;
+            expireQuietly();
+        }
+    }
+
+    // Gives back what went unused for allowance-idle and renews the rest
+    private void renew() {
+        Generation generation = current;
+        long started = System.nanoTime();
+        Map<String, Long> idle = new TreeMap<>();
+        generation.accounts.forEach((accountNumber, state) -> {
+            if (started - state.usedAt >= allowanceIdle.toNanos()) {
+                long left = state.left.getAndSet(0);
+                if (left > 0) {
+                    idle.put(accountNumber, left);
+                }
+            }
+        });
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            synchronized (backlog) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    repository.shrink(generation.allowance, idle);
+                    repository.renew(generation.allowance, now, now.plus(allowanceTtl));
+                });
+            }
+        } catch (RuntimeException e) {
+            idle.forEach((accountNumber, left) -> generation.accounts.get(accountNumber).left.addAndGet(left));
+            log.warn("Renewing the allowances of node {} failed", nodeId, e);
+            return;
+        }
+        generation.renewedAt = started;
+        // Nothing is left of these; their limits are read again on their next hold
+        generation.accounts.forEach((accountNumber, state) -> {
+            if (started - state.usedAt >= allowanceIdle.toNanos() && state.left.get() == 0) {
+                ReentrantLock stripe = stripes[Math.floorMod(accountNumber.hashCode(), stripes.length)];
+                stripe.lock();
+                try {
+                    if (state.left.get() == 0) {
+                        generation.accounts.remove(accountNumber, state);
+                    }
+                } finally {
+                    stripe.unlock();
+                }
+            }
+        });
+    }
+
+    // Marks the expired holds of every node and drops the allowances nobody renews any more
+    private void expireQuietly() {
+        LocalDateTime now = LocalDateTime.now();
+        holds.values().removeIf(local -> !local.hold.expiresAt().isAfter(now));
+        try {
+            Integer marked = transactionTemplate.execute(status -> {
+                repository.deleteExpiredAllowances(now.minus(allowanceTtl));
+                return repository.expire(now);
+            });
+            expired.increment(marked);
+        } catch (RuntimeException e) {
+            log.warn("Marking expired balance holds failed", e);
+        }
+    }
+
+    /**
+     * Writes whatever is still journalled and gives this node's allowances
+     * back before the node goes down. If the writes fail the allowances are
+     * left to expire.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        reconciler.shutdown();
+        reconciler.awaitTermination(30, TimeUnit.SECONDS);
+        try {
+            flush();
+            Generation generation = current;
+            if (generation != null) {
+                transactionTemplate.executeWithoutResult(status -> repository.delete(generation.allowance));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Writing balance holds on shutdown failed", e);
+        }
+    }
+
+    /**
+     * What one posting transaction takes back from this node's allowances.
+     * It is taken off the allowances just before the transaction commits, in
+     * account-number order, and given back to them if it rolls back.
+     */
+    public final class Posting implements TransactionSynchronization {
+        private final Generation generation;
+        private final Map<String, Long> reclaimed = new TreeMap<>();
+
+        private Posting(Generation generation) {
+            this.generation = generation;
+        }
+
+        /**
+         * Takes what is left of this node's allowance on the account back,
+         * so a debit can use it, and returns its minor units. The account row
+         * must be locked.
+         */
+        public long reclaim(String accountNumber) {
+            AccountState state = generation.accounts.get(accountNumber);
+            long left = state != null ? state.left.getAndSet(0) : 0;
+            if (left > 0) {
+                reclaimed.merge(accountNumber, left, Long::sum);
+            }
+            return left;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (!reclaimed.isEmpty()) {
+                repository.shrink(generation.allowance, reclaimed);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status != STATUS_COMMITTED) {
+                reclaimed.forEach((accountNumber, left) -> {
+                    AccountState state = generation.accounts.get(accountNumber);
+                    if (state != null) {
+                        state.left.addAndGet(left);
+                    }
+                });
+            }
+        }
+    }
+
+    // The allowances of one generation, with what is left of each by account number
+    private static final class Generation {
+        final Allowance allowance;
+        final Map<String, AccountState> accounts = new ConcurrentHashMap<>();
+        volatile long renewedAt;
+
+        Generation(Allowance allowance, long renewedAt) {
+            this.allowance = allowance;
+            this.renewedAt = renewedAt;
+        }
+    }
+
+    private static final class AccountState {
+        // Minor units of the allowance not granted yet
+        final AtomicLong left;
+        // Null until read under the row lock
+        volatile BalanceHoldRepository.Limits limits;
+        volatile long loadedAt;
+        volatile long usedAt;
+
+        AccountState(long left, long now) {
+            this.left = new AtomicLong(left);
+            this.usedAt = now;
+        }
+
+        boolean take(long amount) {
+            while (true) {
+                long current = left.get();
+                if (current < amount) {
+                    return false;
+                }
+                if (left.compareAndSet(current, current - amount)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    // A hold placed through this node, and the allowance it came out of
+    private static final class LocalHold {
+        final BalanceHold hold;
+        final Allowance allowance;
+        volatile boolean written;
+
+        LocalHold(BalanceHold hold, Allowance allowance) {
+            this.hold = hold;
+            this.allowance = allowance;
+        }
+    }
+
+    // A hold to write, or with a closing, its release
+    private record Event(LocalHold hold, BalanceHoldRepository.Closing closing) {
+    }
+}
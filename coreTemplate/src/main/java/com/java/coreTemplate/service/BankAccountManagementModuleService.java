@@ -4,50 +4,79 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import com.java.coreTemplate.repository.BankAccountManagementModuleRepository;
 import com.java.coreTemplate.model.dto.BankAccountManagementModule;
-import org.springframework.cache.annotation.Cacheable;
+import com.java.coreTemplate.model.dto.Money;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+/**
+ * Accounts as stored, with the balance replaced by the current one from the
+ * ledger. The caches hold the rows, whose balance only moves with ledger
+ * snapshots, and every read fills in the balance afresh on a copy.
+ */
 @Service
 @Transactional(readOnly = true)
 public class BankAccountManagementModuleService {
+    // Accounts whose balances are read from the ledger in one query
+    private static final int BALANCE_CHUNK = 1_000;
 
     private final BankAccountManagementModuleRepository repository;
+    private final LedgerService ledger;
+    private final Cache cachedAccounts;
+    private final Cache cachedAccountQueries;
 
-    public BankAccountManagementModuleService(BankAccountManagementModuleRepository repository) {
+    public BankAccountManagementModuleService(BankAccountManagementModuleRepository repository,
+                                              LedgerService ledger,
+                                              CacheManager cacheManager) {
         this.repository = repository;
+        this.ledger = ledger;
+        this.cachedAccounts = cacheManager.getCache("bankAccounts");
+        this.cachedAccountQueries = cacheManager.getCache("bankAccountQueries");
     }
 
     @Transactional
-    @CacheEvict(value = "bankAccounts", allEntries = true)
+    @Caching(put = @CachePut(value = "bankAccounts", key = "#result.id"),
+            evict = @CacheEvict(value = "bankAccountQueries", allEntries = true))
     public BankAccountManagementModule save(BankAccountManagementModule entity) {
+        // The balance is not updatable; keep the stored one so the cached row shows it
+        if (entity.getId() != null) {
+            repository.findById(entity.getId()).ifPresent(stored -> entity.setBalance(stored.getBalance()));
+        }
         return repository.save(entity);
     }
 
-    @Cacheable(value = "bankAccounts", key = "#id")
     public Optional<BankAccountManagementModule> findById(Long id) {
-        return repository.findById(id);
+        BankAccountManagementModule account = cachedAccounts.get(id, () -> repository.findById(id).orElse(null));
+        return Optional.ofNullable(account).map(found -> withCurrentBalances(List.of(found)).get(0));
     }
 
-    @Cacheable("bankAccounts")
     public List<BankAccountManagementModule> findAll() {
-        return repository.findAll();
+        return withCurrentBalances(repository.findAll());
     }
 
     public Page<BankAccountManagementModule> findAll(Pageable pageable) {
-        return repository.findAll(pageable);
+        Page<BankAccountManagementModule> page = repository.findAll(pageable);
+        return new PageImpl<>(withCurrentBalances(page.getContent()), page.getPageable(), page.getTotalElements());
     }
 
-    @Cacheable(value = "bankAccounts", key = "'active'")
     public List<BankAccountManagementModule> findAllActive() {
-        return repository.findByIsActiveTrue();
+        return withCurrentBalances(cachedAccountQueries.get("active", repository::findByIsActiveTrue));
     }
 
     @Transactional
-    @CacheEvict(value = "bankAccounts", key = "#id")
+    @Caching(evict = {@CacheEvict(value = "bankAccounts", key = "#id"),
+            @CacheEvict(value = "bankAccountQueries", allEntries = true)})
     public void deactivateAccount(Long id) {
         repository.findById(id).ifPresent(account -> {
             account.setActive(false);
@@ -56,23 +85,52 @@ public class BankAccountManagementModuleService {
     }
 
     @Transactional
-    @CacheEvict(value = "bankAccounts", allEntries = true)
+    @Caching(evict = {@CacheEvict(value = "bankAccounts", key = "#id"),
+            @CacheEvict(value = "bankAccountQueries", allEntries = true)})
     public void deleteById(Long id) {
         repository.deleteById(id);
     }
 
-    @Cacheable(value = "bankAccounts", key = "'type-' + #type")
     public List<BankAccountManagementModule> findByAccountType(String type) {
-        return repository.findByAccountType(type);
+        return withCurrentBalances(cachedAccountQueries.get("type-" + type, () -> repository.findByAccountType(type)));
     }
 
-    @Cacheable(value = "bankAccounts", key = "'balance-greater-' + #amount")
+    // Compares current balances, so unlike the other queries it is not cached
     public List<BankAccountManagementModule> findByBalanceGreaterThan(Double amount) {
-        return repository.findByBalanceGreaterThan(amount);
+        Map<String, Long> balances = ledger.balancesAbove(Money.toMinorUnits(BigDecimal.valueOf(amount)));
+        List<BankAccountManagementModule> accounts = new ArrayList<>(balances.size());
+        List<String> accountNumbers = new ArrayList<>(balances.keySet());
+        for (int from = 0; from < accountNumbers.size(); from += BALANCE_CHUNK) {
+            for (BankAccountManagementModule account : repository.findByAccountNumberIn(
+                    accountNumbers.subList(from, Math.min(from + BALANCE_CHUNK, accountNumbers.size())))) {
+                accounts.add(withBalance(account, balances.get(account.getAccountNumber())));
+            }
+        }
+        return accounts;
     }
 
-    @Cacheable(value = "bankAccounts", key = "'customer-' + #customerId")
     public List<BankAccountManagementModule> findByCustomerId(Long customerId) {
-        return repository.findByCustomerId(customerId);
+        return withCurrentBalances(cachedAccountQueries.get("customer-" + customerId,
+                () -> repository.findByCustomerId(customerId)));
+    }
+
+    // Copies of the accounts with their balances read from the ledger, in the same order
+    private List<BankAccountManagementModule> withCurrentBalances(List<BankAccountManagementModule> accounts) {
+        List<BankAccountManagementModule> current = new ArrayList<>(accounts.size());
+        for (int from = 0; from < accounts.size(); from += BALANCE_CHUNK) {
+            List<BankAccountManagementModule> chunk = accounts.subList(from, Math.min(from + BALANCE_CHUNK, accounts.size()));
+            Map<String, Long> balances = ledger.balances(chunk.stream().map(BankAccountManagementModule::getAccountNumber).toList());
+            for (BankAccountManagementModule account : chunk) {
+                current.add(withBalance(account, balances.get(account.getAccountNumber())));
+            }
+        }
+        return current;
+    }
+
+    // An account deleted since it was read keeps the balance of its row
+    private static BankAccountManagementModule withBalance(BankAccountManagementModule account, Long minorUnits) {
+        return minorUnits != null && account.getBalance() != null
+                ? account.withBalance(Money.ofMinor(minorUnits, account.getBalance().currencyCode()))
+                : account;
     }
-}
\ No newline at end of file
+}
@@ -4,6 +4,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import com.java.coreTemplate.repository.CoreUtilitiesRepository;
@@ -23,12 +24,12 @@ public class CoreUtilitiesService {
     }
 
     @Transactional
-    @CacheEvict(value = "coreUtilities", allEntries = true)
+    @CachePut(value = "coreUtilities", key = "#result.id")
     public CoreUtilities save(CoreUtilities entity) {
         return repository.save(entity);
     }
 
-    @Cacheable(value = "coreUtilities", key = "#id")
+    @Cacheable(value = "coreUtilities", key = "#id", sync = true)
     public Optional<CoreUtilities> findById(Long id) {
         return repository.findById(id);
     }
@@ -52,7 +53,7 @@ public class CoreUtilitiesService {
     }
 
     @Transactional
-    @CacheEvict(value = "coreUtilities", key = "#id")
+    @CachePut(value = "coreUtilities", key = "#id")
     public CoreUtilities update(Long id, CoreUtilities updatedEntity) {
         return repository.findById(id)
                 .map(existingEntity -> {
@@ -0,0 +1,74 @@
+package com.java.coreTemplate.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.java.coreTemplate.config.CacheInvalidationBus;
+import com.java.coreTemplate.model.dto.UserCredentials;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read-through cache of login credentials keyed by username. A miss reads the
+ * three needed columns with plain JDBC, so no entity is loaded or tracked.
+ * Unknown usernames are not cached, so a new user is found at once. Evictions
+ * are passed on to the other nodes by the {@link CacheInvalidationBus}.
+ */
+@Component
+public class CredentialCache {
+    private static final String SELECT_CREDENTIALS = "SELECT id, username, password FROM users WHERE username = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LoadingCache<String, UserCredentials> credentials;
+    // Evicts locally and on every other node
+    private final Cache broadcasting;
+
+    public CredentialCache(JdbcTemplate jdbcTemplate,
+                           @Value("${users.credential-cache.max-size:10000}") long maxSize,
+                           @Value("${users.credential-cache.ttl:5m}") Duration ttl,
+                           CacheInvalidationBus invalidationBus,
+                           MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.credentials = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build(this::load);
+        CaffeineCacheMetrics.monitor(meterRegistry, credentials, "userCredentials");
+        @SuppressWarnings("unchecked")
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache =
+                (com.github.benmanes.caffeine.cache.Cache<Object, Object>) (com.github.benmanes.caffeine.cache.Cache<?, ?>) credentials;
+        this.broadcasting = invalidationBus.broadcasting(new CaffeineCache("userCredentials", nativeCache, false));
+    }
+
+    public Optional<UserCredentials> get(String username) {
+        return Optional.ofNullable(credentials.get(username));
+    }
+
+    /**
+     * Must be called after any change to the user's row has committed.
+     */
+    public void invalidate(String username) {
+        broadcasting.evict(username);
+    }
+
+    public CacheStats stats() {
+        return credentials.stats();
+    }
+
+    private UserCredentials load(String username) {
+        List<UserCredentials> rows = jdbcTemplate.query(SELECT_CREDENTIALS,
+                (rs, rowNum) -> new UserCredentials(rs.getInt("id"), rs.getString("username"), rs.getString("password")),
+                username);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+}
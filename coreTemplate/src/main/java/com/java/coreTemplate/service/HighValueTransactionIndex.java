@@ -0,0 +1,298 @@
+package com.java.coreTemplate.service;
+
+import com.java.coreTemplate.model.dto.TransactionManagementModule;
+import com.java.coreTemplate.repository.TransactionManagementModuleRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The K largest transactions of every hour and currency within the horizon,
+ * each hour held in a bounded min-heap, so top-N questions over recent hours
+ * are answered from memory instead of sorting the table by amount.
+ *
+ * <p>Reloaded from the database on startup and every refresh interval,
+ * which brings in writes made on other nodes and changes that bypass the
+ * service, such as processing. Writes through this node's service are fed
+ * in after commit as well, so they show up at once. Between refreshes an
+ * entry is the snapshot taken when it was loaded or written.
+ */
+@Component
+public class HighValueTransactionIndex {
+    private static final Logger log = LoggerFactory.getLogger(HighValueTransactionIndex.class);
+
+    // Ascending, so the heap head is the smallest amount and the first to go
+    private static final Comparator<TransactionManagementModule> BY_AMOUNT = Comparator
+            .comparingLong((TransactionManagementModule t) -> t.getAmount().minorUnits())
+            .thenComparing(TransactionManagementModule::getId);
+
+    private final TransactionManagementModuleRepository repository;
+    private final int perHour;
+    private final Duration horizon;
+    private final Timer queryTimer;
+    // Epoch hour -> currency -> top K of that hour; replaced whole by each refresh
+    private volatile ConcurrentSkipListMap<Long, Map<String, Bucket>> hours = new ConcurrentSkipListMap<>();
+    // Local writes applied while a refresh reads the database, replayed onto its result; guarded by this
+    private List<Runnable> duringRefresh;
+
+    public HighValueTransactionIndex(TransactionManagementModuleRepository repository,
+                                     @Value("${transactions.top-k.per-hour:100}") int perHour,
+                                     @Value("${transactions.top-k.horizon:24h}") Duration horizon,
+                                     MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.perHour = perHour;
+        this.horizon = horizon;
+        this.queryTimer = Timer.builder("transactions.top-k.query.duration").register(meterRegistry);
+        Gauge.builder("transactions.top-k.entries", this, HighValueTransactionIndex::size).register(meterRegistry);
+    }
+
+    /**
+     * Reads the top K of every hour in the horizon from the database into a
+     * new index and swaps it in, so queries never see a half-loaded one.
+     */
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${transactions.top-k.refresh-interval:30000}",
+            initialDelayString = "${transactions.top-k.refresh-interval:30000}")
+    public void rebuild() {
+        long start = System.nanoTime();
+        synchronized (this) {
+            duringRefresh = new ArrayList<>();
+        }
+        ConcurrentSkipListMap<Long, Map<String, Bucket>> loaded = new ConcurrentSkipListMap<>();
+        List<Runnable> replay;
+        int[] count = {0};
+        try {
+            repository.forEachTopPerHour(horizonStart(), perHour, transaction -> {
+                offer(loaded, transaction);
+                count[0]++;
+            });
+        } finally {
+            synchronized (this) {
+                replay = duringRefresh;
+                duringRefresh = null;
+            }
+        }
+        hours = loaded;
+        // Offers replace entries of the same id, so replaying a write the load already saw is harmless
+        replay.forEach(Runnable::run);
+        log.debug("Loaded {} high-value transactions over {} hours in {} ms", count[0], loaded.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Records newly inserted transactions once the surrounding transaction,
+     * if any, has committed.
+     */
+    public void added(Collection<TransactionManagementModule> transactions) {
+        afterCommit(() -> apply(() -> transactions.forEach(transaction -> offer(hours, transaction))));
+    }
+
+    /**
+     * Records an update (both given) or a delete (after is null) once it has
+     * committed.
+     */
+    public void changed(TransactionManagementModule before, TransactionManagementModule after) {
+        afterCommit(() -> apply(() -> {
+            Bucket reloaded = before != null ? remove(before) : null;
+            // A reloaded bucket was read after the commit and already holds the new state
+            if (after != null && (reloaded == null || reloaded != existingBucket(after))) {
+                offer(hours, after);
+            }
+        }));
+    }
+
+    private void apply(Runnable write) {
+        synchronized (this) {
+            if (duringRefresh != null) {
+                duringRefresh.add(write);
+            }
+        }
+        write.run();
+    }
+
+    /**
+     * The largest transactions in the currency dated at or after since,
+     * largest first. Exact for limits up to the per-hour size, which caps
+     * the limit; only an hour cut by since may need one database read.
+     *
+     * @throws IllegalArgumentException if since lies beyond the horizon or
+     *         the limit is not positive
+     */
+    public List<TransactionManagementModule> top(String currencyCode, LocalDateTime since, int limit) {
+        if (since.isBefore(horizonStart())) {
+            throw new IllegalArgumentException("Only the last " + horizon.toHours() + " hours are indexed");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        long start = System.nanoTime();
+        int n = Math.min(limit, perHour);
+        PriorityQueue<TransactionManagementModule> best = new PriorityQueue<>(n + 1, BY_AMOUNT);
+        long firstHour = epochHour(since);
+        for (Map.Entry<Long, Map<String, Bucket>> hour : hours.tailMap(firstHour).entrySet()) {
+            Bucket bucket = hour.getValue().get(currencyCode);
+            if (bucket == null) {
+                continue;
+            }
+            for (TransactionManagementModule transaction : candidates(bucket, hour.getKey() == firstHour, since, n)) {
+                if (transaction.getTransactionDate().isBefore(since)) {
+                    continue;
+                }
+                best.add(transaction);
+                if (best.size() > n) {
+                    best.poll();
+                }
+            }
+        }
+        List<TransactionManagementModule> result = new ArrayList<>(best);
+        result.sort(BY_AMOUNT.reversed());
+        queryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    // The top K of an hour says nothing about its part after since once entries were pushed out
+    private List<TransactionManagementModule> candidates(Bucket bucket, boolean firstHour, LocalDateTime since,
+                                                         int limit) {
+        LocalDateTime hourStart = since.truncatedTo(ChronoUnit.HOURS);
+        if (firstHour && since.isAfter(hourStart) && bucket.overflowed()) {
+            return repository.findTopByAmount(bucket.currencyCode, since, hourStart.plusHours(1), limit);
+        }
+        return bucket.snapshot();
+    }
+
+    @Scheduled(fixedDelayString = "${transactions.top-k.evict-interval:60000}")
+    public void evict() {
+        hours.headMap(epochHour(horizonStart())).clear();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<String, Bucket> hour : hours.values()) {
+            for (Bucket bucket : hour.values()) {
+                size += bucket.size();
+            }
+        }
+        return size;
+    }
+
+    private void offer(ConcurrentSkipListMap<Long, Map<String, Bucket>> index, TransactionManagementModule transaction) {
+        if (transaction.getTransactionDate().isBefore(horizonStart())) {
+            return;
+        }
+        index.computeIfAbsent(epochHour(transaction.getTransactionDate()), h -> new ConcurrentHashMap<>())
+                .computeIfAbsent(transaction.getCurrencyCode(), c -> new Bucket(c, perHour))
+                .offer(transaction);
+    }
+
+    // Returns the bucket if it had to be reread from the database, otherwise null
+    private Bucket remove(TransactionManagementModule transaction) {
+        Bucket bucket = existingBucket(transaction);
+        if (bucket == null || !bucket.remove(transaction.getId()) || !bucket.overflowed()) {
+            return null;
+        }
+        // Whatever was pushed out earlier may belong in the top K again
+        LocalDateTime from = transaction.getTransactionDate().truncatedTo(ChronoUnit.HOURS);
+        bucket.reload(repository.findTopByAmount(transaction.getCurrencyCode(), from, from.plusHours(1), perHour));
+        return bucket;
+    }
+
+    private Bucket existingBucket(TransactionManagementModule transaction) {
+        Map<String, Bucket> currencies = hours.get(epochHour(transaction.getTransactionDate()));
+        return currencies != null ? currencies.get(transaction.getCurrencyCode()) : null;
+    }
+
+    private LocalDateTime horizonStart() {
+        return LocalDateTime.now().minus(horizon).truncatedTo(ChronoUnit.HOURS);
+    }
+
+    // Hours of the local timestamp, as the column has no zone
+    private static long epochHour(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 3600);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static final class Bucket {
+        private final String currencyCode;
+        private final int capacity;
+        private final PriorityQueue<TransactionManagementModule> heap;
+        // Set once full: from then on rows may exist that the heap never held, whether
+        // pushed out here or cut off by the query that loaded it
+        private boolean overflowed;
+
+        Bucket(String currencyCode, int capacity) {
+            this.currencyCode = currencyCode;
+            this.capacity = capacity;
+            this.heap = new PriorityQueue<>(capacity + 1, BY_AMOUNT);
+        }
+
+        synchronized void offer(TransactionManagementModule transaction) {
+            // A newer snapshot of an entry replaces the old one
+            heap.removeIf(existing -> existing.getId().equals(transaction.getId()));
+            if (heap.size() < capacity) {
+                heap.add(transaction);
+                overflowed |= heap.size() == capacity;
+                return;
+            }
+            if (BY_AMOUNT.compare(transaction, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(transaction);
+            }
+        }
+
+        synchronized boolean remove(Long id) {
+            return heap.removeIf(existing -> existing.getId().equals(id));
+        }
+
+        synchronized boolean overflowed() {
+            return overflowed;
+        }
+
+        synchronized void reload(List<TransactionManagementModule> top) {
+            heap.clear();
+            heap.addAll(top);
+            overflowed = top.size() == capacity;
+        }
+
+        synchronized List<TransactionManagementModule> snapshot() {
+            return new ArrayList<>(heap);
+        }
+
+        synchronized int size() {
+            return heap.size();
+        }
+    }
+}
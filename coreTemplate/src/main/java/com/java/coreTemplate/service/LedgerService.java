@@ -0,0 +1,220 @@
+package com.java.coreTemplate.service;
+
+import com.java.coreTemplate.model.dto.AccountBalance;
+import com.java.coreTemplate.model.dto.LedgerEntry;
+import com.java.coreTemplate.model.dto.Money;
+import com.java.coreTemplate.repository.LedgerRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Account balances derived from the ledger: the latest snapshot of an
+ * account plus the entries posted after it.
+ *
+ * <p>Postings append entries and never touch the account row. Once an
+ * account has had snapshot-every entries posted since its last snapshot,
+ * a background thread writes a new one and copies the balance to the
+ * account row, so the row, and the cached entity, trail the ledger by at
+ * most one snapshot interval. The counts are kept in memory; after a
+ * restart, reads that replay too many entries ask for the snapshot instead.
+ */
+@Service
+public class LedgerService {
+    private static final Logger log = LoggerFactory.getLogger(LedgerService.class);
+
+    private final LedgerRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache cachedAccounts;
+    private final Cache cachedAccountQueries;
+    private final int snapshotEvery;
+    private final Duration settle;
+    // Entries posted per account since its last snapshot was asked for
+    private final Map<String, AtomicInteger> unsnapshotted = new ConcurrentHashMap<>();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final ExecutorService snapshotter;
+    private final Counter snapshots;
+    private final Timer snapshotTimer;
+
+    public LedgerService(LedgerRepository repository,
+                         PlatformTransactionManager transactionManager,
+                         CacheManager cacheManager,
+                         @Value("${ledger.snapshot-every:100}") int snapshotEvery,
+                         @Value("${ledger.settle:30s}") Duration settle,
+                         MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cachedAccounts = cacheManager.getCache("bankAccounts");
+        this.cachedAccountQueries = cacheManager.getCache("bankAccountQueries");
+        this.snapshotEvery = snapshotEvery;
+        this.settle = settle;
+        this.snapshotter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.snapshots = Counter.builder("ledger.snapshots").register(meterRegistry);
+        this.snapshotTimer = Timer.builder("ledger.snapshot.duration").register(meterRegistry);
+        Gauge.builder("ledger.snapshots.pending", pending, Set::size).register(meterRegistry);
+    }
+
+    /**
+     * Appends the entries inside the caller's transaction. Call
+     * {@link #posted} once it has committed.
+     */
+    public void append(List<LedgerEntry> entries) {
+        repository.append(entries);
+    }
+
+    /**
+     * Counts committed entries per account and asks for a snapshot of every
+     * account that has reached snapshot-every since its last one.
+     */
+    public void posted(Map<String, Integer> entriesByAccount) {
+        entriesByAccount.forEach((accountNumber, entries) -> {
+            AtomicInteger count = unsnapshotted.computeIfAbsent(accountNumber, a -> new AtomicInteger());
+            if (count.addAndGet(entries) >= snapshotEvery) {
+                count.set(0);
+                requestSnapshot(accountNumber);
+            }
+        });
+    }
+
+    /**
+     * Current balances of the accounts that exist, in minor units. Inside a
+     * transaction this includes the entries it has appended itself.
+     */
+    public Map<String, Long> balances(Collection<String> accountNumbers) {
+        Map<String, Long> balances = new HashMap<>();
+        repository.positions(accountNumbers).forEach((accountNumber, position) -> {
+            replayed(accountNumber, position);
+            balances.put(accountNumber, position.balance());
+        });
+        return balances;
+    }
+
+    /**
+     * Current balances, in minor units, of the accounts whose balance is
+     * above the amount. Reads the tail of the whole ledger.
+     */
+    public Map<String, Long> balancesAbove(long minorUnits) {
+        Map<String, Long> balances = new HashMap<>();
+        repository.positionsAbove(minorUnits).forEach((accountNumber, position) -> {
+            replayed(accountNumber, position);
+            balances.put(accountNumber, position.balance());
+        });
+        return balances;
+    }
+
+    public Optional<AccountBalance> balance(String accountNumber) {
+        return repository.positions(List.of(accountNumber)).values().stream().findFirst().map(position -> {
+            replayed(accountNumber, position);
+            return new AccountBalance(accountNumber, Money.ofMinor(position.balance(), position.currencyCode()),
+                    LocalDateTime.now());
+        });
+    }
+
+    /**
+     * Balance over the entries posted at or before at, replaying at most the
+     * entries between the two snapshots around it.
+     */
+    public Optional<AccountBalance> balanceAt(String accountNumber, LocalDateTime at) {
+        return repository.positionAt(accountNumber, at).map(position ->
+                new AccountBalance(accountNumber, Money.ofMinor(position.balance(), position.currencyCode()), at));
+    }
+
+    // balanceAt of many accounts in one read, in minor units; accounts that do not exist are left out
+    public Map<String, Long> balancesAt(Collection<String> accountNumbers, LocalDateTime at) {
+        Map<String, Long> balances = new HashMap<>();
+        repository.positionsAt(accountNumbers, at).forEach((accountNumber, position) ->
+                balances.put(accountNumber, position.balance()));
+        return balances;
+    }
+
+    public List<LedgerEntry> entries(String accountNumber, long afterId, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        return repository.findEntries(accountNumber, afterId, limit);
+    }
+
+    /**
+     * Posting transactions must finish within this, so that no entry can
+     * commit below a snapshot taken meanwhile.
+     */
+    public Duration maxPostingTime() {
+        return settle.dividedBy(2);
+    }
+
+    /**
+     * Snapshots the account now, on the calling thread. Returns whether there
+     * were settled entries to snapshot.
+     */
+    public boolean snapshot(String accountNumber) {
+        long start = System.nanoTime();
+        Optional<Long> snapshotted = transactionTemplate.execute(status -> {
+            Optional<Long> id = repository.snapshot(accountNumber, settle);
+            // Through the transaction-aware caches, so applied once the row update commits
+            id.ifPresent(cachedAccounts::evict);
+            id.ifPresent(i -> cachedAccountQueries.clear());
+            return id;
+        });
+        snapshotTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (snapshotted.isPresent()) {
+            snapshots.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private void replayed(String accountNumber, LedgerRepository.Position position) {
+        if (position.replayed() >= snapshotEvery) {
+            requestSnapshot(accountNumber);
+        }
+    }
+
+    private void requestSnapshot(String accountNumber) {
+        if (!pending.add(accountNumber)) {
+            return;
+        }
+        snapshotter.execute(() -> {
+            pending.remove(accountNumber);
+            try {
+                snapshot(accountNumber);
+            } catch (RuntimeException e) {
+                // The next posting or read over the threshold asks again
+                log.warn("Snapshot of account {} failed", accountNumber, e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        snapshotter.shutdown();
+        snapshotter.awaitTermination(30, TimeUnit.SECONDS);
+    }
+}
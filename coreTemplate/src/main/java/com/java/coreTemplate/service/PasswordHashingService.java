@@ -0,0 +1,149 @@
+package com.java.coreTemplate.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Runs bcrypt hashing and verification on a dedicated, bounded pool so a
+ * login storm cannot occupy every Tomcat thread with key stretching. Every
+ * operation returns a future, so callers hand it back to Spring MVC instead
+ * of parking a request thread on it. When the queue is full, or a task
+ * waits longer than the timeout, the future fails with a
+ * {@link RejectedExecutionException} instead of piling up more waiters.
+ */
+@Service
+public class PasswordHashingService {
+    // What BCryptPasswordEncoder itself accepts as a hash
+    private static final Pattern BCRYPT = Pattern.compile("\\A\\$2(a|y|b)?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}\\z");
+
+    private final BCryptPasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+    // Verified against for unknown users, so they take as long as a wrong password
+    private final String dummyHash;
+    private final Timer hashTimer;
+    private final Timer verifyTimer;
+    private final Counter rejections;
+
+    public PasswordHashingService(@Value("${password.hashing.bcrypt-strength:12}") int strength,
+                                  @Value("${password.hashing.pool-size:0}") int poolSize,
+                                  @Value("${password.hashing.queue-capacity:64}") int queueCapacity,
+                                  @Value("${password.hashing.timeout:5s}") Duration timeout,
+                                  MeterRegistry meterRegistry) {
+        this.encoder = new BCryptPasswordEncoder(strength);
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timeout = timeout;
+        this.dummyHash = encoder.encode(UUID.randomUUID().toString());
+        this.hashTimer = Timer.builder("password.hash.duration").tag("operation", "hash").register(meterRegistry);
+        this.verifyTimer = Timer.builder("password.hash.duration").tag("operation", "verify").register(meterRegistry);
+        this.rejections = Counter.builder("password.hash.rejected").register(meterRegistry);
+        Gauge.builder("password.hash.queue.depth", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("password.hash.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+    }
+
+    public CompletableFuture<String> hash(String rawPassword) {
+        return enqueue(() -> hashTimer.record(() -> encoder.encode(rawPassword)));
+    }
+
+    /**
+     * Hashes a batch without flooding the queue: at most one task per pool
+     * thread is in flight, leaving the rest of the queue to interactive logins.
+     */
+    public CompletableFuture<List<String>> hashAll(List<String> rawPasswords) {
+        int window = executor.getMaximumPoolSize();
+        List<String> hashes = new ArrayList<>(rawPasswords.size());
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (int start = 0; start < rawPasswords.size(); start += window) {
+            List<String> slice = rawPasswords.subList(start, Math.min(start + window, rawPasswords.size()));
+            chain = chain.thenCompose(previous -> {
+                List<CompletableFuture<String>> inFlight = slice.stream().map(this::hash).toList();
+                return CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new))
+                        .thenRun(() -> inFlight.forEach(hash -> hashes.add(hash.join())));
+            });
+        }
+        return chain.thenApply(done -> hashes);
+    }
+
+    /**
+     * Verifies the password against the stored value. A null stored value,
+     * for a user that does not exist, is verified against a dummy hash and
+     * never matches, so the answer takes as long either way.
+     */
+    public CompletableFuture<Boolean> matches(String rawPassword, String storedPassword) {
+        if (storedPassword != null && isHashed(storedPassword)) {
+            return enqueue(() -> verifyTimer.record(() -> encoder.matches(rawPassword, storedPassword)));
+        }
+        return enqueue(() -> verifyTimer.record(() -> encoder.matches(rawPassword, dummyHash)))
+                // Rows not migrated yet still hold the plain password
+                .thenApply(ignored -> storedPassword != null && MessageDigest.isEqual(
+                        rawPassword.getBytes(StandardCharsets.UTF_8), storedPassword.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * True when the stored value is plain text or was hashed with a lower
+     * cost than the one currently configured.
+     */
+    public boolean needsRehash(String storedPassword) {
+        return !isHashed(storedPassword) || encoder.upgradeEncoding(storedPassword);
+    }
+
+    public static boolean isHashed(String storedPassword) {
+        return storedPassword != null && BCRYPT.matcher(storedPassword).matches();
+    }
+
+    private <T> CompletableFuture<T> enqueue(Supplier<T> task) {
+        CompletableFuture<T> future;
+        try {
+            future = CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+            return CompletableFuture.failedFuture(e);
+        }
+        // A task still queued when it times out is skipped by the pool
+        return future.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS).exceptionallyCompose(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof TimeoutException) {
+                rejections.increment();
+                return CompletableFuture.failedFuture(new RejectedExecutionException("Password hashing timed out", cause));
+            }
+            return CompletableFuture.failedFuture(cause);
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,95 @@
+package com.java.coreTemplate.service;
+
+import com.java.coreTemplate.model.dto.UserCredentials;
+import com.java.coreTemplate.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Hashes the passwords still stored in plain text, once, in the background
+ * after startup. Logins upgrade such rows as well, but users who never log in
+ * again would otherwise keep a readable password forever.
+ */
+@Component
+public class PlaintextPasswordMigrator {
+    private static final Logger log = LoggerFactory.getLogger(PlaintextPasswordMigrator.class);
+
+    private final UserRepository userRepository;
+    private final PasswordHashingService passwordHashingService;
+    private final CredentialCache credentialCache;
+    private final boolean enabled;
+    private final int pageSize;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "plaintext-password-migrator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PlaintextPasswordMigrator(UserRepository userRepository,
+                                     PasswordHashingService passwordHashingService,
+                                     CredentialCache credentialCache,
+                                     @Value("${password.hashing.migrate-plaintext:true}") boolean enabled,
+                                     @Value("${password.hashing.migrate-page-size:100}") int pageSize) {
+        this.userRepository = userRepository;
+        this.passwordHashingService = passwordHashingService;
+        this.credentialCache = credentialCache;
+        this.enabled = enabled;
+        this.pageSize = pageSize;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            executor.execute(() -> {
+                try {
+                    log.info("Hashed {} plain-text passwords", migrate());
+                } catch (RuntimeException e) {
+                    log.warn("Plain-text password migration stopped; the next start resumes it", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the number of rows hashed. A row changed concurrently, by a
+     * login upgrading it or a password change, is left to that writer.
+     */
+    public int migrate() {
+        int migrated = 0;
+        int afterId = 0;
+        List<UserCredentials> page;
+        do {
+            page = userRepository.findUnhashedPasswords(afterId, pageSize);
+            List<UserCredentials> plain = page.stream()
+                    .filter(user -> !PasswordHashingService.isHashed(user.passwordHash()))
+                    .toList();
+            // hashAll keeps one task per pool thread in flight, leaving the queue to logins
+            List<String> hashes = passwordHashingService.hashAll(
+                    plain.stream().map(UserCredentials::passwordHash).toList()).join();
+            for (int i = 0; i < plain.size(); i++) {
+                UserCredentials user = plain.get(i);
+                if (userRepository.updatePassword(user.id(), user.passwordHash(), hashes.get(i))) {
+                    credentialCache.invalidate(user.username());
+                    migrated++;
+                }
+            }
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).id();
+            }
+        } while (page.size() == pageSize && !Thread.currentThread().isInterrupted());
+        return migrated;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,32 +1,249 @@
 package com.java.coreTemplate.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import com.java.coreTemplate.repository.TransactionManagementModuleRepository;
+import com.java.coreTemplate.repository.TransactionRollupRepository;
+import com.java.coreTemplate.model.dto.TransactionBatchResponse;
+import com.java.coreTemplate.model.dto.TransactionBatchResponse.ItemResult;
+import com.java.coreTemplate.model.dto.TransactionCreateResult;
+import com.java.coreTemplate.model.dto.TransactionCursor;
+import com.java.coreTemplate.model.dto.TransactionExportFilter;
+import com.java.coreTemplate.model.dto.TransactionPage;
 import com.java.coreTemplate.model.dto.TransactionManagementModule;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Transactional(readOnly = true)
 public class TransactionManagementModuleService {
 
+    public enum ExportFormat { CSV, NDJSON }
+
+    private static final String CSV_HEADER = "id,transactionReference,amount,currencyCode,transactionDate,description,"
+            + "successful,processed,requiresApproval,approvalStatus,createdAt,lastModifiedAt\n";
+
     private final TransactionManagementModuleRepository repository;
+    private final TransactionRollupRepository rollups;
+    private final ObjectMapper objectMapper;
+    private final int ingestChunkSize;
+    private final TransactionReferenceCache recentReferences;
+    private final HighValueTransactionIndex highValue;
+    private final Timer cachedDuplicates;
+    private final Timer storedDuplicates;
+    private final Timer newReferences;
 
-    public TransactionManagementModuleService(TransactionManagementModuleRepository repository) {
+    public TransactionManagementModuleService(TransactionManagementModuleRepository repository,
+                                              TransactionRollupRepository rollups,
+                                              ObjectMapper objectMapper,
+                                              @Value("${transactions.ingest.chunk-size:1000}") int ingestChunkSize,
+                                              TransactionReferenceCache recentReferences,
+                                              HighValueTransactionIndex highValue,
+                                              MeterRegistry meterRegistry) {
         this.repository = repository;
+        this.rollups = rollups;
+        this.objectMapper = objectMapper;
+        this.ingestChunkSize = ingestChunkSize;
+        this.recentReferences = recentReferences;
+        this.highValue = highValue;
+        this.cachedDuplicates = Timer.builder("transactions.idempotency.lookup").tag("result", "cached-duplicate")
+                .register(meterRegistry);
+        this.storedDuplicates = Timer.builder("transactions.idempotency.lookup").tag("result", "stored-duplicate")
+                .register(meterRegistry);
+        this.newReferences = Timer.builder("transactions.idempotency.lookup").tag("result", "new")
+                .register(meterRegistry);
     }
 
     @Transactional
     public TransactionManagementModule save(TransactionManagementModule entity) {
-        return repository.save(entity);
+        // The stored row, not the detached entity, is what the rollups currently count
+        Optional<TransactionManagementModule> before = entity.getId() == null ? Optional.empty()
+                : repository.findByIdForUpdate(entity.getId());
+        TransactionManagementModule saved = repository.save(entity);
+        repository.syncReference(before.orElse(null), saved);
+        rollups.record(before.map(List::of).orElse(List.of()), List.of(saved));
+        highValue.changed(before.orElse(null), saved);
+        return saved;
+    }
+
+    /**
+     * Creates the transaction unless its transactionReference already exists,
+     * in which case the original transaction is returned. Recent references
+     * are answered from memory; older ones cost an insert that does nothing
+     * plus one lookup, never a failed insert.
+     *
+     * @throws IllegalArgumentException if the transaction is invalid
+     * @throws IllegalStateException if the reference belongs to a different amount
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public TransactionCreateResult create(TransactionManagementModule transaction) {
+        String error = validate(transaction);
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+        long start = System.nanoTime();
+        TransactionManagementModule original = recentReferences.get(transaction.getTransactionReference());
+        if (original != null) {
+            cachedDuplicates.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return duplicate(transaction, original);
+        }
+        if (repository.insertAll(List.of(transaction)).contains(transaction.getId())) {
+            newReferences.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            recentReferences.put(transaction);
+            highValue.added(List.of(transaction));
+            return new TransactionCreateResult(transaction, true);
+        }
+        original = repository.findByReference(transaction.getTransactionReference())
+                .orElseThrow(() -> new IllegalStateException("Transaction " + transaction.getTransactionReference()
+                        + " was neither inserted nor found"));
+        storedDuplicates.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        recentReferences.put(original);
+        return duplicate(transaction, original);
+    }
+
+    private static TransactionCreateResult duplicate(TransactionManagementModule retry, TransactionManagementModule original) {
+        if (!retry.getAmount().equals(original.getAmount())) {
+            throw new IllegalStateException("transactionReference " + original.getTransactionReference()
+                    + " was already used for a different amount");
+        }
+        return new TransactionCreateResult(original, false);
     }
 
     @Transactional
     public List<TransactionManagementModule> saveAll(List<TransactionManagementModule> entities) {
-        return repository.saveAll(entities);
+        List<TransactionManagementModule> saved = new ArrayList<>(entities.size());
+        for (TransactionManagementModule entity : entities) {
+            saved.add(save(entity));
+        }
+        return saved;
+    }
+
+    /**
+     * Reads a JSON array one element at a time and inserts it in chunks, each
+     * chunk in its own transaction, so memory is bounded by the chunk size
+     * rather than the feed. A rejected item or a failed chunk does not stop
+     * the rest of the feed.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public TransactionBatchResponse ingest(InputStream json) throws IOException {
+        List<ItemResult> results = new ArrayList<>();
+        List<TransactionManagementModule> chunk = new ArrayList<>(ingestChunkSize);
+        List<Integer> chunkIndexes = new ArrayList<>(ingestChunkSize);
+        try (JsonParser parser = objectMapper.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Expected a JSON array of transactions");
+            }
+            try {
+                JsonToken token;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                    int index = results.size();
+                    JsonNode node = parser.readValueAsTree();
+                    String error;
+                    TransactionManagementModule transaction = null;
+                    try {
+                        transaction = objectMapper.treeToValue(node, TransactionManagementModule.class);
+                        error = validate(transaction);
+                    } catch (JsonProcessingException e) {
+                        error = "Malformed transaction: " + e.getOriginalMessage();
+                    }
+                    if (error != null) {
+                        results.add(new ItemResult(index, node.path("transactionReference").asText(null), null, error));
+                        continue;
+                    }
+                    // Placeholder, filled in once the chunk is written
+                    results.add(null);
+                    chunk.add(transaction);
+                    chunkIndexes.add(index);
+                    if (chunk.size() == ingestChunkSize) {
+                        insertChunk(chunk, chunkIndexes, results);
+                    }
+                }
+            } catch (JsonProcessingException e) {
+                // Everything before the syntax error is still written and reported
+                results.add(new ItemResult(results.size(), null, null, "Malformed JSON: " + e.getOriginalMessage()));
+            }
+        }
+        insertChunk(chunk, chunkIndexes, results);
+
+        int accepted = (int) results.stream().filter(result -> result.error() == null).count();
+        return new TransactionBatchResponse(accepted, results.size() - accepted, results);
+    }
+
+    private void insertChunk(List<TransactionManagementModule> chunk, List<Integer> chunkIndexes, List<ItemResult> results) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<Long> inserted = null;
+        String failure = null;
+        try {
+            inserted = repository.insertAll(chunk);
+        } catch (DataAccessException e) {
+            failure = "Chunk insert failed: " + e.getMostSpecificCause().getMessage();
+        }
+        if (inserted != null) {
+            Set<Long> ids = inserted;
+            highValue.added(chunk.stream().filter(t -> ids.contains(t.getId())).toList());
+        }
+        for (int i = 0; i < chunk.size(); i++) {
+            TransactionManagementModule transaction = chunk.get(i);
+            String reference = transaction.getTransactionReference();
+            ItemResult result;
+            if (failure != null) {
+                result = new ItemResult(chunkIndexes.get(i), reference, null, failure);
+            } else if (inserted.contains(transaction.getId())) {
+                result = new ItemResult(chunkIndexes.get(i), reference, transaction.getId(), null);
+            } else {
+                result = new ItemResult(chunkIndexes.get(i), reference, null, "Duplicate transactionReference");
+            }
+            results.set(chunkIndexes.get(i), result);
+        }
+        chunk.clear();
+        chunkIndexes.clear();
+    }
+
+    private static String validate(TransactionManagementModule transaction) {
+        String reference = transaction.getTransactionReference();
+        if (reference == null || reference.isBlank() || reference.length() > 36) {
+            return "transactionReference is required and at most 36 characters";
+        }
+        if (transaction.getCurrencyCode() == null || transaction.getCurrencyCode().length() != 3) {
+            return "currencyCode must be a 3-letter code";
+        }
+        if (transaction.getAmount() == null) {
+            return "amount is required";
+        }
+        if (transaction.getDescription().map(String::length).orElse(0) > 255) {
+            return "description is at most 255 characters";
+        }
+        if (transaction.getApprovalStatus().map(String::length).orElse(0) > 20) {
+            return "approvalStatus is at most 20 characters";
+        }
+        return null;
     }
 
     public Optional<TransactionManagementModule> findById(Long id) {
@@ -41,13 +258,122 @@ public class TransactionManagementModuleService {
         return repository.findAll(pageable);
     }
 
+    /**
+     * Seeks to the cursor instead of skipping rows, and runs no count, so a
+     * deep page costs the same as the first one.
+     */
+    public TransactionPage findPage(String cursor, int size) {
+        TransactionCursor after = cursor == null || cursor.isEmpty() ? null : TransactionCursor.decode(cursor);
+        // One extra row tells whether another page follows
+        List<TransactionManagementModule> rows = repository.findPageAfter(after, size + 1);
+        if (rows.size() <= size) {
+            return new TransactionPage(rows, null);
+        }
+        List<TransactionManagementModule> items = rows.subList(0, size);
+        TransactionManagementModule last = items.get(size - 1);
+        return new TransactionPage(items, new TransactionCursor(last.getTransactionDate(), last.getId()).encode());
+    }
+
+    /**
+     * Writes every matching transaction to the stream as it is read from the
+     * database cursor, so memory use does not depend on the number of rows.
+     * The stream is flushed but not closed.
+     */
+    public void export(TransactionExportFilter filter, ExportFormat format, OutputStream out) throws IOException {
+        try {
+            if (format == ExportFormat.CSV) {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+                writer.write(CSV_HEADER);
+                repository.forEachMatching(filter, transaction -> writeCsvRow(writer, transaction));
+                writer.flush();
+            } else {
+                JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                repository.forEachMatching(filter, transaction -> writeJsonLine(generator, transaction));
+                generator.close();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeCsvRow(Writer writer, TransactionManagementModule transaction) {
+        try {
+            writer.write(String.valueOf(transaction.getId()));
+            writer.write(',');
+            writer.write(csvField(transaction.getTransactionReference()));
+            writer.write(',');
+            writer.write(transaction.getAmount().toBigDecimal().toPlainString());
+            writer.write(',');
+            writer.write(csvField(transaction.getCurrencyCode()));
+            writer.write(',');
+            writer.write(String.valueOf(transaction.getTransactionDate()));
+            writer.write(',');
+            writer.write(csvField(transaction.getDescription().orElse(null)));
+            writer.write(',');
+            writer.write(String.valueOf(transaction.isSuccessful()));
+            writer.write(',');
+            writer.write(String.valueOf(transaction.isProcessed()));
+            writer.write(',');
+            writer.write(String.valueOf(transaction.isRequiresApproval()));
+            writer.write(',');
+            writer.write(csvField(transaction.getApprovalStatus().orElse(null)));
+            writer.write(',');
+            writer.write(String.valueOf(transaction.getCreatedAt()));
+            writer.write(',');
+            writer.write(transaction.getLastModifiedAt().map(LocalDateTime::toString).orElse(""));
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static void writeJsonLine(JsonGenerator generator, TransactionManagementModule transaction) {
+        try {
+            generator.writeStartObject();
+            generator.writeNumberField("id", transaction.getId());
+            generator.writeStringField("transactionReference", transaction.getTransactionReference());
+            // Written as a JSON number with exactly four decimals, never through double
+            generator.writeNumberField("amount", transaction.getAmount().toBigDecimal());
+            generator.writeStringField("currencyCode", transaction.getCurrencyCode());
+            generator.writeStringField("transactionDate", String.valueOf(transaction.getTransactionDate()));
+            generator.writeStringField("description", transaction.getDescription().orElse(null));
+            generator.writeBooleanField("successful", transaction.isSuccessful());
+            generator.writeBooleanField("processed", transaction.isProcessed());
+            generator.writeBooleanField("requiresApproval", transaction.isRequiresApproval());
+            generator.writeStringField("approvalStatus", transaction.getApprovalStatus().orElse(null));
+            generator.writeStringField("createdAt", String.valueOf(transaction.getCreatedAt()));
+            generator.writeStringField("lastModifiedAt",
+                    transaction.getLastModifiedAt().map(LocalDateTime::toString).orElse(null));
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     public List<TransactionManagementModule> findAllActive() {
         return repository.findByIsActiveTrue();
     }
 
     @Transactional
     public void deleteById(Long id) {
-        repository.deleteById(id);
+        repository.findByIdForUpdate(id).ifPresent(existing -> {
+            repository.deleteById(id);
+            repository.syncReference(existing, null);
+            rollups.record(List.of(existing), List.of());
+            highValue.changed(existing, null);
+        });
     }
 
     @Transactional
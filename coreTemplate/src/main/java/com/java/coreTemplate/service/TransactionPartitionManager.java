@@ -0,0 +1,243 @@
+package com.java.coreTemplate.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the monthly partitions of transaction_management_module: creates
+ * them a few months ahead so inserts never land in the default partition,
+ * and enforces retention by detaching and dropping whole months instead of
+ * deleting rows. Rows that did land in the default partition, such as
+ * back-dated imports, are moved into a partition of their month. Does
+ * nothing when the table is not partitioned, as on H2 or on a database
+ * created before partitioning.
+ */
+@Component
+public class TransactionPartitionManager {
+    private static final Logger log = LoggerFactory.getLogger(TransactionPartitionManager.class);
+
+    private static final String TABLE = "transaction_management_module";
+    private static final String DEFAULT_PARTITION = TABLE + "_default";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("'p'yyyy_MM");
+    private static final Pattern MONTHLY_PARTITION = Pattern.compile(TABLE + "_p(\\d{4})_(\\d{2})");
+    private static final String SELECT_PARTITIONS = "SELECT c.relname FROM pg_inherits i "
+            + "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = '" + TABLE + "'::regclass ORDER BY c.relname";
+    private static final String DELETE_REFERENCE_KEYS = "DELETE FROM transaction_reference_key WHERE transaction_reference IN "
+            + "(SELECT transaction_reference FROM transaction_reference_key "
+            + "WHERE transaction_date >= ? AND transaction_date < ? LIMIT ?)";
+    private static final String SELECT_DEFAULT_MONTHS = "SELECT DISTINCT CAST(date_trunc('month', transaction_date) AS DATE) "
+            + "FROM " + DEFAULT_PARTITION;
+    private static final String HAS_DEFAULT_ROWS = "SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION
+            + " WHERE transaction_date >= ? AND transaction_date < ?)";
+    private static final int REFERENCE_KEY_DELETE_CHUNK = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final Counter dropped;
+    private final Counter failures;
+    private volatile boolean partitioned;
+    private volatile int partitionCount;
+
+    public TransactionPartitionManager(JdbcTemplate jdbcTemplate,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${transactions.partitions.months-ahead:3}") int monthsAhead,
+                                       @Value("${transactions.partitions.retention-months:0}") int retentionMonths,
+                                       MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.dropped = Counter.builder("transactions.partitions.dropped").register(meterRegistry);
+        this.failures = Counter.builder("transactions.partitions.failures").register(meterRegistry);
+        Gauge.builder("transactions.partitions", this, m -> m.partitionCount).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            Integer count = jdbcTemplate.queryForObject("SELECT count(*) FROM pg_partitioned_table "
+                    + "WHERE partrelid = '" + TABLE + "'::regclass", Integer.class);
+            partitioned = count != null && count > 0;
+        } catch (DataAccessException e) {
+            partitioned = false;
+        }
+        if (!partitioned) {
+            log.info("{} is not partitioned; partition maintenance is off", TABLE);
+            return;
+        }
+        maintain();
+    }
+
+    @Scheduled(cron = "${transactions.partitions.maintenance-cron:0 15 3 * * *}")
+    public void maintain() {
+        if (!partitioned) {
+            return;
+        }
+        YearMonth current = YearMonth.now();
+        YearMonth cutoff = retentionMonths > 0 ? current.minusMonths(retentionMonths) : null;
+        // Last month too, for a start just after midnight on the first
+        Set<YearMonth> months = new TreeSet<>();
+        for (YearMonth month = current.minusMonths(1); !month.isAfter(current.plusMonths(monthsAhead));
+             month = month.plusMonths(1)) {
+            months.add(month);
+        }
+        for (YearMonth month : monthsInDefaultPartition()) {
+            if (cutoff == null || !month.isBefore(cutoff)) {
+                months.add(month);
+            }
+        }
+        List<String> existing = partitionNames();
+        for (YearMonth month : months) {
+            if (!existing.contains(partitionName(month))) {
+                createPartition(month);
+            }
+        }
+        if (cutoff != null) {
+            dropBefore(cutoff);
+        }
+        partitionCount = partitionNames().size();
+    }
+
+    /**
+     * Creates the partition of one month. The default partition may already
+     * hold rows of that month, which would make a plain CREATE ... PARTITION
+     * OF fail, so those rows are moved into a new table that is then attached,
+     * all in one transaction. A failure is counted in
+     * transactions.partitions.failures and retried on the next run.
+     */
+    void createPartition(YearMonth month) {
+        String name = partitionName(month);
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+        String bounds = " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')";
+        try {
+            Integer moved = transactionTemplate.execute(status -> {
+                if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(HAS_DEFAULT_ROWS, Boolean.class, from, to))) {
+                    jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + TABLE + bounds);
+                    return 0;
+                }
+                // Blocks writers of the default partition for the move; give up rather than queue them all
+                jdbcTemplate.execute("SET LOCAL lock_timeout = '5s'");
+                jdbcTemplate.execute("LOCK TABLE " + DEFAULT_PARTITION + " IN SHARE ROW EXCLUSIVE MODE");
+                jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE " + TABLE + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+                int rows = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                        + " WHERE transaction_date >= ? AND transaction_date < ? RETURNING *) "
+                        + "INSERT INTO " + name + " SELECT * FROM moved", from, to);
+                jdbcTemplate.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + name + bounds);
+                return rows;
+            });
+            if (moved != null && moved > 0) {
+                log.info("Created transaction partition {} with {} rows moved out of {}", name, moved, DEFAULT_PARTITION);
+            }
+        } catch (DataAccessException e) {
+            failures.increment();
+            log.error("Could not create partition {}, will retry on the next run: {}", name,
+                    e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    private List<YearMonth> monthsInDefaultPartition() {
+        try {
+            return jdbcTemplate.queryForList(SELECT_DEFAULT_MONTHS, Date.class).stream()
+                    .map(date -> YearMonth.from(date.toLocalDate()))
+                    .toList();
+        } catch (DataAccessException e) {
+            failures.increment();
+            log.error("Could not read the months held by {}: {}", DEFAULT_PARTITION, e.getMostSpecificCause().getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * First day whose transactions retention keeps, or empty when nothing is
+     * ever dropped. Earlier days keep their rollups after their partition is
+     * gone, so they must not be rebuilt from the transactions.
+     */
+    public Optional<LocalDate> firstRetainedDay() {
+        if (!partitioned || retentionMonths <= 0) {
+            return Optional.empty();
+        }
+        return Optional.of(YearMonth.now().minusMonths(retentionMonths).atDay(1));
+    }
+
+    /**
+     * Detaches and drops every monthly partition that ends on or before the
+     * start of cutoff, then clears those months from transaction_reference_key.
+     * Returns the number of partitions dropped.
+     */
+    public int dropBefore(YearMonth cutoff) {
+        int count = 0;
+        for (String name : partitionNames()) {
+            Matcher matcher = MONTHLY_PARTITION.matcher(name);
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            if (!month.isBefore(cutoff)) {
+                continue;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    // DETACH briefly locks the whole table; give up rather than queue every writer behind it
+                    jdbcTemplate.execute("SET LOCAL lock_timeout = '5s'");
+                    jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + name);
+                    jdbcTemplate.execute("DROP TABLE " + name);
+                });
+            } catch (DataAccessException e) {
+                failures.increment();
+                log.warn("Could not drop partition {}, will retry on the next run: {}", name,
+                        e.getMostSpecificCause().getMessage());
+                continue;
+            }
+            deleteReferenceKeys(month);
+            dropped.increment();
+            count++;
+            log.info("Dropped transaction partition {}", name);
+        }
+        return count;
+    }
+
+    // Small rows, deleted in chunks so no single transaction grows large
+    private void deleteReferenceKeys(YearMonth month) {
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+        Integer deleted;
+        do {
+            deleted = transactionTemplate.execute(status ->
+                    jdbcTemplate.update(DELETE_REFERENCE_KEYS, from, to, REFERENCE_KEY_DELETE_CHUNK));
+        } while (deleted != null && deleted == REFERENCE_KEY_DELETE_CHUNK);
+    }
+
+    private List<String> partitionNames() {
+        return jdbcTemplate.queryForList(SELECT_PARTITIONS, String.class);
+    }
+
+    private static String partitionName(YearMonth month) {
+        return TABLE + "_" + SUFFIX.format(month);
+    }
+}
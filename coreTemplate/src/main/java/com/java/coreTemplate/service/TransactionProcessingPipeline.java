@@ -0,0 +1,176 @@
+package com.java.coreTemplate.service;
+
+import com.java.coreTemplate.model.dto.TransactionBacklog;
+import com.java.coreTemplate.model.dto.TransactionManagementModule;
+import com.java.coreTemplate.repository.TransactionManagementModuleRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background workers that settle pending transactions. Each worker loops on
+ * its own transaction: claim a batch with FOR UPDATE SKIP LOCKED, decide each
+ * outcome, mark the batch processed in one JDBC batch and commit. Claimed
+ * rows stay locked until that commit, so workers on this node and on others
+ * never see the same row; if a worker dies mid-batch the rollback releases
+ * the rows for the next claim.
+ *
+ * <p>A transaction that requires approval is only picked up once its
+ * approval status is APPROVED or REJECTED.
+ */
+@Component
+public class TransactionProcessingPipeline {
+    private static final Logger log = LoggerFactory.getLogger(TransactionProcessingPipeline.class);
+
+    private final TransactionManagementModuleRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int workers;
+    private final int batchSize;
+    private final Duration idleDelay;
+    private final Counter succeeded;
+    private final Counter failed;
+    private final Timer batchTimer;
+    private final ExecutorService executor;
+    private volatile boolean running;
+    private volatile TransactionBacklog backlog = new TransactionBacklog(0, null);
+
+    public TransactionProcessingPipeline(TransactionManagementModuleRepository repository,
+                                         PlatformTransactionManager transactionManager,
+                                         @Value("${transactions.processing.enabled:true}") boolean enabled,
+                                         @Value("${transactions.processing.workers:4}") int workers,
+                                         @Value("${transactions.processing.batch-size:200}") int batchSize,
+                                         @Value("${transactions.processing.idle-delay:1s}") Duration idleDelay,
+                                         MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.idleDelay = idleDelay;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "transaction-processing-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.succeeded = Counter.builder("transactions.processing.processed").tag("outcome", "succeeded")
+                .register(meterRegistry);
+        this.failed = Counter.builder("transactions.processing.processed").tag("outcome", "failed")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("transactions.processing.batch.duration").register(meterRegistry);
+        Gauge.builder("transactions.processing.pending", this, p -> p.backlog.pending()).register(meterRegistry);
+        Gauge.builder("transactions.processing.lag.seconds", this, TransactionProcessingPipeline::lagSeconds)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::work);
+        }
+    }
+
+    private void work() {
+        while (running) {
+            int processed;
+            try {
+                processed = processBatch();
+            } catch (RuntimeException e) {
+                log.warn("Transaction processing batch failed, retrying after {}", idleDelay, e);
+                processed = 0;
+            }
+            // A full batch means there is probably more waiting
+            if (processed < batchSize && !pause()) {
+                return;
+            }
+        }
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(idleDelay.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Claims, processes and commits one batch; returns how many transactions
+     * it settled.
+     */
+    public int processBatch() {
+        Timer.Sample sample = Timer.start();
+        List<TransactionManagementModule> batch = transactionTemplate.execute(status -> {
+            List<TransactionManagementModule> claimed = repository.claimUnprocessed(batchSize);
+            if (!claimed.isEmpty()) {
+                claimed.forEach(TransactionProcessingPipeline::process);
+                repository.markProcessed(claimed);
+            }
+            return claimed;
+        });
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+        sample.stop(batchTimer);
+        // Counted only after the commit, so a rolled-back batch is not reported twice
+        for (TransactionManagementModule transaction : batch) {
+            (transaction.isSuccessful() ? succeeded : failed).increment();
+        }
+        return batch.size();
+    }
+
+    private static void process(TransactionManagementModule transaction) {
+        boolean successful = !transaction.isRequiresApproval()
+                || "APPROVED".equals(transaction.getApprovalStatus().orElse(null));
+        transaction.setSuccessful(successful);
+        transaction.setProcessed(true);
+    }
+
+    @Scheduled(fixedDelayString = "${transactions.processing.backlog-refresh-interval:5000}")
+    public void refreshBacklog() {
+        backlog = repository.unprocessedBacklog();
+    }
+
+    public TransactionBacklog backlog() {
+        return backlog;
+    }
+
+    private double lagSeconds() {
+        LocalDateTime oldest = backlog.oldestCreatedAt();
+        return oldest == null ? 0 : Math.max(0, Duration.between(oldest, LocalDateTime.now()).toMillis() / 1000.0);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.java.coreTemplate.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.java.coreTemplate.model.dto.TransactionManagementModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Recently created transactions keyed by transactionReference, so a client
+ * retrying a create gets the original transaction back without a database
+ * round trip. Bounded by size and age; older references fall back to the
+ * database.
+ */
+@Component
+public class TransactionReferenceCache {
+    private final Cache<String, TransactionManagementModule> recent;
+
+    public TransactionReferenceCache(@Value("${transactions.idempotency.cache-size:50000}") long maxSize,
+                                     @Value("${transactions.idempotency.cache-ttl:1h}") Duration ttl,
+                                     MeterRegistry meterRegistry) {
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, recent, "transactionReferences");
+    }
+
+    public TransactionManagementModule get(String transactionReference) {
+        return recent.getIfPresent(transactionReference);
+    }
+
+    public void put(TransactionManagementModule transaction) {
+        recent.put(transaction.getTransactionReference(), transaction);
+    }
+}
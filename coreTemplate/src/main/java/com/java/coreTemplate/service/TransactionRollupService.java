@@ -0,0 +1,98 @@
+package com.java.coreTemplate.service;
+
+import com.java.coreTemplate.model.dto.TransactionRollup;
+import com.java.coreTemplate.repository.TransactionRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transaction statistics answered from the rollup table, so their cost
+ * depends on the number of days asked for and not on the number of
+ * transactions.
+ */
+@Service
+public class TransactionRollupService {
+    private static final Logger log = LoggerFactory.getLogger(TransactionRollupService.class);
+
+    private final TransactionRollupRepository rollups;
+    private final TransactionPartitionManager partitions;
+    private final int rebuildParallelism;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    public TransactionRollupService(TransactionRollupRepository rollups,
+                                    TransactionPartitionManager partitions,
+                                    @Value("${transactions.rollup.rebuild-parallelism:4}") int rebuildParallelism) {
+        this.rollups = rollups;
+        this.partitions = partitions;
+        this.rebuildParallelism = rebuildParallelism;
+    }
+
+    public List<TransactionRollup> stats(LocalDate from, LocalDate to, String currencyCode, boolean byDay) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from is after to");
+        }
+        return byDay ? rollups.findByDay(from, to, currencyCode) : rollups.findTotals(from, to, currencyCode);
+    }
+
+    /**
+     * Recomputes the rollups of every day in the range from the transactions
+     * themselves, one day per transaction on a pool of workers. Without a
+     * bound the range runs from the first to the last transaction. Days whose
+     * partition retention drops keep their rollups, so the range never starts
+     * before the first retained day. Writes may continue meanwhile. Returns
+     * the number of days rebuilt.
+     *
+     * @throws IllegalStateException if a rebuild is already running
+     */
+    public int rebuild(LocalDate from, LocalDate to) throws InterruptedException {
+        LocalDate first = from != null ? from : rollups.firstTransactionDay().orElse(null);
+        LocalDate last = to != null ? to : rollups.lastTransactionDay().orElse(null);
+        LocalDate firstRetained = partitions.firstRetainedDay().orElse(null);
+        if (first != null && firstRetained != null && first.isBefore(firstRetained)) {
+            first = firstRetained;
+        }
+        if (first == null || last == null || first.isAfter(last)) {
+            return 0;
+        }
+        if (!rebuilding.compareAndSet(false, true)) {
+            throw new IllegalStateException("A rollup rebuild is already running");
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(rebuildParallelism, runnable -> {
+            Thread thread = new Thread(runnable, "rollup-rebuild-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> days = new ArrayList<>();
+            for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)) {
+                LocalDate rebuilt = day;
+                days.add(executor.submit(() -> rollups.rebuildDay(rebuilt)));
+            }
+            for (Future<?> day : days) {
+                day.get();
+            }
+            log.info("Rebuilt transaction rollups for {} days ({} to {}) in {} ms", days.size(), first, last,
+                    (System.nanoTime() - start) / 1_000_000);
+            return days.size();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Rollup rebuild failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            rebuilding.set(false);
+        }
+    }
+}
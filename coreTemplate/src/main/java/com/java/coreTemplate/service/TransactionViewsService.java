@@ -8,6 +8,8 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Caching;
 
 import java.util.List;
 import java.util.Optional;
@@ -23,28 +25,28 @@ public class TransactionViewsService {
     }
 
     @Transactional
-    @CacheEvict(value = "transactionViews", allEntries = true)
+    @Caching(put = @CachePut(value = "transactionViews", key = "#result.id"),
+            evict = @CacheEvict(value = "transactionViewQueries", allEntries = true))
     public TransactionViews save(TransactionViews entity) {
         return repository.save(entity);
     }
 
-    @Cacheable("transactionViews")
+    @Cacheable(value = "transactionViews", key = "#id", sync = true)
     public Optional<TransactionViews> findById(Long id) {
         return repository.findById(id);
     }
 
-    @Cacheable("transactionViews")
     public List<TransactionViews> findAll() {
         return repository.findAll();
     }
 
-    @Cacheable("transactionViews")
     public Page<TransactionViews> findAll(Pageable pageable) {
         return repository.findAll(pageable);
     }
 
     @Transactional
-    @CacheEvict(value = "transactionViews", allEntries = true)
+    @Caching(evict = {@CacheEvict(value = "transactionViews", key = "#id"),
+            @CacheEvict(value = "transactionViewQueries", allEntries = true)})
     public void deleteById(Long id) {
         repository.deleteById(id);
     }
@@ -57,13 +59,14 @@ public class TransactionViewsService {
         return repository.findByStatus(status);
     }
 
-    @Cacheable(value = "transactionViews", key = "#userId")
+    @Cacheable(value = "transactionViewQueries", key = "'user-' + #userId", sync = true)
     public List<TransactionViews> findByUserId(Long userId) {
         return repository.findByUserId(userId);
     }
 
     @Transactional
-    @CacheEvict(value = "transactionViews", key = "#entity.id")
+    @Caching(put = @CachePut(value = "transactionViews", key = "#result.id"),
+            evict = @CacheEvict(value = "transactionViewQueries", allEntries = true))
     public TransactionViews update(TransactionViews entity) {
         return repository.save(entity);
     }
@@ -0,0 +1,361 @@
+package com.java.coreTemplate.service;
+
+import com.java.coreTemplate.model.dto.LedgerEntry;
+import com.java.coreTemplate.model.dto.Money;
+import com.java.coreTemplate.model.dto.TransferRequest;
+import com.java.coreTemplate.model.dto.TransferResult;
+import com.java.coreTemplate.repository.BalanceHoldRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Posts transfers between bank accounts without optimistic-lock retries.
+ *
+ * <p>Every transfer is queued on the lane that owns its debit account, chosen
+ * by account number, and each lane has a single thread. So all debits of an
+ * account are checked and applied by one writer, in submission order. A lane
+ * drains up to a batch of transfers and posts them in one database
+ * transaction: it locks the debited account rows in account-number order,
+ * reads their balances from the ledger and what open holds and the nodes'
+ * allowances for holds set aside on them, checks funds transfer by transfer
+ * against the running balances less that, then appends a debit
+ * and a credit ledger entry per transfer and the transfer rows. Allowances
+ * only grow under the same row locks, see {@link BalanceReservationService};
+ * a debit that falls short first takes back what this node's allowance has
+ * not granted yet.
+ *
+ * <p>Credits to a hot account can arrive from several lanes. They only
+ * append ledger entries, so they take no lock on the credited row and never
+ * wait for each other; the {@link LedgerService} folds them into the row
+ * with periodic snapshots.
+ */
+@Service
+public class TransferPostingService {
+    private static final Logger log = LoggerFactory.getLogger(TransferPostingService.class);
+
+    private static final String SELECT_ACCOUNTS = "SELECT account_number, currency, is_active, overdraft_limit, "
+            + "minimum_balance FROM bank_account_management_module WHERE account_number IN (%s) ORDER BY account_number";
+    private static final String SELECT_EXISTING_REFERENCES =
+            "SELECT transfer_reference FROM account_transfer WHERE transfer_reference IN (%s)";
+    private static final String INSERT_TRANSFER = "INSERT INTO account_transfer "
+            + "(transfer_reference, from_account, to_account, amount, currency, posted_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LedgerService ledger;
+    private final BalanceReservationService reservations;
+    private final int batchSize;
+    private final Lane[] lanes;
+    private final Counter posted;
+    private final Counter rejected;
+    private final Counter queueFull;
+    private final DistributionSummary batchSizes;
+    private final Timer batchTimer;
+    private volatile boolean running = true;
+
+    public TransferPostingService(JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  LedgerService ledger,
+                                  BalanceReservationService reservations,
+                                  @Value("${transfers.lanes:8}") int laneCount,
+                                  @Value("${transfers.batch-size:500}") int batchSize,
+                                  @Value("${transfers.queue-capacity:10000}") int queueCapacity,
+                                  MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Entries are stamped when the batch starts; a batch running longer could commit below a snapshot
+        this.transactionTemplate.setTimeout((int) Math.max(1, ledger.maxPostingTime().toSeconds()));
+        this.ledger = ledger;
+        this.reservations = reservations;
+        this.batchSize = batchSize;
+        this.posted = Counter.builder("transfers.posted").register(meterRegistry);
+        this.rejected = Counter.builder("transfers.rejected").register(meterRegistry);
+        this.queueFull = Counter.builder("transfers.queue.full").register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("transfers.batch.size").register(meterRegistry);
+        this.batchTimer = Timer.builder("transfers.batch.duration").register(meterRegistry);
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            Lane lane = new Lane(new ArrayBlockingQueue<>(queueCapacity));
+            lane.thread = new Thread(() -> run(lane), "transfer-lane-" + i);
+            lane.thread.setDaemon(true);
+            lanes[i] = lane;
+        }
+        Gauge.builder("transfers.queue.depth", this, TransferPostingService::queueDepth).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        for (Lane lane : lanes) {
+            lane.thread.start();
+        }
+    }
+
+    /**
+     * Queues the transfer and returns at once. The future completes after the
+     * batch holding it has committed, or fails if the posting itself failed.
+     *
+     * @throws RejectedExecutionException if the lane is full
+     */
+    public CompletableFuture<TransferResult> submit(TransferRequest request) {
+        if (request.fromAccount() == null || request.toAccount() == null || request.amount() == null) {
+            throw new IllegalArgumentException("fromAccount, toAccount and amount are required");
+        }
+        if (request.fromAccount().equals(request.toAccount())) {
+            throw new IllegalArgumentException("Cannot transfer to the same account");
+        }
+        if (request.amount().minorUnits() <= 0) {
+            throw new IllegalArgumentException("Transfer amount must be positive");
+        }
+        String reference = request.transferReference() != null ? request.transferReference() : UUID.randomUUID().toString();
+        PendingTransfer transfer = new PendingTransfer(reference, request.fromAccount(), request.toAccount(),
+                request.amount(), new CompletableFuture<>());
+        if (!laneFor(request.fromAccount()).queue.offer(transfer)) {
+            queueFull.increment();
+            throw new RejectedExecutionException("Transfer queue is full");
+        }
+        return transfer.result;
+    }
+
+    private Lane laneFor(String accountNumber) {
+        return lanes[Math.floorMod(accountNumber.hashCode(), lanes.length)];
+    }
+
+    private void run(Lane lane) {
+        List<PendingTransfer> batch = new ArrayList<>(batchSize);
+        while (running || !lane.queue.isEmpty()) {
+            try {
+                PendingTransfer first = lane.queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                lane.queue.drainTo(batch, batchSize - 1);
+                batchSizes.record(batch.size());
+                batchTimer.record(() -> post(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void post(List<PendingTransfer> batch) {
+        List<TransferResult> results;
+        try {
+            results = transactionTemplate.execute(status -> apply(batch));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1 && e instanceof DuplicateKeyException) {
+                // Same reference committed meanwhile by another lane
+                rejected.increment();
+                batch.get(0).result.complete(TransferResult.rejected(batch.get(0).reference, "Duplicate transferReference"));
+                return;
+            }
+            if (batch.size() == 1) {
+                log.warn("Transfer {} failed", batch.get(0).reference, e);
+                batch.get(0).result.completeExceptionally(e);
+                return;
+            }
+            // Whatever broke the batch, post the transfers one by one so it only fails its own
+            for (PendingTransfer transfer : batch) {
+                post(List.of(transfer));
+            }
+            return;
+        }
+        Map<String, Integer> entries = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            TransferResult result = results.get(i);
+            if (result.status() == TransferResult.Status.POSTED) {
+                posted.increment();
+                entries.merge(batch.get(i).fromAccount, 1, Integer::sum);
+                entries.merge(batch.get(i).toAccount, 1, Integer::sum);
+            } else {
+                rejected.increment();
+            }
+            batch.get(i).result.complete(result);
+        }
+        ledger.posted(entries);
+    }
+
+    private List<TransferResult> apply(List<PendingTransfer> batch) {
+        BalanceReservationService.Posting posting = reservations.posting();
+        Map<String, Account> accounts = lockAccounts(batch);
+        Set<String> references = existingReferences(batch);
+        List<TransferResult> results = new ArrayList<>(batch.size());
+        List<PendingTransfer> accepted = new ArrayList<>(batch.size());
+        for (PendingTransfer transfer : batch) {
+            Account from = accounts.get(transfer.fromAccount);
+            Account to = accounts.get(transfer.toAccount);
+            String reason = check(transfer, from, to, references);
+            // Funds set aside for card authorisations are not available to transfers either
+            if (reason == null && from.balance - from.held - transfer.amount.minorUnits() < from.floor) {
+                from.held -= posting.reclaim(transfer.fromAccount);
+                if (from.balance - from.held - transfer.amount.minorUnits() < from.floor) {
+                    reason = "Insufficient funds";
+                }
+            }
+            if (reason != null) {
+                results.add(TransferResult.rejected(transfer.reference, reason));
+                continue;
+            }
+            from.balance = Math.subtractExact(from.balance, transfer.amount.minorUnits());
+            to.balance = Math.addExact(to.balance, transfer.amount.minorUnits());
+            references.add(transfer.reference);
+            accepted.add(transfer);
+            results.add(TransferResult.posted(transfer.reference));
+        }
+        if (accepted.isEmpty()) {
+            return results;
+        }
+
+        List<LedgerEntry> entries = new ArrayList<>(accepted.size() * 2);
+        for (PendingTransfer transfer : accepted) {
+            entries.add(new LedgerEntry(null, transfer.fromAccount, transfer.amount.negate(), transfer.reference, null));
+            entries.add(new LedgerEntry(null, transfer.toAccount, transfer.amount, transfer.reference, null));
+        }
+        ledger.append(entries);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.batchUpdate(INSERT_TRANSFER, accepted, accepted.size(), (ps, transfer) -> {
+            ps.setString(1, transfer.reference);
+            ps.setString(2, transfer.fromAccount);
+            ps.setString(3, transfer.toAccount);
+            ps.setBigDecimal(4, transfer.amount.toBigDecimal());
+            ps.setString(5, transfer.amount.currencyCode());
+            ps.setTimestamp(6, now);
+        });
+        return results;
+    }
+
+    private static String check(PendingTransfer transfer, Account from, Account to, Set<String> references) {
+        if (references.contains(transfer.reference)) {
+            return "Duplicate transferReference";
+        }
+        if (from == null || to == null) {
+            return "Unknown account";
+        }
+        if (!from.active || !to.active) {
+            return "Account is not active";
+        }
+        String currency = transfer.amount.currencyCode();
+        if (!currency.equals(from.currency) || !currency.equals(to.currency)) {
+            return "Currency does not match both accounts";
+        }
+        return null;
+    }
+
+    private Map<String, Account> lockAccounts(List<PendingTransfer> batch) {
+        Set<String> debited = new HashSet<>();
+        Set<String> credited = new HashSet<>();
+        for (PendingTransfer transfer : batch) {
+            debited.add(transfer.fromAccount);
+            credited.add(transfer.toAccount);
+        }
+        credited.removeAll(debited);
+        Map<String, Account> accounts = new TreeMap<>();
+        // Only debits can overdraw, so only debited rows are locked, in account-number order
+        readAccounts(accounts, String.format(SELECT_ACCOUNTS, placeholders(debited.size())) + " FOR UPDATE", debited);
+        if (!credited.isEmpty()) {
+            readAccounts(accounts, String.format(SELECT_ACCOUNTS, placeholders(credited.size())), credited);
+        }
+        // Read after the locks, so no other node can post a debit or grow an allowance in between
+        ledger.balances(debited).forEach((number, balance) -> accounts.get(number).balance = balance);
+        reservations.reservedTotals(debited).forEach((number, held) -> accounts.get(number).held = held);
+        return accounts;
+    }
+
+    private void readAccounts(Map<String, Account> accounts, String sql, Set<String> numbers) {
+        jdbcTemplate.query(sql, rs -> {
+            Account account = new Account();
+            account.currency = rs.getString("currency");
+            account.active = rs.getBoolean("is_active");
+            account.floor = BalanceHoldRepository.Limits.floor(rs.getBigDecimal("minimum_balance"),
+                    rs.getBigDecimal("overdraft_limit"));
+            accounts.put(rs.getString("account_number"), account);
+        }, numbers.toArray());
+    }
+
+    private Set<String> existingReferences(List<PendingTransfer> batch) {
+        Set<String> references = new HashSet<>();
+        jdbcTemplate.query(String.format(SELECT_EXISTING_REFERENCES, placeholders(batch.size())),
+                rs -> {
+                    references.add(rs.getString(1));
+                },
+                batch.stream().map(transfer -> transfer.reference).toArray());
+        return references;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    public int queueDepth() {
+        int depth = 0;
+        for (Lane lane : lanes) {
+            depth += lane.queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * Stops taking new work once the queues are drained.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        for (Lane lane : lanes) {
+            lane.thread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    private static final class Lane {
+        final BlockingQueue<PendingTransfer> queue;
+        Thread thread;
+
+        Lane(BlockingQueue<PendingTransfer> queue) {
+            this.queue = queue;
+        }
+    }
+
+    private record PendingTransfer(String reference, String fromAccount, String toAccount, Money amount,
+                                   CompletableFuture<TransferResult> result) {
+    }
+
+    // Balance and held are only read for debited accounts; credited ones start from zero and are never checked
+    private static final class Account {
+        long balance;
+        long held;
+        long floor;
+        String currency;
+        boolean active;
+    }
+}
@@ -0,0 +1,297 @@
+package com.java.coreTemplate.service;
+
+import com.java.coreTemplate.config.CacheInvalidationBus;
+import com.java.coreTemplate.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * In-memory Bloom filters over every registered username and email, which
+ * let the availability checks and login answer without querying Postgres.
+ *
+ * <p>Each node announces its registrations to the others over the
+ * {@link CacheInvalidationBus}. A username miss is only taken as proof that
+ * the user does not exist while the bus has stayed connected since the scan
+ * the filters were built from, and that scan is younger than twice the
+ * rebuild interval; otherwise login asks the database. Announcements lost
+ * while a node was not listening make it rebuild at once. Users inserted
+ * outside the application are found by the next rebuild. The unique
+ * constraints remain the guard on registration.
+ */
+@Component
+public class UserExistenceFilter {
+    private static final Logger log = LoggerFactory.getLogger(UserExistenceFilter.class);
+    private static final String USERNAMES = "registeredUsernames";
+    private static final String EMAILS = "registeredEmails";
+
+    private final JdbcTemplate scanTemplate;
+    private final long minExpectedUsers;
+    private final double falsePositiveRate;
+    private final long maxAgeNanos;
+    private final CacheInvalidationBus invalidationBus;
+    private final Counter definiteMisses;
+    private final Counter staleMisses;
+    private final AtomicLong indexedUsers = new AtomicLong();
+    // Times the bus may have dropped announcements; a filter is trusted while it matches the count at its scan
+    private final AtomicLong gaps = new AtomicLong();
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+    private final ExecutorService rebuilder;
+    private volatile Filters current;
+    // Set while a rebuild scan runs so registrations land in the filters being built as well
+    private volatile Filters building;
+
+    public UserExistenceFilter(DataSource dataSource,
+                               @Value("${users.bloom.expected-users:100000}") long minExpectedUsers,
+                               @Value("${users.bloom.false-positive-rate:0.01}") double falsePositiveRate,
+                               @Value("${users.bloom.scan-fetch-size:5000}") int fetchSize,
+                               @Value("${users.bloom.rebuild-interval:3600000}") Duration rebuildInterval,
+                               CacheInvalidationBus invalidationBus,
+                               MeterRegistry meterRegistry) {
+        this.scanTemplate = new JdbcTemplate(dataSource);
+        this.scanTemplate.setFetchSize(fetchSize);
+        this.minExpectedUsers = minExpectedUsers;
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxAgeNanos = rebuildInterval.multipliedBy(2).toNanos();
+        this.invalidationBus = invalidationBus;
+        this.current = new Filters(minExpectedUsers, falsePositiveRate, -1);
+        this.rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-filter-rebuilder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        invalidationBus.broadcasting(new Announcements(USERNAMES, filters -> filters.usernames));
+        invalidationBus.broadcasting(new Announcements(EMAILS, filters -> filters.emails));
+        this.definiteMisses = Counter.builder("users.bloom.definite.misses").register(meterRegistry);
+        this.staleMisses = Counter.builder("users.bloom.stale.misses").register(meterRegistry);
+        Gauge.builder("users.bloom.memory.bytes", this, f -> f.current.memoryBytes()).register(meterRegistry);
+        Gauge.builder("users.bloom.false.positive.rate", this, UserExistenceFilter::expectedFalsePositiveRate)
+                .register(meterRegistry);
+        Gauge.builder("users.bloom.indexed", indexedUsers, AtomicLong::get).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${users.bloom.rebuild-interval:3600000}",
+            fixedDelayString = "${users.bloom.rebuild-interval:3600000}")
+    public synchronized void rebuild() {
+        // Announcements from here on reach the filters being built; read before the scan so a gap during it counts
+        long gapsAtScan = invalidationBus.isConnected() ? gaps.get() : -1;
+        Long count = scanTemplate.queryForObject("SELECT count(*) FROM users", Long.class);
+        // Headroom so registrations until the next rebuild do not push the false-positive rate up
+        long expected = Math.max(minExpectedUsers, (count != null ? count : 0) * 2);
+        Filters next = new Filters(expected, falsePositiveRate, gapsAtScan);
+        building = next;
+        long[] scanned = {0};
+        try {
+            // Streams rows through a server-side cursor instead of loading the table
+            scanTemplate.query("SELECT username, email FROM users", rs -> {
+                next.usernames.put(rs.getString(1));
+                next.emails.put(rs.getString(2));
+                scanned[0]++;
+            });
+            current = next;
+        } finally {
+            building = null;
+        }
+        indexedUsers.set(scanned[0]);
+        log.info("User Bloom filters rebuilt: {} users, {} bytes, expected false-positive rate {}",
+                scanned[0], next.memoryBytes(), expectedFalsePositiveRate());
+    }
+
+    private void rebuildQuietly() {
+        rebuildQueued.set(false);
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("Rebuilding the user Bloom filters failed; login asks the database until the next rebuild", e);
+        }
+    }
+
+    /**
+     * Must be called after the insert has committed. Announced to the other
+     * nodes as well.
+     */
+    public void recordUser(String username, String email) {
+        // Read building before current: a rebuild publishes current before clearing building
+        Filters inProgress = building;
+        current.put(username, email);
+        if (inProgress != null) {
+            inProgress.put(username, email);
+        }
+        indexedUsers.incrementAndGet();
+        invalidationBus.publish(USERNAMES, username);
+        invalidationBus.publish(EMAILS, email);
+    }
+
+    /**
+     * Adds a username found in the database, for users registered on another
+     * node or outside the application since the last rebuild.
+     */
+    public void recordExisting(String username) {
+        if (!current.usernames.mightContain(username)) {
+            Filters inProgress = building;
+            current.usernames.put(username);
+            if (inProgress != null) {
+                inProgress.usernames.put(username);
+            }
+            staleMisses.increment();
+        }
+    }
+
+    public boolean mightContainUsername(String username) {
+        return record(current.usernames.mightContain(username));
+    }
+
+    /**
+     * True only when the username is certainly not registered, so the
+     * database need not be asked; false when it might be, or when the filter
+     * may have missed registrations made on other nodes.
+     */
+    public boolean isUnknownUsername(String username) {
+        Filters filters = current;
+        boolean complete = filters.gapsAtScan == gaps.get() && invalidationBus.isConnected()
+                && System.nanoTime() - filters.builtAt < maxAgeNanos;
+        return complete && !mightContainUsername(username);
+    }
+
+    public boolean mightContainEmail(String email) {
+        return record(current.emails.mightContain(email));
+    }
+
+    public double expectedFalsePositiveRate() {
+        return current.usernames.expectedFalsePositiveRate(indexedUsers.get());
+    }
+
+    public long memoryBytes() {
+        return current.memoryBytes();
+    }
+
+    private boolean record(boolean mightContain) {
+        if (!mightContain) {
+            definiteMisses.increment();
+        }
+        return mightContain;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        rebuilder.shutdownNow();
+        rebuilder.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private static final class Filters {
+        final BloomFilter usernames;
+        final BloomFilter emails;
+        // -1 when the bus was not connected, which no gap count matches
+        final long gapsAtScan;
+        final long builtAt = System.nanoTime();
+
+        Filters(long expectedUsers, double falsePositiveRate, long gapsAtScan) {
+            this.usernames = new BloomFilter(expectedUsers, falsePositiveRate);
+            this.emails = new BloomFilter(expectedUsers, falsePositiveRate);
+            this.gapsAtScan = gapsAtScan;
+        }
+
+        void put(String username, String email) {
+            usernames.put(username);
+            emails.put(email);
+        }
+
+        long memoryBytes() {
+            return usernames.memoryBytes() + emails.memoryBytes();
+        }
+    }
+
+    /**
+     * Where the bus delivers another node's announcements for one of the
+     * filters: an evicted key is a registered value, and a clear means
+     * announcements may have been lost.
+     */
+    private final class Announcements implements Cache {
+        private final String name;
+        private final Function<Filters, BloomFilter> filter;
+
+        Announcements(String name, Function<Filters, BloomFilter> filter) {
+            this.name = name;
+            this.filter = filter;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return UserExistenceFilter.this;
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            return null;
+        }
+
+        @Override
+        public <T> T get(Object key, Class<T> type) {
+            return null;
+        }
+
+        @Override
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            try {
+                return valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+        }
+
+        @Override
+        public void evict(Object key) {
+            Filters inProgress = building;
+            filter.apply(current).put(key.toString());
+            if (inProgress != null) {
+                filter.apply(inProgress).put(key.toString());
+            }
+        }
+
+        @Override
+        public void clear() {
+            gaps.incrementAndGet();
+            if (rebuildQueued.compareAndSet(false, true)) {
+                try {
+                    rebuilder.execute(UserExistenceFilter.this::rebuildQuietly);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down
+                }
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.java.coreTemplate.repository.UserManagementModuleRepository;
 import com.java.coreTemplate.model.dto.UserManagementModule;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -24,12 +25,12 @@ public class UserManagementModuleService {
     }
 
     @Transactional
-    @CacheEvict(value = "users", allEntries = true)
+    @CachePut(value = "users", key = "#result.id")
     public UserManagementModule save(UserManagementModule entity) {
         return repository.save(entity);
     }
 
-    @Cacheable(value = "users", key = "#id")
+    @Cacheable(value = "users", key = "#id", sync = true)
     public Optional<UserManagementModule> findById(Long id) {
         return repository.findById(id);
     }
@@ -39,7 +40,6 @@ public class UserManagementModuleService {
         return repository.findByIsActiveTrue();
     }
 
-    @Cacheable(value = "users")
     public Page<UserManagementModule> findAll(Pageable pageable) {
         return repository.findAll(pageable);
     }
@@ -51,7 +51,7 @@ public class UserManagementModuleService {
     }
 
     @Transactional
-    @CacheEvict(value = "users", key = "#id")
+    @CachePut(value = "users", key = "#id")
     public UserManagementModule update(Long id, UserManagementModule updatedEntity) {
         return repository.findById(id)
                 .map(existingEntity -> {
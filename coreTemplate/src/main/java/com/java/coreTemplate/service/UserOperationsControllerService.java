@@ -6,6 +6,8 @@ import com.java.coreTemplate.repository.UserOperationsControllerRepository;
 import com.java.coreTemplate.model.dto.UserOperationsController;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import java.util.List;
@@ -22,17 +24,17 @@ public class UserOperationsControllerService {
     }
 
     @Transactional
-    @CacheEvict(value = "users", allEntries = true)
+    @Caching(put = @CachePut(value = "userOperations", key = "#result.id"),
+            evict = @CacheEvict(value = "userOperationQueries", allEntries = true))
     public UserOperationsController save(UserOperationsController entity) {
         return repository.save(entity);
     }
 
-    @Cacheable(value = "users", key = "#id")
+    @Cacheable(value = "userOperations", key = "#id", sync = true)
     public Optional<UserOperationsController> findById(Long id) {
         return repository.findById(id);
     }
 
-    @Cacheable(value = "users")
     public List<UserOperationsController> findAll() {
         return repository.findAll();
     }
@@ -41,24 +43,25 @@ public class UserOperationsControllerService {
         return repository.findAll(pageable);
     }
 
-    @Cacheable(value = "activeUsers")
+    @Cacheable(value = "userOperationQueries", key = "'active'", sync = true)
     public List<UserOperationsController> findAllActive() {
         return repository.findByIsActiveTrue();
     }
 
     @Transactional
-    @CacheEvict(value = {"users", "activeUsers"}, key = "#id")
+    @Caching(evict = {@CacheEvict(value = "userOperations", key = "#id"),
+            @CacheEvict(value = "userOperationQueries", allEntries = true)})
     public void deleteById(Long id) {
         repository.deleteById(id);
     }
 
     @Transactional
-    @CacheEvict(value = {"users", "activeUsers"}, allEntries = true)
+    @CacheEvict(value = {"userOperations", "userOperationQueries"}, allEntries = true)
     public List<UserOperationsController> saveAll(List<UserOperationsController> entities) {
         return repository.saveAll(entities);
     }
 
-    @Cacheable(value = "users", key = "#email")
+    @Cacheable(value = "userOperationQueries", key = "'email-' + #email", sync = true)
     public Optional<UserOperationsController> findByEmail(String email) {
         return repository.findByEmail(email);
     }
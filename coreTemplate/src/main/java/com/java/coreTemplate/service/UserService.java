@@ -1,30 +1,140 @@
 package com.java.coreTemplate.service;
 
+import com.java.coreTemplate.model.dto.BulkRegistrationResponse;
+import com.java.coreTemplate.model.dto.RegistrationRequest;
+import com.java.coreTemplate.model.dto.UserCredentials;
 import com.java.coreTemplate.model.entity.UserDetails;
 import com.java.coreTemplate.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class UserService {
     @Autowired
     private UserRepository userRepository;
-        public UserDetails registerUser(String username, String password, String email) {
-            if (userRepository.findByUsername(username).isPresent()) {
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+    @Autowired
+    private UserExistenceFilter userExistenceFilter;
+    @Autowired
+    private CredentialCache credentialCache;
+        // Completes on the hashing pool once the row is inserted
+        public CompletableFuture<UserDetails> registerUser(String username, String password, String email) {
+            // Checked before spending bcrypt on a registration that cannot succeed
+            try {
+                rejectDuplicate(username, email);
+            } catch (IllegalArgumentException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            return passwordHashingService.hash(password).thenApply(passwordHash -> {
+                try {
+                    // The unique constraints still catch a concurrent registration of the same values
+                    Integer id = userRepository.insertUser(username, passwordHash, email);
+                    userExistenceFilter.recordUser(username, email);
+                    credentialCache.invalidate(username);
+                    UserDetails newUser = new UserDetails(username, passwordHash, email);
+                    newUser.setId(id);
+                    return newUser;
+                } catch (DuplicateKeyException e) {
+                    // Asks the database which value clashed rather than parsing the driver's message
+                    throw new IllegalArgumentException(userRepository.findByUsername(username).isPresent()
+                            ? "Username already exists" : "Email already exists");
+                }
+            });
+        }
+
+        private void rejectDuplicate(String username, String email) {
+            if (isUsernameTaken(username)) {
                 throw new IllegalArgumentException("Username already exists");
             }
-            if (userRepository.findByEmail(email).isPresent()) {
+            if (isEmailTaken(email)) {
                 throw new IllegalArgumentException("Email already exists");
             }
+        }
 
-            UserDetails newUser = new UserDetails(username, password, email);
-            return userRepository.save(newUser);
+        public CompletableFuture<BulkRegistrationResponse> registerUsers(List<RegistrationRequest> requests) {
+            List<RegistrationRequest> valid = new ArrayList<>(requests.size());
+            List<String> rejected = new ArrayList<>();
+            int invalid = 0;
+            for (RegistrationRequest request : requests) {
+                if (request.getUsername() == null || request.getPassword() == null || request.getEmail() == null) {
+                    invalid++;
+                } else {
+                    valid.add(request);
+                }
+            }
+
+            int invalidCount = invalid;
+            return passwordHashingService.hashAll(valid.stream().map(RegistrationRequest::getPassword).toList())
+                    .thenApply(hashes -> {
+                        List<UserDetails> users = new ArrayList<>(valid.size());
+                        for (int i = 0; i < valid.size(); i++) {
+                            RegistrationRequest request = valid.get(i);
+                            users.add(new UserDetails(request.getUsername(), hashes.get(i), request.getEmail()));
+                        }
+
+                        boolean[] inserted = userRepository.insertUsers(users);
+                        int registered = 0;
+                        for (int i = 0; i < inserted.length; i++) {
+                            if (inserted[i]) {
+                                userExistenceFilter.recordUser(users.get(i).getUsername(), users.get(i).getEmail());
+                                credentialCache.invalidate(users.get(i).getUsername());
+                                registered++;
+                            } else {
+                                rejected.add(users.get(i).getUsername());
+                            }
+                        }
+                        return new BulkRegistrationResponse(registered, invalidCount, rejected);
+                    });
+        }
+
+        public boolean isUsernameTaken(String username) {
+            return userExistenceFilter.mightContainUsername(username)
+                    && userRepository.findByUsername(username).isPresent();
         }
 
-        public Optional<UserDetails> authenticateUser(String username, String password) {
-            Optional<UserDetails> userOptional = userRepository.findByUsername(username);
-            return userOptional.filter(user -> user.getPassword().equals(password));
+        public boolean isEmailTaken(String email) {
+            return userExistenceFilter.mightContainEmail(email)
+                    && userRepository.findByEmail(email).isPresent();
+        }
+
+        /**
+         * Completes with the user if the password matches. Unknown usernames
+         * are verified against a dummy hash, so they take as long as a wrong
+         * password and the timing does not tell which usernames exist.
+         */
+        public CompletableFuture<Optional<UserCredentials>> authenticateUser(String username, String password) {
+            if (userExistenceFilter.isUnknownUsername(username)) {
+                // Spares the database a lookup of every guessed username, but not the dummy verification
+                return passwordHashingService.matches(password, null).thenApply(matched -> Optional.empty());
+            }
+            // The filter may have missed users registered elsewhere: ask the database and catch it up
+            Optional<UserCredentials> found = credentialCache.get(username);
+            found.ifPresent(user -> userExistenceFilter.recordExisting(user.username()));
+            return passwordHashingService.matches(password, found.map(UserCredentials::passwordHash).orElse(null))
+                    .thenCompose(matched -> {
+                        if (!matched || found.isEmpty()) {
+                            return CompletableFuture.completedFuture(Optional.<UserCredentials>empty());
+                        }
+                        UserCredentials user = found.get();
+                        if (!passwordHashingService.needsRehash(user.passwordHash())) {
+                            return CompletableFuture.completedFuture(found);
+                        }
+                        // Upgrade plain-text rows and hashes made with an older cost while we hold the password
+                        return passwordHashingService.hash(password)
+                                .thenApply(passwordHash -> {
+                                    userRepository.updatePassword(user.id(), user.passwordHash(), passwordHash);
+                                    credentialCache.invalidate(username);
+                                    return Optional.of(new UserCredentials(user.id(), user.username(), passwordHash));
+                                })
+                                // A busy pool must not fail the login; the next one upgrades it
+                                .exceptionally(e -> found);
+                    });
         }
     }
\ No newline at end of file
@@ -6,6 +6,8 @@ import com.java.coreTemplate.repository.UserViewsRepository;
 import com.java.coreTemplate.model.dto.UserViews;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import java.util.Optional;
@@ -22,18 +24,20 @@ public class UserViewsService {
     }
 
     @Transactional
-    @CacheEvict(value = "userViews", allEntries = true)
+    @Caching(put = @CachePut(value = "userViews", key = "#result.id"),
+            evict = @CacheEvict(value = "userViewQueries", allEntries = true))
     public UserViews save(UserViews entity) {
         return repository.save(entity);
     }
 
-    @Cacheable(value = "userViews", key = "#id")
+    @Cacheable(value = "userViews", key = "#id", sync = true)
     public Optional<UserViews> findById(Long id) {
         return repository.findById(id);
     }
 
     @Transactional
-    @CacheEvict(value = "userViews", key = "#id")
+    @Caching(evict = {@CacheEvict(value = "userViews", key = "#id"),
+            @CacheEvict(value = "userViewQueries", allEntries = true)})
     public void deleteById(Long id) {
         repository.deleteById(id);
     }
@@ -46,13 +50,14 @@ public class UserViewsService {
         return repository.findByIsActiveTrue();
     }
 
-    @Cacheable(value = "userViews", key = "'all-active'")
+    @Cacheable(value = "userViewQueries", key = "'active'", sync = true)
     public List<UserViews> findAllActiveCached() {
         return repository.findByIsActiveTrue();
     }
 
     @Transactional
-    @CacheEvict(value = "userViews", key = "#id")
+    @Caching(put = @CachePut(value = "userViews", key = "#id"),
+            evict = @CacheEvict(value = "userViewQueries", allEntries = true))
     public UserViews update(Long id, UserViews updatedEntity) {
         return repository.findById(id)
                 .map(existing -> {
@@ -0,0 +1,64 @@
+package com.java.coreTemplate.util;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
+
+/**
+ * Hands out ids from a database sequence whose INCREMENT BY equals the pool
+ * size, so one nextval call reserves a whole block. Uses the same block
+ * layout as Hibernate's pooled optimizer, (value - increment, value], which
+ * lets JPA inserts and JDBC batch inserts share one sequence.
+ */
+public class PooledSequence {
+    private final JdbcTemplate jdbcTemplate;
+    private final String sequenceName;
+    private final int increment;
+    private long next = 1;
+    private long hi;
+
+    public PooledSequence(JdbcTemplate jdbcTemplate, String sequenceName, int increment) {
+        if (increment < 1) {
+            throw new IllegalArgumentException("Sequence increment must be positive: " + increment);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.sequenceName = sequenceName;
+        this.increment = increment;
+    }
+
+    public synchronized long nextId() {
+        if (next > hi) {
+            long value = jdbcTemplate.queryForObject("SELECT nextval('" + sequenceName + "')", Long.class);
+            hi = value;
+            // A freshly created sequence starts below one full block
+            next = Math.max(1, value - increment + 1);
+        }
+        return next++;
+    }
+
+    public synchronized long[] nextIds(int count) {
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = nextId();
+        }
+        return ids;
+    }
+
+    /**
+     * Moves the sequence past ids that were assigned without it, for example
+     * by an identity column the table used before. Reads the sequence
+     * without drawing a block from it, and moves it with setval, which takes
+     * effect whether or not the caller's transaction commits. Postgres only.
+     */
+    public synchronized void ensureAbove(long maxExistingId) {
+        Map<String, Object> state = jdbcTemplate.queryForMap("SELECT last_value, is_called FROM " + sequenceName);
+        long lastValue = ((Number) state.get("last_value")).longValue();
+        // Until nextval is first called, the next block ends at last_value itself
+        long nextLowest = Boolean.TRUE.equals(state.get("is_called")) ? lastValue + 1 : Math.max(1, lastValue - increment + 1);
+        if (nextLowest <= maxExistingId) {
+            // The next nextval then reserves (maxExistingId, maxExistingId + increment]
+            jdbcTemplate.queryForObject("SELECT setval('" + sequenceName + "', ?)", Long.class, maxExistingId);
+            hi = 0;
+        }
+    }
+}
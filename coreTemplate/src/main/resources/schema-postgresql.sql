@@ -0,0 +1,25 @@
+-- Runs before schema.sql on Postgres (spring.sql.init.platform), so the partitioned definition
+-- wins and the plain CREATE TABLE IF NOT EXISTS there is a no-op.
+
+-- Range-partitioned by month. Monthly partitions are created ahead of time and dropped for
+-- retention by TransactionPartitionManager. The primary key has to include the partition key,
+-- and transaction_reference uniqueness is enforced through transaction_reference_key.
+CREATE TABLE IF NOT EXISTS transaction_management_module (
+    id                    BIGINT           NOT NULL,
+    transaction_reference VARCHAR(36)      NOT NULL,
+    amount                NUMERIC(19, 4)   NOT NULL,
+    currency_code         VARCHAR(3)       NOT NULL,
+    transaction_date      TIMESTAMP        NOT NULL,
+    description           VARCHAR(255),
+    is_successful         BOOLEAN,
+    is_processed          BOOLEAN,
+    requires_approval     BOOLEAN,
+    approval_status       VARCHAR(20),
+    created_at            TIMESTAMP        NOT NULL,
+    last_modified_at      TIMESTAMP,
+    version               BIGINT,
+    PRIMARY KEY (id, transaction_date)
+) PARTITION BY RANGE (transaction_date);
+-- Catches dates outside every monthly partition, such as back-dated imports
+CREATE TABLE IF NOT EXISTS transaction_management_module_default PARTITION OF transaction_management_module DEFAULT;
+CREATE INDEX IF NOT EXISTS idx_transaction_reference ON transaction_management_module (transaction_reference);
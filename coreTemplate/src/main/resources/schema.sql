@@ -0,0 +1,161 @@
+CREATE TABLE IF NOT EXISTS auth_session (
+    session_id       VARCHAR(64)  PRIMARY KEY,
+    user_id          VARCHAR(255) NOT NULL,
+    created_at       BIGINT       NOT NULL,
+    last_accessed_at BIGINT       NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_auth_session_last_accessed ON auth_session (last_accessed_at);
+
+CREATE TABLE IF NOT EXISTS revoked_token (
+    jti        VARCHAR(64) PRIMARY KEY,
+    expires_at TIMESTAMP   NOT NULL,
+    revoked_at TIMESTAMP   NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX IF NOT EXISTS idx_revoked_token_revoked_at ON revoked_token (revoked_at);
+
+CREATE SEQUENCE IF NOT EXISTS transaction_management_module_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS transaction_management_module (
+    id                    BIGINT           PRIMARY KEY,
+    transaction_reference VARCHAR(36)      NOT NULL UNIQUE,
+    amount                NUMERIC(19, 4)   NOT NULL,
+    currency_code         VARCHAR(3)       NOT NULL,
+    transaction_date      TIMESTAMP        NOT NULL,
+    description           VARCHAR(255),
+    is_successful         BOOLEAN,
+    is_processed          BOOLEAN,
+    requires_approval     BOOLEAN,
+    approval_status       VARCHAR(20),
+    created_at            TIMESTAMP        NOT NULL,
+    last_modified_at      TIMESTAMP,
+    version               BIGINT
+);
+-- Keyset pagination seeks on this
+CREATE INDEX IF NOT EXISTS idx_transaction_date_id ON transaction_management_module (transaction_date, id);
+-- Processing workers claim the lowest unprocessed ids
+CREATE INDEX IF NOT EXISTS idx_transaction_processed_id ON transaction_management_module (is_processed, id);
+
+-- Global uniqueness of transaction_reference, which the partitioned Postgres table can only
+-- enforce per partition
+CREATE TABLE IF NOT EXISTS transaction_reference_key (
+    transaction_reference VARCHAR(36) PRIMARY KEY,
+    transaction_id        BIGINT      NOT NULL,
+    transaction_date      TIMESTAMP   NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_transaction_reference_key_date ON transaction_reference_key (transaction_date);
+
+-- Maintained by the transaction write paths; rebuildable from transaction_management_module
+CREATE TABLE IF NOT EXISTS transaction_rollup (
+    rollup_date   DATE           NOT NULL,
+    currency_code VARCHAR(3)     NOT NULL,
+    status        VARCHAR(20)    NOT NULL,
+    txn_count     BIGINT         NOT NULL,
+    total_amount  NUMERIC(19, 4) NOT NULL,
+    PRIMARY KEY (rollup_date, currency_code, status)
+);
+
+CREATE TABLE IF NOT EXISTS bank_account_management_module (
+    id                  BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    account_number      VARCHAR(34)    NOT NULL UNIQUE,
+    account_holder_name VARCHAR(100)   NOT NULL,
+    balance             NUMERIC(19, 4) NOT NULL,
+    currency            VARCHAR(3)     NOT NULL,
+    is_active           BOOLEAN,
+    is_joint_account    BOOLEAN,
+    overdraft_limit     NUMERIC(19, 4),
+    created_at          TIMESTAMP      NOT NULL,
+    last_updated_at     TIMESTAMP,
+    minimum_balance     NUMERIC(19, 4),
+    version             BIGINT
+);
+
+CREATE TABLE IF NOT EXISTS account_transfer (
+    id                 BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    transfer_reference VARCHAR(64)    NOT NULL UNIQUE,
+    from_account       VARCHAR(34)    NOT NULL,
+    to_account         VARCHAR(34)    NOT NULL,
+    amount             NUMERIC(19, 4) NOT NULL,
+    currency           VARCHAR(3)     NOT NULL,
+    posted_at          TIMESTAMP      NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_account_transfer_from ON account_transfer (from_account, posted_at);
+CREATE INDEX IF NOT EXISTS idx_account_transfer_to ON account_transfer (to_account, posted_at);
+
+-- Append-only: every balance movement of an account, never updated or deleted. The balance is
+-- the latest snapshot plus the entries posted after it
+CREATE TABLE IF NOT EXISTS ledger_entry (
+    id                 BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    account_number     VARCHAR(34)    NOT NULL,
+    amount             NUMERIC(19, 4) NOT NULL,
+    currency           VARCHAR(3)     NOT NULL,
+    transfer_reference VARCHAR(64)    NOT NULL,
+    posted_at          TIMESTAMP      NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_ledger_entry_account ON ledger_entry (account_number, posted_at);
+
+-- Balance of an account over all its entries posted at or before as_of
+CREATE TABLE IF NOT EXISTS ledger_snapshot (
+    account_number VARCHAR(34)    NOT NULL,
+    as_of          TIMESTAMP      NOT NULL,
+    balance        NUMERIC(19, 4) NOT NULL,
+    entry_count    BIGINT         NOT NULL,
+    PRIMARY KEY (account_number, as_of)
+);
+
+-- Written behind by BalanceReservationService; HELD rows not yet expired count against the balance
+CREATE TABLE IF NOT EXISTS balance_hold (
+    id              VARCHAR(36)    PRIMARY KEY,
+    account_number  VARCHAR(34)    NOT NULL,
+    amount          NUMERIC(19, 4) NOT NULL,
+    currency        VARCHAR(3)     NOT NULL,
+    status          VARCHAR(10)    NOT NULL,
+    captured_amount NUMERIC(19, 4),
+    created_at      TIMESTAMP      NOT NULL,
+    expires_at      TIMESTAMP      NOT NULL,
+    closed_at       TIMESTAMP
+);
+CREATE INDEX IF NOT EXISTS idx_balance_hold_status ON balance_hold (status);
+CREATE INDEX IF NOT EXISTS idx_balance_hold_account ON balance_hold (account_number, status);
+
+-- Funds a node has set aside on an account to grant holds from memory, less its holds already in balance_hold.
+-- Counts against the balance like a hold until expires_at, which the node keeps renewing; generation changes
+-- when the node gives its allowances up, so writes meant for an older one miss
+CREATE TABLE IF NOT EXISTS balance_allowance (
+    account_number VARCHAR(34)    NOT NULL,
+    node_id        VARCHAR(64)    NOT NULL,
+    generation     BIGINT         NOT NULL,
+    amount         NUMERIC(19, 4) NOT NULL,
+    expires_at     TIMESTAMP      NOT NULL,
+    PRIMARY KEY (account_number, node_id)
+);
+CREATE INDEX IF NOT EXISTS idx_balance_allowance_node ON balance_allowance (node_id);
+
+-- One row per business date: accrual runs never post a date twice. heartbeat_at is refreshed by the
+-- node running it; a RUNNING job whose heartbeat has gone stale, or a PAUSED one, may be resumed by any node
+CREATE TABLE IF NOT EXISTS accrual_job (
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    business_date  DATE         NOT NULL UNIQUE,
+    status         VARCHAR(10)  NOT NULL,
+    run_token      VARCHAR(36)  NOT NULL,
+    accounts_total BIGINT       NOT NULL,
+    ranges_total   INT          NOT NULL,
+    started_at     TIMESTAMP    NOT NULL,
+    resumed_at     TIMESTAMP    NOT NULL,
+    resumed_done   BIGINT       NOT NULL,
+    heartbeat_at   TIMESTAMP    NOT NULL,
+    finished_at    TIMESTAMP,
+    error          VARCHAR(500)
+);
+
+-- Accounts of a job with from_id < id <= to_id; last_id is the checkpoint, advanced in the same
+-- transaction as the ledger entries of the accounts up to it
+CREATE TABLE IF NOT EXISTS accrual_range (
+    job_id      BIGINT    NOT NULL,
+    range_no    INT       NOT NULL,
+    from_id     BIGINT    NOT NULL,
+    to_id       BIGINT    NOT NULL,
+    last_id     BIGINT    NOT NULL,
+    processed   BIGINT    NOT NULL,
+    finished_at TIMESTAMP,
+    PRIMARY KEY (job_id, range_no)
+);
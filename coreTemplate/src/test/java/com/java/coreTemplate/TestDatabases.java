@@ -0,0 +1,86 @@
+package com.java.coreTemplate;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.Optional;
+
+/**
+ * The database a JDBC test runs against, with schema.sql applied. Defaults to
+ * an in-memory H2 in PostgreSQL mode; -D&lt;prefix&gt;.url (plus .username and
+ * .password) points one test at a real database, -Dtest.db.url all of them.
+ */
+public final class TestDatabases {
+
+	private TestDatabases() {
+	}
+
+	public static DriverManagerDataSource open(String prefix, String h2Name) {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				property(prefix, "url", "jdbc:h2:mem:" + h2Name + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000"),
+				property(prefix, "username", "sa"),
+				property(prefix, "password", ""));
+		new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+		return dataSource;
+	}
+
+	/**
+	 * A Postgres database laid out as the application creates it, with
+	 * transaction_management_module partitioned by month, in a schema of its
+	 * own so the plain table of the other tests is left alone. The table is
+	 * recreated on every call, without the partitions of earlier runs. Empty
+	 * unless the prefix points at Postgres.
+	 */
+	public static Optional<DriverManagerDataSource> openPartitioned(String prefix, String schema) {
+		String url = property(prefix, "url", null);
+		if (url == null || !url.startsWith("jdbc:postgresql:")) {
+			return Optional.empty();
+		}
+		String username = property(prefix, "username", "sa");
+		String password = property(prefix, "password", "");
+		new JdbcTemplate(new DriverManagerDataSource(url, username, password))
+				.execute("CREATE SCHEMA IF NOT EXISTS " + schema);
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				url + (url.contains("?") ? "&" : "?") + "currentSchema=" + schema, username, password);
+		new JdbcTemplate(dataSource).execute("DROP TABLE IF EXISTS transaction_management_module");
+		new ResourceDatabasePopulator(new ClassPathResource("schema-postgresql.sql"), new ClassPathResource("schema.sql"))
+				.execute(dataSource);
+		return Optional.of(dataSource);
+	}
+
+	/**
+	 * A pool over the database, for tests that race many short transactions:
+	 * DriverManagerDataSource opens a connection for every one. Close it
+	 * after the test.
+	 */
+	public static HikariDataSource pooled(DriverManagerDataSource database, int size) {
+		HikariDataSource pool = new HikariDataSource();
+		pool.setJdbcUrl(database.getUrl());
+		pool.setUsername(database.getUsername());
+		pool.setPassword(database.getPassword());
+		pool.setMaximumPoolSize(size);
+		return pool;
+	}
+
+	/**
+	 * A pool with auto-commit off, as the application profiles configure
+	 * theirs: a write made outside a transaction is rolled back when its
+	 * connection goes back to the pool. Close it after the test.
+	 */
+	public static HikariDataSource pooledWithoutAutoCommit(DriverManagerDataSource database, int size) {
+		HikariDataSource pool = pooled(database, size);
+		pool.setAutoCommit(false);
+		return pool;
+	}
+
+	public static boolean isPostgres(DriverManagerDataSource dataSource) {
+		return dataSource.getUrl() != null && dataSource.getUrl().startsWith("jdbc:postgresql:");
+	}
+
+	private static String property(String prefix, String name, String defaultValue) {
+		return System.getProperty(prefix + "." + name, System.getProperty("test.db." + name, defaultValue));
+	}
+}
@@ -0,0 +1,31 @@
+package com.java.coreTemplate;
+
+import com.java.coreTemplate.repository.TransactionManagementModuleRepository;
+import com.java.coreTemplate.repository.TransactionManagementModuleRepositoryImpl;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+
+/**
+ * Spring Data repositories for tests that run without an application
+ * context. Only the JDBC fragment is backed; calling a derived or JPA method
+ * fails with NoSuchMethodException.
+ */
+public final class TestRepositories {
+
+	private TestRepositories() {
+	}
+
+	public static TransactionManagementModuleRepository transactions(TransactionManagementModuleRepositoryImpl impl) {
+		return (TransactionManagementModuleRepository) Proxy.newProxyInstance(
+				TransactionManagementModuleRepository.class.getClassLoader(),
+				new Class<?>[]{TransactionManagementModuleRepository.class},
+				(proxy, method, args) -> {
+					try {
+						return impl.getClass().getMethod(method.getName(), method.getParameterTypes()).invoke(impl, args);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+				});
+	}
+}
@@ -0,0 +1,231 @@
+package com.java.coreTemplate.config;
+
+import com.java.coreTemplate.TestDatabases;
+import com.java.coreTemplate.model.dto.BankAccountManagementModule;
+import com.java.coreTemplate.service.CredentialCache;
+import com.java.coreTemplate.service.UserExistenceFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Starts two application contexts, as two nodes would, against one Postgres
+ * and checks that writes on one evict on the other. Needs Postgres:
+ * -Dcache.test.url (plus cache.test.username / cache.test.password) or
+ * -Dtest.db.url, as set by the postgres-tests profile; skipped without it.
+ */
+class CacheInvalidationBusTest {
+
+	private static DriverManagerDataSource database;
+
+	private AnnotationConfigApplicationContext nodeA;
+	private AnnotationConfigApplicationContext nodeB;
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void setUp() {
+		database = TestDatabases.open("cache.test", "cache_bus");
+		assumeTrue(TestDatabases.isPostgres(database), "cache.test.url is not a Postgres URL");
+		// Scanned by the user filters as the nodes start
+		JdbcTemplate users = new JdbcTemplate(database);
+		users.execute("CREATE TABLE IF NOT EXISTS users (id SERIAL PRIMARY KEY, "
+				+ "username VARCHAR(255) NOT NULL UNIQUE, password VARCHAR(255) NOT NULL, email VARCHAR(255) NOT NULL UNIQUE)");
+		users.update("DELETE FROM users WHERE username LIKE 'bus-user%'");
+		nodeA = node();
+		nodeB = node();
+		jdbcTemplate = nodeA.getBean(JdbcTemplate.class);
+		jdbcTemplate.update("DELETE FROM bank_account_management_module");
+		await(() -> nodeA.getBean(CacheInvalidationBus.class).isConnected()
+				&& nodeB.getBean(CacheInvalidationBus.class).isConnected());
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (nodeA != null) {
+			nodeA.close();
+		}
+		if (nodeB != null) {
+			nodeB.close();
+		}
+	}
+
+	@Test
+	void evictionOnOneNodeReachesTheOther() {
+		Cache cacheA = cache(nodeA, "bankAccounts");
+		Cache cacheB = cache(nodeB, "bankAccounts");
+		cacheB.get(1L, () -> "loaded");
+		cacheB.get(2L, () -> "loaded");
+
+		cacheA.evict(1L);
+
+		await(() -> cacheB.get(1L) == null);
+		assertNotNull(cacheB.get(2L));
+	}
+
+	@Test
+	void credentialInvalidationReachesTheOtherNode() {
+		jdbcTemplate.update("INSERT INTO users (username, password, email) VALUES ('bus-user', 'old', 'bus-user@example.com')");
+		CredentialCache credentialsB = nodeB.getBean(CredentialCache.class);
+		assertEquals("old", credentialsB.get("bus-user").orElseThrow().passwordHash());
+
+		// A password change committed through node A
+		jdbcTemplate.update("UPDATE users SET password = 'new' WHERE username = 'bus-user'");
+		nodeA.getBean(CredentialCache.class).invalidate("bus-user");
+
+		await(() -> "new".equals(credentialsB.get("bus-user").orElseThrow().passwordHash()));
+	}
+
+	@Test
+	void registrationsReachTheUserFiltersOfOtherNodes() {
+		UserExistenceFilter filterA = nodeA.getBean(UserExistenceFilter.class);
+		UserExistenceFilter filterB = nodeB.getBean(UserExistenceFilter.class);
+		// Trusted once rebuilt after the listener's first connect
+		await(() -> filterB.isUnknownUsername("bus-user-1"));
+
+		jdbcTemplate.update("INSERT INTO users (username, password, email) VALUES ('bus-user-1', 'x', 'bus-user-1@example.com')");
+		filterA.recordUser("bus-user-1", "bus-user-1@example.com");
+		await(() -> !filterB.isUnknownUsername("bus-user-1"));
+		assertTrue(filterB.mightContainEmail("bus-user-1@example.com"));
+
+		// Inserted while every listener is cut off, so nobody announces it
+		double resyncs = nodeB.getBean(MeterRegistry.class).counter("cache.invalidation.resyncs").count();
+		jdbcTemplate.queryForList("SELECT pg_terminate_backend(pid) FROM pg_stat_activity "
+				+ "WHERE query LIKE 'LISTEN%' AND pid <> pg_backend_pid()");
+		jdbcTemplate.update("INSERT INTO users (username, password, email) VALUES ('bus-user-2', 'x', 'bus-user-2@example.com')");
+
+		// The reconnect rebuilds the filter, which then has it and is trusted again
+		await(() -> nodeB.getBean(MeterRegistry.class).counter("cache.invalidation.resyncs").count() > resyncs);
+		await(() -> filterB.isUnknownUsername("bus-user-3"));
+		assertFalse(filterB.isUnknownUsername("bus-user-2"));
+	}
+
+	@Test
+	void burstsAreCoalescedIntoFewNotifications() {
+		Cache cacheA = cache(nodeA, "bankAccountQueries");
+		Cache cacheB = cache(nodeB, "bankAccountQueries");
+		for (int i = 0; i < 2_000; i++) {
+			String key = "customer-" + (i % 200);
+			cacheB.get(key, () -> "loaded");
+			cacheA.evict(key);
+		}
+
+		await(() -> {
+			for (int i = 0; i < 200; i++) {
+				if (cacheB.get("customer-" + i) != null) {
+					return false;
+				}
+			}
+			return true;
+		});
+		MeterRegistry registry = nodeA.getBean(MeterRegistry.class);
+		assertEquals(2_000, registry.counter("cache.invalidation.published").count());
+		assertTrue(registry.counter("cache.invalidation.notifications").count() < 100);
+	}
+
+	@Test
+	void entitiesChangedWhileDisconnectedAreEvictedOnReconnect() {
+		jdbcTemplate.update("INSERT INTO bank_account_management_module (id, account_number, account_holder_name, "
+				+ "balance, currency, is_active, is_joint_account, created_at, version) "
+				+ "VALUES (?, ?, 'Holder', 0, 'USD', TRUE, FALSE, now(), 0)", 1L, "ACC-1");
+		jdbcTemplate.update("INSERT INTO bank_account_management_module (id, account_number, account_holder_name, "
+				+ "balance, currency, is_active, is_joint_account, created_at, version) "
+				+ "VALUES (?, ?, 'Holder', 0, 'USD', TRUE, FALSE, now(), 0)", 2L, "ACC-2");
+		Cache cacheB = cache(nodeB, "bankAccounts");
+		cacheB.get(1L, () -> account(1L, 0L));
+		cacheB.get(2L, () -> account(2L, 0L));
+
+		// Changed behind the caches' back, then every listener is cut off
+		jdbcTemplate.update("UPDATE bank_account_management_module SET version = 1 WHERE id = 1");
+		double resyncs = nodeB.getBean(MeterRegistry.class).counter("cache.invalidation.resyncs").count();
+		jdbcTemplate.queryForList("SELECT pg_terminate_backend(pid) FROM pg_stat_activity "
+				+ "WHERE query LIKE 'LISTEN%' AND pid <> pg_backend_pid()");
+
+		await(() -> nodeB.getBean(MeterRegistry.class).counter("cache.invalidation.resyncs").count() > resyncs);
+		assertNull(cacheB.get(1L));
+		assertNotNull(cacheB.get(2L));
+	}
+
+	private static BankAccountManagementModule account(Long id, Long version) {
+		BankAccountManagementModule account = new BankAccountManagementModule();
+		account.setId(id);
+		account.setVersion(version);
+		return account;
+	}
+
+	private static Cache cache(AnnotationConfigApplicationContext node, String name) {
+		return node.getBean(CacheManager.class).getCache(name);
+	}
+
+	private static void await(BooleanSupplier condition) {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < deadline, "condition not met within 10s");
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	private static AnnotationConfigApplicationContext node() {
+		AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+		context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance());
+		context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", Map.of(
+				"caches.invalidation.reconnect-delay", "200ms",
+				"caches.invalidation.version-tables.bankAccounts", "bank_account_management_module")));
+		context.register(Node.class);
+		context.refresh();
+		return context;
+	}
+
+	@Configuration
+	@Import({CacheConfig.class, CacheInvalidationBus.class, CredentialCache.class, UserExistenceFilter.class})
+	static class Node {
+
+		@Bean
+		DataSource dataSource() {
+			return new DriverManagerDataSource(database.getUrl(), database.getUsername(), database.getPassword());
+		}
+
+		@Bean
+		JdbcTemplate jdbcTemplate(DataSource dataSource) {
+			return new JdbcTemplate(dataSource);
+		}
+
+		@Bean
+		PlatformTransactionManager transactionManager(DataSource dataSource) {
+			return new DataSourceTransactionManager(dataSource);
+		}
+
+		@Bean
+		MeterRegistry meterRegistry() {
+			return new SimpleMeterRegistry();
+		}
+	}
+}
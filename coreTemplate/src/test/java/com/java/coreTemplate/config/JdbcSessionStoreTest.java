@@ -0,0 +1,166 @@
+package com.java.coreTemplate.config;
+
+import com.java.coreTemplate.TestDatabases;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs against an in-memory H2 database by default. Point it at a local
+ * Postgres with -Dsession.test.url=jdbc:postgresql://localhost:5432/postgres
+ * (plus session.test.username / session.test.password).
+ */
+class JdbcSessionStoreTest {
+
+	private JdbcTemplate jdbcTemplate;
+	private TransactionTemplate transactionTemplate;
+	// Row counts of the touch batches the stores have sent
+	private final List<Integer> touchBatches = new ArrayList<>();
+	// Set to make the next batches fail, as with the database unreachable
+	private volatile boolean failBatches;
+	// Run by a failing batch before it fails, as by a request meanwhile
+	private volatile Runnable duringFailedBatch = () -> {
+	};
+
+	@BeforeEach
+	void setUp() {
+		DriverManagerDataSource dataSource = TestDatabases.open("session.test", "sessions");
+		jdbcTemplate = new JdbcTemplate(dataSource) {
+			@Override
+			public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+				if (failBatches) {
+					duringFailedBatch.run();
+					throw new DataAccessResourceFailureException("Database unreachable");
+				}
+				int[] counts = super.batchUpdate(sql, batchArgs);
+				if (sql.startsWith("UPDATE auth_session")) {
+					touchBatches.add(batchArgs.size());
+				}
+				return counts;
+			}
+		};
+		jdbcTemplate.update("DELETE FROM auth_session");
+		transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+	}
+
+	private JdbcSessionStore newNode() {
+		return new JdbcSessionStore(jdbcTemplate, transactionTemplate,
+				Duration.ofMinutes(30), Duration.ofHours(12), Duration.ofSeconds(5), 1_000);
+	}
+
+	@Test
+	void sessionCreatedOnOneNodeIsVisibleOnAnotherAfterFlush() {
+		JdbcSessionStore nodeA = newNode();
+		JdbcSessionStore nodeB = newNode();
+
+		nodeA.put("session-1", "alice");
+		assertEquals("alice", nodeA.get("session-1"));
+		assertNull(nodeB.get("session-1"));
+
+		nodeA.flush();
+		assertEquals("alice", nodeB.get("session-1"));
+		nodeB.sweep();
+		assertEquals(1, nodeB.size());
+	}
+
+	@Test
+	void touchesAreCoalescedIntoOneUpdatePerFlush() throws InterruptedException {
+		JdbcSessionStore node = newNode();
+		node.put("session-2", "bob");
+		node.flush();
+		long createdAccess = jdbcTemplate.queryForObject(
+				"SELECT last_accessed_at FROM auth_session WHERE session_id = 'session-2'", Long.class);
+		assertTrue(touchBatches.isEmpty());
+
+		Thread.sleep(5);
+		for (int i = 0; i < 100; i++) {
+			node.get("session-2");
+		}
+		node.flush();
+		assertEquals(List.of(1), touchBatches);
+		long touchedAccess = jdbcTemplate.queryForObject(
+				"SELECT last_accessed_at FROM auth_session WHERE session_id = 'session-2'", Long.class);
+		assertTrue(touchedAccess > createdAccess);
+
+		// Nothing touched since: nothing written
+		node.flush();
+		assertEquals(List.of(1), touchBatches);
+	}
+
+	@Test
+	void removedSessionIsDeletedOnFlush() {
+		JdbcSessionStore node = newNode();
+		node.put("session-3", "carol");
+		node.flush();
+
+		node.remove("session-3");
+		assertNull(node.get("session-3"));
+		node.flush();
+
+		node.sweep();
+		assertEquals(0, node.size());
+		assertNull(newNode().get("session-3"));
+	}
+
+	@Test
+	void aFailedFlushIsWrittenByTheNext() throws InterruptedException {
+		JdbcSessionStore node = newNode();
+		node.put("session-4", "erin");
+		node.put("session-5", "frank");
+		node.flush();
+		long createdAccess = jdbcTemplate.queryForObject(
+				"SELECT last_accessed_at FROM auth_session WHERE session_id = 'session-4'", Long.class);
+
+		Thread.sleep(5);
+		node.put("session-6", "grace");
+		node.remove("session-5");
+		node.get("session-4");
+		failBatches = true;
+		assertThrows(DataAccessResourceFailureException.class, node::flush);
+
+		failBatches = false;
+		node.flush();
+		JdbcSessionStore other = newNode();
+		assertEquals("grace", other.get("session-6"));
+		assertNull(other.get("session-5"));
+		assertTrue(jdbcTemplate.queryForObject("SELECT last_accessed_at FROM auth_session "
+				+ "WHERE session_id = 'session-4'", Long.class) > createdAccess);
+	}
+
+	@Test
+	void aChangeMadeWhileAFlushFailsWins() {
+		JdbcSessionStore node = newNode();
+		node.put("session-7", "heidi");
+		// Removed while the failing batch is out; queuing the batch again must not bring it back
+		duringFailedBatch = () -> node.remove("session-7");
+		failBatches = true;
+		assertThrows(DataAccessResourceFailureException.class, node::flush);
+
+		failBatches = false;
+		node.flush();
+		assertNull(newNode().get("session-7"));
+		assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM auth_session", Integer.class));
+	}
+
+	@Test
+	void sweepDeletesIdleSessions() {
+		JdbcSessionStore node = newNode();
+		jdbcTemplate.update("INSERT INTO auth_session VALUES ('stale', 'dave', 0, 0)");
+
+		assertEquals(1, node.sweep());
+		assertNull(node.get("stale"));
+	}
+}
@@ -0,0 +1,128 @@
+package com.java.coreTemplate.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Rotates keys through a temporary key directory, with file modification
+ * times set back as if the files had been dropped in earlier, and checks
+ * which key signs and which tokens still verify. The loader installs the
+ * ring process-wide, so the ring in place before each test is put back.
+ */
+class JwtKeyRingLoaderTest {
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	@TempDir
+	Path keyDirectory;
+	private JwtKeyRing previousRing;
+
+	@BeforeEach
+	void setUp() {
+		previousRing = JwtTokenUtil.keyRing();
+	}
+
+	@AfterEach
+	void tearDown() {
+		JwtTokenUtil.installKeyRing(previousRing);
+	}
+
+	@Test
+	void aRetiredKeyVerifiesUntilItsGraceEnds() throws Exception {
+		writeKey("2024-01", Duration.ofDays(30));
+		JwtKeyRingLoader loader = new JwtKeyRingLoader(keyDirectory.toString(), Duration.ofMinutes(10),
+				Duration.ofMillis(500));
+		loader.init();
+		String token = JwtTokenUtil.generateToken("alice", Map.of("role", "user"));
+
+		// Its successor has been picked up everywhere, and the old file is gone
+		writeKey("2024-02", Duration.ofDays(1));
+		Files.delete(keyDirectory.resolve("2024-01.key"));
+		loader.reload();
+		assertEquals("2024-02", JwtTokenUtil.keyRing().activeKid());
+		assertTrue(JwtTokenUtil.validateToken(token));
+
+		Thread.sleep(700);
+		loader.reload();
+		assertFalse(JwtTokenUtil.validateToken(token));
+		assertTrue(JwtTokenUtil.validateToken(JwtTokenUtil.generateToken("alice", Map.of("role", "user"))));
+	}
+
+	@Test
+	void aNewKeyOnlySignsOnceItsFileIsOlderThanTheActivationDelay() throws Exception {
+		writeKey("2024-01", Duration.ofDays(30));
+		Path newKey = writeKey("2024-02", Duration.ofMinutes(1));
+		JwtKeyRingLoader loader = new JwtKeyRingLoader(keyDirectory.toString(), Duration.ofMinutes(10),
+				Duration.ofHours(24));
+		loader.init();
+
+		// Not every node may have read the new file yet, so it only verifies
+		String token = JwtTokenUtil.generateToken("alice", Map.of("role", "user"));
+		assertEquals("2024-01", kid(token));
+		assertTrue(JwtTokenUtil.validateToken(signed("2024-02", Files.readString(newKey))));
+
+		Files.setLastModifiedTime(newKey, FileTime.from(Instant.now().minus(Duration.ofMinutes(11))));
+		loader.reload();
+		assertEquals("2024-02", kid(JwtTokenUtil.generateToken("alice", Map.of("role", "user"))));
+		assertTrue(JwtTokenUtil.validateToken(token));
+	}
+
+	@Test
+	void tokensWithAnUnknownKeyIdAreRejected() throws Exception {
+		Path key = writeKey("2024-01", Duration.ofDays(30));
+		new JwtKeyRingLoader(keyDirectory.toString(), Duration.ofMinutes(10), Duration.ofHours(24)).init();
+
+		// Even signed with a key of the ring, a kid the ring does not know is not trusted
+		assertTrue(JwtTokenUtil.validateToken(signed("2024-01", Files.readString(key))));
+		assertFalse(JwtTokenUtil.validateToken(signed("2023-12", Files.readString(key))));
+		assertFalse(JwtTokenUtil.validateToken(signed("2023-12", encodedSecret())));
+	}
+
+	private Path writeKey(String kid, Duration age) throws IOException {
+		Path file = keyDirectory.resolve(kid + ".key");
+		Files.writeString(file, encodedSecret(), StandardCharsets.US_ASCII);
+		Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(age)));
+		return file;
+	}
+
+	private static String encodedSecret() {
+		byte[] secret = new byte[32];
+		RANDOM.nextBytes(secret);
+		return Base64.getEncoder().encodeToString(secret);
+	}
+
+	private static String signed(String kid, String encodedSecret) {
+		return Jwts.builder()
+				.header().keyId(kid).and()
+				.subject("mallory")
+				.expiration(new Date(System.currentTimeMillis() + 60_000))
+				.signWith(Keys.hmacShaKeyFor(Base64.getDecoder().decode(encodedSecret.trim())))
+				.compact();
+	}
+
+	private static String kid(String token) throws IOException {
+		byte[] header = Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.')));
+		return new ObjectMapper().readTree(header).path("kid").asText();
+	}
+}
@@ -0,0 +1,71 @@
+package com.java.coreTemplate.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates a rotating set of tokens by verifying the signature every time
+ * (cold) and through a JwtTokenCache that already holds them (warm). Run with
+ * java -cp target/test-classes:$(test classpath) com.java.coreTemplate.config.JwtTokenCacheBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtTokenCacheBenchmark {
+
+	private static final int TOKENS = 1_000;
+
+	private String[] tokens;
+	private JwtTokenCache cache;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		tokens = new String[TOKENS];
+		for (int i = 0; i < TOKENS; i++) {
+			tokens[i] = JwtTokenUtil.generateToken("bench-user-" + i, Map.of("role", "user"));
+		}
+		cache = new JwtTokenCache(TOKENS * 2L, new SimpleMeterRegistry());
+		for (String token : tokens) {
+			cache.validateToken(token);
+		}
+	}
+
+	@Benchmark
+	public boolean cold() {
+		return JwtTokenUtil.validateToken(nextToken());
+	}
+
+	@Benchmark
+	public boolean warm() {
+		return cache.validateToken(nextToken());
+	}
+
+	private String nextToken() {
+		String token = tokens[next];
+		next = (next + 1) % TOKENS;
+		return token;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(JwtTokenCacheBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,55 @@
+package com.java.coreTemplate.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JwtTokenCacheTest {
+
+	private static final int VALIDATIONS = 1_000;
+
+	@Test
+	void warmValidationSkipsSignatureCheck() {
+		JwtTokenCache cache = new JwtTokenCache(1_000, new SimpleMeterRegistry());
+		String token = JwtTokenUtil.generateToken("bench-user", Map.of("role", "user"));
+
+		assertTrue(cache.validateToken(token));
+		assertTrue(cache.validateToken(token));
+		assertEquals(1, cache.missCount());
+		assertEquals(1, cache.hitCount());
+		assertFalse(cache.validateToken(token + "x"));
+	}
+
+	@Test
+	void repeatedValidationsAreVerifiedOnce() {
+		JwtTokenCache cache = new JwtTokenCache(1_000, new SimpleMeterRegistry());
+		String token = JwtTokenUtil.generateToken("bench-user", Map.of("role", "user"));
+
+		for (int i = 0; i < VALIDATIONS; i++) {
+			assertTrue(cache.validateToken(token));
+		}
+		assertEquals(1, cache.missCount());
+		assertEquals(VALIDATIONS - 1, cache.hitCount());
+
+		cache.invalidate(token);
+		assertTrue(cache.validateToken(token));
+		assertEquals(2, cache.missCount());
+	}
+
+	@Test
+	void forgedTokensAreNeverCached() {
+		JwtTokenCache cache = new JwtTokenCache(1_000, new SimpleMeterRegistry());
+		String forged = JwtTokenUtil.generateToken("bench-user", Map.of("role", "user")) + "x";
+
+		for (int i = 0; i < VALIDATIONS; i++) {
+			assertFalse(cache.validateToken(forged));
+		}
+		assertEquals(VALIDATIONS, cache.missCount());
+		assertEquals(0, cache.hitCount());
+	}
+}
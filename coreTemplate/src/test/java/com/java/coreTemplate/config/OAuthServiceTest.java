@@ -0,0 +1,137 @@
+package com.java.coreTemplate.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exercises the provider client against a stub token and user-info endpoint
+ * on a local port.
+ */
+class OAuthServiceTest {
+
+	private HttpServer provider;
+	private final AtomicInteger tokenCalls = new AtomicInteger();
+	private final AtomicInteger userInfoCalls = new AtomicInteger();
+	private volatile CountDownLatch userInfoGate = new CountDownLatch(0);
+	private volatile long userInfoDelayMillis;
+
+	@BeforeEach
+	void startProvider() throws IOException {
+		provider = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		provider.setExecutor(Executors.newCachedThreadPool());
+		provider.createContext("/token", exchange -> {
+			tokenCalls.incrementAndGet();
+			String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+			Map<?, ?> params = new ObjectMapper().readValue(body, Map.class);
+			respond(exchange, 200, "{\"access_token\":\"at-" + params.get("code") + "\"}");
+		});
+		provider.createContext("/userinfo", exchange -> {
+			userInfoCalls.incrementAndGet();
+			try {
+				userInfoGate.await(5, TimeUnit.SECONDS);
+				Thread.sleep(userInfoDelayMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			String query = exchange.getRequestURI().getQuery();
+			if (query.contains("access_token=bad")) {
+				respond(exchange, 401, "{\"error\":\"invalid_token\"}");
+				return;
+			}
+			respond(exchange, 200, "{\"email\":\"user@example.com\",\"name\":\"User\"}");
+		});
+		provider.start();
+	}
+
+	@AfterEach
+	void stopProvider() {
+		provider.stop(0);
+	}
+
+	private OAuthService newService(Duration requestTimeout) {
+		String base = "http://127.0.0.1:" + provider.getAddress().getPort();
+		return new OAuthService(base + "/token", base + "/userinfo", "client", "secret", "http://localhost/",
+				Duration.ofSeconds(1), requestTimeout, Duration.ofMinutes(1), 100, new ObjectMapper());
+	}
+
+	private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	@Test
+	void exchangesCodeAndFetchesUserInfo() {
+		OAuthService service = newService(Duration.ofSeconds(5));
+
+		Map<String, Object> userInfo = service.getAccessTokenAsync("abc")
+				.thenCompose(service::getUserInfoAsync)
+				.join();
+
+		assertEquals("user@example.com", userInfo.get("email"));
+		assertEquals(1, tokenCalls.get());
+		assertEquals(1, userInfoCalls.get());
+		assertEquals("at-abc", service.getAccessToken("abc"));
+	}
+
+	@Test
+	void concurrentAndRepeatedUserInfoLookupsShareOneProviderCall() {
+		OAuthService service = newService(Duration.ofSeconds(5));
+		userInfoGate = new CountDownLatch(1);
+
+		List<CompletableFuture<Map<String, Object>>> lookups = List.of(
+				service.getUserInfoAsync("token"), service.getUserInfoAsync("token"), service.getUserInfoAsync("token"));
+		userInfoGate.countDown();
+		lookups.forEach(CompletableFuture::join);
+		service.getUserInfo("token");
+
+		assertEquals(1, userInfoCalls.get());
+	}
+
+	@Test
+	void providerErrorsAreNotCached() {
+		OAuthService service = newService(Duration.ofSeconds(5));
+
+		assertThrows(CompletionException.class, () -> service.getUserInfo("bad"));
+		assertThrows(CompletionException.class, () -> service.getUserInfo("bad"));
+
+		assertEquals(2, userInfoCalls.get());
+	}
+
+	@Test
+	void slowProviderFailsAfterRequestTimeout() {
+		OAuthService service = newService(Duration.ofMillis(200));
+		userInfoDelayMillis = 2000;
+
+		// Only the client's own timeout can end the call before the provider answers
+		CompletionException failure = assertThrows(CompletionException.class, () -> service.getUserInfo("slow"));
+
+		assertTrue(failure.getCause() instanceof java.net.http.HttpTimeoutException, failure.toString());
+		assertEquals(1, userInfoCalls.get());
+	}
+}
@@ -0,0 +1,121 @@
+package com.java.coreTemplate.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exercises the off-heap store directly: reads that refresh the idle timer,
+ * eviction once a segment is full, tables that are compacted while sessions
+ * come and go, and sessions that expire on their idle or absolute timeout.
+ * The store spreads sessions over 64 segments, so capacities below are
+ * multiples of 64.
+ */
+class OffHeapSessionStoreTest {
+
+	@Test
+	void sessionsCanBeReadTouchedAndRemoved() throws InterruptedException {
+		OffHeapSessionStore store = new OffHeapSessionStore(Duration.ofMillis(400), Duration.ofHours(1), 1_024, 64);
+		store.put("session-1", "alice");
+		store.put("session-2", "bob");
+		assertEquals("alice", store.get("session-1"));
+		assertEquals("bob", store.get("session-2"));
+		assertNull(store.get("unknown"));
+		assertEquals(2, store.size());
+
+		// Putting again rebinds the session without adding one
+		store.put("session-2", "carol");
+		assertEquals("carol", store.get("session-2"));
+		assertEquals(2, store.size());
+
+		// Read every 200ms, session-1 outlives the 400ms idle timeout; session-2 is left alone
+		for (int i = 0; i < 3; i++) {
+			Thread.sleep(200);
+			assertEquals("alice", store.get("session-1"));
+		}
+		assertNull(store.get("session-2"));
+
+		store.remove("session-1");
+		assertNull(store.get("session-1"));
+		assertEquals(0, store.size());
+	}
+
+	@Test
+	void aFullSegmentEvictsToMakeRoom() {
+		// Four sessions a segment
+		OffHeapSessionStore store = new OffHeapSessionStore(Duration.ofHours(1), Duration.ofHours(1), 256, 64);
+		int sessions = 10_000;
+		for (int i = 0; i < sessions; i++) {
+			store.put("session-" + i, "user-" + i);
+			assertTrue(store.size() <= 256, "size " + store.size() + " after " + (i + 1) + " puts");
+		}
+		assertEquals(sessions, store.size() + store.evictionCount());
+		// The session put last was never a victim
+		assertEquals("user-" + (sessions - 1), store.get("session-" + (sessions - 1)));
+	}
+
+	@Test
+	void compactionKeepsLiveSessions() {
+		// Room for 100 sessions a segment, far more than the kept ones hash to, so none is evicted
+		OffHeapSessionStore store = new OffHeapSessionStore(Duration.ofHours(1), Duration.ofHours(1), 6_400, 64);
+		Map<String, String> kept = new LinkedHashMap<>();
+		for (int i = 0; i < 200; i++) {
+			kept.put("kept-" + i, "user-" + i);
+			store.put("kept-" + i, "user-" + i);
+		}
+		// Each removal leaves a tombstone; the tables fill with them and are rebuilt many times over
+		for (int i = 0; i < 100_000; i++) {
+			store.put("churn-" + i, "churned");
+			store.remove("churn-" + i);
+		}
+		assertEquals(kept.size(), store.size());
+		assertEquals(0, store.evictionCount());
+		kept.forEach((sessionId, userId) -> assertEquals(userId, store.get(sessionId)));
+	}
+
+	@Test
+	void idleSessionsExpire() throws InterruptedException {
+		OffHeapSessionStore store = new OffHeapSessionStore(Duration.ofMillis(100), Duration.ofHours(1), 1_024, 64);
+		store.put("read", "alice");
+		store.put("swept-1", "bob");
+		store.put("swept-2", "carol");
+		Thread.sleep(250);
+
+		// Absent as soon as it expires, before any sweep
+		assertNull(store.get("read"));
+		assertEquals(2, store.sweep());
+		assertEquals(0, store.size());
+		assertEquals(3, store.evictionCount());
+	}
+
+	@Test
+	void sessionsExpireAfterTheAbsoluteTimeoutHoweverOftenRead() throws InterruptedException {
+		OffHeapSessionStore store = new OffHeapSessionStore(Duration.ofHours(1), Duration.ofMillis(300), 1_024, 64);
+		store.put("read", "alice");
+		store.put("swept", "bob");
+		long deadline = System.nanoTime() + Duration.ofMillis(200).toNanos();
+		while (System.nanoTime() < deadline) {
+			assertEquals("alice", store.get("read"));
+			Thread.sleep(20);
+		}
+		Thread.sleep(250);
+		assertNull(store.get("read"));
+		assertEquals(1, store.sweep());
+		assertEquals(0, store.size());
+	}
+
+	@Test
+	void oversizedIdsAreRejected() {
+		OffHeapSessionStore store = new OffHeapSessionStore(Duration.ofHours(1), Duration.ofHours(1), 64, 8);
+		assertThrows(IllegalArgumentException.class, () -> store.put("session-1", "a-user-id-too-long"));
+		assertThrows(IllegalArgumentException.class, () -> store.put("s".repeat(65), "alice"));
+		assertEquals(0, store.size());
+	}
+}
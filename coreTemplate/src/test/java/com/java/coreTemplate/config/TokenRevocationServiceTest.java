@@ -0,0 +1,106 @@
+package com.java.coreTemplate.config;
+
+import com.java.coreTemplate.TestDatabases;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Revokes tokens on one or two service instances sharing the revoked_token
+ * table, standing in for the nodes of a cluster. Runs against an in-memory
+ * H2 database by default; -Drevocation.test.url (plus
+ * revocation.test.username / revocation.test.password) points it at Postgres.
+ */
+class TokenRevocationServiceTest {
+
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void setUp() {
+		jdbcTemplate = new JdbcTemplate(TestDatabases.open("revocation.test", "revocations"));
+		jdbcTemplate.update("DELETE FROM revoked_token");
+	}
+
+	@Test
+	void revokedTokensAreRejected() {
+		TokenRevocationService service = service(Duration.ofSeconds(30));
+		service.revoke("jti-1", inOneHour());
+		assertTrue(service.isRevoked("jti-1"));
+		assertFalse(service.isRevoked("jti-2"));
+		assertFalse(service.isRevoked(null));
+
+		// Revoking twice, as a retried logout does, is harmless
+		service.revoke("jti-1", inOneHour());
+		assertEquals(1, service.revokedCount());
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM revoked_token", Integer.class));
+	}
+
+	@Test
+	void purgingForgetsExpiredTokensAndKeepsRejectingTheRest() throws InterruptedException {
+		// A filter sized for a handful, so the rebuilt one is what answers
+		TokenRevocationService service = new TokenRevocationService(jdbcTemplate, 4, 0.01, Duration.ofSeconds(30));
+		for (int i = 0; i < 20; i++) {
+			service.revoke("live-" + i, inOneHour());
+		}
+		service.revoke("expiring", new Date(System.currentTimeMillis() + 200));
+		assertTrue(service.isRevoked("expiring"));
+		Thread.sleep(300);
+
+		service.purgeExpired();
+		assertEquals(20, service.revokedCount());
+		assertFalse(service.isRevoked("expiring"));
+		for (int i = 0; i < 20; i++) {
+			assertTrue(service.isRevoked("live-" + i), "live-" + i);
+		}
+		assertEquals(0, jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM revoked_token WHERE jti = 'expiring'", Integer.class));
+
+		// A node starting now does not load it back either
+		assertEquals(20, service(Duration.ofSeconds(30)).revokedCount());
+	}
+
+	@Test
+	void otherNodesPickUpRevocationsWhenTheyPoll() {
+		TokenRevocationService node1 = service(Duration.ofSeconds(30));
+		TokenRevocationService node2 = service(Duration.ofSeconds(30));
+
+		node1.revoke("jti-1", inOneHour());
+		assertFalse(node2.isRevoked("jti-1"));
+		node2.poll();
+		assertTrue(node2.isRevoked("jti-1"));
+
+		// A transaction that took a while to commit stamps its row before the last one seen
+		Timestamp lastSeen = jdbcTemplate.queryForObject("SELECT revoked_at FROM revoked_token WHERE jti = 'jti-1'",
+				Timestamp.class);
+		insertRevokedAt("late", new Timestamp(lastSeen.getTime() - 10_000));
+		insertRevokedAt("too-late", new Timestamp(lastSeen.getTime() - 60_000));
+		node2.poll();
+		assertTrue(node2.isRevoked("late"));
+		// Outside the overlap window it is only seen by a node that starts afterwards
+		assertFalse(node2.isRevoked("too-late"));
+		assertTrue(service(Duration.ofSeconds(30)).isRevoked("too-late"));
+	}
+
+	private TokenRevocationService service(Duration syncOverlap) {
+		TokenRevocationService service = new TokenRevocationService(jdbcTemplate, 1_000, 0.01, syncOverlap);
+		service.init();
+		return service;
+	}
+
+	private void insertRevokedAt(String jti, Timestamp revokedAt) {
+		jdbcTemplate.update("INSERT INTO revoked_token (jti, expires_at, revoked_at) VALUES (?, ?, ?)",
+				jti, new Timestamp(inOneHour().getTime()), revokedAt);
+	}
+
+	private static Date inOneHour() {
+		return new Date(System.currentTimeMillis() + Duration.ofHours(1).toMillis());
+	}
+}
@@ -0,0 +1,160 @@
+package com.java.coreTemplate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.java.coreTemplate.TestDatabases;
+import com.java.coreTemplate.TestRepositories;
+import com.java.coreTemplate.model.dto.Money;
+import com.java.coreTemplate.model.dto.TransactionManagementModule;
+import com.java.coreTemplate.repository.TransactionManagementModuleRepository;
+import com.java.coreTemplate.repository.TransactionManagementModuleRepositoryImpl;
+import com.java.coreTemplate.repository.TransactionRollupRepository;
+import com.java.coreTemplate.service.HighValueTransactionIndex;
+import com.java.coreTemplate.service.TransactionManagementModuleService;
+import com.java.coreTemplate.service.TransactionPartitionManager;
+import com.java.coreTemplate.service.TransactionReferenceCache;
+import com.java.coreTemplate.service.TransactionRollupService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Creates transactions through the controller and retries them, answered
+ * from the recent-reference cache and, once that has forgotten them, from
+ * the database. Needs Postgres, as creating claims the reference with
+ * INSERT ... ON CONFLICT, which H2 does not parse: set
+ * -Dtransactions.test.url (plus transactions.test.username /
+ * transactions.test.password) or -Dtest.db.url.
+ */
+class TransactionManagementModuleControllerTest {
+
+	private final AtomicInteger connections = new AtomicInteger();
+	private JdbcTemplate jdbcTemplate;
+	private SimpleMeterRegistry meterRegistry;
+	private TransactionManagementModuleController controller;
+
+	@BeforeEach
+	void setUp() {
+		DriverManagerDataSource database = TestDatabases.open("transactions.test", "idempotency");
+		assumeTrue(TestDatabases.isPostgres(database), "transactions.test.url is not a Postgres URL");
+		DataSource dataSource = new DelegatingDataSource(database) {
+			@Override
+			public Connection getConnection() throws SQLException {
+				connections.incrementAndGet();
+				return super.getConnection();
+			}
+		};
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		for (String table : new String[]{"transaction_reference_key", "transaction_rollup", "transaction_management_module"}) {
+			jdbcTemplate.update("DELETE FROM " + table);
+		}
+		meterRegistry = new SimpleMeterRegistry();
+		controller = controller(new TransactionReferenceCache(1_000, Duration.ofMinutes(1), meterRegistry));
+	}
+
+	@Test
+	void retryIsAnsweredFromTheCacheWithoutTheDatabase() {
+		ResponseEntity<TransactionManagementModule> created = controller.create(transaction("ref-1", "12.50"));
+		assertEquals(HttpStatus.CREATED, created.getStatusCode());
+		assertNull(created.getHeaders().getFirst("Idempotent-Replayed"));
+
+		int connectionsBefore = connections.get();
+		ResponseEntity<TransactionManagementModule> replayed = controller.create(transaction("ref-1", "12.50"));
+		assertEquals(connectionsBefore, connections.get());
+		assertEquals(HttpStatus.CREATED, replayed.getStatusCode());
+		assertEquals("true", replayed.getHeaders().getFirst("Idempotent-Replayed"));
+		assertEquals(created.getBody().getId(), replayed.getBody().getId());
+		assertEquals(1, rows("ref-1"));
+
+		assertEquals(1, lookups("new"));
+		assertEquals(1, lookups("cached-duplicate"));
+		assertEquals(0, lookups("stored-duplicate"));
+		assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "transactionReferences").tag("result", "hit")
+				.functionCounter().count());
+	}
+
+	@Test
+	void retryOfAnOlderReferenceIsAnsweredFromTheDatabase() {
+		Long id = controller.create(transaction("ref-2", "7.00")).getBody().getId();
+
+		// A fresh cache, as after a restart or on another node
+		controller = controller(new TransactionReferenceCache(1_000, Duration.ofMinutes(1), meterRegistry));
+		ResponseEntity<TransactionManagementModule> replayed = controller.create(transaction("ref-2", "7.00"));
+		assertEquals(HttpStatus.CREATED, replayed.getStatusCode());
+		assertEquals("true", replayed.getHeaders().getFirst("Idempotent-Replayed"));
+		assertEquals(id, replayed.getBody().getId());
+		assertEquals(1, rows("ref-2"));
+		assertEquals(1, lookups("stored-duplicate"));
+
+		// Now cached again
+		controller.create(transaction("ref-2", "7.00"));
+		assertEquals(1, lookups("cached-duplicate"));
+	}
+
+	@Test
+	void reusedReferenceWithADifferentAmountConflicts() {
+		controller.create(transaction("ref-3", "1.00"));
+		assertEquals(HttpStatus.CONFLICT, controller.create(transaction("ref-3", "2.00")).getStatusCode());
+
+		controller = controller(new TransactionReferenceCache(1_000, Duration.ofMinutes(1), meterRegistry));
+		assertEquals(HttpStatus.CONFLICT, controller.create(transaction("ref-3", "2.00")).getStatusCode());
+		assertEquals(1, rows("ref-3"));
+		assertEquals(Money.parse("1.00", "USD").toBigDecimal(), jdbcTemplate.queryForObject(
+				"SELECT amount FROM transaction_management_module WHERE transaction_reference = 'ref-3'",
+				BigDecimal.class));
+	}
+
+	@Test
+	void invalidTransactionIsABadRequest() {
+		TransactionManagementModule transaction = transaction("ref-4", "1.00");
+		transaction.setTransactionReference(null);
+		assertEquals(HttpStatus.BAD_REQUEST, controller.create(transaction).getStatusCode());
+		assertEquals(0, lookups("new"));
+	}
+
+	private TransactionManagementModuleController controller(TransactionReferenceCache recentReferences) {
+		TransactionRollupRepository rollups = new TransactionRollupRepository(jdbcTemplate);
+		TransactionManagementModuleRepository repository = TestRepositories.transactions(
+				new TransactionManagementModuleRepositoryImpl(jdbcTemplate, rollups, 100));
+		HighValueTransactionIndex highValue = new HighValueTransactionIndex(repository, 100, Duration.ofHours(24),
+				meterRegistry);
+		TransactionManagementModuleService service = new TransactionManagementModuleService(repository, rollups,
+				new ObjectMapper(), 1_000, recentReferences, highValue, meterRegistry);
+		TransactionPartitionManager partitions = new TransactionPartitionManager(jdbcTemplate,
+				new DataSourceTransactionManager(jdbcTemplate.getDataSource()), 1, 0, meterRegistry);
+		return new TransactionManagementModuleController(service, new TransactionRollupService(rollups, partitions, 1),
+				highValue);
+	}
+
+	private static TransactionManagementModule transaction(String reference, String amount) {
+		TransactionManagementModule transaction = new TransactionManagementModule();
+		transaction.setTransactionReference(reference);
+		transaction.setAmount(Money.parse(amount, "USD"));
+		return transaction;
+	}
+
+	private long lookups(String result) {
+		return meterRegistry.get("transactions.idempotency.lookup").tag("result", result).timer().count();
+	}
+
+	private int rows(String reference) {
+		return jdbcTemplate.queryForObject("SELECT count(*) FROM transaction_management_module "
+				+ "WHERE transaction_reference = ?", Integer.class, reference);
+	}
+}
@@ -0,0 +1,76 @@
+package com.java.coreTemplate.model.dto;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The transaction and account entities keep the JSON they had before Money:
+ * amounts and balances are plain numbers next to a currency field.
+ */
+class MoneyJsonTest {
+
+	private final ObjectMapper mapper = JsonMapper.builder()
+			.addModule(new Jdk8Module())
+			.addModule(new JavaTimeModule())
+			.build();
+
+	@Test
+	void transactionReadsAndWritesAFlatAmount() throws Exception {
+		// Either field may come first
+		for (String json : new String[]{
+				"{\"transactionReference\":\"T-1\",\"amount\":12.34,\"currencyCode\":\"EUR\"}",
+				"{\"transactionReference\":\"T-1\",\"currencyCode\":\"EUR\",\"amount\":12.34}"}) {
+			TransactionManagementModule transaction = mapper.readValue(json, TransactionManagementModule.class);
+			assertEquals(Money.parse("12.34", "EUR"), transaction.getAmount());
+
+			String written = mapper.writeValueAsString(transaction);
+			assertTrue(written.contains("\"amount\":12.3400"), written);
+			assertTrue(written.contains("\"currencyCode\":\"EUR\""), written);
+		}
+	}
+
+	@Test
+	void transactionWithoutACurrencyHasNoAmount() throws Exception {
+		TransactionManagementModule transaction = mapper.readValue("{\"amount\":1}", TransactionManagementModule.class);
+		assertNull(transaction.getAmount());
+	}
+
+	@Test
+	void moreThanFourDecimalsIsRejected() {
+		assertThrows(JsonMappingException.class, () -> mapper.readValue(
+				"{\"amount\":0.00001,\"currencyCode\":\"USD\"}", TransactionManagementModule.class));
+	}
+
+	@Test
+	void accountReadsAndWritesFlatBalanceAndLimits() throws Exception {
+		BankAccountManagementModule account = mapper.readValue("{\"accountNumber\":\"ACC-1\",\"balance\":100.5,"
+				+ "\"currency\":\"GBP\",\"overdraftLimit\":250,\"minimumBalance\":null}", BankAccountManagementModule.class);
+		assertEquals(Money.parse("100.5", "GBP"), account.getBalance());
+		assertEquals(Money.parse("250", "GBP"), account.getOverdraftLimit());
+		assertFalse(account.getMinimumBalance().isPresent());
+
+		String written = mapper.writeValueAsString(account);
+		assertTrue(written.contains("\"balance\":100.5000"), written);
+		assertTrue(written.contains("\"currency\":\"GBP\""), written);
+		assertTrue(written.contains("\"overdraftLimit\":250.0000"), written);
+		assertTrue(written.contains("\"minimumBalance\":null"), written);
+	}
+
+	@Test
+	void moneyOnItsOwnIsAnObject() throws Exception {
+		Money money = Money.parse("7.5", "USD");
+		String json = mapper.writeValueAsString(money);
+		assertEquals("{\"value\":\"7.5000\",\"currency\":\"USD\"}", json);
+		assertEquals(money, mapper.readValue(json, Money.class));
+	}
+}
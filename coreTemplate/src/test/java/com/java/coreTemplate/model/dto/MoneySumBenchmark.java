@@ -0,0 +1,86 @@
+package com.java.coreTemplate.model.dto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sums a million amounts as raw minor units, as Money values (into a long
+ * total and through plus) and as BigDecimal. Run with
+ * java -cp target/test-classes:$(test classpath) com.java.coreTemplate.model.dto.MoneySumBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneySumBenchmark {
+
+	private static final int AMOUNTS = 1_000_000;
+
+	private long[] minorUnits;
+	private Money[] monies;
+	private BigDecimal[] decimals;
+
+	@Setup
+	public void setUp() {
+		SplittableRandom random = new SplittableRandom(42);
+		minorUnits = new long[AMOUNTS];
+		monies = new Money[AMOUNTS];
+		decimals = new BigDecimal[AMOUNTS];
+		for (int i = 0; i < AMOUNTS; i++) {
+			// Up to 100,000.0000 with four decimals, like the amount columns
+			minorUnits[i] = random.nextLong(1_000_000_000L);
+			monies[i] = Money.ofMinor(minorUnits[i], "USD");
+			decimals[i] = monies[i].toBigDecimal();
+		}
+	}
+
+	@Benchmark
+	public long sumMinorUnits() {
+		return Money.sum(minorUnits);
+	}
+
+	@Benchmark
+	public long sumMoney() {
+		return Money.sum(monies, "USD");
+	}
+
+	// Allocates a Money per addition, for comparison with sumMoney
+	@Benchmark
+	public Money sumMoneyPlus() {
+		Money total = Money.zero("USD");
+		for (Money money : monies) {
+			total = total.plus(money);
+		}
+		return total;
+	}
+
+	@Benchmark
+	public BigDecimal sumBigDecimal() {
+		BigDecimal total = BigDecimal.ZERO;
+		for (BigDecimal decimal : decimals) {
+			total = total.add(decimal);
+		}
+		return total;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(MoneySumBenchmark.class.getSimpleName()).build()).run();
+	}
+}
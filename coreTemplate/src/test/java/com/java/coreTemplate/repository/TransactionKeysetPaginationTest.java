@@ -0,0 +1,119 @@
+package com.java.coreTemplate.repository;
+
+import com.java.coreTemplate.TestDatabases;
+import com.java.coreTemplate.model.dto.TransactionCursor;
+import com.java.coreTemplate.model.dto.TransactionManagementModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Walks 10,000 pages with the keyset query, then reads from the executed
+ * plans how many rows the first and the last page touched, with offset
+ * paging at the same depth as a reference. Runs against an in-memory H2
+ * database by default; point it at Postgres with -Dtransactions.test.url
+ * (plus transactions.test.username / transactions.test.password).
+ */
+class TransactionKeysetPaginationTest {
+
+	private static final int PAGE_SIZE = 20;
+	private static final int PAGES = 10_000;
+	// Several rows share each timestamp so the id tie-breaker is exercised
+	private static final int ROWS_PER_TIMESTAMP = 3;
+	// H2 reports the rows a table filter read as a comment, Postgres as the actual rows of the scan node
+	private static final Pattern H2_ROWS_READ = Pattern.compile("scanCount: (\\d+)");
+	private static final Pattern POSTGRES_ROWS_READ =
+			Pattern.compile("Scan using (\\w+) on transaction_management_module .*actual [^)]*rows=(\\d+)");
+
+	private JdbcTemplate jdbcTemplate;
+	private boolean postgres;
+	private TransactionManagementModuleRepositoryImpl repository;
+
+	@BeforeEach
+	void setUp() {
+		DriverManagerDataSource dataSource = TestDatabases.open("transactions.test", "transactions");
+		postgres = TestDatabases.isPostgres(dataSource);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.update("DELETE FROM transaction_management_module");
+
+		LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < PAGES * PAGE_SIZE; i++) {
+			Timestamp timestamp = Timestamp.valueOf(start.plusSeconds(i / ROWS_PER_TIMESTAMP));
+			// Ids deliberately out of date order
+			rows.add(new Object[]{(long) (PAGES * PAGE_SIZE - i), "ref-" + i, 10.0, "USD", timestamp, timestamp});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO transaction_management_module "
+				+ "(id, transaction_reference, amount, currency_code, transaction_date, created_at, version) "
+				+ "VALUES (?, ?, ?, ?, ?, ?, 0)", rows);
+		if (postgres) {
+			jdbcTemplate.execute("ANALYZE transaction_management_module");
+		}
+		repository = new TransactionManagementModuleRepositoryImpl(jdbcTemplate,
+				new TransactionRollupRepository(jdbcTemplate), 1_000);
+	}
+
+	@Test
+	void deepKeysetPagesReadNoMoreRowsThanTheFirst() {
+		TransactionCursor lastCursor = walk();
+
+		long firstPage = rowsRead(TransactionManagementModuleRepositoryImpl.SELECT_FIRST_PAGE, PAGE_SIZE);
+		long lastPage = rowsRead(TransactionManagementModuleRepositoryImpl.SELECT_PAGE_AFTER,
+				Timestamp.valueOf(lastCursor.transactionDate()), lastCursor.id(), PAGE_SIZE);
+		long offsetLastPage = rowsRead("SELECT id FROM transaction_management_module ORDER BY transaction_date, id "
+				+ "LIMIT ? OFFSET ?", PAGE_SIZE, (PAGES - 1) * PAGE_SIZE);
+
+		// H2 seeks on the date alone, so it also reads the rows before the cursor that share its timestamp
+		assertTrue(firstPage <= PAGE_SIZE + ROWS_PER_TIMESTAMP, "first page read " + firstPage + " rows");
+		assertTrue(lastPage <= PAGE_SIZE + ROWS_PER_TIMESTAMP, "page 10,000 read " + lastPage + " rows");
+		// The reference: offset paging reads and discards every row before the page
+		assertTrue(offsetLastPage >= (long) PAGES * PAGE_SIZE, "offset page 10,000 read " + offsetLastPage + " rows");
+	}
+
+	// Returns the cursor of the last page
+	private TransactionCursor walk() {
+		TransactionCursor cursor = null;
+		TransactionCursor lastPageCursor = null;
+		int seen = 0;
+		TransactionManagementModule previous = null;
+		for (int page = 0; page < PAGES; page++) {
+			lastPageCursor = cursor;
+			List<TransactionManagementModule> items = repository.findPageAfter(cursor, PAGE_SIZE);
+
+			assertEquals(PAGE_SIZE, items.size());
+			for (TransactionManagementModule item : items) {
+				if (previous != null) {
+					int order = item.getTransactionDate().compareTo(previous.getTransactionDate());
+					assertTrue(order > 0 || (order == 0 && item.getId() > previous.getId()));
+				}
+				previous = item;
+			}
+			seen += items.size();
+			TransactionManagementModule last = items.get(items.size() - 1);
+			cursor = TransactionCursor.decode(new TransactionCursor(last.getTransactionDate(), last.getId()).encode());
+		}
+		assertEquals(PAGES * PAGE_SIZE, seen);
+		assertTrue(repository.findPageAfter(cursor, PAGE_SIZE).isEmpty());
+		return lastPageCursor;
+	}
+
+	// The rows the scan of transaction_management_module read while running the query, which must use the index
+	private long rowsRead(String sql, Object... args) {
+		String plan = String.join("\n", jdbcTemplate.queryForList("EXPLAIN ANALYZE " + sql, String.class, args));
+		Matcher matcher = (postgres ? POSTGRES_ROWS_READ : H2_ROWS_READ).matcher(plan);
+		assertTrue(matcher.find(), plan);
+		assertTrue(plan.toLowerCase().contains("idx_transaction_date_id"), plan);
+		return Long.parseLong(matcher.group(matcher.groupCount()));
+	}
+}
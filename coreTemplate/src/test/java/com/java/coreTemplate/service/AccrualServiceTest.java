@@ -0,0 +1,205 @@
+package com.java.coreTemplate.service;
+
+import com.java.coreTemplate.TestDatabases;
+import com.java.coreTemplate.model.dto.AccrualJob;
+import com.java.coreTemplate.model.dto.Money;
+import com.java.coreTemplate.repository.AccrualRepository;
+import com.java.coreTemplate.repository.LedgerRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Accrues a few thousand accounts over many ranges and checks that every
+ * active account got exactly its day of interest or overdraft fee on its
+ * balance at the end of the date, also when a run fails halfway and the
+ * watchdog resumes it, and that a completed date is not accrued again. The
+ * service runs on a pool with auto-commit off, as in the application, so
+ * every write it makes outside a transaction would be lost.
+ */
+class AccrualServiceTest {
+
+	private static final int ACCOUNTS = 3_000;
+	private static final BigDecimal INTEREST_RATE = new BigDecimal("0.05");
+	private static final BigDecimal OVERDRAFT_RATE = new BigDecimal("0.20");
+	private static final LocalDate BUSINESS_DATE = LocalDate.now().minusDays(2);
+
+	private HikariDataSource pool;
+	private JdbcTemplate jdbcTemplate;
+	private DataSourceTransactionManager transactionManager;
+	private LedgerService ledger;
+	private SimpleMeterRegistry meterRegistry;
+	private AccrualService accruals;
+	private final Map<String, Long> expected = new HashMap<>();
+
+	@BeforeEach
+	void setUp() {
+		DriverManagerDataSource dataSource = TestDatabases.open("accruals.test", "accruals");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		for (String table : new String[]{"accrual_job", "accrual_range", "ledger_entry", "ledger_snapshot",
+				"balance_hold", "bank_account_management_module"}) {
+			jdbcTemplate.update("DELETE FROM " + table);
+		}
+		Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < ACCOUNTS; i++) {
+			// Every third account overdrawn, every tenth inactive
+			long balance = (i % 3 == 0 ? -1 : 1) * (i + 1) * 37 * Money.MINOR_UNITS_PER_UNIT;
+			boolean active = i % 10 != 0;
+			rows.add(new Object[]{account(i), BigDecimal.valueOf(balance, Money.SCALE), active, now});
+			if (active) {
+				expected.put(account(i), accrual(balance));
+			}
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO bank_account_management_module "
+				+ "(account_number, account_holder_name, balance, currency, is_active, is_joint_account, "
+				+ "created_at, version) VALUES (?, 'Holder', ?, 'USD', ?, FALSE, ?, 0)", rows);
+
+		pool = TestDatabases.pooledWithoutAutoCommit(dataSource, 8);
+		JdbcTemplate pooled = new JdbcTemplate(pool);
+		transactionManager = new DataSourceTransactionManager(pool);
+		ledger = new LedgerService(new LedgerRepository(pooled), transactionManager,
+				new ConcurrentMapCacheManager(), 100, Duration.ofSeconds(30), new SimpleMeterRegistry());
+		meterRegistry = new SimpleMeterRegistry();
+		accruals = new AccrualService(new AccrualRepository(pooled), ledger, transactionManager,
+				INTEREST_RATE, OVERDRAFT_RATE, 365, 4, 16, 50, Duration.ofMillis(100), Duration.ofSeconds(1), 7, 2,
+				Duration.ofMillis(50), meterRegistry);
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		accruals.shutdown();
+		ledger.shutdown();
+		pool.close();
+	}
+
+	@Test
+	void everyActiveAccountAccruesOnce() throws InterruptedException {
+		AccrualJob job = awaitFinished(accruals.start(BUSINESS_DATE).id());
+		assertEquals("COMPLETED", job.status());
+		assertEquals(ACCOUNTS, job.accountsTotal());
+		assertEquals(ACCOUNTS, job.accountsDone());
+		assertEquals(job.rangesTotal(), job.rangesDone());
+		assertTrue(job.rangesTotal() > 1 && job.rangesTotal() <= 16);
+		assertAccruedOnce();
+
+		// The date is done: starting it again posts nothing, and no earlier date starts
+		assertEquals("COMPLETED", accruals.start(BUSINESS_DATE).status());
+		assertThrows(IllegalArgumentException.class, () -> accruals.start(BUSINESS_DATE.minusDays(1)));
+		assertAccruedOnce();
+	}
+
+	@Test
+	void accruesTheBalanceAtTheEndOfTheDate() throws InterruptedException {
+		LocalDateTime nextDay = BUSINESS_DATE.plusDays(1).atStartOfDay();
+		// Posted during the date, and after it
+		entry(account(1), 100, BUSINESS_DATE.atTime(23, 59, 59));
+		entry(account(1), 1_000, nextDay);
+		expected.put(account(1), accrual(balance(1) + 100 * Money.MINOR_UNITS_PER_UNIT));
+		// Posted after the date and already snapshotted, so the snapshot is wound back
+		entry(account(2), 500, nextDay.plusMinutes(1));
+		long snapshotted = balance(2) + 500 * Money.MINOR_UNITS_PER_UNIT;
+		jdbcTemplate.update("INSERT INTO ledger_snapshot (account_number, as_of, balance, entry_count) "
+				+ "VALUES (?, ?, ?, 1)", account(2), Timestamp.valueOf(nextDay.plusHours(1)),
+				BigDecimal.valueOf(snapshotted, Money.SCALE));
+		jdbcTemplate.update("UPDATE bank_account_management_module SET balance = ? WHERE account_number = ?",
+				BigDecimal.valueOf(snapshotted, Money.SCALE), account(2));
+
+		assertEquals("COMPLETED", awaitFinished(accruals.start(BUSINESS_DATE).id()).status());
+		assertAccruedOnce();
+	}
+
+	@Test
+	void datesThatHaveNotEndedOrAreTooOldAreRejected() {
+		assertThrows(IllegalArgumentException.class, () -> accruals.start(LocalDate.now()));
+		assertThrows(IllegalArgumentException.class, () -> accruals.start(LocalDate.now().minusDays(8)));
+		assertTrue(accruals.jobOf(LocalDate.now().minusDays(8)).isEmpty());
+	}
+
+	@Test
+	void aFailedJobIsRetriedThenResumedByTheWatchdog() throws InterruptedException {
+		// Fails the chunk of one account in the middle; the other ranges carry on
+		jdbcTemplate.execute("ALTER TABLE ledger_entry ADD CONSTRAINT accrual_test_poison "
+				+ "CHECK (account_number <> '" + account(1_501) + "')");
+		AccrualJob failed = awaitFinished(accruals.start(BUSINESS_DATE).id());
+		assertEquals("FAILED", failed.status());
+		assertTrue(failed.accountsDone() < ACCOUNTS);
+		assertTrue(failed.rangesDone() < failed.rangesTotal());
+		assertEquals(2.0, meterRegistry.get("accruals.chunk.retries").counter().count());
+
+		jdbcTemplate.execute("ALTER TABLE ledger_entry DROP CONSTRAINT accrual_test_poison");
+		// Left alone until stale-after has passed since it failed
+		accruals.resumeStale();
+		assertEquals("FAILED", accruals.job(failed.id()).orElseThrow().status());
+		Thread.sleep(1_100);
+		accruals.resumeStale();
+		AccrualJob resumed = awaitFinished(failed.id());
+		assertEquals(failed.id(), resumed.id());
+		assertEquals("COMPLETED", resumed.status());
+		assertEquals(ACCOUNTS, resumed.accountsDone());
+		assertAccruedOnce();
+	}
+
+	private void assertAccruedOnce() {
+		Map<String, Long> posted = new HashMap<>();
+		jdbcTemplate.query("SELECT account_number, COUNT(*), SUM(amount) FROM ledger_entry "
+				+ "WHERE transfer_reference LIKE 'accrual:" + BUSINESS_DATE + ":%' GROUP BY account_number", rs -> {
+			assertEquals(1, rs.getInt(2), rs.getString(1) + " accrued more than once");
+			posted.put(rs.getString(1), Money.toMinorUnits(rs.getBigDecimal(3)));
+		});
+		assertEquals(expected, posted);
+	}
+
+	private AccrualJob awaitFinished(long jobId) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 60_000;
+		while (true) {
+			AccrualJob job = accruals.job(jobId).orElseThrow();
+			if (!"RUNNING".equals(job.status())) {
+				return job;
+			}
+			assertTrue(System.currentTimeMillis() < deadline, "accrual job still running after 60s");
+			Thread.sleep(20);
+		}
+	}
+
+	private void entry(String accountNumber, long units, LocalDateTime postedAt) {
+		jdbcTemplate.update("INSERT INTO ledger_entry (account_number, amount, currency, transfer_reference, posted_at) "
+				+ "VALUES (?, ?, 'USD', 'test', ?)", accountNumber, BigDecimal.valueOf(units), Timestamp.valueOf(postedAt));
+	}
+
+	private long balance(int index) {
+		return Money.toMinorUnits(jdbcTemplate.queryForObject("SELECT balance FROM bank_account_management_module "
+				+ "WHERE account_number = ?", BigDecimal.class, account(index)));
+	}
+
+	private static long accrual(long balance) {
+		BigDecimal rate = balance > 0 ? INTEREST_RATE : OVERDRAFT_RATE;
+		return BigDecimal.valueOf(balance).multiply(rate)
+				.divide(BigDecimal.valueOf(365), 0, RoundingMode.HALF_EVEN).longValueExact();
+	}
+
+	private static String account(int index) {
+		return String.format("ACC-%04d", index);
+	}
+}
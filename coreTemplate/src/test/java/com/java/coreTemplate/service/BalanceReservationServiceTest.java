@@ -0,0 +1,315 @@
+package com.java.coreTemplate.service;
+
+import com.java.coreTemplate.TestDatabases;
+import com.java.coreTemplate.model.dto.AvailableBalance;
+import com.java.coreTemplate.model.dto.HoldRequest;
+import com.java.coreTemplate.model.dto.HoldResult;
+import com.java.coreTemplate.model.dto.Money;
+import com.java.coreTemplate.model.dto.TransferRequest;
+import com.java.coreTemplate.model.dto.TransferResult;
+import com.java.coreTemplate.repository.BalanceHoldRepository;
+import com.java.coreTemplate.repository.LedgerRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Races holds against each other and against transfers, then checks that no
+ * account can spend below its floor once its holds and allowances are
+ * counted and that confirmed holds reached the ledger; that holds placed
+ * through one node limit the holds and transfers of another; and that a
+ * restarted node grants from the allowance it left behind. The services run on a pool with
+ * auto-commit off, as in the application, so every write they make outside a
+ * transaction would be lost.
+ */
+class BalanceReservationServiceTest {
+
+	private static final int ACCOUNTS = 10;
+	private static final long OPENING_BALANCE = 1_000 * Money.MINOR_UNITS_PER_UNIT;
+	private static final long OVERDRAFT = 200 * Money.MINOR_UNITS_PER_UNIT;
+	private static final int CLIENTS = 16;
+
+	private HikariDataSource pool;
+	private DataSourceTransactionManager transactionManager;
+	private JdbcTemplate jdbcTemplate;
+	private JdbcTemplate pooled;
+	private LedgerService ledger;
+	private BalanceReservationService reservations;
+	private TransferPostingService transfers;
+
+	@BeforeEach
+	void setUp() {
+		DriverManagerDataSource dataSource = TestDatabases.open("reservations.test", "reservations");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		for (String table : new String[]{"account_transfer", "ledger_entry", "ledger_snapshot", "balance_hold",
+				"balance_allowance", "bank_account_management_module"}) {
+			jdbcTemplate.update("DELETE FROM " + table);
+		}
+		Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < ACCOUNTS; i++) {
+			// Odd accounts may go into overdraft, even ones must stay at or above zero
+			BigDecimal overdraft = i % 2 == 1 ? BigDecimal.valueOf(OVERDRAFT, Money.SCALE) : null;
+			rows.add(new Object[]{account(i), BigDecimal.valueOf(OPENING_BALANCE, Money.SCALE), overdraft, now});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO bank_account_management_module "
+				+ "(account_number, account_holder_name, balance, currency, is_active, is_joint_account, "
+				+ "overdraft_limit, created_at, version) VALUES (?, 'Holder', ?, 'USD', TRUE, FALSE, ?, ?, 0)", rows);
+
+		// Holds on one account queue on its row lock, so connecting per transaction would dominate
+		pool = TestDatabases.pooledWithoutAutoCommit(dataSource, CLIENTS + 8);
+		pooled = new JdbcTemplate(pool);
+		transactionManager = new DataSourceTransactionManager(pool);
+		ledger = new LedgerService(new LedgerRepository(pooled), transactionManager,
+				new ConcurrentMapCacheManager(), 50, Duration.ofSeconds(2), new SimpleMeterRegistry());
+		reservations = reservations();
+		transfers = new TransferPostingService(pooled, transactionManager, ledger, reservations, 4, 100, 100_000,
+				new SimpleMeterRegistry());
+		transfers.start();
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		transfers.shutdown();
+		reservations.shutdown();
+		ledger.shutdown();
+		pool.close();
+	}
+
+	@Test
+	void concurrentHoldsNeverExceedTheAvailableBalance() throws Exception {
+		// Account 1 may go 200 into overdraft, so 1200 can be held
+		Queue<String> held = new ConcurrentLinkedQueue<>();
+		AtomicLong heldTotal = new AtomicLong();
+		ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+		List<CompletableFuture<Void>> runs = new ArrayList<>();
+		for (int c = 0; c < CLIENTS; c++) {
+			runs.add(CompletableFuture.runAsync(() -> {
+				for (int i = 0; i < 200; i++) {
+					long amount = 1 + ThreadLocalRandom.current().nextLong(5 * Money.MINOR_UNITS_PER_UNIT);
+					HoldResult result = reservations.hold(new HoldRequest(account(1), Money.ofMinor(amount, "USD")));
+					if (result.status() == HoldResult.Status.HELD) {
+						held.add(result.holdId());
+						heldTotal.addAndGet(amount);
+					}
+				}
+			}, clients));
+		}
+		CompletableFuture.allOf(runs.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+		clients.shutdown();
+
+		AvailableBalance available = reservations.available(account(1)).orElseThrow();
+		assertTrue(heldTotal.get() <= OPENING_BALANCE + OVERDRAFT);
+		assertEquals(heldTotal.get(), available.held().minorUnits());
+		assertEquals(OPENING_BALANCE + OVERDRAFT - heldTotal.get(), available.available().minorUnits());
+
+		// Release every other hold and confirm the rest; confirmations are written before they return
+		int i = 0;
+		for (String holdId : held) {
+			if (i++ % 2 == 0) {
+				assertTrue(reservations.release(holdId));
+			} else {
+				assertTrue(reservations.confirm(holdId, null));
+			}
+		}
+		reservations.flush();
+
+		long captured = Money.toMinorUnits(jdbcTemplate.queryForObject(
+				"SELECT COALESCE(SUM(captured_amount), 0) FROM balance_hold WHERE status = 'CONFIRMED'", BigDecimal.class));
+		assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM balance_hold WHERE status = 'HELD'", Integer.class));
+		assertEquals(held.size(), jdbcTemplate.queryForObject("SELECT count(*) FROM balance_hold", Integer.class));
+		assertEquals(OPENING_BALANCE - captured, ledger.balances(List.of(account(1))).get(account(1)));
+	}
+
+	@Test
+	void holdsAndTransfersTogetherStayAboveTheFloor() throws Exception {
+		Queue<String> held = new ConcurrentLinkedQueue<>();
+		List<CompletableFuture<TransferResult>> posted = new ArrayList<>();
+		ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+		List<CompletableFuture<List<CompletableFuture<TransferResult>>>> runs = new ArrayList<>();
+		for (int c = 0; c < CLIENTS; c++) {
+			runs.add(CompletableFuture.supplyAsync(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				List<CompletableFuture<TransferResult>> submitted = new ArrayList<>();
+				for (int i = 0; i < 500; i++) {
+					int from = random.nextInt(ACCOUNTS);
+					Money amount = Money.ofMinor(1 + random.nextLong(100 * Money.MINOR_UNITS_PER_UNIT), "USD");
+					if (random.nextBoolean()) {
+						submitted.add(transfers.submit(new TransferRequest(null, account(from),
+								account((from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS), amount)));
+						continue;
+					}
+					HoldResult result = reservations.hold(new HoldRequest(account(from), amount));
+					if (result.status() == HoldResult.Status.HELD && random.nextInt(3) == 0) {
+						reservations.confirm(result.holdId(), null);
+					} else if (result.status() == HoldResult.Status.HELD) {
+						held.add(result.holdId());
+					}
+				}
+				return submitted;
+			}, clients));
+		}
+		for (CompletableFuture<List<CompletableFuture<TransferResult>>> run : runs) {
+			posted.addAll(run.get(60, TimeUnit.SECONDS));
+		}
+		CompletableFuture.allOf(posted.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+		clients.shutdown();
+		transfers.shutdown();
+		reservations.flush();
+
+		List<String> numbers = new ArrayList<>();
+		for (int i = 0; i < ACCOUNTS; i++) {
+			numbers.add(account(i));
+		}
+		Map<String, Long> balances = ledger.balances(numbers);
+		long total = 0;
+		for (int i = 0; i < ACCOUNTS; i++) {
+			long open = Money.toMinorUnits(jdbcTemplate.queryForObject("SELECT COALESCE(SUM(amount), 0) FROM balance_hold "
+					+ "WHERE status = 'HELD' AND account_number = ?", BigDecimal.class, account(i))) + allowance(account(i));
+			long floor = i % 2 == 1 ? -OVERDRAFT : 0;
+			long balance = balances.get(account(i));
+			assertTrue(balance - open >= floor, account(i) + " can spend below its floor: " + (balance - open));
+			total += balance;
+		}
+		long captured = Money.toMinorUnits(jdbcTemplate.queryForObject(
+				"SELECT COALESCE(SUM(captured_amount), 0) FROM balance_hold WHERE status = 'CONFIRMED'", BigDecimal.class));
+		assertEquals(ACCOUNTS * OPENING_BALANCE - captured, total);
+		assertEquals(held.size(), jdbcTemplate.queryForObject("SELECT count(*) FROM balance_hold WHERE status = 'HELD'",
+				Integer.class));
+	}
+
+	@Test
+	void holdsThroughOneNodeCountOnAnother() throws Exception {
+		// A second node on the same database
+		LedgerService otherLedger = new LedgerService(new LedgerRepository(pooled), transactionManager,
+				new ConcurrentMapCacheManager(), 50, Duration.ofSeconds(2), new SimpleMeterRegistry());
+		BalanceReservationService other = service(otherLedger, "", Duration.ofMinutes(1), new SimpleMeterRegistry());
+		TransferPostingService otherTransfers = new TransferPostingService(pooled, transactionManager,
+				otherLedger, other, 4, 100, 100_000, new SimpleMeterRegistry());
+		otherTransfers.start();
+		try {
+			String holdId = reservations.hold(new HoldRequest(account(2), Money.parse("900.00", "USD"))).holdId();
+			assertEquals(Money.parse("100.00", "USD"), other.available(account(2)).orElseThrow().available());
+			assertEquals(HoldResult.Status.DECLINED,
+					other.hold(new HoldRequest(account(2), Money.parse("150.00", "USD"))).status());
+			assertEquals(TransferResult.Status.REJECTED, otherTransfers.submit(new TransferRequest(null, account(2),
+					account(3), Money.parse("150.00", "USD"))).get(10, TimeUnit.SECONDS).status());
+
+			// Confirmed through the other node once written, the debit is in the ledger when it returns
+			reservations.flush();
+			assertTrue(other.confirm(holdId, Money.parse("600.00", "USD")));
+			assertEquals(OPENING_BALANCE - 600 * Money.MINOR_UNITS_PER_UNIT,
+					ledger.balances(List.of(account(2))).get(account(2)));
+			assertFalse(other.release(holdId));
+			assertEquals(TransferResult.Status.POSTED, otherTransfers.submit(new TransferRequest(null, account(2),
+					account(3), Money.parse("150.00", "USD"))).get(10, TimeUnit.SECONDS).status());
+		} finally {
+			otherTransfers.shutdown();
+			other.shutdown();
+			otherLedger.shutdown();
+		}
+	}
+
+	@Test
+	void expiredHoldsStopCounting() throws InterruptedException {
+		jdbcTemplate.update("INSERT INTO balance_hold (id, account_number, amount, currency, status, created_at, "
+				+ "expires_at) VALUES ('expired', ?, 500, 'USD', 'HELD', ?, ?)", account(4),
+				Timestamp.valueOf(LocalDateTime.now().minusDays(8)), Timestamp.valueOf(LocalDateTime.now().minusDays(1)));
+		assertEquals(Money.ofMinor(0, "USD"), reservations.available(account(4)).orElseThrow().held());
+		assertFalse(reservations.confirm("expired", null));
+		assertFalse(reservations.release("expired"));
+
+		// Another node sweeping every 50ms marks the hold once and counts it once
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		BalanceReservationService sweeping = service(ledger, "", Duration.ofMillis(50), meterRegistry);
+		try {
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (!"EXPIRED".equals(status("expired")) && System.nanoTime() < deadline) {
+				Thread.sleep(20);
+			}
+			assertEquals("EXPIRED", status("expired"));
+			Thread.sleep(200);
+			assertEquals(1.0, meterRegistry.counter("reservations.expired").count());
+		} finally {
+			sweeping.shutdown();
+		}
+	}
+
+	@Test
+	void aRestartedNodeTakesItsAllowanceBack() throws InterruptedException {
+		// Holding 100 of 1000 grows the allowance by a quarter of it; the node then goes down without giving it back
+		BalanceReservationService before = service(ledger, "node-a", Duration.ofMinutes(1), new SimpleMeterRegistry());
+		BalanceReservationService after = null;
+		try {
+			assertEquals(HoldResult.Status.HELD,
+					before.hold(new HoldRequest(account(6), Money.parse("100.00", "USD"))).status());
+			before.flush();
+			assertEquals(150 * Money.MINOR_UNITS_PER_UNIT, allowance(account(6)));
+
+			// The restart grants the 150 left without growing the allowance again
+			after = service(ledger, "node-a", Duration.ofMinutes(1), new SimpleMeterRegistry());
+			assertEquals(HoldResult.Status.HELD,
+					after.hold(new HoldRequest(account(6), Money.parse("150.00", "USD"))).status());
+			after.flush();
+			assertEquals(0, allowance(account(6)));
+			assertEquals(Money.parse("750.00", "USD"), after.available(account(6)).orElseThrow().available());
+		} finally {
+			before.shutdown();
+			if (after != null) {
+				after.shutdown();
+			}
+		}
+	}
+
+	private String status(String holdId) {
+		return jdbcTemplate.queryForObject("SELECT status FROM balance_hold WHERE id = ?", String.class, holdId);
+	}
+
+	private long allowance(String accountNumber) {
+		return Money.toMinorUnits(jdbcTemplate.queryForObject("SELECT COALESCE(SUM(amount), 0) FROM balance_allowance "
+				+ "WHERE account_number = ?", BigDecimal.class, accountNumber));
+	}
+
+	private BalanceReservationService reservations() {
+		return service(ledger, "", Duration.ofMinutes(1), new SimpleMeterRegistry());
+	}
+
+	private BalanceReservationService service(LedgerService ledger, String nodeId, Duration expiryInterval,
+											  SimpleMeterRegistry meterRegistry) {
+		BalanceReservationService service = new BalanceReservationService(new BalanceHoldRepository(pooled), ledger,
+				transactionManager, nodeId, 16, Duration.ofDays(7), 0.25, Duration.ofSeconds(30), Duration.ofMinutes(1),
+				Duration.ofMinutes(5), Duration.ofMillis(20), expiryInterval, 1000, 100_000, meterRegistry);
+		service.start();
+		return service;
+	}
+
+	private static String account(int index) {
+		return String.format("ACC-%02d", index);
+	}
+}
@@ -0,0 +1,134 @@
+package com.java.coreTemplate.service;
+
+import com.java.coreTemplate.TestDatabases;
+import com.java.coreTemplate.config.CacheInvalidationBus;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks credentials up and logs users in with and without the credential
+ * cache; the uncached variants evict the user first, so every call reads the
+ * row. Runs against an in-memory H2 database by default, which flatters the
+ * uncached path; -Dusers.test.url (plus users.test.username /
+ * users.test.password) points it at Postgres for realistic round trips. Run with
+ * java -cp target/test-classes:$(test classpath) com.java.coreTemplate.service.CredentialCacheBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CredentialCacheBenchmark {
+
+	private static final int USERS = 50;
+
+	private HikariDataSource pool;
+	private PasswordHashingService passwordHashingService;
+	private CredentialCache credentialCache;
+	private UserService userService;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		DriverManagerDataSource dataSource = TestDatabases.open("users.test", "credentials-benchmark");
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS users (id SERIAL PRIMARY KEY, "
+				+ "username VARCHAR(255) NOT NULL UNIQUE, password VARCHAR(255) NOT NULL, email VARCHAR(255) NOT NULL UNIQUE)");
+		jdbcTemplate.update("DELETE FROM users WHERE username LIKE 'bench-user-%'");
+
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		// Lowest bcrypt cost so the comparison is not drowned out by key stretching
+		passwordHashingService = new PasswordHashingService(4, 0, 64, Duration.ofSeconds(5), meterRegistry);
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < USERS; i++) {
+			rows.add(new Object[]{"bench-user-" + i, passwordHashingService.hash("secret-" + i).join(), "bench-user-" + i + "@example.com"});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO users (username, password, email) VALUES (?, ?, ?)", rows);
+		// Pooled, as in the application, so a miss costs a query and not a new connection
+		pool = TestDatabases.pooled(dataSource, 4);
+
+		// Not started: evictions stay on this node
+		CacheInvalidationBus invalidationBus = new CacheInvalidationBus(dataSource, jdbcTemplate,
+				new DataSourceTransactionManager(dataSource), new StandardEnvironment(), false, "cache_invalidation",
+				Duration.ofMillis(50), Duration.ofSeconds(5), 10_000, meterRegistry);
+		credentialCache = new CredentialCache(new JdbcTemplate(pool), 1_000, Duration.ofMinutes(5), invalidationBus, meterRegistry);
+		UserExistenceFilter userExistenceFilter = new UserExistenceFilter(dataSource, 1_000, 0.01, 100, Duration.ofHours(1),
+				invalidationBus, meterRegistry);
+		userExistenceFilter.init();
+		userService = new UserService();
+		ReflectionTestUtils.setField(userService, "passwordHashingService", passwordHashingService);
+		ReflectionTestUtils.setField(userService, "userExistenceFilter", userExistenceFilter);
+		ReflectionTestUtils.setField(userService, "credentialCache", credentialCache);
+	}
+
+	@TearDown
+	public void tearDown() {
+		passwordHashingService.shutdown();
+		pool.close();
+	}
+
+	@Benchmark
+	public Object cachedLookup() {
+		return credentialCache.get("bench-user-" + nextUser());
+	}
+
+	@Benchmark
+	public Object uncachedLookup() {
+		String username = "bench-user-" + nextUser();
+		credentialCache.invalidate(username);
+		return credentialCache.get(username);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public Optional<?> cachedLogin() {
+		int user = nextUser();
+		return userService.authenticateUser("bench-user-" + user, "secret-" + user).join();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public Optional<?> uncachedLogin() {
+		int user = nextUser();
+		credentialCache.invalidate("bench-user-" + user);
+		return userService.authenticateUser("bench-user-" + user, "secret-" + user).join();
+	}
+
+	private int nextUser() {
+		int user = next;
+		next = (next + 1) % USERS;
+		return user;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(CredentialCacheBenchmark.class.getSimpleName()).build()).run();
+	}
+}
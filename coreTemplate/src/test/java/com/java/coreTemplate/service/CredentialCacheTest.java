@@ -0,0 +1,131 @@
+package com.java.coreTemplate.service;
+
+import com.java.coreTemplate.TestDatabases;
+import com.java.coreTemplate.config.CacheInvalidationBus;
+import com.java.coreTemplate.model.dto.UserCredentials;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Logs users in through the credential cache and counts the credential
+ * queries that reach the database. Runs against an in-memory H2 database by
+ * default; -Dusers.test.url (plus users.test.username / users.test.password)
+ * points it at Postgres.
+ */
+class CredentialCacheTest {
+
+	private static final int USERS = 50;
+
+	private JdbcTemplate jdbcTemplate;
+	private final AtomicInteger credentialQueries = new AtomicInteger();
+	private PasswordHashingService passwordHashingService;
+	private UserExistenceFilter userExistenceFilter;
+	private CredentialCache credentialCache;
+	private UserService userService;
+
+	@BeforeEach
+	void setUp() {
+		DriverManagerDataSource dataSource = TestDatabases.open("users.test", "credentials");
+		jdbcTemplate = new JdbcTemplate(dataSource) {
+			@Override
+			public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+				if (sql.startsWith("SELECT id, username, password FROM users")) {
+					credentialQueries.incrementAndGet();
+				}
+				return super.query(sql, rowMapper, args);
+			}
+		};
+		jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS users (id SERIAL PRIMARY KEY, "
+				+ "username VARCHAR(255) NOT NULL UNIQUE, password VARCHAR(255) NOT NULL, email VARCHAR(255) NOT NULL UNIQUE)");
+		jdbcTemplate.update("DELETE FROM users WHERE username LIKE 'bench-user-%'");
+
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		// Lowest bcrypt cost, the cache is what is under test
+		passwordHashingService = new PasswordHashingService(4, 0, 64, Duration.ofSeconds(5), meterRegistry);
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < USERS; i++) {
+			rows.add(new Object[]{"bench-user-" + i, passwordHashingService.hash("secret-" + i).join(), "bench-user-" + i + "@example.com"});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO users (username, password, email) VALUES (?, ?, ?)", rows);
+
+		// Not started: evictions stay on this node
+		CacheInvalidationBus invalidationBus = new CacheInvalidationBus(dataSource, jdbcTemplate,
+				new DataSourceTransactionManager(dataSource), new StandardEnvironment(), false, "cache_invalidation",
+				Duration.ofMillis(50), Duration.ofSeconds(5), 10_000, meterRegistry);
+		credentialCache = new CredentialCache(jdbcTemplate, 1_000, Duration.ofMinutes(5), invalidationBus, meterRegistry);
+		userExistenceFilter = new UserExistenceFilter(dataSource, 1_000, 0.01, 100, Duration.ofHours(1),
+				invalidationBus, meterRegistry);
+		userExistenceFilter.init();
+		userService = new UserService();
+		ReflectionTestUtils.setField(userService, "passwordHashingService", passwordHashingService);
+		ReflectionTestUtils.setField(userService, "userExistenceFilter", userExistenceFilter);
+		ReflectionTestUtils.setField(userService, "credentialCache", credentialCache);
+	}
+
+	@Test
+	void repeatedLookupsHitTheCache() {
+		UserCredentials credentials = credentialCache.get("bench-user-1").orElseThrow();
+		assertEquals("bench-user-1", credentials.username());
+		assertTrue(credentialCache.get("bench-user-1").isPresent());
+		assertFalse(credentialCache.get("nobody").isPresent());
+		assertEquals(1, credentialCache.stats().hitCount());
+		assertEquals(2, credentialCache.stats().missCount());
+
+		assertTrue(userService.authenticateUser("bench-user-1", "secret-1").join().isPresent());
+		assertFalse(userService.authenticateUser("bench-user-1", "wrong").join().isPresent());
+	}
+
+	@Test
+	void repeatedLoginsQueryEachUserOnce() {
+		for (int i = 0; i < 1_000; i++) {
+			int user = i % USERS;
+			assertTrue(userService.authenticateUser("bench-user-" + user, "secret-" + user).join().isPresent());
+		}
+		assertEquals(USERS, credentialQueries.get());
+		assertEquals(1_000 - USERS, credentialCache.stats().hitCount());
+
+		credentialCache.invalidate("bench-user-3");
+		assertTrue(userService.authenticateUser("bench-user-3", "secret-3").join().isPresent());
+		assertTrue(userService.authenticateUser("bench-user-4", "secret-4").join().isPresent());
+		assertEquals(USERS + 1, credentialQueries.get());
+	}
+
+	@Test
+	void invalidatedEntryIsReloaded() {
+		credentialCache.get("bench-user-2");
+		jdbcTemplate.update("UPDATE users SET password = 'changed' WHERE username = 'bench-user-2'");
+		credentialCache.invalidate("bench-user-2");
+
+		assertEquals("changed", credentialCache.get("bench-user-2").orElseThrow().passwordHash());
+	}
+
+	@Test
+	void userMissingFromTheBloomFilterCanLogIn() {
+		// As if registered on another node, or outside the application, after the last rebuild
+		jdbcTemplate.update("DELETE FROM users WHERE username = 'bench-user-elsewhere'");
+		jdbcTemplate.update("INSERT INTO users (username, password, email) VALUES (?, ?, ?)",
+				"bench-user-elsewhere", passwordHashingService.hash("secret").join(), "bench-user-elsewhere@example.com");
+		assertFalse(userExistenceFilter.mightContainUsername("bench-user-elsewhere"));
+		// The invalidation bus is not listening, so the miss is not taken as proof
+		assertFalse(userExistenceFilter.isUnknownUsername("bench-user-elsewhere"));
+
+		assertTrue(userService.authenticateUser("bench-user-elsewhere", "secret").join().isPresent());
+		assertTrue(userExistenceFilter.mightContainUsername("bench-user-elsewhere"));
+	}
+}
@@ -0,0 +1,157 @@
+package com.java.coreTemplate.service;
+
+import com.java.coreTemplate.TestDatabases;
+import com.java.coreTemplate.TestRepositories;
+import com.java.coreTemplate.model.dto.Money;
+import com.java.coreTemplate.model.dto.TransactionManagementModule;
+import com.java.coreTemplate.repository.TransactionManagementModuleRepository;
+import com.java.coreTemplate.repository.TransactionManagementModuleRepositoryImpl;
+import com.java.coreTemplate.repository.TransactionRollupRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the answers of the index with the same question asked of the
+ * database, after a startup load, after removals that force an hour to be
+ * reread and after a refresh that picks up writes made elsewhere.
+ */
+class HighValueTransactionIndexTest {
+
+	private static final int TRANSACTIONS = 3_000;
+	private static final int PER_HOUR = 10;
+
+	private JdbcTemplate jdbcTemplate;
+	private TransactionTemplate transactionTemplate;
+	private TransactionManagementModuleRepository repository;
+	private HighValueTransactionIndex index;
+	private final LocalDateTime now = LocalDateTime.now();
+
+	@BeforeEach
+	void setUp() {
+		DriverManagerDataSource dataSource = TestDatabases.open("topk.test", "topk");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		jdbcTemplate.update("DELETE FROM transaction_management_module");
+
+		Random random = new Random(42);
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < TRANSACTIONS; i++) {
+			// Spread over 30 hours, so the oldest ones fall outside the horizon
+			LocalDateTime date = now.minusMinutes(random.nextInt(30 * 60));
+			String currency = i % 3 == 0 ? "EUR" : "USD";
+			rows.add(new Object[]{(long) i + 1, "ref-" + i, random.nextInt(1_000_000), currency,
+					Timestamp.valueOf(date), Timestamp.valueOf(date)});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO transaction_management_module (id, transaction_reference, amount, "
+				+ "currency_code, transaction_date, is_successful, is_processed, requires_approval, created_at, version) "
+				+ "VALUES (?, ?, ?, ?, ?, FALSE, FALSE, FALSE, ?, 0)", rows);
+
+		repository = TestRepositories.transactions(new TransactionManagementModuleRepositoryImpl(jdbcTemplate,
+				new TransactionRollupRepository(jdbcTemplate), 1_000));
+		index = new HighValueTransactionIndex(repository, PER_HOUR, Duration.ofHours(24), new SimpleMeterRegistry());
+		index.rebuild();
+	}
+
+	@Test
+	void answersMatchTheDatabase() {
+		for (int hours : new int[]{1, 6, 24}) {
+			LocalDateTime since = now.minusHours(hours);
+			assertEquals(ids(repository.findTopByAmount("USD", since, now.plusMinutes(1), PER_HOUR)),
+					ids(index.top("USD", since, PER_HOUR)));
+			assertEquals(ids(repository.findTopByAmount("EUR", since, now.plusMinutes(1), 5)),
+					ids(index.top("EUR", since, 5)));
+		}
+	}
+
+	@Test
+	void deletedTransactionsAreReplacedByTheNextLargest() {
+		LocalDateTime since = now.minusHours(24);
+		for (TransactionManagementModule deleted : index.top("USD", since, 3)) {
+			jdbcTemplate.update("DELETE FROM transaction_management_module WHERE id = ?", deleted.getId());
+			index.changed(deleted, null);
+		}
+		assertEquals(ids(repository.findTopByAmount("USD", since, now.plusMinutes(1), PER_HOUR)),
+				ids(index.top("USD", since, PER_HOUR)));
+	}
+
+	@Test
+	void addedTransactionsShowOnceCommitted() {
+		LocalDateTime since = now.minusHours(1);
+		TransactionManagementModule rolledBack = largest(TRANSACTIONS + 1);
+		transactionTemplate.executeWithoutResult(status -> {
+			index.added(List.of(rolledBack));
+			assertFalse(ids(index.top("USD", since, 1)).contains(rolledBack.getId()));
+			status.setRollbackOnly();
+		});
+		assertFalse(ids(index.top("USD", since, 1)).contains(rolledBack.getId()));
+
+		TransactionManagementModule committed = largest(TRANSACTIONS + 2);
+		transactionTemplate.executeWithoutResult(status -> {
+			index.added(List.of(committed));
+			assertFalse(ids(index.top("USD", since, 1)).contains(committed.getId()));
+		});
+		assertEquals(List.of(committed.getId()), ids(index.top("USD", since, 1)));
+
+		// Outside a transaction it is recorded at once
+		TransactionManagementModule direct = largest(TRANSACTIONS + 3);
+		index.added(List.of(direct));
+		assertEquals(List.of(direct.getId(), committed.getId()), ids(index.top("USD", since, 2)));
+	}
+
+	@Test
+	void refreshPicksUpWritesMadeElsewhere() {
+		LocalDateTime since = now.minusHours(24);
+		// Another node inserts a new largest transaction and processes the previous one
+		TransactionManagementModule previous = index.top("USD", since, 1).get(0);
+		jdbcTemplate.update("INSERT INTO transaction_management_module (id, transaction_reference, amount, currency_code, "
+				+ "transaction_date, is_successful, is_processed, requires_approval, created_at, version) "
+				+ "VALUES (?, ?, 2000000, 'USD', ?, FALSE, FALSE, FALSE, ?, 0)", TRANSACTIONS + 1, "ref-elsewhere",
+				Timestamp.valueOf(now.minusMinutes(5)), Timestamp.valueOf(now));
+		jdbcTemplate.update("UPDATE transaction_management_module SET is_processed = TRUE WHERE id = ?", previous.getId());
+		assertEquals(previous.getId(), index.top("USD", since, 1).get(0).getId());
+
+		index.rebuild();
+		List<TransactionManagementModule> top = index.top("USD", since, 2);
+		assertEquals(List.of((long) TRANSACTIONS + 1, previous.getId()), ids(top));
+		assertTrue(top.get(1).isProcessed());
+		assertEquals(ids(repository.findTopByAmount("USD", since, now.plusMinutes(1), PER_HOUR)),
+				ids(index.top("USD", since, PER_HOUR)));
+	}
+
+	@Test
+	void rejectsQuestionsBeyondTheHorizon() {
+		assertThrows(IllegalArgumentException.class, () -> index.top("USD", now.minusHours(30), PER_HOUR));
+	}
+
+	private static List<Long> ids(List<TransactionManagementModule> transactions) {
+		return transactions.stream().map(TransactionManagementModule::getId).toList();
+	}
+
+	// Larger than anything in the table, in the current hour
+	private TransactionManagementModule largest(long id) {
+		TransactionManagementModule transaction = new TransactionManagementModule();
+		transaction.setId(id);
+		transaction.setTransactionReference("ref-" + id);
+		transaction.setAmount(Money.ofMinor(10_000_000_000L + id, "USD"));
+		transaction.setTransactionDate(now.minusMinutes(1));
+		return transaction;
+	}
+}
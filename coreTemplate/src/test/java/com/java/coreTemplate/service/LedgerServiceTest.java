@@ -0,0 +1,138 @@
+package com.java.coreTemplate.service;
+
+import com.java.coreTemplate.TestDatabases;
+import com.java.coreTemplate.model.dto.LedgerEntry;
+import com.java.coreTemplate.model.dto.Money;
+import com.java.coreTemplate.repository.LedgerRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Posts entries in rounds, snapshotting after some of them, and checks the
+ * balance at the end of every round against the sum of all entries up to
+ * then, before, between and after the snapshots.
+ */
+class LedgerServiceTest {
+
+	private static final String ACCOUNT = "ACC-LEDGER";
+	private static final long OPENING_BALANCE = 500 * Money.MINOR_UNITS_PER_UNIT;
+	private static final int SNAPSHOT_EVERY = 50;
+
+	private JdbcTemplate jdbcTemplate;
+	private TransactionTemplate transactionTemplate;
+	private LedgerService ledger;
+	private final Random random = new Random(7);
+	private int posted;
+
+	@BeforeEach
+	void setUp() {
+		DriverManagerDataSource dataSource = TestDatabases.open("ledger.test", "ledger");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.update("DELETE FROM ledger_entry");
+		jdbcTemplate.update("DELETE FROM ledger_snapshot");
+		jdbcTemplate.update("DELETE FROM bank_account_management_module");
+		jdbcTemplate.update("INSERT INTO bank_account_management_module (account_number, account_holder_name, balance, "
+				+ "currency, is_active, is_joint_account, created_at, version) "
+				+ "VALUES (?, 'Holder', ?, 'USD', TRUE, FALSE, LOCALTIMESTAMP, 0)",
+				ACCOUNT, BigDecimal.valueOf(OPENING_BALANCE, Money.SCALE));
+
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		// Nothing posts concurrently here, so entries are settled as soon as they commit
+		ledger = new LedgerService(new LedgerRepository(jdbcTemplate), transactionManager,
+				new ConcurrentMapCacheManager(), SNAPSHOT_EVERY, Duration.ZERO, new SimpleMeterRegistry());
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		ledger.shutdown();
+	}
+
+	@Test
+	void balanceAtMatchesTheSumOfEarlierEntries() throws InterruptedException {
+		Map<LocalDateTime, Long> expected = new LinkedHashMap<>();
+		long balance = OPENING_BALANCE;
+		expected.put(LocalDateTime.now(), balance);
+		for (int round = 0; round < 12; round++) {
+			Thread.sleep(2);
+			balance += post(30);
+			expected.put(LocalDateTime.now(), balance);
+			if (round % 3 == 1) {
+				assertTrue(ledger.snapshot(ACCOUNT));
+			}
+		}
+
+		expected.forEach((at, expectedBalance) ->
+				assertEquals(expectedBalance, ledger.balanceAt(ACCOUNT, at).orElseThrow().balance().minorUnits(), at.toString()));
+		assertEquals(balance, ledger.balance(ACCOUNT).orElseThrow().balance().minorUnits());
+		assertTrue(ledger.balanceAt("ACC-MISSING", LocalDateTime.now()).isEmpty());
+	}
+
+	@Test
+	void snapshotsAreTakenInTheBackgroundAndCopiedToTheAccount() throws InterruptedException {
+		long balance = OPENING_BALANCE + post(SNAPSHOT_EVERY);
+		ledger.posted(Map.of(ACCOUNT, SNAPSHOT_EVERY));
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (jdbcTemplate.queryForObject("SELECT count(*) FROM ledger_snapshot", Integer.class) == 0) {
+			assertTrue(System.currentTimeMillis() < deadline, "no snapshot within 10s");
+			Thread.sleep(20);
+		}
+		BigDecimal column = jdbcTemplate.queryForObject(
+				"SELECT balance FROM bank_account_management_module WHERE account_number = ?", BigDecimal.class, ACCOUNT);
+		assertEquals(balance, Money.toMinorUnits(column));
+		assertEquals(balance, ledger.balance(ACCOUNT).orElseThrow().balance().minorUnits());
+		// Nothing new has settled since
+		assertFalse(ledger.snapshot(ACCOUNT));
+	}
+
+	@Test
+	void balancesAboveCompareTheBalanceAfterTheLatestSnapshot() {
+		long lowBalance = -1_000_000 * Money.MINOR_UNITS_PER_UNIT;
+		jdbcTemplate.update("INSERT INTO bank_account_management_module (account_number, account_holder_name, balance, "
+				+ "currency, is_active, is_joint_account, created_at, version) "
+				+ "VALUES ('ACC-LOW', 'Holder', ?, 'USD', TRUE, FALSE, LOCALTIMESTAMP, 0)",
+				BigDecimal.valueOf(lowBalance, Money.SCALE));
+		long balance = OPENING_BALANCE + post(30);
+		assertTrue(ledger.snapshot(ACCOUNT));
+		// Past the snapshot, so the account row no longer shows it
+		balance += post(30);
+
+		assertEquals(Map.of(ACCOUNT, balance), ledger.balancesAbove(balance - 1));
+		assertEquals(Map.of(), ledger.balancesAbove(balance));
+		assertEquals(Map.of(ACCOUNT, balance, "ACC-LOW", lowBalance), ledger.balancesAbove(lowBalance - 1));
+	}
+
+	// Appends count random entries in one transaction and returns their sum
+	private long post(int count) {
+		List<LedgerEntry> entries = new ArrayList<>(count);
+		long sum = 0;
+		for (int i = 0; i < count; i++) {
+			long amount = random.nextLong(-100 * Money.MINOR_UNITS_PER_UNIT, 100 * Money.MINOR_UNITS_PER_UNIT);
+			entries.add(new LedgerEntry(null, ACCOUNT, Money.ofMinor(amount, "USD"), "t-" + posted++, null));
+			sum += amount;
+		}
+		transactionTemplate.executeWithoutResult(status -> ledger.append(entries));
+		return sum;
+	}
+}
@@ -0,0 +1,136 @@
+package com.java.coreTemplate.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.java.coreTemplate.TestDatabases;
+import com.java.coreTemplate.TestRepositories;
+import com.java.coreTemplate.model.dto.TransactionExportFilter;
+import com.java.coreTemplate.repository.TransactionManagementModuleRepository;
+import com.java.coreTemplate.repository.TransactionManagementModuleRepositoryImpl;
+import com.java.coreTemplate.repository.TransactionRollupRepository;
+import com.java.coreTemplate.service.TransactionManagementModuleService.ExportFormat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exports several cursor fetches worth of transactions as CSV and NDJSON and
+ * checks every row and the quoting of awkward descriptions. Runs against an
+ * in-memory H2 database by default; -Dexport.test.url (plus
+ * export.test.username / export.test.password) points it at Postgres, which
+ * only streams through a server-side cursor inside a transaction, as the
+ * service runs it.
+ */
+class TransactionExportTest {
+
+	private static final int FETCH_SIZE = 100;
+	private static final int TRANSACTIONS = 1_050;
+	private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+	private TransactionTemplate readOnly;
+	private TransactionManagementModuleService service;
+
+	@BeforeEach
+	void setUp() {
+		DriverManagerDataSource dataSource = TestDatabases.open("export.test", "export");
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.update("DELETE FROM transaction_management_module");
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < TRANSACTIONS; i++) {
+			Timestamp timestamp = Timestamp.valueOf(START.plusMinutes(i));
+			String description = switch (i % 3) {
+				case 0 -> null;
+				case 1 -> "plain " + i;
+				default -> "with, comma and \"quotes\" " + i;
+			};
+			rows.add(new Object[]{(long) i + 1, "ref-" + i, BigDecimal.valueOf(i * 125L, 2), i % 2 == 0 ? "USD" : "EUR",
+					timestamp, description, timestamp});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO transaction_management_module (id, transaction_reference, amount, "
+				+ "currency_code, transaction_date, description, created_at, version) VALUES (?, ?, ?, ?, ?, ?, ?, 0)",
+				rows);
+
+		TransactionManagementModuleRepository repository = TestRepositories.transactions(
+				new TransactionManagementModuleRepositoryImpl(jdbcTemplate, new TransactionRollupRepository(jdbcTemplate),
+						FETCH_SIZE));
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		service = new TransactionManagementModuleService(repository, new TransactionRollupRepository(jdbcTemplate),
+				new ObjectMapper(), 1_000, new TransactionReferenceCache(1_000, Duration.ofMinutes(1), meterRegistry),
+				new HighValueTransactionIndex(repository, 100, Duration.ofHours(24), meterRegistry), meterRegistry);
+		readOnly = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		readOnly.setReadOnly(true);
+	}
+
+	@Test
+	void csvHasAHeaderAndOneQuotedLinePerTransaction() {
+		String[] lines = export(new TransactionExportFilter(null, null, null, null), ExportFormat.CSV).split("\n");
+
+		assertEquals(TRANSACTIONS + 1, lines.length);
+		assertEquals("id,transactionReference,amount,currencyCode,transactionDate,description,"
+				+ "successful,processed,requiresApproval,approvalStatus,createdAt,lastModifiedAt", lines[0]);
+		for (int i = 0; i < TRANSACTIONS; i++) {
+			String description = switch (i % 3) {
+				case 0 -> "";
+				case 1 -> "plain " + i;
+				default -> "\"with, comma and \"\"quotes\"\" " + i + "\"";
+			};
+			LocalDateTime timestamp = START.plusMinutes(i);
+			assertEquals((i + 1) + ",ref-" + i + "," + BigDecimal.valueOf(i * 125L, 2).setScale(4) + ","
+					+ (i % 2 == 0 ? "USD" : "EUR") + "," + timestamp + "," + description + ",false,false,false,,"
+					+ timestamp + ",", lines[i + 1]);
+		}
+	}
+
+	@Test
+	void ndjsonHasOneObjectPerMatchingTransaction() throws IOException {
+		TransactionExportFilter euros = new TransactionExportFilter(START, START.plusMinutes(TRANSACTIONS - 50), "EUR",
+				null);
+		String[] lines = export(euros, ExportFormat.NDJSON).split("\n");
+
+		assertEquals((TRANSACTIONS - 50) / 2, lines.length);
+		ObjectMapper objectMapper = new ObjectMapper();
+		long previousId = 0;
+		for (String line : lines) {
+			JsonNode transaction = objectMapper.readTree(line);
+			long id = transaction.get("id").asLong();
+			assertTrue(id > previousId);
+			previousId = id;
+			assertEquals("EUR", transaction.get("currencyCode").asText());
+			assertEquals("ref-" + (id - 1), transaction.get("transactionReference").asText());
+			// A JSON number with four decimals, not a string or a double approximation
+			assertTrue(transaction.get("amount").isNumber());
+			String amount = BigDecimal.valueOf((id - 1) * 125L, 2).setScale(4).toPlainString();
+			assertTrue(line.contains("\"amount\":" + amount + ","), line);
+		}
+	}
+
+	private String export(TransactionExportFilter filter, ExportFormat format) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		readOnly.executeWithoutResult(status -> {
+			try {
+				service.export(filter, format, out);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		return out.toString(StandardCharsets.UTF_8);
+	}
+}
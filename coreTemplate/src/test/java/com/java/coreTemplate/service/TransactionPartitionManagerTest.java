@@ -0,0 +1,136 @@
+package com.java.coreTemplate.service;
+
+import com.java.coreTemplate.TestDatabases;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Maintains the monthly partitions of a freshly created transaction table:
+ * rows that landed in the default partition end up in a partition of their
+ * month, a month that cannot be created is counted as a failure and retried,
+ * and retention drops whole months with their reference keys. Needs
+ * Postgres: -Dpartitions.test.url (plus partitions.test.username /
+ * partitions.test.password) or -Dtest.db.url.
+ */
+class TransactionPartitionManagerTest {
+
+	private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("'p'yyyy_MM");
+
+	private final YearMonth current = YearMonth.now();
+	private final AtomicLong ids = new AtomicLong();
+	private JdbcTemplate jdbcTemplate;
+	private DataSourceTransactionManager transactionManager;
+	private SimpleMeterRegistry meterRegistry;
+
+	@BeforeEach
+	void setUp() {
+		DriverManagerDataSource dataSource = TestDatabases.openPartitioned("partitions.test", "partition_test").orElse(null);
+		assumeTrue(dataSource != null, "partitions.test.url is not a Postgres URL");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.update("DELETE FROM transaction_reference_key");
+		transactionManager = new DataSourceTransactionManager(dataSource);
+		meterRegistry = new SimpleMeterRegistry();
+	}
+
+	@Test
+	void rowsInTheDefaultPartitionMoveIntoTheirMonth() {
+		manager(1, 0).init();
+		insert(current, 3);
+		insert(current.plusMonths(3), 4);
+		insert(current.minusMonths(6), 5);
+		assertEquals(Map.of("transaction_management_module_default", 9L, partition(current), 3L), rowsPerPartition());
+
+		manager(3, 0).init();
+		assertEquals(Map.of(partition(current), 3L, partition(current.plusMonths(3)), 4L,
+				partition(current.minusMonths(6)), 5L), rowsPerPartition());
+		assertEquals(0.0, failures());
+	}
+
+	@Test
+	void aMonthThatCannotBeCreatedIsCountedAndRetried() {
+		TransactionPartitionManager manager = manager(1, 0);
+		manager.init();
+		YearMonth ahead = current.plusMonths(2);
+		insert(ahead, 2);
+		// A stray table holds the name the partition needs
+		jdbcTemplate.execute("CREATE TABLE " + partition(ahead) + " (id BIGINT)");
+
+		manager.maintain();
+		assertEquals(1.0, failures());
+		assertEquals(2L, rowsPerPartition().get("transaction_management_module_default"));
+
+		jdbcTemplate.execute("DROP TABLE " + partition(ahead));
+		manager.maintain();
+		assertEquals(1.0, failures());
+		assertEquals(2L, rowsPerPartition().get(partition(ahead)));
+		assertNull(rowsPerPartition().get("transaction_management_module_default"));
+	}
+
+	@Test
+	void retentionDropsWholeMonthsAndTheirReferenceKeys() {
+		manager(1, 0).init();
+		YearMonth old = current.minusMonths(4);
+		insert(old, 3);
+		insert(current, 2);
+		manager(1, 0).init();
+		assertEquals(3L, rowsPerPartition().get(partition(old)));
+
+		TransactionPartitionManager manager = manager(1, 2);
+		manager.init();
+		assertEquals(Map.of(partition(current), 2L), rowsPerPartition());
+		assertEquals(2, jdbcTemplate.queryForObject("SELECT count(*) FROM transaction_reference_key", Integer.class));
+		assertEquals(1.0, meterRegistry.get("transactions.partitions.dropped").counter().count());
+		assertEquals(Optional.of(current.minusMonths(2).atDay(1)), manager.firstRetainedDay());
+	}
+
+	private TransactionPartitionManager manager(int monthsAhead, int retentionMonths) {
+		return new TransactionPartitionManager(jdbcTemplate, transactionManager, monthsAhead, retentionMonths,
+				meterRegistry);
+	}
+
+	// Rows and their reference keys on the first days of the month
+	private void insert(YearMonth month, int count) {
+		for (int i = 0; i < count; i++) {
+			long id = ids.incrementAndGet();
+			Timestamp date = Timestamp.valueOf(month.atDay(1 + i).atTime(12, 0));
+			jdbcTemplate.update("INSERT INTO transaction_management_module (id, transaction_reference, amount, "
+					+ "currency_code, transaction_date, created_at, version) VALUES (?, ?, 10, 'USD', ?, ?, 0)",
+					id, "ref-" + id, date, date);
+			jdbcTemplate.update("INSERT INTO transaction_reference_key (transaction_reference, transaction_id, "
+					+ "transaction_date) VALUES (?, ?, ?)", "ref-" + id, id, date);
+		}
+	}
+
+	private Map<String, Long> rowsPerPartition() {
+		Map<String, Long> rows = new TreeMap<>();
+		jdbcTemplate.query("SELECT tableoid::regclass::text AS partition, count(*) AS n "
+				+ "FROM transaction_management_module GROUP BY 1", rs -> {
+			rows.put(rs.getString("partition"), rs.getLong("n"));
+		});
+		return rows;
+	}
+
+	private double failures() {
+		return meterRegistry.get("transactions.partitions.failures").counter().count();
+	}
+
+	private static String partition(YearMonth month) {
+		return "transaction_management_module_" + SUFFIX.format(month);
+	}
+}
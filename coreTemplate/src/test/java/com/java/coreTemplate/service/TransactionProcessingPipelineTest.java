@@ -0,0 +1,102 @@
+package com.java.coreTemplate.service;
+
+import com.java.coreTemplate.TestDatabases;
+import com.java.coreTemplate.TestRepositories;
+import com.java.coreTemplate.repository.TransactionManagementModuleRepository;
+import com.java.coreTemplate.repository.TransactionManagementModuleRepositoryImpl;
+import com.java.coreTemplate.repository.TransactionRollupRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs two pipelines against one database, as two nodes would, and checks
+ * that every ready transaction is processed exactly once while the ones
+ * still waiting for approval are left alone.
+ */
+class TransactionProcessingPipelineTest {
+
+	private static final int TRANSACTIONS = 5_000;
+
+	private JdbcTemplate jdbcTemplate;
+	private final List<TransactionProcessingPipeline> nodes = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		DriverManagerDataSource dataSource = TestDatabases.open("processing.test", "processing");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.update("DELETE FROM transaction_management_module");
+
+		Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < TRANSACTIONS; i++) {
+			// Every tenth needs approval: a third approved, a third rejected, a third still pending
+			boolean requiresApproval = i % 10 == 0;
+			String approvalStatus = !requiresApproval ? null : switch (i % 30) {
+				case 0 -> "APPROVED";
+				case 10 -> "REJECTED";
+				default -> "PENDING";
+			};
+			rows.add(new Object[]{(long) i + 1, "ref-" + i, now, requiresApproval, approvalStatus, now});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO transaction_management_module (id, transaction_reference, amount, "
+				+ "currency_code, transaction_date, is_successful, is_processed, requires_approval, approval_status, "
+				+ "created_at, version) VALUES (?, ?, 10, 'USD', ?, FALSE, FALSE, ?, ?, ?, 0)",
+				rows);
+
+		TransactionManagementModuleRepository repository = TestRepositories.transactions(
+				new TransactionManagementModuleRepositoryImpl(jdbcTemplate,
+						new TransactionRollupRepository(jdbcTemplate), 1_000));
+		for (int i = 0; i < 2; i++) {
+			nodes.add(new TransactionProcessingPipeline(repository, new DataSourceTransactionManager(dataSource),
+					true, 3, 50, Duration.ofMillis(20), new SimpleMeterRegistry()));
+		}
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		for (TransactionProcessingPipeline node : nodes) {
+			node.shutdown();
+		}
+	}
+
+	@Test
+	void everyReadyTransactionIsProcessedExactlyOnce() throws InterruptedException {
+		nodes.forEach(TransactionProcessingPipeline::start);
+
+		long deadline = System.currentTimeMillis() + 30_000;
+		nodes.get(0).refreshBacklog();
+		while (nodes.get(0).backlog().pending() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+			nodes.get(0).refreshBacklog();
+		}
+		assertEquals(0, nodes.get(0).backlog().pending());
+
+		Integer unprocessed = jdbcTemplate.queryForObject(
+				"SELECT count(*) FROM transaction_management_module WHERE is_processed = FALSE", Integer.class);
+		Integer pending = jdbcTemplate.queryForObject(
+				"SELECT count(*) FROM transaction_management_module WHERE approval_status = 'PENDING'", Integer.class);
+		assertEquals(pending, unprocessed);
+		assertTrue(pending > 0);
+		// Each processed row was updated by exactly one worker
+		assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM transaction_management_module "
+				+ "WHERE is_processed = TRUE AND version <> 1", Integer.class));
+		assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM transaction_management_module "
+				+ "WHERE approval_status = 'REJECTED' AND is_successful = TRUE", Integer.class));
+		assertEquals(TRANSACTIONS - pending, jdbcTemplate.queryForObject(
+				"SELECT count(*) FROM transaction_management_module WHERE version = 1", Integer.class));
+	}
+}
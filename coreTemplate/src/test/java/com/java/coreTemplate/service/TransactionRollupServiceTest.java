@@ -0,0 +1,170 @@
+package com.java.coreTemplate.service;
+
+import com.java.coreTemplate.TestDatabases;
+import com.java.coreTemplate.TestRepositories;
+import com.java.coreTemplate.model.dto.Money;
+import com.java.coreTemplate.model.dto.TransactionManagementModule;
+import com.java.coreTemplate.model.dto.TransactionRollup;
+import com.java.coreTemplate.repository.TransactionManagementModuleRepository;
+import com.java.coreTemplate.repository.TransactionManagementModuleRepositoryImpl;
+import com.java.coreTemplate.repository.TransactionRollupRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Writes transactions through the repository and checks the rollups against
+ * the transactions themselves, after inserts, after an update and after a
+ * rebuild of damaged rollups. Rollups rely on advisory locks and ON
+ * CONFLICT, so the test needs Postgres: -Drollups.test.url (plus
+ * rollups.test.username / rollups.test.password) or -Dtest.db.url. It runs
+ * in a schema of its own with the table partitioned as in production.
+ */
+class TransactionRollupServiceTest {
+
+	private static final int TRANSACTIONS = 600;
+	private static final int DAYS = 20;
+	private static final int RETENTION_MONTHS = 2;
+	private static final String[] CURRENCIES = {"USD", "EUR", "GBP"};
+	private static final String[] STATUSES = {null, "PENDING", "APPROVED"};
+
+	private final LocalDate today = LocalDate.now();
+	private JdbcTemplate jdbcTemplate;
+	private TransactionTemplate transactionTemplate;
+	private TransactionRollupRepository rollups;
+	private TransactionManagementModuleRepository repository;
+	private TransactionPartitionManager partitions;
+	private TransactionRollupService service;
+	private final List<TransactionManagementModule> written = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		DriverManagerDataSource dataSource = TestDatabases.openPartitioned("rollups.test", "rollup_test").orElse(null);
+		assumeTrue(dataSource != null, "rollups.test.url is not a Postgres URL");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		for (String table : new String[]{"transaction_reference_key", "transaction_rollup", "transaction_management_module"}) {
+			jdbcTemplate.update("DELETE FROM " + table);
+		}
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		rollups = new TransactionRollupRepository(jdbcTemplate);
+		repository = TestRepositories.transactions(new TransactionManagementModuleRepositoryImpl(jdbcTemplate, rollups, 100));
+		partitions = new TransactionPartitionManager(jdbcTemplate, transactionManager, 1, RETENTION_MONTHS,
+				new SimpleMeterRegistry());
+		partitions.init();
+		service = new TransactionRollupService(rollups, partitions, 4);
+
+		for (int i = 0; i < TRANSACTIONS; i++) {
+			TransactionManagementModule transaction = new TransactionManagementModule();
+			transaction.setTransactionReference("rollup-" + i);
+			transaction.setAmount(Money.ofMinor((i + 1) * 12_345L, CURRENCIES[i % CURRENCIES.length]));
+			transaction.setTransactionDate(today.minusDays(i % DAYS).atTime(i % 24, i % 60));
+			transaction.setApprovalStatus(STATUSES[(i / CURRENCIES.length) % STATUSES.length]);
+			written.add(transaction);
+		}
+		transactionTemplate.executeWithoutResult(status -> repository.insertAll(written));
+	}
+
+	@Test
+	void rollupsFollowInsertsAndUpdates() {
+		assertEquals(expectedByDay(), byDay(service.stats(today.minusDays(DAYS), today, null, true)));
+
+		// Approving a pending transaction moves it from one status to the other
+		TransactionManagementModule before = written.get(3);
+		TransactionManagementModule after = copy(before);
+		after.setApprovalStatus("APPROVED");
+		transactionTemplate.executeWithoutResult(status -> rollups.record(List.of(before), List.of(after)));
+		written.set(3, after);
+		assertEquals(expectedByDay(), byDay(service.stats(today.minusDays(DAYS), today, null, true)));
+
+		Map<String, long[]> euroTotals = new TreeMap<>();
+		for (TransactionRollup rollup : service.stats(today.minusDays(DAYS), today, "EUR", false)) {
+			euroTotals.put(rollup.status(), new long[]{rollup.count(), rollup.total().minorUnits()});
+		}
+		Map<String, long[]> expected = new TreeMap<>();
+		for (TransactionManagementModule transaction : written) {
+			if (transaction.getCurrencyCode().equals("EUR")) {
+				long[] total = expected.computeIfAbsent(transaction.getApprovalStatus().orElse("NONE"), k -> new long[2]);
+				total[0]++;
+				total[1] += transaction.getAmount().minorUnits();
+			}
+		}
+		assertEquals(flatten(expected), flatten(euroTotals));
+	}
+
+	@Test
+	void rebuildRestoresDamagedRollups() throws InterruptedException {
+		jdbcTemplate.update("UPDATE transaction_rollup SET txn_count = txn_count + 5, total_amount = 0 "
+				+ "WHERE currency_code = 'USD'");
+		jdbcTemplate.update("DELETE FROM transaction_rollup WHERE currency_code = 'GBP'");
+
+		assertEquals(DAYS, service.rebuild(null, null));
+		assertEquals(expectedByDay(), byDay(service.stats(today.minusDays(DAYS), today, null, true)));
+	}
+
+	@Test
+	void rebuildKeepsTheRollupsOfDroppedMonths() throws InterruptedException {
+		// Rollups of a month whose partition retention already dropped
+		LocalDate dropped = today.minusMonths(RETENTION_MONTHS + 1);
+		jdbcTemplate.update("INSERT INTO transaction_rollup (rollup_date, currency_code, status, txn_count, total_amount) "
+				+ "VALUES (?, 'USD', 'NONE', 42, 4200)", Date.valueOf(dropped));
+
+		LocalDate firstRetained = today.minusMonths(RETENTION_MONTHS).withDayOfMonth(1);
+		assertEquals(ChronoUnit.DAYS.between(firstRetained, today) + 1, service.rebuild(dropped.minusDays(10), today));
+		assertEquals(List.of(new TransactionRollup(dropped, "USD", "NONE", 42, Money.parse("4200", "USD"))),
+				service.stats(dropped, dropped, null, true));
+		assertEquals(expectedByDay(), byDay(service.stats(today.minusDays(DAYS), today, null, true)));
+	}
+
+	private Map<String, String> expectedByDay() {
+		Map<String, long[]> expected = new TreeMap<>();
+		for (TransactionManagementModule transaction : written) {
+			long[] total = expected.computeIfAbsent(transaction.getTransactionDate().toLocalDate() + " "
+					+ transaction.getCurrencyCode() + " " + transaction.getApprovalStatus().orElse("NONE"), k -> new long[2]);
+			total[0]++;
+			total[1] += transaction.getAmount().minorUnits();
+		}
+		return flatten(expected);
+	}
+
+	private static Map<String, String> byDay(List<TransactionRollup> rollups) {
+		Map<String, long[]> actual = new TreeMap<>();
+		for (TransactionRollup rollup : rollups) {
+			actual.put(rollup.day() + " " + rollup.currencyCode() + " " + rollup.status(),
+					new long[]{rollup.count(), rollup.total().minorUnits()});
+		}
+		return flatten(actual);
+	}
+
+	private static Map<String, String> flatten(Map<String, long[]> totals) {
+		Map<String, String> flat = new TreeMap<>();
+		totals.forEach((key, total) -> flat.put(key, total[0] + " / " + BigDecimal.valueOf(total[1], Money.SCALE)));
+		return flat;
+	}
+
+	private static TransactionManagementModule copy(TransactionManagementModule transaction) {
+		TransactionManagementModule copy = new TransactionManagementModule();
+		copy.setId(transaction.getId());
+		copy.setTransactionReference(transaction.getTransactionReference());
+		copy.setAmount(transaction.getAmount());
+		copy.setTransactionDate(transaction.getTransactionDate());
+		copy.setApprovalStatus(transaction.getApprovalStatus().orElse(null));
+		return copy;
+	}
+}
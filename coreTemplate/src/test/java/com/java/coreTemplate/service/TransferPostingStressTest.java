@@ -0,0 +1,180 @@
+package com.java.coreTemplate.service;
+
+import com.java.coreTemplate.TestDatabases;
+import com.java.coreTemplate.model.dto.Money;
+import com.java.coreTemplate.model.dto.TransferRequest;
+import com.java.coreTemplate.model.dto.TransferResult;
+import com.java.coreTemplate.repository.BalanceHoldRepository;
+import com.java.coreTemplate.repository.LedgerRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fires random transfers from many threads, with one hot account on most of
+ * them, and checks that money is neither created nor lost: the total balance
+ * is unchanged, no account went below its floor, and every balance derived
+ * from the ledger matches its opening balance plus the posted transfers. Runs against an in-memory H2
+ * database by default; point it at Postgres with -Dtransfers.test.url (plus
+ * transfers.test.username / transfers.test.password).
+ */
+class TransferPostingStressTest {
+
+	private static final int ACCOUNTS = 20;
+	private static final long OPENING_BALANCE = 1_000 * Money.MINOR_UNITS_PER_UNIT;
+	private static final long OVERDRAFT = 200 * Money.MINOR_UNITS_PER_UNIT;
+	private static final int CLIENTS = 16;
+	private static final int TRANSFERS_PER_CLIENT = 2_000;
+
+	private JdbcTemplate jdbcTemplate;
+	private LedgerService ledger;
+	private BalanceReservationService reservations;
+	private TransferPostingService service;
+
+	@BeforeEach
+	void setUp() {
+		DriverManagerDataSource dataSource = TestDatabases.open("transfers.test", "transfers");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.update("DELETE FROM account_transfer");
+		jdbcTemplate.update("DELETE FROM ledger_entry");
+		jdbcTemplate.update("DELETE FROM ledger_snapshot");
+		jdbcTemplate.update("DELETE FROM balance_hold");
+		jdbcTemplate.update("DELETE FROM balance_allowance");
+		jdbcTemplate.update("DELETE FROM bank_account_management_module");
+
+		Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < ACCOUNTS; i++) {
+			// Odd accounts may go into overdraft, even ones must stay at or above zero
+			BigDecimal overdraft = i % 2 == 1 ? BigDecimal.valueOf(OVERDRAFT, Money.SCALE) : null;
+			rows.add(new Object[]{account(i), "Holder " + i, BigDecimal.valueOf(OPENING_BALANCE, Money.SCALE),
+					overdraft, now});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO bank_account_management_module "
+				+ "(account_number, account_holder_name, balance, currency, is_active, is_joint_account, "
+				+ "overdraft_limit, created_at, version) VALUES (?, ?, ?, 'USD', TRUE, FALSE, ?, ?, 0)", rows);
+
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		// Snapshots every 50 entries, so a run takes plenty of them while transfers are still posting
+		ledger = new LedgerService(new LedgerRepository(jdbcTemplate), transactionManager,
+				new ConcurrentMapCacheManager(), 50, Duration.ofSeconds(2), new SimpleMeterRegistry());
+		reservations = new BalanceReservationService(new BalanceHoldRepository(jdbcTemplate), ledger,
+				transactionManager, "", 16, Duration.ofDays(7), 0.25, Duration.ofSeconds(30), Duration.ofMinutes(1),
+				Duration.ofMinutes(5), Duration.ofMillis(100), Duration.ofMinutes(1), 1000, 100_000,
+				new SimpleMeterRegistry());
+		reservations.start();
+		service = new TransferPostingService(jdbcTemplate, transactionManager, ledger, reservations, 4, 200, 100_000,
+				new SimpleMeterRegistry());
+		service.start();
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		service.shutdown();
+		reservations.shutdown();
+		ledger.shutdown();
+	}
+
+	@Test
+	void concurrentTransfersConserveMoney() throws Exception {
+		ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+		List<CompletableFuture<TransferResult>> results = new ArrayList<>();
+		List<CompletableFuture<List<CompletableFuture<TransferResult>>>> submissions = new ArrayList<>();
+		for (int c = 0; c < CLIENTS; c++) {
+			submissions.add(CompletableFuture.supplyAsync(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				List<CompletableFuture<TransferResult>> submitted = new ArrayList<>();
+				for (int i = 0; i < TRANSFERS_PER_CLIENT; i++) {
+					// Account 0 is the hot one: it sends a quarter and receives half of all transfers
+					int from = random.nextInt(4) == 0 ? 0 : random.nextInt(ACCOUNTS);
+					int to = random.nextInt(2) == 0 ? 0 : random.nextInt(ACCOUNTS);
+					if (from == to) {
+						to = (to + 1) % ACCOUNTS;
+					}
+					long amount = 1 + random.nextLong(150 * Money.MINOR_UNITS_PER_UNIT);
+					submitted.add(service.submit(new TransferRequest(null, account(from), account(to),
+							Money.ofMinor(amount, "USD"))));
+				}
+				return submitted;
+			}, clients));
+		}
+		for (CompletableFuture<List<CompletableFuture<TransferResult>>> submission : submissions) {
+			results.addAll(submission.get(60, TimeUnit.SECONDS));
+		}
+		CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(120, TimeUnit.SECONDS);
+		clients.shutdown();
+
+		// Contention never rejects a transfer; only a debit past the floor does
+		long posted = 0;
+		for (CompletableFuture<TransferResult> result : results) {
+			TransferResult transfer = result.join();
+			if (transfer.status() == TransferResult.Status.POSTED) {
+				posted++;
+			} else {
+				assertEquals("Insufficient funds", transfer.reason(), transfer.transferReference());
+			}
+		}
+		assertTrue(posted > 0);
+		assertEquals(posted, (long) jdbcTemplate.queryForObject("SELECT count(*) FROM account_transfer", Long.class));
+
+		Map<String, Long> expected = new HashMap<>();
+		for (int i = 0; i < ACCOUNTS; i++) {
+			expected.put(account(i), OPENING_BALANCE);
+		}
+		jdbcTemplate.query("SELECT from_account, to_account, amount FROM account_transfer", rs -> {
+			long amount = Money.toMinorUnits(rs.getBigDecimal("amount"));
+			expected.merge(rs.getString("from_account"), -amount, Long::sum);
+			expected.merge(rs.getString("to_account"), amount, Long::sum);
+		});
+
+		Map<String, Long> balances = ledger.balances(expected.keySet());
+		long total = 0;
+		for (Map<String, Object> row : jdbcTemplate.queryForList(
+				"SELECT account_number, overdraft_limit FROM bank_account_management_module")) {
+			String number = (String) row.get("account_number");
+			long balance = balances.get(number);
+			long floor = row.get("overdraft_limit") != null ? -OVERDRAFT : 0;
+			assertEquals(expected.get(number), balance, number);
+			assertTrue(balance >= floor, number + " went below its floor: " + balance);
+			total += balance;
+		}
+		assertEquals(ACCOUNTS * OPENING_BALANCE, total);
+	}
+
+	@Test
+	void reusedReferenceIsRejected() {
+		Money amount = Money.parse("10.00", "USD");
+		TransferResult first = service.submit(new TransferRequest("t-1", account(1), account(2), amount)).join();
+		TransferResult second = service.submit(new TransferRequest("t-1", account(3), account(4), amount)).join();
+
+		assertEquals(TransferResult.Status.POSTED, first.status());
+		assertEquals(TransferResult.Status.REJECTED, second.status());
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM account_transfer", Integer.class));
+	}
+
+	private static String account(int index) {
+		return String.format("ACC-%02d", index);
+	}
+}
@@ -0,0 +1,71 @@
+package com.java.coreTemplate.util;
+
+import com.java.coreTemplate.TestDatabases;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Moves a sequence past ids assigned without it, through a pool with
+ * auto-commit off as in the application, and checks that a sequence
+ * already past them is left alone. Needs Postgres: -Dsequence.test.url
+ * (plus sequence.test.username / sequence.test.password) or -Dtest.db.url.
+ */
+class PooledSequenceTest {
+
+	private static final String SEQUENCE = "pooled_sequence_test_seq";
+
+	private HikariDataSource pool;
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void setUp() {
+		DriverManagerDataSource database = TestDatabases.open("sequence.test", "sequence");
+		assumeTrue(TestDatabases.isPostgres(database), "sequence.test.url is not a Postgres URL");
+		new JdbcTemplate(database).execute("DROP SEQUENCE IF EXISTS " + SEQUENCE);
+		new JdbcTemplate(database).execute("CREATE SEQUENCE " + SEQUENCE + " INCREMENT BY 50");
+		pool = TestDatabases.pooledWithoutAutoCommit(database, 2);
+		jdbcTemplate = new JdbcTemplate(pool);
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (pool != null) {
+			pool.close();
+		}
+	}
+
+	@Test
+	void idsStartAfterRowsAssignedWithoutTheSequence() {
+		new PooledSequence(jdbcTemplate, SEQUENCE, 50).ensureAbove(120);
+
+		// As on another node, or after a restart
+		PooledSequence restarted = new PooledSequence(jdbcTemplate, SEQUENCE, 50);
+		assertEquals(121, restarted.nextId());
+		assertEquals(122, restarted.nextId());
+	}
+
+	@Test
+	void aSequenceAlreadyPastTheRowsIsLeftAlone() {
+		PooledSequence first = new PooledSequence(jdbcTemplate, SEQUENCE, 50);
+		first.ensureAbove(0);
+		assertEquals(1, first.nextId());
+		long lastValue = lastValue();
+
+		// A start that finds id 1 in the table draws no block of its own, and goes on right after it
+		PooledSequence restarted = new PooledSequence(jdbcTemplate, SEQUENCE, 50);
+		restarted.ensureAbove(1);
+		assertEquals(lastValue, lastValue());
+		assertEquals(2, restarted.nextId());
+	}
+
+	private long lastValue() {
+		return jdbcTemplate.queryForObject("SELECT last_value FROM " + SEQUENCE, Long.class);
+	}
+}